@@ -0,0 +1,56 @@
+package bootstrap;
+
+import config.Config;
+import config.GracefulShutdown;
+import enums.ConfigCenterEnum;
+import loader.ConfigLoader;
+import lombok.extern.slf4j.Slf4j;
+import manager.DynamicConfigManager;
+import netty.NettyHttpClient;
+import netty.NettyHttpServer;
+import netty.processor.NettyCoreProcessor;
+import service.ConfigCenterProcessor;
+import service.DefaultRegisterCenterListener;
+import service.RegisterCenterProcessor;
+import service.impl.nacos.NacosConfigCenter;
+import service.impl.nacos.NacosRegisterCenter;
+import service.impl.zookeeper.ZookeeperConfigCenter;
+
+/**
+ * 网关启动入口
+ * 1. 加载配置，从配置中心订阅路由，没有开启配置中心时使用本地配置的路由
+ * 2. 启动下游客户端和服务端
+ * 3. 注册到注册中心并订阅服务实例变化
+ * 4. 注册优雅下线的关闭钩子，收到SIGTERM时先从注册中心注销，再排空服务端和客户端
+ */
+@Slf4j
+public class Bootstrap {
+
+    public static void main(String[] args) {
+        Config config = ConfigLoader.load(args);
+
+        // 路由
+        if (config.getConfigCenter().isEnabled()) {
+            ConfigCenterProcessor configCenter = config.getConfigCenter().getType() == ConfigCenterEnum.ZOOKEEPER
+                    ? new ZookeeperConfigCenter() : NacosConfigCenter.builder().build();
+            configCenter.init(config.getConfigCenter());
+            configCenter.subscribeRoutesChange(routes -> DynamicConfigManager.getInstance().updateRoutes(routes, true));
+        } else if (config.getRoutes() != null) {
+            DynamicConfigManager.getInstance().updateRoutes(config.getRoutes());
+        }
+
+        // 先启动客户端，服务端接收请求时即可转发
+        NettyHttpClient client = new NettyHttpClient(config);
+        client.start();
+        NettyHttpServer server = new NettyHttpServer(config, new NettyCoreProcessor());
+        server.start();
+
+        // 服务端开始监听后再注册，调用方拿到的实例都能接收请求
+        RegisterCenterProcessor registerCenter = new NacosRegisterCenter(config);
+        registerCenter.subscribeServiceChange(new DefaultRegisterCenterListener());
+
+        new GracefulShutdown(config.getShutdown(), registerCenter, server, client).registerShutdownHook();
+        log.info("gateway {} started", config.getName());
+    }
+
+}
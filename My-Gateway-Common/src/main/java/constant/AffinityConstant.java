@@ -0,0 +1,13 @@
+package constant;
+
+public interface AffinityConstant {
+
+    String CLIENT_IP_AFFINITY_KEY = "client_ip"; // 使用客户端IP作为亲和性key
+
+    String HEADER_AFFINITY_KEY = "header"; // 使用指定请求头作为亲和性key
+
+    String COOKIE_AFFINITY_KEY = "cookie"; // 使用指定Cookie作为亲和性key
+
+    String QUERY_AFFINITY_KEY = "query"; // 使用指定查询参数作为亲和性key
+
+}
@@ -0,0 +1,13 @@
+package constant;
+
+import java.util.Set;
+
+public interface CacheConstant {
+
+    Set<String> DEFAULT_CACHE_VARY_HEADERS = Set.of("Accept", "Accept-Encoding"); // 参与缓存key计算的默认请求头
+
+    int DEFAULT_CACHE_TTL = 0; // 下游响应没有声明有效期时的默认缓存时长，单位秒，0表示不缓存
+
+    int DEFAULT_CACHE_MAX_STALE = 0; // 过期后仍可返回旧响应并后台重新验证的时长，单位秒，只对下游明确声明了有效期的响应生效，0表示不返回过期响应
+
+}
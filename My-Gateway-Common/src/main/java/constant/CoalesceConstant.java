@@ -0,0 +1,9 @@
+package constant;
+
+import java.util.Set;
+
+public interface CoalesceConstant {
+
+    Set<String> DEFAULT_VARY_HEADERS = Set.of("Accept", "Accept-Encoding", "Authorization", "Cookie"); // 参与请求合并key计算的默认请求头
+
+}
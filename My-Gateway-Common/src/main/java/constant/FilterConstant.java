@@ -6,8 +6,28 @@ public interface FilterConstant {
 
     int GRAY_FILTER_ORDER = Integer.MIN_VALUE; // 灰度过滤器顺序
 
+    String SUBSET_FILTER_NAME = "subset_filter"; // 子集路由过滤器名字
+
+    int SUBSET_FILTER_ORDER = Integer.MIN_VALUE + 1; // 子集路由过滤器顺序，在灰度之后、负载均衡之前
+
     String LOAD_BALANCE_FILTER_NAME = "load_balance_filter"; // 负载均衡过滤器名字
 
-    int LOAD_BALANCE_FILTER_ORDER = Integer.MIN_VALUE + 1; // 负载均衡过滤器顺序
+    int LOAD_BALANCE_FILTER_ORDER = Integer.MIN_VALUE + 2; // 负载均衡过滤器顺序
+
+    String MIRROR_FILTER_NAME = "mirror_filter"; // 流量镜像过滤器名字
+
+    int MIRROR_FILTER_ORDER = Integer.MAX_VALUE - 3; // 流量镜像过滤器顺序，在响应缓存之前，缓存命中的请求同样镜像
+
+    String CACHE_FILTER_NAME = "cache_filter"; // 响应缓存过滤器名字
+
+    int CACHE_FILTER_ORDER = Integer.MAX_VALUE - 2; // 响应缓存过滤器顺序，在请求合并之前
+
+    String COALESCE_FILTER_NAME = "coalesce_filter"; // 请求合并过滤器名字
+
+    int COALESCE_FILTER_ORDER = Integer.MAX_VALUE - 1; // 请求合并过滤器顺序，紧挨路由过滤器
+
+    String ROUTE_FILTER_NAME = "route_filter"; // 路由过滤器名字，负责向下游发送请求
+
+    int ROUTE_FILTER_ORDER = Integer.MAX_VALUE; // 路由过滤器顺序，永远最后执行
 
-}
\ No newline at end of file
+}
@@ -8,4 +8,6 @@ public interface GrayConstant {
 
     String CLIENT_IP_GRAY_STRATEGY = "client_ip_gray_strategy"; // 根据用户ip决定是否灰度的策略名
 
+    String RULE_GRAY_STRATEGY = "rule_gray_strategy"; // 根据请求头、Cookie、查询参数规则决定是否灰度的策略名
+
 }
@@ -0,0 +1,9 @@
+package constant;
+
+public interface MirrorConstant {
+
+    double DEFAULT_MIRROR_SAMPLE_RATE = 1.0; // 默认镜像比例，1表示全部镜像
+
+    String MIRROR_HEADER = "X-Gateway-Mirror"; // 镜像请求标记头，影子服务据此区分镜像流量
+
+}
@@ -0,0 +1,13 @@
+package constant;
+
+public interface RequestIdConstant {
+
+    String REQUEST_ID_HEADER = "X-Request-Id";
+
+    String SNOWFLAKE_REQUEST_ID_GENERATOR = "snowflake";
+
+    String UUID_REQUEST_ID_GENERATOR = "uuid";
+
+    int MAX_INCOMING_REQUEST_ID_LENGTH = 128; // 复用客户端传入的请求ID时允许的最大长度
+
+}
@@ -0,0 +1,33 @@
+package config;
+
+import lombok.Data;
+
+/**
+ * 金丝雀发布配置
+ */
+@Data
+public class CanaryConfig {
+
+    private boolean enabled = false; // 是否开启自动金丝雀分析，开启后灰度流量比例由控制器根据灰度和稳定实例的指标调整，不再使用实例配置的比例
+
+    private int evaluateIntervalSeconds = 10; // 分析间隔，单位秒
+
+    private double initialShare = 0.05D; // 灰度实例上线后的初始流量比例
+
+    private double stepShare = 0.1D; // 每次提升的流量比例
+
+    private int stepIntervalSeconds = 60; // 提升流量比例的最小间隔，单位秒，间隔内至少有一次分析通过才会提升
+
+    private double maxShare = 0.95D; // 流量比例上限
+
+    private int minRequests = 100; // 一次分析至少需要的灰度请求数，不足时继续累积
+
+    private double maxErrorRateIncrease = 0.02D; // 灰度错误率比稳定实例高出该值时回滚
+
+    private double latencyPercentile = 0.99D; // 比较的延迟分位
+
+    private double maxLatencyRatio = 1.5D; // 灰度延迟分位超过稳定实例的倍数时回滚
+
+    private long minLatencyIncreaseMs = 10; // 灰度延迟分位比稳定实例至少高出该值才认为变慢，避免低延迟服务因为很小的抖动回滚
+
+}
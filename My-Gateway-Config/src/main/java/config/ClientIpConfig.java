@@ -0,0 +1,19 @@
+package config;
+
+import lombok.Data;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 客户端IP解析配置
+ */
+@Data
+public class ClientIpConfig {
+
+    private boolean forwardedEnabled = true; // 是否从X-Forwarded-For解析客户端IP，只有直接连接网关的对端是可信代理时才会解析
+
+    private List<String> trustedProxies = new ArrayList<>(List.of(
+            "127.0.0.0/8", "10.0.0.0/8", "172.16.0.0/12", "192.168.0.0/16", "::1/128", "fc00::/7")); // 可信代理网段（CIDR），X-Forwarded-For从右向左跳过可信代理，第一个不可信的地址就是客户端IP
+
+}
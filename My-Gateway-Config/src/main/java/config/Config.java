@@ -52,6 +52,11 @@ public class Config {
      */
     NettyConfig nettyConfig = new NettyConfig();
 
+    /**
+     * TLS配置
+     */
+    private TlsConfig tls = new TlsConfig();
+
     /**
      * HTTP客户端配置
      * 包含HTTP客户端的连接池大小、超时时间等参数
@@ -59,6 +64,53 @@ public class Config {
      */
     private HttpClientConfig httpClient = new HttpClientConfig();
 
+    /**
+     * 响应缓存配置
+     * 所有路由共享同一个缓存，是否缓存由路由的cache_filter决定
+     */
+    private ResponseCacheConfig responseCache = new ResponseCacheConfig();
+
+    /**
+     * 流量镜像配置
+     * 所有路由共享同一个镜像队列，是否镜像由路由的mirror_filter决定
+     */
+    private MirrorConfig mirror = new MirrorConfig();
+
+    /**
+     * 请求ID配置
+     */
+    private RequestIdConfig requestId = new RequestIdConfig();
+
+    /**
+     * 客户端IP解析配置
+     * 网关部署在负载均衡或反向代理之后时，配置可信代理网段才能拿到真实的客户端IP
+     */
+    private ClientIpConfig clientIp = new ClientIpConfig();
+
+    /**
+     * 同机房优先路由配置
+     * 网关和后端服务部署在多个机房时，优先把流量留在网关所在的机房，减少跨机房的延迟和流量费用
+     */
+    private ZoneAwareConfig zoneAware = new ZoneAwareConfig();
+
+    /**
+     * 金丝雀发布配置
+     * 开启后根据网关自己统计的灰度和稳定实例的错误率、延迟自动提升或回滚灰度流量比例
+     */
+    private CanaryConfig canary = new CanaryConfig();
+
+    /**
+     * 请求对象池配置
+     * 默认关闭，开启后每个请求的上下文、请求和过滤器链对象在响应完成后回收复用
+     */
+    private ObjectPoolConfig objectPool = new ObjectPoolConfig();
+
+    /**
+     * 优雅下线配置
+     * 滚动发布时先从注册中心注销，再排空处理中的请求
+     */
+    private ShutdownConfig shutdown = new ShutdownConfig();
+
     /**
      * 路由配置列表
      * 包含所有静态定义的路由规则
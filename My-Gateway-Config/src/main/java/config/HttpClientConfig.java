@@ -19,4 +19,10 @@ public class HttpClientConfig {
 
     private int httpPooledConnectionIdleTimeout = 60 * 1000; // 客户端空闲连接超时时间, 默认60秒
 
+    private int http2ConnectionsPerInstance = 2; // HTTP/2下游每个实例常驻的连接数，请求在这些连接上多路复用
+
+    private int http2MaxConnectionsPerInstance = 8; // HTTP/2下游每个实例的最大连接数，常驻连接的并发流都用满时才继续建连
+
+    private int http2ConnectionMaxAge = 10 * 60 * 1000; // HTTP/2连接最长使用时间，到期后不再分配新请求，处理完在途请求后关闭，默认10分钟
+
 }
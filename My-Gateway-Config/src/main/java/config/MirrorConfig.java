@@ -0,0 +1,13 @@
+package config;
+
+import lombok.Data;
+
+/**
+ * 流量镜像配置
+ */
+@Data
+public class MirrorConfig {
+
+    private int maxPending = 1000; // 同时发往影子服务的最大镜像请求数，超过后直接丢弃新的镜像请求
+
+}
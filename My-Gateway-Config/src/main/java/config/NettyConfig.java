@@ -14,4 +14,40 @@ public class NettyConfig {
 
     private int maxContentLength = 64 * 1024 * 1024; // 64MB
 
+    private String transport = "epoll"; // 网络传输：epoll、nio，epoll不可用时回退到nio，服务端和下游客户端都使用该传输；不支持io_uring，当前netty版本没有对应模块，AsyncHttpClient也只支持epoll和nio
+
+    private boolean proxyProtocol = false; // 是否解析PROXY协议（v1/v2）头获取真实客户端地址，开启后每个连接（包括健康检查）都必须先发送协议头，否则直接关闭
+
+    private int maxConnections = 100000; // 全局最大连接数，accept后立即检查，超过时直接复位连接，0表示不限制
+
+    private int maxConnectionsPerIp = 0; // 单个客户端IP最大连接数，0表示不限制，客户端在NAT之后时要设置得足够大，按对端地址计算，开启PROXY协议时对端是负载均衡器
+
+    private int readIdleTimeout = 60; // 读空闲超时，单位秒，连接上没有处理中的请求且超时未收到数据时关闭，0表示不限制
+
+    private int writeIdleTimeout = 60; // 写空闲超时，单位秒，响应超时写不出去（客户端不读取）时关闭，0表示不限制
+
+    private int headerReadTimeout = 10; // 请求头读取期限，单位秒，收到请求第一个字节后必须在期限内读完请求头，0表示不限制
+
+    private int minBodyRate = 1024; // 请求体最低速率，单位字节每秒，0表示不限制
+
+    private int bodyRateWindow = 5; // 请求体速率检查窗口，单位秒
+
+    private int maxPipelinedRequests = 32; // HTTP/1.1单个连接最多未写出响应的管道化请求数，达到后暂停读取
+
+    private boolean http2Enabled = true; // 是否支持HTTP/2，明文连接支持h2c升级和直接发送连接前言，TLS连接通过ALPN协商
+
+    private int http2MaxConcurrentStreams = 1000; // 单个HTTP/2连接允许的最大并发流数
+
+    private int http2InitialWindowSize = 1024 * 1024; // HTTP/2每个流的初始流控窗口，1MB
+
+    /*********   以下只在epoll下生效   *********/
+
+    private boolean reusePort = false; // 是否开启SO_REUSEPORT多监听模式，每个worker线程绑定一个监听socket，由内核在多个accept队列间分发连接
+
+    private int tcpFastOpen = 0; // TCP_FASTOPEN队列长度，0表示不开启
+
+    private int tcpDeferAccept = 0; // TCP_DEFER_ACCEPT超时时间，单位秒，连接收到数据后才唤醒accept，0表示不开启
+
+    private boolean tcpQuickAck = false; // 是否开启TCP_QUICKACK，关闭延迟确认
+
 }
\ No newline at end of file
@@ -0,0 +1,17 @@
+package config;
+
+import lombok.Data;
+
+/**
+ * 请求对象池配置
+ */
+@Data
+public class ObjectPoolConfig {
+
+    private boolean enabled = false; // 是否复用每个请求的上下文、请求和过滤器链对象，响应完成后回收，减少年轻代GC
+
+    private int maxCapacityPerThread = 4096; // 每个线程最多缓存的对象数
+
+    private boolean leakDetection = false; // 是否检测未回收的上下文，每个对象都会被跟踪，只在调试时开启
+
+}
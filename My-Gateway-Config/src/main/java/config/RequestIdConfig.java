@@ -0,0 +1,19 @@
+package config;
+
+import lombok.Data;
+
+import static constant.RequestIdConstant.SNOWFLAKE_REQUEST_ID_GENERATOR;
+
+/**
+ * 请求ID配置
+ */
+@Data
+public class RequestIdConfig {
+
+    private String generator = SNOWFLAKE_REQUEST_ID_GENERATOR; // 请求ID生成器：snowflake、uuid，可通过SPI扩展
+
+    private int nodeId = -1; // snowflake节点id，0-1023，-1表示根据本机IP和端口计算，多实例部署时应显式配置保证不重复
+
+    private boolean reuseIncoming = true; // 请求带有X-Request-Id时是否复用，不复用时生成新的ID覆盖
+
+}
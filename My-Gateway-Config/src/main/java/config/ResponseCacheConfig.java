@@ -0,0 +1,23 @@
+package config;
+
+import lombok.Data;
+
+/**
+ * 响应缓存配置
+ */
+@Data
+public class ResponseCacheConfig {
+
+    private long maxSize = 256 * 1024 * 1024; // 缓存响应体占用的最大堆外内存，默认256MB
+
+    private int maxEntrySize = 1024 * 1024; // 单个响应体的最大大小，超过则不缓存，默认1MB
+
+    private boolean diskEnabled = false; // 是否开启磁盘二级缓存，开启后路由还需在cache_filter中配置diskTier
+
+    private String diskPath = "./cache"; // 磁盘缓存段文件目录
+
+    private int diskSegmentSize = 64 * 1024 * 1024; // 单个段文件大小，默认64MB
+
+    private long diskMaxSize = 1024L * 1024 * 1024; // 磁盘缓存最大占用，超过后删除最旧的段文件，默认1GB
+
+}
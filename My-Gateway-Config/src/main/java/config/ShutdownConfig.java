@@ -0,0 +1,17 @@
+package config;
+
+import lombok.Data;
+
+/**
+ * 优雅下线配置
+ */
+@Data
+public class ShutdownConfig {
+
+    private long deregisterWait = 5000; // 从注册中心注销后等待的时间，单位毫秒，让调用方的服务列表刷新后再停止接收连接
+
+    private long drainTimeout = 30000; // 等待处理中的请求完成的最长时间，单位毫秒，超时后强制关闭连接
+
+    private long progressInterval = 1000; // 排空过程中输出进度的间隔，单位毫秒
+
+}
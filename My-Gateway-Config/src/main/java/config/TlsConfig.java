@@ -0,0 +1,29 @@
+package config;
+
+import lombok.Data;
+
+/**
+ * TLS配置
+ */
+@Data
+public class TlsConfig {
+
+    private boolean enabled = false; // 是否开启TLS，开启后网关端口只接受TLS连接
+
+    private String certPath; // PEM格式的证书链文件
+
+    private String keyPath; // PEM格式的PKCS#8私钥文件
+
+    private String keyPassword; // 私钥密码，没有密码时为空
+
+    private String ocspPath; // DER格式的OCSP响应文件，配置后在握手时装订，只在OpenSSL下生效
+
+    private long sessionCacheSize = 20480; // 会话缓存的最大会话数
+
+    private long sessionTimeout = 300; // 会话缓存和会话票据的有效期，单位秒
+
+    private int ticketKeyRotationInterval = 3600; // 会话票据密钥轮换间隔，单位秒，只在OpenSSL下生效
+
+    private int reloadCheckInterval = 60; // 检查证书、私钥、OCSP文件是否更新的间隔，单位秒，0表示不检查
+
+}
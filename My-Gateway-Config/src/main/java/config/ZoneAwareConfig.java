@@ -0,0 +1,19 @@
+package config;
+
+import lombok.Data;
+
+/**
+ * 同机房优先路由配置
+ */
+@Data
+public class ZoneAwareConfig {
+
+    private boolean enabled = false; // 是否开启同机房优先，开启后任意负载均衡策略都先在网关所在机房的实例中选择
+
+    private String zone; // 网关所在的机房（可用区），为空时不生效
+
+    private String zoneTag = "zone"; // 实例标签中表示机房的标签名
+
+    private double localThreshold = 0.7D; // 本机房健康实例占本机房实例的比例不低于该值时流量全部留在本机房，低于时按比例溢出到其他机房
+
+}
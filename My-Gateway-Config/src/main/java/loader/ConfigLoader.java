@@ -12,9 +12,29 @@ import static constant.ConfigConstant.CONFIG_PREFIX;
  */
 public class ConfigLoader {
 
+    /**
+     * 最近一次加载的配置，供无法直接拿到配置对象的组件（如SPI加载的过滤器）使用
+     */
+    private static volatile Config config;
+
     public static Config load(String[] args) {
         // TODO 多来源加载
-        return ConfigUtil.loadConfigFromYaml(CONFIG_PATH, Config.class, CONFIG_PREFIX);
+        config = ConfigUtil.loadConfigFromYaml(CONFIG_PATH, Config.class, CONFIG_PREFIX);
+        return config;
+    }
+
+    /**
+     * 获取已加载的配置，尚未加载时返回默认配置
+     */
+    public static Config getConfig() {
+        if (config == null) {
+            synchronized (ConfigLoader.class) {
+                if (config == null) {
+                    config = new Config();
+                }
+            }
+        }
+        return config;
     }
 
 }
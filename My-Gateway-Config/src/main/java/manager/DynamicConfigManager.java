@@ -5,6 +5,8 @@ import pojo.ServiceDefinition;
 import pojo.ServiceInstance;
 
 import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
@@ -35,8 +37,11 @@ public class DynamicConfigManager {
     // 服务
     private final ConcurrentHashMap<String /* 服务名 */, ServiceDefinition> serviceDefinitionMap = new ConcurrentHashMap<>();
 
-    // 服务对应的实例
-    private final ConcurrentHashMap<String /* 服务名 */, ConcurrentHashMap<String /* 实例id */, ServiceInstance>> serviceInstanceMap = new ConcurrentHashMap<>();
+    // 服务对应的实例，每个服务的实例是一个不可变的快照，变更时整体替换，读取方拿到的快照不会再变化
+    private final ConcurrentHashMap<String /* 服务名 */, Map<String /* 实例id */, ServiceInstance>> serviceInstanceMap = new ConcurrentHashMap<>();
+
+    // 服务实例的版本，实例每次变更加一，实例的派生数据（如子集路由的实例子集）据此判断是否需要重建
+    private final ConcurrentHashMap<String /* 服务名 */, Long> serviceInstanceVersionMap = new ConcurrentHashMap<>();
 
 
     /*********   路由   *********/
@@ -119,18 +124,43 @@ public class DynamicConfigManager {
 
     /*********   实例   *********/
     public void addServiceInstance(String serviceName, ServiceInstance instance) {
-        serviceInstanceMap.computeIfAbsent(serviceName, k -> new ConcurrentHashMap<>()).put(instance.getInstanceId(), instance);
+        serviceInstanceMap.compute(serviceName, (k, v) -> {
+            Map<String, ServiceInstance> instances = v == null ? new HashMap<>() : new HashMap<>(v);
+            instances.put(instance.getInstanceId(), instance);
+            return Collections.unmodifiableMap(instances);
+        });
+        serviceInstanceVersionMap.merge(serviceName, 1L, Long::sum);
     }
 
     public void removeServiceInstance(String serviceName, ServiceInstance instance) {
         serviceInstanceMap.compute(serviceName, (k, v) -> {
             if (v == null || v.get(instance.getInstanceId()) == null) return v;
-            v.remove(instance.getInstanceId());
-            return v;
+            Map<String, ServiceInstance> instances = new HashMap<>(v);
+            instances.remove(instance.getInstanceId());
+            return Collections.unmodifiableMap(instances);
         });
+        serviceInstanceVersionMap.merge(serviceName, 1L, Long::sum);
+    }
+
+    /**
+     * 发布服务实例的新快照，替换服务当前的全部实例
+     *
+     * @param serviceName 服务名
+     * @param instances 新的实例快照，调用方保证之后不再修改
+     */
+    public void updateServiceInstances(String serviceName, Map<String, ServiceInstance> instances) {
+        serviceInstanceMap.put(serviceName, Collections.unmodifiableMap(instances));
+        serviceInstanceVersionMap.merge(serviceName, 1L, Long::sum);
     }
 
     public Map<String, ServiceInstance> getInstancesByServiceName(String serviceName) {
         return serviceInstanceMap.get(serviceName);
     }
+
+    /**
+     * 获取服务实例的版本，实例没有变更过时返回0
+     */
+    public long getInstanceVersion(String serviceName) {
+        return serviceInstanceVersionMap.getOrDefault(serviceName, 0L);
+    }
 }
@@ -2,12 +2,18 @@ package pojo;
 
 import lombok.Data;
 
+import java.util.List;
 import java.util.Set;
 import java.util.UUID;
 
+import static constant.AffinityConstant.CLIENT_IP_AFFINITY_KEY;
+import static constant.AffinityConstant.HEADER_AFFINITY_KEY;
+import static constant.CacheConstant.*;
+import static constant.CoalesceConstant.DEFAULT_VARY_HEADERS;
 import static constant.GrayConstant.*;
 import static constant.LoadBalanceConstant.ROUND_ROBIN_LOAD_BALANCE_STRATEGY;
 import static constant.LoadBalanceConstant.VIRTUAL_NODE_NUM;
+import static constant.MirrorConstant.DEFAULT_MIRROR_SAMPLE_RATE;
 
 @Data
 public class RouteDefinition {
@@ -65,7 +71,43 @@ public class RouteDefinition {
          */
         private double maxGrayThreshold = MAX_GRAY_THRESHOLD;
 
+        /**
+         * 亲和性key，同一个key的请求总是得到相同的灰度结果
+         */
+        private AffinityKeyConfig affinityKey = new AffinityKeyConfig();
+
+        /**
+         * 灰度规则，规则灰度策略使用，命中任意一条规则的请求路由到灰度实例
+         */
+        private List<GrayRule> rules;
+
     }
+
+    @Data
+    public static class GrayRule {
+
+        /**
+         * 规则匹配的来源：header、cookie、query、client_ip
+         */
+        private String source;
+
+        /**
+         * 请求头、Cookie或查询参数的名字
+         */
+        private String name;
+
+        /**
+         * 命中灰度的取值
+         */
+        private Set<String> values;
+
+        /**
+         * 命中灰度的数值区间，格式 min-max（包含两端）或单个数值，如用户id区间
+         */
+        private List<String> ranges;
+
+    }
+
     @Data
     public static class LoadBalanceFilterConfig {
 
@@ -84,6 +126,116 @@ public class RouteDefinition {
          */
         private int virtualNodeNum = VIRTUAL_NODE_NUM;
 
+        /**
+         * 亲和性key，哈希类策略使用，同一个key的请求总是路由到相同的实例
+         */
+        private AffinityKeyConfig affinityKey = new AffinityKeyConfig();
+
+    }
+
+    @Data
+    public static class AffinityKeyConfig {
+
+        /**
+         * key的来源：client_ip、header、cookie、query
+         */
+        private String source = CLIENT_IP_AFFINITY_KEY;
+
+        /**
+         * 请求头、Cookie或查询参数的名字，来源是client_ip时不需要
+         */
+        private String name;
+
+    }
+
+    @Data
+    public static class SubsetFilterConfig {
+
+        /**
+         * 参与子集选择的实例标签，请求中对应的值和实例标签相等的实例组成子集，请求中没有值的标签不参与匹配
+         */
+        private List<SubsetTag> tags;
+
+        /**
+         * 没有匹配的实例子集时是否回退到服务的全部实例，为false时直接返回找不到实例
+         */
+        private boolean fallback = true;
+
+    }
+
+    @Data
+    public static class SubsetTag {
+
+        /**
+         * 实例标签名，如version、zone
+         */
+        private String tag;
+
+        /**
+         * 标签值在请求中的来源：header、cookie、query
+         */
+        private String source = HEADER_AFFINITY_KEY;
+
+        /**
+         * 请求头、Cookie或查询参数的名字
+         */
+        private String name;
+
+    }
+
+    @Data
+    public static class CoalesceFilterConfig {
+
+        /**
+         * 参与合并key计算的请求头，这些请求头不同的请求不会被合并
+         */
+        private Set<String> varyHeaders = DEFAULT_VARY_HEADERS;
+
+    }
+
+    @Data
+    public static class CacheFilterConfig {
+
+        /**
+         * 参与缓存key计算的请求头，下游响应Vary了其他请求头时不缓存
+         */
+        private Set<String> varyHeaders = DEFAULT_CACHE_VARY_HEADERS;
+
+        /**
+         * 下游没有声明有效期时的默认缓存时长，单位秒
+         */
+        private int defaultTtl = DEFAULT_CACHE_TTL;
+
+        /**
+         * 下游明确声明了有效期时，过期后仍可返回旧响应并后台重新验证的时长，单位秒
+         */
+        private int maxStale = DEFAULT_CACHE_MAX_STALE;
+
+        /**
+         * 是否同时写入磁盘二级缓存，网关重启后仍可命中
+         */
+        private boolean diskTier = false;
+
+    }
+
+    @Data
+    public static class MirrorFilterConfig {
+
+        /**
+         * 影子服务名，从注册中心的实例中随机选择一个
+         */
+        private String serviceName;
+
+        /**
+         * 影子服务地址 ip:port，配置后优先于影子服务名
+         */
+        private String host;
+
+        /**
+         * 镜像比例，0到1之间
+         */
+        private double sampleRate = DEFAULT_MIRROR_SAMPLE_RATE;
+
     }
 
 }
@@ -24,6 +24,11 @@ public class ServiceDefinition implements Serializable {
      */
     private boolean enable = true;
 
+    /**
+     * 是否使用HTTP/2（h2c）访问该服务的实例，多个请求复用少量连接
+     */
+    private boolean http2 = false;
+
     public ServiceDefinition() {
     }
 
@@ -4,6 +4,9 @@ import lombok.Data;
 
 import java.io.Serial;
 import java.io.Serializable;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
 
 /**
  * 具体服务实例
@@ -54,4 +57,22 @@ public class ServiceInstance implements Serializable {
      */
     private double threshold;
 
+    /**
+     * 服务实例标签，如版本、机房、租户、机型，来自注册中心的实例元数据
+     * 标签的键和值都会被intern，大量实例共享同一组字符串
+     */
+    private Map<String, String> tags = Collections.emptyMap();
+
+    public void setTags(Map<String, String> tags) {
+        if (tags == null || tags.isEmpty()) {
+            this.tags = Collections.emptyMap();
+            return;
+        }
+        Map<String, String> interned = new HashMap<>(tags.size() * 2);
+        tags.forEach((k, v) -> {
+            if (k != null && v != null) interned.put(k.intern(), v.intern());
+        });
+        this.tags = Collections.unmodifiableMap(interned);
+    }
+
 }
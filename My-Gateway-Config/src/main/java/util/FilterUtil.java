@@ -1,11 +1,13 @@
 package util;
 
 
-import cn.hutool.core.bean.BeanUtil;
+import cn.hutool.core.util.ReflectUtil;
 import cn.hutool.json.JSONUtil;
 import pojo.RouteDefinition;
 
 import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import static constant.FilterConstant.GRAY_FILTER_NAME;
 import static constant.FilterConstant.LOAD_BALANCE_FILTER_NAME;
@@ -17,6 +19,12 @@ import static constant.FilterConstant.LOAD_BALANCE_FILTER_NAME;
  */
 public class FilterUtil {
 
+    /**
+     * 解析后的过滤器配置，按配置内容缓存，请求时不再解析json，路由配置变更后使用新的配置
+     * 缓存的配置对象在请求间共享，调用方只能读取
+     */
+    private static final Map<Class<?>, Map<String /* 配置json */, Object>> CONFIG_CACHE = new ConcurrentHashMap<>();
+
     /**
      * 根据名称查找过滤器配置
      * 在过滤器配置集合中查找指定名称的过滤器配置
@@ -49,15 +57,30 @@ public class FilterUtil {
      * @param name 过滤器名称
      * @param clazz 目标类型
      * @param <T> 目标类型参数
-     * @return 转换后的过滤器配置，如果未找到或转换失败则返回null
+     * @return 转换后的过滤器配置，如果未找到或转换失败则返回null，返回的对象是共享的，不能修改
      */
     public static <T> T findFilterConfigByClass(Collection<RouteDefinition.FilterConfig> filterConfigs, String name, Class<T> clazz) {
         // 查找指定名称的过滤器配置
         RouteDefinition.FilterConfig filterConfig = findFilterConfigByName(filterConfigs, name);
         // 如果未找到，返回null
         if (filterConfig == null) return null;
-        // 将配置转换为指定类型并返回
-        return BeanUtil.toBean(filterConfig.getConfig(), clazz);
+        return parseFilterConfig(filterConfig, clazz);
+    }
+
+    /**
+     * 将过滤器配置转换为指定类型，相同的配置内容只解析一次
+     *
+     * @param filterConfig 过滤器配置
+     * @param clazz 目标类型
+     * @param <T> 目标类型参数
+     * @return 转换后的过滤器配置，返回的对象是共享的，不能修改
+     */
+    public static <T> T parseFilterConfig(RouteDefinition.FilterConfig filterConfig, Class<T> clazz) {
+        // 没有配置内容时使用默认配置
+        String config = filterConfig.getConfig() == null || filterConfig.getConfig().isBlank() ? "" : filterConfig.getConfig();
+        Object result = CONFIG_CACHE.computeIfAbsent(clazz, k -> new ConcurrentHashMap<>())
+                .computeIfAbsent(config, k -> k.isEmpty() ? ReflectUtil.newInstance(clazz) : JSONUtil.toBean(k, clazz));
+        return clazz.cast(result);
     }
 
     /**
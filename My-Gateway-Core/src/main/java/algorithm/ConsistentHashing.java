@@ -1,6 +1,5 @@
 package algorithm;
 
-// 导入Java集合相关类
 import java.util.List;
 import java.util.SortedMap;
 import java.util.TreeMap;
@@ -8,7 +7,7 @@ import java.util.TreeMap;
 /**
  * 一致性哈希算法实现
  * 用于在分布式环境中将请求均匀地分配到多个节点
- *
+ * 节点和key都使用64位的xxHash64，环上的位置分布均匀
  */
 public class ConsistentHashing {
 
@@ -23,7 +22,7 @@ public class ConsistentHashing {
      * 哈希环
      *
      */
-    private final SortedMap<Integer, String> hashCircle = new TreeMap<>();
+    private final SortedMap<Long, String> hashCircle = new TreeMap<>();
 
     /**
      * 构造函数
@@ -64,45 +63,38 @@ public class ConsistentHashing {
      * @return 节点名称，如果哈希环为空则返回null
      */
     public String getNode(String key) {
+        return getNode(getHash(key));
+    }
+
+    /**
+     * 获取节点
+     * 根据已经算好的key哈希值查找应该路由到的节点
+     *
+     * @param hash key的64位哈希值
+     * @return 节点名称，如果哈希环为空则返回null
+     */
+    public String getNode(long hash) {
         // 如果哈希环为空，返回null
         if (hashCircle.isEmpty()) {
             return null;
         }
-        // 计算键的哈希值
-        int hash = getHash(key);
         // 查找哈希环上大于等于该哈希值的所有节点
-        SortedMap<Integer, String> tailMap = hashCircle.tailMap(hash);
+        SortedMap<Long, String> tailMap = hashCircle.tailMap(hash);
         // 如果没有大于等于该哈希值的节点，则返回哈希环上的第一个节点（环形结构）
-        Integer nodeHash = tailMap.isEmpty() ? hashCircle.firstKey() : tailMap.firstKey();
+        Long nodeHash = tailMap.isEmpty() ? hashCircle.firstKey() : tailMap.firstKey();
         // 返回节点名称
         return hashCircle.get(nodeHash);
     }
 
     /**
      * 计算哈希值
-     * 使用FNV1_32_HASH算法计算字符串的哈希值
+     * 使用xxHash64计算字符串UTF-8编码的64位哈希值
      * 
      * @param str 要计算哈希值的字符串
-     * @return 32位整型哈希值
+     * @return 64位哈希值
      */
-    private int getHash(String str) {
-        final int p = 16777619; // FNV_PRIME
-        int hash = (int) 2166136261L; // FNV_OFFSET_BASIS
-        // 计算FNV1哈希
-        for (int i = 0; i < str.length(); i++) {
-            hash = (hash ^ str.charAt(i)) * p;
-        }
-        // 混淆哈希值，提高分布均匀性
-        hash += hash << 13;
-        hash ^= hash >> 7;
-        hash += hash << 3;
-        hash ^= hash >> 17;
-        hash += hash << 5;
-        // 确保哈希值为正数
-        if (hash < 0) {
-            hash = Math.abs(hash);
-        }
-        return hash;
+    private long getHash(String str) {
+        return XxHash64.hash(str);
     }
 
-}
\ No newline at end of file
+}
@@ -0,0 +1,145 @@
+package algorithm;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+
+/**
+ * xxHash64哈希算法
+ * 直接在字节上计算64位哈希，雪崩效果好，分布均匀，速度接近内存带宽
+ * 字符串先按UTF-8编码到线程本地的缓冲区再计算，不会为每次计算分配字节数组
+ */
+public final class XxHash64 {
+
+    private static final long PRIME1 = 0x9E3779B185EBCA87L;
+    private static final long PRIME2 = 0xC2B2AE3D27D4EB4FL;
+    private static final long PRIME3 = 0x165667B19E3779F9L;
+    private static final long PRIME4 = 0x85EBCA77C2B2AE63L;
+    private static final long PRIME5 = 0x27D4EB2F165667C5L;
+
+    private static final VarHandle LONG = MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+
+    private static final VarHandle INT = MethodHandles.byteArrayViewVarHandle(int[].class, ByteOrder.LITTLE_ENDIAN);
+
+    /**
+     * 字符串编码缓冲区
+     */
+    private static final ThreadLocal<byte[]> BUFFER = ThreadLocal.withInitial(() -> new byte[256]);
+
+    private XxHash64() {
+    }
+
+    /**
+     * 计算字符串UTF-8编码后的哈希
+     */
+    public static long hash(CharSequence value) {
+        return hash(value, 0);
+    }
+
+    public static long hash(CharSequence value, long seed) {
+        int length = value.length();
+        byte[] buffer = BUFFER.get();
+        if (buffer.length < length * 3) {
+            buffer = new byte[Math.max(length * 3, buffer.length * 2)];
+            BUFFER.set(buffer);
+        }
+        return hash(buffer, 0, encodeUtf8(value, buffer), seed);
+    }
+
+    public static long hash(byte[] bytes) {
+        return hash(bytes, 0, bytes.length, 0);
+    }
+
+    public static long hash(byte[] bytes, int offset, int length, long seed) {
+        int end = offset + length;
+        int i = offset;
+        long hash;
+        if (length >= 32) {
+            long v1 = seed + PRIME1 + PRIME2;
+            long v2 = seed + PRIME2;
+            long v3 = seed;
+            long v4 = seed - PRIME1;
+            int limit = end - 32;
+            do {
+                v1 = round(v1, (long) LONG.get(bytes, i));
+                v2 = round(v2, (long) LONG.get(bytes, i + 8));
+                v3 = round(v3, (long) LONG.get(bytes, i + 16));
+                v4 = round(v4, (long) LONG.get(bytes, i + 24));
+                i += 32;
+            } while (i <= limit);
+            hash = Long.rotateLeft(v1, 1) + Long.rotateLeft(v2, 7) + Long.rotateLeft(v3, 12) + Long.rotateLeft(v4, 18);
+            hash = mergeRound(hash, v1);
+            hash = mergeRound(hash, v2);
+            hash = mergeRound(hash, v3);
+            hash = mergeRound(hash, v4);
+        } else {
+            hash = seed + PRIME5;
+        }
+        hash += length;
+
+        while (i + 8 <= end) {
+            hash ^= round(0, (long) LONG.get(bytes, i));
+            hash = Long.rotateLeft(hash, 27) * PRIME1 + PRIME4;
+            i += 8;
+        }
+        if (i + 4 <= end) {
+            hash ^= ((int) INT.get(bytes, i) & 0xFFFFFFFFL) * PRIME1;
+            hash = Long.rotateLeft(hash, 23) * PRIME2 + PRIME3;
+            i += 4;
+        }
+        while (i < end) {
+            hash ^= (bytes[i] & 0xFF) * PRIME5;
+            hash = Long.rotateLeft(hash, 11) * PRIME1;
+            i++;
+        }
+
+        hash ^= hash >>> 33;
+        hash *= PRIME2;
+        hash ^= hash >>> 29;
+        hash *= PRIME3;
+        hash ^= hash >>> 32;
+        return hash;
+    }
+
+    private static long round(long acc, long input) {
+        acc += input * PRIME2;
+        acc = Long.rotateLeft(acc, 31);
+        return acc * PRIME1;
+    }
+
+    private static long mergeRound(long acc, long val) {
+        acc ^= round(0, val);
+        return acc * PRIME1 + PRIME4;
+    }
+
+    /**
+     * UTF-8编码，缓冲区长度至少为字符数的3倍
+     *
+     * @return 编码后的字节数
+     */
+    private static int encodeUtf8(CharSequence value, byte[] buffer) {
+        int length = value.length();
+        int position = 0;
+        for (int i = 0; i < length; i++) {
+            char c = value.charAt(i);
+            if (c < 0x80) {
+                buffer[position++] = (byte) c;
+            } else if (c < 0x800) {
+                buffer[position++] = (byte) (0xC0 | c >> 6);
+                buffer[position++] = (byte) (0x80 | c & 0x3F);
+            } else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(value.charAt(i + 1))) {
+                int codePoint = Character.toCodePoint(c, value.charAt(++i));
+                buffer[position++] = (byte) (0xF0 | codePoint >> 18);
+                buffer[position++] = (byte) (0x80 | codePoint >> 12 & 0x3F);
+                buffer[position++] = (byte) (0x80 | codePoint >> 6 & 0x3F);
+                buffer[position++] = (byte) (0x80 | codePoint & 0x3F);
+            } else {
+                buffer[position++] = (byte) (0xE0 | c >> 12);
+                buffer[position++] = (byte) (0x80 | c >> 6 & 0x3F);
+                buffer[position++] = (byte) (0x80 | c & 0x3F);
+            }
+        }
+        return position;
+    }
+
+}
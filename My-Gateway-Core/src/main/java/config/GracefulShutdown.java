@@ -0,0 +1,77 @@
+package config;
+
+import lombok.extern.slf4j.Slf4j;
+import service.RegisterCenterProcessor;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 网关优雅下线
+ * 滚动发布时按以下顺序下线，避免调用方看到错误：
+ * 1. 从注册中心注销，等待调用方刷新服务列表
+ * 2. 按顺序排空各个组件，通常是先服务端再客户端，所有组件共用同一个截止时间
+ */
+@Slf4j
+public class GracefulShutdown {
+
+    private final ShutdownConfig config;
+
+    /**
+     * 注册中心，为空时跳过注销
+     */
+    private final RegisterCenterProcessor registerCenter;
+
+    /**
+     * 按排空顺序排列的组件
+     */
+    private final List<LifeCycle> components;
+
+    private final AtomicBoolean shutdown = new AtomicBoolean(false);
+
+    public GracefulShutdown(ShutdownConfig config, RegisterCenterProcessor registerCenter, LifeCycle... components) {
+        this.config = config;
+        this.registerCenter = registerCenter;
+        this.components = List.of(components);
+    }
+
+    /**
+     * 注册JVM关闭钩子，收到SIGTERM时优雅下线
+     */
+    public void registerShutdownHook() {
+        Runtime.getRuntime().addShutdownHook(new Thread(this::shutdown, "gateway-graceful-shutdown"));
+    }
+
+    /**
+     * 执行优雅下线，只执行一次
+     *
+     * @return 是否所有组件都在截止时间前完成排空
+     */
+    public boolean shutdown() {
+        if (!shutdown.compareAndSet(false, true)) return true;
+
+        long start = System.currentTimeMillis();
+        if (registerCenter != null) {
+            registerCenter.deregister();
+            try {
+                Thread.sleep(config.getDeregisterWait());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        long deadline = System.currentTimeMillis() + config.getDrainTimeout();
+        boolean drained = true;
+        for (LifeCycle component : components) {
+            try {
+                drained &= component.drain(deadline);
+            } catch (Throwable t) {
+                drained = false;
+                log.error("drain {} failed", component.getClass().getSimpleName(), t);
+            }
+        }
+        log.info("gateway shutdown in {}ms, drained: {}", System.currentTimeMillis() - start, drained);
+        return drained;
+    }
+
+}
@@ -17,6 +17,19 @@ public interface LifeCycle {
      */
     void shutdown();
 
+    /**
+     * 优雅关闭组件
+     * 停止接收新请求，等待处理中的请求完成后再关闭，超过截止时间时直接关闭
+     * 默认直接关闭，没有处理中请求的组件不需要实现
+     *
+     * @param deadline 截止时间，System.currentTimeMillis()的时间戳
+     * @return 是否在截止时间前完成排空
+     */
+    default boolean drain(long deadline) {
+        shutdown();
+        return true;
+    }
+
     /**
      * 检查组件是否已启动
      * @return 组件是否已启动
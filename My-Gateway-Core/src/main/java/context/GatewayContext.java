@@ -1,15 +1,54 @@
 package context;
 
+import config.ObjectPoolConfig;
 import filter.FilterChain;
+import filter.subset.InstanceSubset;
 import io.netty.channel.ChannelHandlerContext;
+import io.netty.util.Recycler;
+import io.netty.util.ResourceLeakDetector;
+import io.netty.util.ResourceLeakDetectorFactory;
+import io.netty.util.ResourceLeakTracker;
+import loader.ConfigLoader;
+import lombok.AccessLevel;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.Setter;
+import lombok.ToString;
+import lombok.extern.slf4j.Slf4j;
 import pojo.RouteDefinition;
 import request.GatewayRequest;
 import response.GatewayResponse;
 
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 网关上下文
+ * 开启对象池时通过{@link #newInstance}从Recycler中获取，使用引用计数决定回收时机：
+ * 1. 获取时引用计数为1，由处理请求的线程持有，执行完前置过滤器后释放
+ * 2. 异步调用下游前再持有一次，下游响应写回客户端后释放
+ * 3. 引用计数归零时连同网关请求和过滤器链一起重置并回收，之后不能再访问
+ * 未开启对象池时{@link #retain()}和{@link #release()}不做任何事
+ */
+@Slf4j
 @Data
 public class GatewayContext {
 
+    private static final ObjectPoolConfig POOL_CONFIG = ConfigLoader.getConfig().getObjectPool();
+
+    private static final Recycler<GatewayContext> RECYCLER = new Recycler<GatewayContext>(POOL_CONFIG.getMaxCapacityPerThread()) {
+        @Override
+        protected GatewayContext newObject(Handle<GatewayContext> handle) {
+            return new GatewayContext(handle);
+        }
+    };
+
+    /**
+     * 每个对象都跟踪，被GC时仍未回收会输出LEAK日志
+     */
+    private static final ResourceLeakDetector<GatewayContext> LEAK_DETECTOR = ResourceLeakDetectorFactory.instance()
+            .newResourceLeakDetector(GatewayContext.class, 1);
+
     /**
      * Netty上下文
      */
@@ -45,12 +84,68 @@ public class GatewayContext {
      */
     private boolean keepAlive;
 
+    /**
+     * HTTP/1.1管道化请求的序号，写响应时按序号排序，HTTP/2请求为-1
+     */
+    private int sequence = -1;
+
     /**
      * 过滤器链
      * 包含所有要执行的过滤器
      */
     private FilterChain filterChain;
 
+    /**
+     * 请求合并key
+     * 不为空时，相同key的并发请求共享同一次下游调用
+     */
+    private String coalesceKey;
+
+    /**
+     * 响应缓存key
+     * 不为空时，下游响应返回后按缓存语义尝试写入响应缓存
+     */
+    private String cacheKey;
+
+    /**
+     * 灰度流量比例
+     * 金丝雀控制器接管灰度比例时由灰度过滤器设置，小于0时使用灰度实例配置的比例
+     */
+    private double grayShare = -1;
+
+    /**
+     * 子集路由选出的实例子集
+     * 不为空时，负载均衡只在子集中选择实例
+     */
+    private InstanceSubset instanceSubset;
+
+    /**
+     * 请求是否已经被某个过滤器直接响应
+     * 为true时不再执行后续的前置过滤器
+     */
+    private boolean terminated;
+
+    /**
+     * 对象池句柄，未开启对象池时为空
+     */
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    @EqualsAndHashCode.Exclude
+    @ToString.Exclude
+    private final Recycler.Handle<GatewayContext> handle;
+
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    @EqualsAndHashCode.Exclude
+    @ToString.Exclude
+    private final AtomicInteger refCnt;
+
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    @EqualsAndHashCode.Exclude
+    @ToString.Exclude
+    private ResourceLeakTracker<GatewayContext> leak;
+
     /**
      * 初始化上下文
      * @param nettyCtx Netty上下文
@@ -64,5 +159,84 @@ public class GatewayContext {
         this.request = request;
         this.route = route;
         this.keepAlive = keepAlive;
+        this.handle = null;
+        this.refCnt = null;
+    }
+
+    private GatewayContext(Recycler.Handle<GatewayContext> handle) {
+        this.handle = handle;
+        this.refCnt = new AtomicInteger();
+    }
+
+    /**
+     * 创建上下文，开启对象池时从对象池获取
+     */
+    public static GatewayContext newInstance(ChannelHandlerContext nettyCtx, GatewayRequest request,
+                                             RouteDefinition route, boolean keepAlive) {
+        if (!POOL_CONFIG.isEnabled()) {
+            return new GatewayContext(nettyCtx, request, route, keepAlive);
+        }
+        GatewayContext context = RECYCLER.get();
+        context.nettyCtx = nettyCtx;
+        context.request = request;
+        context.route = route;
+        context.keepAlive = keepAlive;
+        context.refCnt.set(1);
+        if (POOL_CONFIG.isLeakDetection()) {
+            context.leak = LEAK_DETECTOR.track(context);
+        }
+        return context;
+    }
+
+    /**
+     * 增加引用计数，异步处理前调用
+     */
+    public GatewayContext retain() {
+        if (handle != null) {
+            refCnt.incrementAndGet();
+        }
+        return this;
+    }
+
+    /**
+     * 减少引用计数，归零时回收
+     */
+    public void release() {
+        if (handle == null) {
+            return;
+        }
+        int cnt = refCnt.decrementAndGet();
+        if (cnt == 0) {
+            recycle();
+        } else if (cnt < 0) {
+            log.error("gateway context released too many times", new IllegalStateException("refCnt: " + cnt));
+        }
+    }
+
+    private void recycle() {
+        if (leak != null) {
+            leak.close(this);
+            leak = null;
+        }
+        if (request != null) {
+            request.recycle();
+        }
+        if (filterChain != null) {
+            filterChain.recycle();
+        }
+        nettyCtx = null;
+        throwable = null;
+        request = null;
+        response = null;
+        route = null;
+        keepAlive = false;
+        sequence = -1;
+        filterChain = null;
+        coalesceKey = null;
+        cacheKey = null;
+        instanceSubset = null;
+        grayShare = -1;
+        terminated = false;
+        handle.recycle(this);
     }
 }
\ No newline at end of file
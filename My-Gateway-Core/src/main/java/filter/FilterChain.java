@@ -1,6 +1,9 @@
 package filter;
 
+import config.ObjectPoolConfig;
 import context.GatewayContext;
+import io.netty.util.Recycler;
+import loader.ConfigLoader;
 import lombok.extern.slf4j.Slf4j;
 
 import java.util.ArrayList;
@@ -9,12 +12,52 @@ import java.util.List;
 
 /**
  * 每个请求的过滤器链, 包含多个过滤器
+ * 开启对象池时通过{@link #newInstance()}获取，随网关上下文一起回收，过滤器列表清空后复用
  */
 @Slf4j
 public class FilterChain {
 
+    private static final ObjectPoolConfig POOL_CONFIG = ConfigLoader.getConfig().getObjectPool();
+
+    private static final Recycler<FilterChain> RECYCLER = new Recycler<FilterChain>(POOL_CONFIG.getMaxCapacityPerThread()) {
+        @Override
+        protected FilterChain newObject(Handle<FilterChain> handle) {
+            return new FilterChain(handle);
+        }
+    };
+
     private final List<Filter> filters = new ArrayList<>();
 
+    /**
+     * 对象池句柄，未开启对象池时为空
+     */
+    private final Recycler.Handle<FilterChain> handle;
+
+    public FilterChain() {
+        this(null);
+    }
+
+    private FilterChain(Recycler.Handle<FilterChain> handle) {
+        this.handle = handle;
+    }
+
+    /**
+     * 创建过滤器链，开启对象池时从对象池获取
+     */
+    public static FilterChain newInstance() {
+        return POOL_CONFIG.isEnabled() ? RECYCLER.get() : new FilterChain();
+    }
+
+    /**
+     * 清空过滤器并回收，由网关上下文回收时调用
+     */
+    public void recycle() {
+        if (handle != null) {
+            filters.clear();
+            handle.recycle(this);
+        }
+    }
+
     /**
      * 为当前请求增加过滤器
      * @param filter 过滤器
@@ -41,6 +84,10 @@ public class FilterChain {
                 filters.sort(Comparator.comparingInt(Filter::getOrder));
                 for (Filter filter : filters) {
                     filter.doPreFilter(ctx);
+                    if (ctx.isTerminated()) {
+                        // 请求已被直接响应，例如命中缓存
+                        break;
+                    }
                 }
             } catch (Exception e) {
                 log.error("执行过滤器发生异常,异常信息：{}", e.getMessage());
@@ -12,6 +12,7 @@ import java.util.Set;
 
 import static constant.FilterConstant.GRAY_FILTER_NAME;
 import static constant.FilterConstant.LOAD_BALANCE_FILTER_NAME;
+import static constant.FilterConstant.ROUTE_FILTER_NAME;
 
 
 @Slf4j
@@ -31,7 +32,7 @@ public class FilterChainFactory {
     }
 
     public static void buildFilterChain(GatewayContext ctx) {
-        FilterChain chain = new FilterChain();
+        FilterChain chain = FilterChain.newInstance();
 
         addPreFilter(chain);
         addFilter(chain, ctx.getRoute().getFilterConfigs());
@@ -54,7 +55,7 @@ public class FilterChainFactory {
     }
 
     private static void addPostFilter(FilterChain chain) {
-
+        addFilterIfPresent(chain, ROUTE_FILTER_NAME);
     }
 
     private static boolean addFilterIfPresent(FilterChain chain, String filterName) {
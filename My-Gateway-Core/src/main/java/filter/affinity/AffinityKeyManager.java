@@ -0,0 +1,71 @@
+package filter.affinity;
+
+import algorithm.XxHash64;
+import context.GatewayContext;
+import filter.affinity.extractor.AffinityKeyExtractor;
+import lombok.extern.slf4j.Slf4j;
+import pojo.RouteDefinition;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.ServiceLoader;
+
+/**
+ * 亲和性key管理器
+ * 使用Java SPI机制加载所有亲和性key提取器，哈希类的负载均衡和灰度策略通过它得到请求的64位哈希
+ * 配置的key在请求中不存在时回退到客户端IP
+ */
+@Slf4j
+public class AffinityKeyManager {
+
+    /**
+     * 提取器映射表，键为提取器标识
+     */
+    private static final Map<String, AffinityKeyExtractor> extractorMap = new HashMap<>();
+
+    static {
+        ServiceLoader<AffinityKeyExtractor> serviceLoader = ServiceLoader.load(AffinityKeyExtractor.class);
+        for (AffinityKeyExtractor extractor : serviceLoader) {
+            extractorMap.put(extractor.mark(), extractor);
+            log.info("load affinity key extractor success: {}", extractor);
+        }
+    }
+
+    /**
+     * 获取亲和性key提取器
+     *
+     * @param source 提取器标识
+     * @return 提取器，不存在时返回null
+     */
+    public static AffinityKeyExtractor getExtractor(String source) {
+        return extractorMap.get(source);
+    }
+
+    /**
+     * 计算请求亲和性key的64位哈希
+     *
+     * @param context 网关上下文
+     * @param config 亲和性key配置，为空时使用客户端IP
+     */
+    public static long hash(GatewayContext context, RouteDefinition.AffinityKeyConfig config) {
+        String key = null;
+        if (config != null) {
+            AffinityKeyExtractor extractor = extractorMap.get(config.getSource());
+            if (extractor != null) {
+                key = extractor.extract(context, config.getName());
+            }
+        }
+        if (key == null || key.isEmpty()) {
+            key = context.getRequest().getClientIp();
+        }
+        return XxHash64.hash(key);
+    }
+
+    /**
+     * 把64位哈希映射到[0, n)，哈希按无符号数处理，不会出现负数
+     */
+    public static int bucket(long hash, int n) {
+        return (int) Long.remainderUnsigned(hash, n);
+    }
+
+}
@@ -0,0 +1,25 @@
+package filter.affinity.extractor;
+
+import context.GatewayContext;
+
+/**
+ * 亲和性key提取器
+ * 通过SPI加载，由路由配置的affinityKey.source选择
+ */
+public interface AffinityKeyExtractor {
+
+    /**
+     * 从请求中提取亲和性key
+     *
+     * @param context 网关上下文
+     * @param name 请求头、Cookie或查询参数的名字
+     * @return 亲和性key，请求中没有时返回null
+     */
+    String extract(GatewayContext context, String name);
+
+    /**
+     * 提取器标识
+     */
+    String mark();
+
+}
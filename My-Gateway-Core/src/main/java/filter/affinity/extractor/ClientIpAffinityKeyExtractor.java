@@ -0,0 +1,22 @@
+package filter.affinity.extractor;
+
+import context.GatewayContext;
+
+import static constant.AffinityConstant.CLIENT_IP_AFFINITY_KEY;
+
+/**
+ * 使用客户端IP作为亲和性key
+ */
+public class ClientIpAffinityKeyExtractor implements AffinityKeyExtractor {
+
+    @Override
+    public String extract(GatewayContext context, String name) {
+        return context.getRequest().getClientIp();
+    }
+
+    @Override
+    public String mark() {
+        return CLIENT_IP_AFFINITY_KEY;
+    }
+
+}
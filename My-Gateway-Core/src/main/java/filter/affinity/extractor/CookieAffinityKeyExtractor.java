@@ -0,0 +1,27 @@
+package filter.affinity.extractor;
+
+import context.GatewayContext;
+import io.netty.handler.codec.http.cookie.Cookie;
+
+import static constant.AffinityConstant.COOKIE_AFFINITY_KEY;
+
+/**
+ * 使用指定Cookie作为亲和性key，如会话id
+ */
+public class CookieAffinityKeyExtractor implements AffinityKeyExtractor {
+
+    @Override
+    public String extract(GatewayContext context, String name) {
+        if (name == null) {
+            return null;
+        }
+        Cookie cookie = context.getRequest().getCookie(name);
+        return cookie == null ? null : cookie.value();
+    }
+
+    @Override
+    public String mark() {
+        return COOKIE_AFFINITY_KEY;
+    }
+
+}
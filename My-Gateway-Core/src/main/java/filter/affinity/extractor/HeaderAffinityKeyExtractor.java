@@ -0,0 +1,22 @@
+package filter.affinity.extractor;
+
+import context.GatewayContext;
+
+import static constant.AffinityConstant.HEADER_AFFINITY_KEY;
+
+/**
+ * 使用指定请求头作为亲和性key，如用户id、租户id
+ */
+public class HeaderAffinityKeyExtractor implements AffinityKeyExtractor {
+
+    @Override
+    public String extract(GatewayContext context, String name) {
+        return name == null ? null : context.getRequest().getHeaders().get(name);
+    }
+
+    @Override
+    public String mark() {
+        return HEADER_AFFINITY_KEY;
+    }
+
+}
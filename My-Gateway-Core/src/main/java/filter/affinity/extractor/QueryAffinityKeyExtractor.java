@@ -0,0 +1,28 @@
+package filter.affinity.extractor;
+
+import context.GatewayContext;
+
+import java.util.List;
+
+import static constant.AffinityConstant.QUERY_AFFINITY_KEY;
+
+/**
+ * 使用指定查询参数作为亲和性key，参数有多个值时使用第一个
+ */
+public class QueryAffinityKeyExtractor implements AffinityKeyExtractor {
+
+    @Override
+    public String extract(GatewayContext context, String name) {
+        if (name == null || context.getRequest().getRawQuery().isEmpty()) {
+            return null;
+        }
+        List<String> values = context.getRequest().getQueryStringDecoder().parameters().get(name);
+        return values == null || values.isEmpty() ? null : values.get(0);
+    }
+
+    @Override
+    public String mark() {
+        return QUERY_AFFINITY_KEY;
+    }
+
+}
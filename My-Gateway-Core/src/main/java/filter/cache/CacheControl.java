@@ -0,0 +1,100 @@
+package filter.cache;
+
+import io.netty.handler.codec.DateFormatter;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpHeaders;
+import lombok.Getter;
+
+import java.util.Date;
+
+/**
+ * Cache-Control解析结果
+ * 只解析网关缓存关心的指令，未出现的秒数指令为-1
+ */
+@Getter
+public class CacheControl {
+
+    private boolean noStore;
+
+    private boolean noCache;
+
+    private boolean isPrivate;
+
+    private boolean mustRevalidate;
+
+    private long maxAge = -1;
+
+    private long sMaxAge = -1;
+
+    private long staleWhileRevalidate = -1;
+
+    private CacheControl() {
+    }
+
+    /**
+     * 解析Cache-Control头
+     */
+    public static CacheControl parse(HttpHeaders headers) {
+        CacheControl cacheControl = new CacheControl();
+        for (String value : headers.getAll(HttpHeaderNames.CACHE_CONTROL)) {
+            int start = 0;
+            while (start < value.length()) {
+                int end = value.indexOf(',', start);
+                if (end < 0) end = value.length();
+                cacheControl.apply(value.substring(start, end).trim());
+                start = end + 1;
+            }
+        }
+        return cacheControl;
+    }
+
+    /**
+     * 计算响应的新鲜时长，单位毫秒
+     * 优先级：s-maxage > max-age > Expires - Date，都没有时返回-1
+     */
+    public static long freshnessLifetime(CacheControl cacheControl, HttpHeaders headers) {
+        if (cacheControl.sMaxAge >= 0) return cacheControl.sMaxAge * 1000;
+        if (cacheControl.maxAge >= 0) return cacheControl.maxAge * 1000;
+        String expires = headers.get(HttpHeaderNames.EXPIRES);
+        if (expires != null) {
+            Date expiresDate = DateFormatter.parseHttpDate(expires);
+            if (expiresDate == null) return 0; // 非法的Expires视为已过期
+            String date = headers.get(HttpHeaderNames.DATE);
+            Date dateValue = date == null ? null : DateFormatter.parseHttpDate(date);
+            long now = dateValue == null ? System.currentTimeMillis() : dateValue.getTime();
+            return Math.max(0, expiresDate.getTime() - now);
+        }
+        return -1;
+    }
+
+    private void apply(String directive) {
+        if (directive.isEmpty()) return;
+        int eq = directive.indexOf('=');
+        String name = (eq < 0 ? directive : directive.substring(0, eq)).trim().toLowerCase();
+        String arg = eq < 0 ? null : directive.substring(eq + 1).trim();
+        switch (name) {
+            case "no-store" -> noStore = true;
+            case "no-cache" -> noCache = true;
+            case "private" -> isPrivate = true;
+            case "must-revalidate", "proxy-revalidate" -> mustRevalidate = true;
+            case "max-age" -> maxAge = parseSeconds(arg);
+            case "s-maxage" -> sMaxAge = parseSeconds(arg);
+            case "stale-while-revalidate" -> staleWhileRevalidate = parseSeconds(arg);
+            default -> {
+            }
+        }
+    }
+
+    private static long parseSeconds(String arg) {
+        if (arg == null) return -1;
+        if (arg.length() > 1 && arg.charAt(0) == '"') {
+            arg = arg.substring(1, arg.length() - 1);
+        }
+        try {
+            return Math.max(0, Long.parseLong(arg));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+}
@@ -0,0 +1,224 @@
+package filter.cache;
+
+import cn.hutool.json.JSONUtil;
+import context.GatewayContext;
+import filter.Filter;
+import helper.ContextHelper;
+import helper.RequestHelper;
+import http.HttpClient;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.handler.codec.http.DefaultHttpHeaders;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpHeaders;
+import io.netty.handler.codec.http.HttpMethod;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.util.ReferenceCountUtil;
+import lombok.extern.slf4j.Slf4j;
+import org.asynchttpclient.Request;
+import org.asynchttpclient.RequestBuilder;
+import org.asynchttpclient.Response;
+import pojo.RouteDefinition;
+import request.GatewayRequest;
+import response.GatewayResponse;
+import util.FilterUtil;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static constant.FilterConstant.CACHE_FILTER_NAME;
+import static constant.FilterConstant.CACHE_FILTER_ORDER;
+
+/**
+ * 响应缓存过滤器
+ * 前置阶段：命中新鲜缓存时直接在当前IO线程写回响应，不再访问下游；
+ * 命中过期但可重新验证的缓存时先返回旧响应，再在后台发送条件请求重新验证
+ * 后置阶段：未命中的请求拿到下游响应后，按Cache-Control、Expires等语义写入缓存
+ */
+@Slf4j
+public class CacheFilter implements Filter {
+
+    /**
+     * 解析后的路由缓存配置，按配置内容缓存，避免每个请求都解析JSON
+     */
+    private final Map<String /* 配置json */, RouteDefinition.CacheFilterConfig> configMap = new ConcurrentHashMap<>();
+
+    @Override
+    public void doPreFilter(GatewayContext context) {
+        RouteDefinition.CacheFilterConfig config = findCacheFilterConfig(context);
+        if (config == null) {
+            return;
+        }
+
+        GatewayRequest request = context.getRequest();
+        if (!HttpMethod.GET.equals(request.getMethod())) {
+            return;
+        }
+        HttpHeaders headers = request.getHeaders();
+        // 带认证信息或Cookie的请求可能得到用户私有的响应，不走共享缓存
+        if (headers.contains(HttpHeaderNames.AUTHORIZATION) || headers.contains(HttpHeaderNames.COOKIE)) {
+            return;
+        }
+        CacheControl cacheControl = CacheControl.parse(headers);
+        if (cacheControl.isNoStore()) {
+            return;
+        }
+
+        String key = RequestHelper.buildRequestKey(context, config.getVaryHeaders());
+        if (!cacheControl.isNoCache()) {
+            CachedResponse cached = ResponseCache.getInstance().get(key);
+            if (cached == null && config.isDiskTier()) {
+                cached = loadFromDisk(key);
+            }
+            if (cached != null && serveFromCache(context, key, cached, config)) {
+                return;
+            }
+        }
+        context.setCacheKey(key);
+    }
+
+    @Override
+    public void doPostFilter(GatewayContext context) {
+        String key = context.getCacheKey();
+        GatewayResponse response = context.getResponse();
+        if (key == null || response == null) {
+            return;
+        }
+        RouteDefinition.CacheFilterConfig config = findCacheFilterConfig(context);
+        if (config == null) {
+            return;
+        }
+
+        CachedResponse stored = null;
+        if (response.getContentBuffer() != null) {
+            // 合并请求共享的响应
+            stored = ResponseCache.getInstance().store(key, response.getHttpResponseStatus(), response.getResponseHeaders(),
+                    response.getContentBuffer(), config);
+        } else if (response.getResponse() != null) {
+            Response upstream = response.getResponse();
+            stored = ResponseCache.getInstance().store(key, HttpResponseStatus.valueOf(upstream.getStatusCode()), upstream.getHeaders(),
+                    Unpooled.wrappedBuffer(upstream.getResponseBodyAsByteBuffer()), config);
+        }
+        if (stored != null && config.isDiskTier()) {
+            DiskResponseCache.getInstance().put(key, stored);
+        }
+    }
+
+    @Override
+    public String mark() {
+        return CACHE_FILTER_NAME;
+    }
+
+    @Override
+    public int getOrder() {
+        return CACHE_FILTER_ORDER;
+    }
+
+    /**
+     * 使用缓存响应请求
+     *
+     * @return 是否已经响应，缓存项不可用时返回false，请求继续访问下游
+     */
+    private boolean serveFromCache(GatewayContext context, String key, CachedResponse cached,
+                                   RouteDefinition.CacheFilterConfig config) {
+        long now = System.currentTimeMillis();
+        boolean fresh = now < cached.getFreshUntil();
+        if (!fresh && !(cached.isRevalidatable() && now < cached.getStaleUntil())) {
+            return false;
+        }
+
+        GatewayRequest request = context.getRequest();
+        GatewayResponse response = new GatewayResponse();
+        String ifNoneMatch = request.getHeaders().get(HttpHeaderNames.IF_NONE_MATCH);
+        if (fresh && cached.getEtag() != null && cached.getEtag().equals(ifNoneMatch)) {
+            // 客户端的缓存仍然有效
+            response.setHttpResponseStatus(HttpResponseStatus.NOT_MODIFIED);
+            response.setContentBuffer(Unpooled.EMPTY_BUFFER);
+        } else {
+            ByteBuf content = cached.retainedContent();
+            if (content == null) {
+                return false;
+            }
+            response.setHttpResponseStatus(cached.getStatus());
+            response.setContentBuffer(content);
+        }
+        HttpHeaders headers = new DefaultHttpHeaders().add(cached.getHeaders());
+        headers.setInt(HttpHeaderNames.AGE, (int) Math.max(0, (now - cached.getCreatedAt()) / 1000));
+        response.setResponseHeaders(headers);
+
+        if (!fresh && cached.tryStartRevalidation()) {
+            revalidate(key, cached, RequestHelper.buildHttpClientRequest(request), config);
+        }
+
+        context.setResponse(response);
+        context.setTerminated(true);
+        try {
+            ContextHelper.writeBackResponse(context);
+        } finally {
+            ReferenceCountUtil.release(request.getFullHttpRequest());
+        }
+        return true;
+    }
+
+    /**
+     * 内存缓存未命中时查询磁盘缓存，命中则提升到内存缓存
+     */
+    private CachedResponse loadFromDisk(String key) {
+        DiskResponseCache diskCache = DiskResponseCache.getInstance();
+        if (!diskCache.isEnabled()) {
+            return null;
+        }
+        CachedResponse cached = diskCache.get(key);
+        if (cached != null) {
+            ResponseCache.getInstance().put(key, cached);
+        }
+        return cached;
+    }
+
+    /**
+     * 后台发送条件请求重新验证缓存项
+     */
+    private void revalidate(String key, CachedResponse cached, Request original, RouteDefinition.CacheFilterConfig config) {
+        RequestBuilder builder = new RequestBuilder(original);
+        if (cached.getEtag() != null) {
+            builder.setHeader(HttpHeaderNames.IF_NONE_MATCH, cached.getEtag());
+        }
+        if (cached.getLastModified() != null) {
+            builder.setHeader(HttpHeaderNames.IF_MODIFIED_SINCE, cached.getLastModified());
+        }
+        HttpClient.getInstance().executeRequest(builder.build()).whenComplete((response, throwable) -> {
+            try {
+                if (throwable != null) {
+                    // 验证失败时继续返回旧响应，直到过期截止
+                    log.warn("缓存重新验证失败 {}", key, throwable);
+                } else if (response.getStatusCode() == HttpResponseStatus.NOT_MODIFIED.code()) {
+                    ResponseCache.getInstance().refresh(key, cached, response.getHeaders(), config);
+                } else if (response.getStatusCode() == HttpResponseStatus.OK.code()) {
+                    CachedResponse stored = ResponseCache.getInstance().store(key, HttpResponseStatus.OK, response.getHeaders(),
+                            Unpooled.wrappedBuffer(response.getResponseBodyAsByteBuffer()), config);
+                    if (stored == null) {
+                        ResponseCache.getInstance().invalidate(key);
+                    } else if (config.isDiskTier()) {
+                        DiskResponseCache.getInstance().put(key, stored);
+                    }
+                } else {
+                    ResponseCache.getInstance().invalidate(key);
+                }
+            } finally {
+                cached.endRevalidation();
+            }
+        });
+    }
+
+    private RouteDefinition.CacheFilterConfig findCacheFilterConfig(GatewayContext context) {
+        RouteDefinition.FilterConfig filterConfig = FilterUtil.findFilterConfigByName(context.getRoute().getFilterConfigs(), CACHE_FILTER_NAME);
+        if (filterConfig == null || !filterConfig.isEnable()) {
+            return null;
+        }
+        if (filterConfig.getConfig() == null) {
+            return configMap.computeIfAbsent("", k -> new RouteDefinition.CacheFilterConfig());
+        }
+        return configMap.computeIfAbsent(filterConfig.getConfig(), k -> JSONUtil.toBean(k, RouteDefinition.CacheFilterConfig.class));
+    }
+
+}
@@ -0,0 +1,125 @@
+package filter.cache;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpHeaders;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.util.IllegalReferenceCountException;
+import lombok.Getter;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 缓存的下游响应
+ * 响应体保存在非池化的堆外内存中，缓存持有一个引用计数，被淘汰时释放
+ * 读取方通过retainedContent获取独立的引用，写回客户端后由Netty释放
+ */
+@Getter
+public class CachedResponse {
+
+    private final HttpResponseStatus status;
+
+    /**
+     * 去掉逐跳头之后的响应头，只读
+     */
+    private final HttpHeaders headers;
+
+    private final ByteBuf content;
+
+    private final String etag;
+
+    private final String lastModified;
+
+    /**
+     * 响应生成时间，用于计算Age
+     */
+    private final long createdAt;
+
+    /**
+     * 新鲜期截止时间，之前直接返回缓存
+     */
+    private final long freshUntil;
+
+    /**
+     * 过期截止时间，新鲜期之后到该时间之前返回旧响应并在后台重新验证
+     */
+    private final long staleUntil;
+
+    /**
+     * 是否有请求正在后台重新验证，保证同一时间只有一个验证请求
+     */
+    private final AtomicBoolean revalidating = new AtomicBoolean(false);
+
+    public CachedResponse(HttpResponseStatus status, HttpHeaders headers, ByteBuf content,
+                          long createdAt, long freshUntil, long staleUntil) {
+        this.status = status;
+        this.headers = headers;
+        this.content = content;
+        this.etag = headers.get(HttpHeaderNames.ETAG);
+        this.lastModified = headers.get(HttpHeaderNames.LAST_MODIFIED);
+        this.createdAt = createdAt;
+        this.freshUntil = freshUntil;
+        this.staleUntil = staleUntil;
+    }
+
+    /**
+     * 获取响应体的独立引用
+     *
+     * @return 响应体的retainedDuplicate，缓存项已被释放时返回null
+     */
+    public ByteBuf retainedContent() {
+        try {
+            return content.retainedDuplicate();
+        } catch (IllegalReferenceCountException e) {
+            return null;
+        }
+    }
+
+    /**
+     * 重新验证通过后，以新的响应头和有效期生成缓存项，响应体与当前缓存项共享
+     *
+     * @return 新的缓存项，当前缓存项已被释放时返回null
+     */
+    public CachedResponse refresh(HttpHeaders newHeaders, long newCreatedAt, long newFreshUntil, long newStaleUntil) {
+        try {
+            content.retain();
+        } catch (IllegalReferenceCountException e) {
+            return null;
+        }
+        return new CachedResponse(status, newHeaders, content, newCreatedAt, newFreshUntil, newStaleUntil);
+    }
+
+    /**
+     * 是否可以通过条件请求重新验证
+     */
+    public boolean isRevalidatable() {
+        return etag != null || lastModified != null;
+    }
+
+    public boolean tryStartRevalidation() {
+        return revalidating.compareAndSet(false, true);
+    }
+
+    public void endRevalidation() {
+        revalidating.set(false);
+    }
+
+    /**
+     * 缓存项占用的大小，用于缓存容量控制
+     */
+    public int weight() {
+        return content.capacity() + headers.size() * 64;
+    }
+
+    /**
+     * 缓存淘汰时释放响应体
+     */
+    public void release() {
+        try {
+            content.release();
+        } catch (IllegalReferenceCountException ignored) {
+            // 已被释放
+        }
+    }
+
+}
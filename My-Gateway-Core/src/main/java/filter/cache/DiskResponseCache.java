@@ -0,0 +1,457 @@
+package filter.cache;
+
+import config.ResponseCacheConfig;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.handler.codec.http.DefaultHttpHeaders;
+import io.netty.handler.codec.http.HttpHeaders;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.util.concurrent.DefaultThreadFactory;
+import io.netty.util.internal.PlatformDependent;
+import loader.ConfigLoader;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.CRC32;
+
+/**
+ * 磁盘二级响应缓存
+ * 缓存项以追加日志的形式写入内存映射的段文件，内存中只保存key到记录位置的索引
+ * 网关启动时调用start，在后台线程扫描已有段文件重建索引，扫描完成前的查询直接未命中，不阻塞网关启动
+ * 总大小超过上限时整段删除最旧的段文件，段文件带引用计数，读取中的段等读取结束后才解除映射，解除映射后磁盘空间才真正释放
+ *
+ * 记录格式：
+ * magic(4) | 记录长度(4) | crc32(4) | key长度(4) | key | 生成时间(8) | 新鲜期截止(8) | 过期截止(8)
+ * | 状态码(4) | 响应头个数(4) | [名字长度(4) | 名字 | 值长度(4) | 值]... | 响应体长度(4) | 响应体
+ */
+@Slf4j
+public class DiskResponseCache {
+
+    private static final int MAGIC = 0x47574331;
+
+    private static final int RECORD_HEADER_SIZE = 12; // magic + 记录长度 + crc32
+
+    private static final String SEGMENT_PREFIX = "segment-";
+
+    private static final String SEGMENT_SUFFIX = ".log";
+
+    /*********   单例   *********/
+    private static final DiskResponseCache INSTANCE = new DiskResponseCache(ConfigLoader.getConfig().getResponseCache());
+
+    public static DiskResponseCache getInstance() {
+        return INSTANCE;
+    }
+
+    private final ResponseCacheConfig config;
+
+    /**
+     * key对应的最新记录位置
+     */
+    private final Map<String /* 缓存key */, Location> index = new ConcurrentHashMap<>();
+
+    /**
+     * 所有段文件，从旧到新
+     */
+    private final Deque<Segment> segments = new ArrayDeque<>();
+
+    /**
+     * 段文件id对应的段，读取时使用
+     */
+    private final Map<Long /* 段id */, Segment> segmentMap = new ConcurrentHashMap<>();
+
+    /**
+     * 写入线程，磁盘写入不占用IO线程，队列满时直接丢弃
+     */
+    private final ExecutorService writer = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+            new LinkedBlockingQueue<>(1024), new DefaultThreadFactory("disk-cache-writer", true), new ThreadPoolExecutor.DiscardPolicy());
+
+    /**
+     * 是否已经启动
+     */
+    private final AtomicBoolean start = new AtomicBoolean(false);
+
+    /**
+     * 索引是否已经加载完成
+     */
+    private volatile boolean loaded = false;
+
+    private Segment active;
+
+    public DiskResponseCache(ResponseCacheConfig config) {
+        this.config = config;
+    }
+
+    /**
+     * 开启磁盘缓存时在后台加载索引，重复调用无效
+     */
+    public void start() {
+        if (!config.isDiskEnabled() || !start.compareAndSet(false, true)) return;
+        writer.execute(this::load);
+    }
+
+    public boolean isEnabled() {
+        return start.get();
+    }
+
+    /**
+     * 索引是否已经加载完成
+     */
+    public boolean isLoaded() {
+        return loaded;
+    }
+
+    /**
+     * 查询磁盘缓存
+     *
+     * @return 从磁盘读出的缓存项，响应体已拷贝到堆外内存；未命中、已过期或尚未加载完成时返回null
+     */
+    public CachedResponse get(String key) {
+        if (!loaded) return null;
+        Location location = index.get(key);
+        if (location == null) return null;
+        if (location.staleUntil <= System.currentTimeMillis()) {
+            index.remove(key, location);
+            return null;
+        }
+        Segment segment = segmentMap.get(location.segmentId);
+        // 段可能刚被淘汰，引用计数已归零时不能再读取
+        if (segment == null || !segment.retain()) {
+            index.remove(key, location);
+            return null;
+        }
+        try {
+            ByteBuffer record = segment.buffer.duplicate();
+            record.limit(location.offset + location.length).position(location.offset);
+            return decode(record.slice());
+        } catch (RuntimeException e) {
+            log.warn("读取磁盘缓存失败 {}", key, e);
+            index.remove(key, location);
+            return null;
+        } finally {
+            segment.release();
+        }
+    }
+
+    /**
+     * 异步写入磁盘缓存
+     * 写入期间持有响应体的引用，写完后释放
+     */
+    public void put(String key, CachedResponse response) {
+        if (!start.get()) return;
+        ByteBuf content = response.retainedContent();
+        if (content == null) return;
+        try {
+            writer.execute(() -> {
+                try {
+                    append(key, response, content);
+                } catch (Throwable t) {
+                    log.warn("写入磁盘缓存失败 {}", key, t);
+                } finally {
+                    content.release();
+                }
+            });
+        } catch (RuntimeException e) {
+            content.release();
+        }
+    }
+
+    /**
+     * 将映射内容刷到磁盘并关闭写入线程
+     */
+    public void shutdown() {
+        if (!start.get()) return;
+        writer.shutdown();
+        try {
+            writer.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        synchronized (this) {
+            for (Segment segment : segments) {
+                segment.buffer.force();
+            }
+        }
+    }
+
+    /**
+     * 扫描已有的段文件重建索引
+     */
+    private void load() {
+        long start = System.currentTimeMillis();
+        try {
+            File dir = new File(config.getDiskPath());
+            if (!dir.exists() && !dir.mkdirs()) {
+                throw new IOException("can not create disk cache dir " + dir.getAbsolutePath());
+            }
+            File[] files = dir.listFiles((d, name) -> name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX));
+            List<Long> ids = new ArrayList<>();
+            if (files != null) {
+                for (File file : files) {
+                    String name = file.getName();
+                    try {
+                        ids.add(Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length())));
+                    } catch (NumberFormatException ignored) {
+                        // 不是段文件
+                    }
+                }
+            }
+            ids.sort(Long::compare);
+
+            synchronized (this) {
+                long now = System.currentTimeMillis();
+                for (Long id : ids) {
+                    Segment segment = openSegment(id);
+                    segment.writePosition = scan(segment, now);
+                    segments.addLast(segment);
+                    segmentMap.put(id, segment);
+                }
+                active = segments.peekLast();
+                if (active == null) {
+                    active = rollSegment(0);
+                }
+            }
+            loaded = true;
+            log.info("disk cache loaded, segments: {} entries: {} cost: {}ms", segments.size(), index.size(),
+                    System.currentTimeMillis() - start);
+        } catch (IOException e) {
+            log.error("加载磁盘缓存失败，磁盘缓存不可用", e);
+        }
+    }
+
+    /**
+     * 扫描段文件中的有效记录，遇到空白或损坏的记录时停止
+     *
+     * @return 有效数据的末尾位置，即后续追加的位置
+     */
+    private int scan(Segment segment, long now) {
+        ByteBuffer buffer = segment.buffer.duplicate();
+        int position = 0;
+        while (position + RECORD_HEADER_SIZE <= buffer.capacity()) {
+            buffer.limit(buffer.capacity()).position(position);
+            if (buffer.getInt() != MAGIC) break;
+            int length = buffer.getInt();
+            int crc = buffer.getInt();
+            if (length <= RECORD_HEADER_SIZE || position + length > buffer.capacity()) break;
+
+            ByteBuffer body = buffer.duplicate();
+            body.limit(position + length).position(position + RECORD_HEADER_SIZE);
+            if (crc32(body.slice()) != crc) break;
+
+            // 只解析key和有效期，不拷贝响应体
+            ByteBuffer fields = body.slice();
+            byte[] keyBytes = new byte[fields.getInt()];
+            fields.get(keyBytes);
+            fields.getLong();
+            fields.getLong();
+            long staleUntil = fields.getLong();
+            if (staleUntil > now) {
+                index.put(new String(keyBytes, StandardCharsets.UTF_8), new Location(segment.id, position, length, staleUntil));
+            }
+            position += length;
+        }
+        return position;
+    }
+
+    /**
+     * 追加一条记录，只在写入线程中调用
+     */
+    private synchronized void append(String key, CachedResponse response, ByteBuf content) throws IOException {
+        if (active == null) return; // 尚未加载完成或加载失败
+        byte[] record = encode(key, response, content);
+        if (record.length > config.getDiskSegmentSize()) return;
+
+        if (active.writePosition + record.length > active.buffer.capacity()) {
+            active.buffer.force();
+            active = rollSegment(active.id + 1);
+        }
+        ByteBuffer buffer = active.buffer.duplicate();
+        buffer.position(active.writePosition);
+        buffer.put(record);
+        index.put(key, new Location(active.id, active.writePosition, record.length, response.getStaleUntil()));
+        active.writePosition += record.length;
+    }
+
+    /**
+     * 创建新的段文件，总大小超过上限时删除最旧的段
+     */
+    private Segment rollSegment(long id) throws IOException {
+        Segment segment = openSegment(id);
+        segments.addLast(segment);
+        segmentMap.put(id, segment);
+
+        long maxSegments = Math.max(2, config.getDiskMaxSize() / config.getDiskSegmentSize());
+        while (segments.size() > maxSegments) {
+            Segment oldest = segments.pollFirst();
+            segmentMap.remove(oldest.id);
+            index.values().removeIf(location -> location.segmentId == oldest.id);
+            if (!oldest.file.delete()) {
+                log.warn("删除磁盘缓存段文件失败 {}", oldest.file.getAbsolutePath());
+            }
+            // 释放段自身持有的引用，没有正在进行的读取时立即解除映射
+            oldest.release();
+        }
+        return segment;
+    }
+
+    private Segment openSegment(long id) throws IOException {
+        File file = new File(config.getDiskPath(), SEGMENT_PREFIX + String.format("%020d", id) + SEGMENT_SUFFIX);
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw"); FileChannel channel = raf.getChannel()) {
+            long size = Math.max(channel.size(), config.getDiskSegmentSize());
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+            return new Segment(id, file, buffer);
+        }
+    }
+
+    private static byte[] encode(String key, CachedResponse response, ByteBuf content) {
+        byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+        List<byte[]> headerBytes = new ArrayList<>();
+        int headersLength = 0;
+        for (Map.Entry<String, String> header : response.getHeaders()) {
+            byte[] name = header.getKey().getBytes(StandardCharsets.UTF_8);
+            byte[] value = header.getValue().getBytes(StandardCharsets.UTF_8);
+            headerBytes.add(name);
+            headerBytes.add(value);
+            headersLength += 8 + name.length + value.length;
+        }
+        int bodyLength = content.readableBytes();
+        int length = RECORD_HEADER_SIZE + 4 + keyBytes.length + 24 + 4 + 4 + headersLength + 4 + bodyLength;
+
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        buffer.putInt(MAGIC).putInt(length).putInt(0);
+        buffer.putInt(keyBytes.length).put(keyBytes);
+        buffer.putLong(response.getCreatedAt()).putLong(response.getFreshUntil()).putLong(response.getStaleUntil());
+        buffer.putInt(response.getStatus().code());
+        buffer.putInt(headerBytes.size() / 2);
+        for (byte[] bytes : headerBytes) {
+            buffer.putInt(bytes.length).put(bytes);
+        }
+        buffer.putInt(bodyLength);
+        content.getBytes(content.readerIndex(), buffer);
+
+        ByteBuffer crcRange = ByteBuffer.wrap(buffer.array(), RECORD_HEADER_SIZE, length - RECORD_HEADER_SIZE);
+        buffer.putInt(8, crc32(crcRange));
+        return buffer.array();
+    }
+
+    /**
+     * 解析一条记录
+     */
+    private static CachedResponse decode(ByteBuffer record) {
+        record.position(RECORD_HEADER_SIZE);
+        byte[] keyBytes = new byte[record.getInt()];
+        record.get(keyBytes);
+        long createdAt = record.getLong();
+        long freshUntil = record.getLong();
+        long staleUntil = record.getLong();
+        HttpResponseStatus status = HttpResponseStatus.valueOf(record.getInt());
+        int headerCount = record.getInt();
+        HttpHeaders headers = new DefaultHttpHeaders(false);
+        for (int i = 0; i < headerCount; i++) {
+            byte[] name = new byte[record.getInt()];
+            record.get(name);
+            byte[] value = new byte[record.getInt()];
+            record.get(value);
+            headers.add(new String(name, StandardCharsets.UTF_8), new String(value, StandardCharsets.UTF_8));
+        }
+        int bodyLength = record.getInt();
+        ByteBuf content = Unpooled.directBuffer(bodyLength);
+        ByteBuffer body = record.slice();
+        body.limit(bodyLength);
+        content.writeBytes(body);
+        return new CachedResponse(status, headers, content, createdAt, freshUntil, staleUntil);
+    }
+
+    private static int crc32(ByteBuffer buffer) {
+        CRC32 crc32 = new CRC32();
+        crc32.update(buffer);
+        return (int) crc32.getValue();
+    }
+
+    /**
+     * 内存映射的段文件
+     * 创建时引用计数为1，由段自身持有，淘汰时释放；每次读取时加1，读取结束后减1，归零时解除映射
+     */
+    private static class Segment {
+
+        private final long id;
+
+        private final File file;
+
+        private final MappedByteBuffer buffer;
+
+        private final AtomicInteger refCnt = new AtomicInteger(1);
+
+        /**
+         * 下一条记录的写入位置
+         */
+        private int writePosition;
+
+        private Segment(long id, File file, MappedByteBuffer buffer) {
+            this.id = id;
+            this.file = file;
+            this.buffer = buffer;
+        }
+
+        /**
+         * 增加引用计数
+         *
+         * @return 段已解除映射时返回false
+         */
+        boolean retain() {
+            for (;;) {
+                int cnt = refCnt.get();
+                if (cnt <= 0) return false;
+                if (refCnt.compareAndSet(cnt, cnt + 1)) return true;
+            }
+        }
+
+        /**
+         * 减少引用计数，归零时解除映射，不等待GC回收映射
+         */
+        void release() {
+            if (refCnt.decrementAndGet() == 0) {
+                PlatformDependent.freeDirectBuffer(buffer);
+            }
+        }
+    }
+
+    /**
+     * 记录在段文件中的位置
+     */
+    private static class Location {
+
+        private final long segmentId;
+
+        private final int offset;
+
+        private final int length;
+
+        private final long staleUntil;
+
+        private Location(long segmentId, int offset, int length, long staleUntil) {
+            this.segmentId = segmentId;
+            this.offset = offset;
+            this.length = length;
+            this.staleUntil = staleUntil;
+        }
+    }
+
+}
@@ -0,0 +1,199 @@
+package filter.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import config.ResponseCacheConfig;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.handler.codec.http.DefaultHttpHeaders;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpHeaders;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import loader.ConfigLoader;
+import pojo.RouteDefinition;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 响应缓存
+ * 基于Caffeine实现，按响应体大小限制总容量，淘汰策略为W-TinyLFU
+ * 每个缓存项按自身的有效期过期，过期时间包含允许返回旧响应的时长
+ */
+public class ResponseCache {
+
+    /*********   单例   *********/
+    private static final ResponseCache INSTANCE = new ResponseCache(ConfigLoader.getConfig().getResponseCache());
+
+    public static ResponseCache getInstance() {
+        return INSTANCE;
+    }
+
+    private final Cache<String /* 缓存key */, CachedResponse> cache;
+
+    private final int maxEntrySize;
+
+    private ResponseCache(ResponseCacheConfig config) {
+        this.maxEntrySize = config.getMaxEntrySize();
+        this.cache = Caffeine.newBuilder()
+                .maximumWeight(config.getMaxSize())
+                .weigher((String key, CachedResponse value) -> value.weight())
+                .expireAfter(new Expiry<String, CachedResponse>() {
+                    @Override
+                    public long expireAfterCreate(String key, CachedResponse value, long currentTime) {
+                        return remainingNanos(value);
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(String key, CachedResponse value, long currentTime, long currentDuration) {
+                        return remainingNanos(value);
+                    }
+
+                    @Override
+                    public long expireAfterRead(String key, CachedResponse value, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .removalListener((String key, CachedResponse value, RemovalCause cause) -> {
+                    if (value != null) value.release();
+                })
+                .build();
+    }
+
+    public CachedResponse get(String key) {
+        return cache.getIfPresent(key);
+    }
+
+    public void put(String key, CachedResponse response) {
+        cache.put(key, response);
+    }
+
+    public void invalidate(String key) {
+        cache.invalidate(key);
+    }
+
+    /**
+     * 按HTTP缓存语义判断下游响应是否可缓存，可缓存则拷贝响应体到堆外内存并放入缓存
+     *
+     * @param key 缓存key
+     * @param status 响应状态码
+     * @param headers 响应头
+     * @param body 响应体，不会被修改或释放
+     * @param config 路由的缓存配置
+     * @return 放入缓存的缓存项，不可缓存时返回null
+     */
+    public CachedResponse store(String key, HttpResponseStatus status, HttpHeaders headers, ByteBuf body,
+                                RouteDefinition.CacheFilterConfig config) {
+        if (status.code() != HttpResponseStatus.OK.code()) return null;
+        if (headers.contains(HttpHeaderNames.SET_COOKIE)) return null;
+        if (!varyCovered(headers, config.getVaryHeaders())) return null;
+        if (body.readableBytes() > maxEntrySize) return null;
+
+        long now = System.currentTimeMillis();
+        long[] expiration = expiration(headers, config, now);
+        if (expiration == null) return null;
+
+        ByteBuf content = Unpooled.directBuffer(body.readableBytes());
+        content.writeBytes(body, body.readerIndex(), body.readableBytes());
+        CachedResponse response = new CachedResponse(status, endToEndHeaders(headers), content, now, expiration[0], expiration[1]);
+        cache.put(key, response);
+        return response;
+    }
+
+    /**
+     * 重新验证返回304，使用新的响应头刷新缓存项的有效期
+     */
+    public void refresh(String key, CachedResponse cached, HttpHeaders notModifiedHeaders,
+                        RouteDefinition.CacheFilterConfig config) {
+        HttpHeaders merged = new DefaultHttpHeaders().add(cached.getHeaders());
+        for (Map.Entry<String, String> header : endToEndHeaders(notModifiedHeaders)) {
+            if (HttpHeaderNames.CONTENT_LENGTH.contentEqualsIgnoreCase(header.getKey())) continue;
+            merged.set(header.getKey(), header.getValue());
+        }
+        long now = System.currentTimeMillis();
+        long[] expiration = expiration(merged, config, now);
+        if (expiration == null) {
+            cache.asMap().remove(key, cached);
+            return;
+        }
+        CachedResponse refreshed = cached.refresh(merged, now, expiration[0], expiration[1]);
+        if (refreshed != null) {
+            // 只替换被验证的那一项，验证期间已经被新响应覆盖时丢弃
+            if (!cache.asMap().replace(key, cached, refreshed)) {
+                refreshed.release();
+            }
+        }
+    }
+
+    /**
+     * 计算新鲜期和过期截止时间
+     *
+     * @return [新鲜期截止, 过期截止]，不可缓存时返回null
+     */
+    private long[] expiration(HttpHeaders headers, RouteDefinition.CacheFilterConfig config, long now) {
+        CacheControl cacheControl = CacheControl.parse(headers);
+        if (cacheControl.isNoStore() || cacheControl.isPrivate() || cacheControl.isNoCache()) return null;
+
+        long explicitLifetime = CacheControl.freshnessLifetime(cacheControl, headers);
+        long lifetime = explicitLifetime >= 0 ? explicitLifetime : config.getDefaultTtl() * 1000L;
+
+        // 只有下游明确声明了有效期或stale-while-revalidate时才允许过期后返回旧响应
+        boolean revalidatable = headers.contains(HttpHeaderNames.ETAG) || headers.contains(HttpHeaderNames.LAST_MODIFIED);
+        long stale = 0;
+        if (revalidatable && !cacheControl.isMustRevalidate()) {
+            if (cacheControl.getStaleWhileRevalidate() >= 0) {
+                stale = cacheControl.getStaleWhileRevalidate() * 1000;
+            } else if (explicitLifetime >= 0) {
+                stale = config.getMaxStale() * 1000L;
+            }
+        }
+        if (lifetime + stale <= 0) return null;
+        return new long[]{now + lifetime, now + lifetime + stale};
+    }
+
+    /**
+     * 下游响应Vary的请求头必须都参与了缓存key的计算，否则不同的请求会拿到错误的响应
+     */
+    private boolean varyCovered(HttpHeaders headers, Collection<String> varyHeaders) {
+        for (String vary : headers.getAll(HttpHeaderNames.VARY)) {
+            for (String name : vary.split(",")) {
+                String header = name.trim();
+                if (header.isEmpty()) continue;
+                if ("*".equals(header)) return false;
+                boolean covered = false;
+                if (varyHeaders != null) {
+                    for (String varyHeader : varyHeaders) {
+                        if (varyHeader.equalsIgnoreCase(header)) {
+                            covered = true;
+                            break;
+                        }
+                    }
+                }
+                if (!covered) return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 去掉逐跳头，只保留可以缓存的端到端响应头
+     */
+    private HttpHeaders endToEndHeaders(HttpHeaders headers) {
+        HttpHeaders copy = new DefaultHttpHeaders().add(headers);
+        copy.remove(HttpHeaderNames.CONNECTION);
+        copy.remove(HttpHeaderNames.KEEP_ALIVE);
+        copy.remove(HttpHeaderNames.TRANSFER_ENCODING);
+        copy.remove(HttpHeaderNames.PROXY_AUTHENTICATE);
+        copy.remove(HttpHeaderNames.TRAILER);
+        copy.remove(HttpHeaderNames.UPGRADE);
+        return copy;
+    }
+
+    private static long remainingNanos(CachedResponse value) {
+        return TimeUnit.MILLISECONDS.toNanos(Math.max(0, value.getStaleUntil() - System.currentTimeMillis()));
+    }
+
+}
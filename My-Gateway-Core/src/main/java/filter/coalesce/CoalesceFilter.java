@@ -0,0 +1,66 @@
+package filter.coalesce;
+
+import cn.hutool.json.JSONUtil;
+import context.GatewayContext;
+import filter.Filter;
+import helper.RequestHelper;
+import io.netty.handler.codec.http.HttpMethod;
+import pojo.RouteDefinition;
+import request.GatewayRequest;
+import util.FilterUtil;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static constant.FilterConstant.COALESCE_FILTER_NAME;
+import static constant.FilterConstant.COALESCE_FILTER_ORDER;
+
+/**
+ * 请求合并过滤器
+ * 为可合并的GET/HEAD请求计算合并key，路由过滤器根据key将相同的并发请求合并为一次下游调用
+ * key由请求方法、路由、未解码的路径、排序后的查询参数、配置的请求头以及路由结果（是否灰度、实例子集）组成，
+ * 灰度请求不会和稳定请求合并
+ */
+public class CoalesceFilter implements Filter {
+
+    /**
+     * 解析后的路由合并配置，按配置内容缓存，避免每个请求都解析JSON
+     */
+    private final Map<String /* 配置json */, RouteDefinition.CoalesceFilterConfig> configMap = new ConcurrentHashMap<>();
+
+    @Override
+    public void doPreFilter(GatewayContext context) {
+        RouteDefinition.FilterConfig filterConfig = FilterUtil.findFilterConfigByName(context.getRoute().getFilterConfigs(), COALESCE_FILTER_NAME);
+        if (filterConfig == null || !filterConfig.isEnable()) {
+            return;
+        }
+
+        GatewayRequest request = context.getRequest();
+        HttpMethod method = request.getMethod();
+        // 只合并幂等且没有请求体的请求
+        if (!HttpMethod.GET.equals(method) && !HttpMethod.HEAD.equals(method)) {
+            return;
+        }
+
+        RouteDefinition.CoalesceFilterConfig coalesceFilterConfig = filterConfig.getConfig() == null
+                ? configMap.computeIfAbsent("", k -> new RouteDefinition.CoalesceFilterConfig())
+                : configMap.computeIfAbsent(filterConfig.getConfig(), k -> JSONUtil.toBean(k, RouteDefinition.CoalesceFilterConfig.class));
+        context.setCoalesceKey(RequestHelper.buildRequestKey(context, coalesceFilterConfig.getVaryHeaders()));
+    }
+
+    @Override
+    public void doPostFilter(GatewayContext context) {
+
+    }
+
+    @Override
+    public String mark() {
+        return COALESCE_FILTER_NAME;
+    }
+
+    @Override
+    public int getOrder() {
+        return COALESCE_FILTER_ORDER;
+    }
+
+}
@@ -0,0 +1,134 @@
+package filter.coalesce;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.handler.codec.http.HttpHeaders;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import lombok.extern.slf4j.Slf4j;
+import org.asynchttpclient.Response;
+import response.GatewayResponse;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * 请求合并器（single-flight）
+ * 相同key的并发请求只向下游发送一次，所有等待者共享同一份响应
+ * 响应体只保存一份，每个等待者拿到的是retainedDuplicate，不会拷贝数据
+ */
+@Slf4j
+public class RequestCoalescer {
+
+    /*********   单例   *********/
+    private static final RequestCoalescer INSTANCE = new RequestCoalescer();
+
+    private RequestCoalescer() {}
+
+    public static RequestCoalescer getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * 正在进行中的下游调用
+     */
+    private final ConcurrentHashMap<String /* 合并key */, InFlight> inFlightMap = new ConcurrentHashMap<>();
+
+    /**
+     * 执行请求，如果已有相同key的请求在进行中，则挂到该请求上等待结果
+     *
+     * @param key 合并key
+     * @param upstream 真正发起下游调用的逻辑，只有第一个请求会执行
+     * @return 当前请求独享的网关响应
+     */
+    public CompletableFuture<GatewayResponse> execute(String key, Supplier<CompletableFuture<GatewayResponse>> upstream) {
+        InFlight created = new InFlight();
+        // 在compute中登记订阅者，保证从map移除后不会再有新的订阅者加入
+        InFlight inFlight = inFlightMap.compute(key, (k, v) -> {
+            InFlight current = v == null ? created : v;
+            current.subscribers.incrementAndGet();
+            return current;
+        });
+
+        if (inFlight == created) {
+            dispatch(key, inFlight, upstream);
+        }
+        return inFlight.future.thenApply(inFlight::subscribe);
+    }
+
+    /**
+     * 当前正在进行中的合并请求数量
+     */
+    public int inFlightCount() {
+        return inFlightMap.size();
+    }
+
+    private void dispatch(String key, InFlight inFlight, Supplier<CompletableFuture<GatewayResponse>> upstream) {
+        CompletableFuture<GatewayResponse> future;
+        try {
+            future = upstream.get();
+        } catch (Throwable t) {
+            inFlightMap.remove(key, inFlight);
+            inFlight.future.completeExceptionally(t);
+            return;
+        }
+        future.whenComplete((response, throwable) -> {
+            // 先移除再完成，之后到达的请求会发起新的下游调用
+            inFlightMap.remove(key, inFlight);
+            if (throwable != null) {
+                inFlight.future.completeExceptionally(throwable);
+            } else {
+                inFlight.future.complete(new SharedResponse(response));
+            }
+        });
+    }
+
+    /**
+     * 一次进行中的下游调用
+     */
+    private static class InFlight {
+
+        private final CompletableFuture<SharedResponse> future = new CompletableFuture<>();
+
+        /**
+         * 尚未取走响应的订阅者数量，最后一个取走的订阅者负责释放共享缓冲区
+         */
+        private final AtomicInteger subscribers = new AtomicInteger();
+
+        private GatewayResponse subscribe(SharedResponse shared) {
+            GatewayResponse gatewayResponse = new GatewayResponse();
+            gatewayResponse.setHttpResponseStatus(shared.status);
+            gatewayResponse.setResponseHeaders(shared.headers);
+            gatewayResponse.setContentBuffer(shared.content.retainedDuplicate());
+            if (subscribers.decrementAndGet() == 0) {
+                shared.content.release();
+            }
+            return gatewayResponse;
+        }
+    }
+
+    /**
+     * 被所有订阅者共享的下游响应
+     */
+    private static class SharedResponse {
+
+        private final HttpResponseStatus status;
+
+        private final HttpHeaders headers;
+
+        private final ByteBuf content;
+
+        private SharedResponse(GatewayResponse response) {
+            this.status = response.getHttpResponseStatus();
+            this.headers = response.getResponseHeaders();
+            if (response.getContentBuffer() != null) {
+                this.content = response.getContentBuffer();
+            } else {
+                Response upstream = response.getResponse();
+                this.content = Unpooled.wrappedBuffer(upstream.getResponseBodyAsByteBuffer());
+            }
+        }
+    }
+
+}
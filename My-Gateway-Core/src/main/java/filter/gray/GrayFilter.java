@@ -3,6 +3,7 @@ package filter.gray;
 import cn.hutool.json.JSONUtil;
 import context.GatewayContext;
 import filter.Filter;
+import filter.gray.canary.CanaryController;
 import filter.gray.strategy.GrayStrategy;
 import manager.DynamicConfigManager;
 import pojo.RouteDefinition;
@@ -10,12 +11,19 @@ import pojo.ServiceInstance;
 import util.FilterUtil;
 
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import static constant.FilterConstant.GRAY_FILTER_NAME;
 import static constant.FilterConstant.GRAY_FILTER_ORDER;
 
 public class GrayFilter implements Filter {
 
+    /**
+     * 解析后的路由灰度配置，按配置内容缓存，避免每个请求都解析JSON
+     */
+    private final Map<String /* 配置json */, RouteDefinition.GrayFilterConfig> configMap = new ConcurrentHashMap<>();
+
     @Override
     public void doPreFilter(GatewayContext context) {
         RouteDefinition.FilterConfig filterConfig = FilterUtil.findFilterConfigByName(context.getRoute().getFilterConfigs(), GRAY_FILTER_NAME);
@@ -33,7 +41,19 @@ public class GrayFilter implements Filter {
 
         if (instances.stream().anyMatch(instance -> instance.isEnabled() && instance.isGray())) {
             // 存在灰度实例
-            GrayStrategy strategy = selectGrayStrategy(JSONUtil.toBean(filterConfig.getConfig(), RouteDefinition.GrayFilterConfig.class));
+            if (CanaryController.getInstance().isEnabled()) {
+                // 灰度流量比例由金丝雀控制器决定，比例为0说明灰度已回滚
+                double share = CanaryController.getInstance().getShare(context.getRequest().getServiceDefinition().getServiceName());
+                if (share <= 0) {
+                    context.getRequest().setGray(false);
+                    return;
+                }
+                context.setGrayShare(share);
+            }
+            RouteDefinition.GrayFilterConfig grayFilterConfig = filterConfig.getConfig() == null
+                    ? new RouteDefinition.GrayFilterConfig()
+                    : configMap.computeIfAbsent(filterConfig.getConfig(), k -> JSONUtil.toBean(k, RouteDefinition.GrayFilterConfig.class));
+            GrayStrategy strategy = selectGrayStrategy(grayFilterConfig);
             context.getRequest().setGray(strategy.shouldRoute2Gray(context, instances));
         } else {
             // 灰度实例都没，不走灰度
@@ -0,0 +1,185 @@
+package filter.gray;
+
+import context.GatewayContext;
+import filter.affinity.AffinityKeyManager;
+import filter.affinity.extractor.AffinityKeyExtractor;
+import pojo.RouteDefinition;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 编译后的灰度规则
+ * 路由配置的规则在加载时按（来源, 名字）合并成一组key，每个key只从请求中取一次值：
+ * 1. 取值列表编译成HashSet，O(1)判断
+ * 2. 数值区间排序合并成不重叠的有序数组，二分查找
+ * 请求时不做正则匹配也不解析JSON，耗时只和规则中不同key的个数有关
+ */
+public class GrayRuleIndex {
+
+    private final RuleKey[] keys;
+
+    public GrayRuleIndex(List<RouteDefinition.GrayRule> rules) {
+        Map<String, RuleKeyBuilder> builders = new LinkedHashMap<>();
+        if (rules != null) {
+            for (RouteDefinition.GrayRule rule : rules) {
+                AffinityKeyExtractor extractor = AffinityKeyManager.getExtractor(rule.getSource());
+                if (extractor == null) {
+                    throw new IllegalArgumentException("unknown gray rule source: " + rule.getSource());
+                }
+                builders.computeIfAbsent(rule.getSource() + ":" + rule.getName(), k -> new RuleKeyBuilder(extractor, rule.getName()))
+                        .add(rule);
+            }
+        }
+        this.keys = builders.values().stream().map(RuleKeyBuilder::build).toArray(RuleKey[]::new);
+    }
+
+    public boolean isEmpty() {
+        return keys.length == 0;
+    }
+
+    /**
+     * 判断请求是否命中任意一条规则
+     */
+    public boolean matches(GatewayContext context) {
+        for (RuleKey key : keys) {
+            String value = key.extractor.extract(context, key.name);
+            if (value != null && key.matches(value)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 同一个key下所有规则的取值和区间
+     */
+    private static class RuleKey {
+
+        private final AffinityKeyExtractor extractor;
+
+        private final String name;
+
+        private final Set<String> values;
+
+        /**
+         * 不重叠的区间，按起点升序
+         */
+        private final long[] starts;
+
+        private final long[] ends;
+
+        RuleKey(AffinityKeyExtractor extractor, String name, Set<String> values, long[] starts, long[] ends) {
+            this.extractor = extractor;
+            this.name = name;
+            this.values = values;
+            this.starts = starts;
+            this.ends = ends;
+        }
+
+        boolean matches(String value) {
+            if (values.contains(value)) {
+                return true;
+            }
+            if (starts.length == 0) {
+                return false;
+            }
+            long number = parseLong(value);
+            if (number == Long.MIN_VALUE) {
+                return false;
+            }
+            // 找到最后一个起点不大于number的区间
+            int index = Arrays.binarySearch(starts, number);
+            if (index < 0) {
+                index = -index - 2;
+            }
+            return index >= 0 && number <= ends[index];
+        }
+
+        /**
+         * 不抛异常地解析非负整数
+         *
+         * @return 解析结果，不是合法数字时返回Long.MIN_VALUE
+         */
+        private static long parseLong(String value) {
+            int length = value.length();
+            if (length == 0 || length > 18) {
+                return Long.MIN_VALUE;
+            }
+            long result = 0;
+            for (int i = 0; i < length; i++) {
+                char c = value.charAt(i);
+                if (c < '0' || c > '9') {
+                    return Long.MIN_VALUE;
+                }
+                result = result * 10 + (c - '0');
+            }
+            return result;
+        }
+    }
+
+    private static class RuleKeyBuilder {
+
+        private final AffinityKeyExtractor extractor;
+
+        private final String name;
+
+        private final Set<String> values = new HashSet<>();
+
+        private final List<long[]> ranges = new ArrayList<>();
+
+        RuleKeyBuilder(AffinityKeyExtractor extractor, String name) {
+            this.extractor = extractor;
+            this.name = name;
+        }
+
+        void add(RouteDefinition.GrayRule rule) {
+            if (rule.getValues() != null) {
+                values.addAll(rule.getValues());
+            }
+            if (rule.getRanges() != null) {
+                for (String range : rule.getRanges()) {
+                    ranges.add(parseRange(range));
+                }
+            }
+        }
+
+        RuleKey build() {
+            // 排序后合并重叠或相邻的区间
+            ranges.sort((a, b) -> Long.compare(a[0], b[0]));
+            List<long[]> merged = new ArrayList<>();
+            for (long[] range : ranges) {
+                long[] last = merged.isEmpty() ? null : merged.get(merged.size() - 1);
+                if (last != null && range[0] <= last[1] + 1) {
+                    last[1] = Math.max(last[1], range[1]);
+                } else {
+                    merged.add(new long[]{range[0], range[1]});
+                }
+            }
+            long[] starts = new long[merged.size()];
+            long[] ends = new long[merged.size()];
+            for (int i = 0; i < merged.size(); i++) {
+                starts[i] = merged.get(i)[0];
+                ends[i] = merged.get(i)[1];
+            }
+            return new RuleKey(extractor, name, values, starts, ends);
+        }
+
+        private static long[] parseRange(String range) {
+            String value = range.trim();
+            int separator = value.indexOf('-');
+            long start = Long.parseLong(separator < 0 ? value : value.substring(0, separator).trim());
+            long end = separator < 0 ? start : Long.parseLong(value.substring(separator + 1).trim());
+            if (start < 0 || end < start) {
+                throw new IllegalArgumentException("invalid gray rule range: " + range);
+            }
+            return new long[]{start, end};
+        }
+    }
+
+}
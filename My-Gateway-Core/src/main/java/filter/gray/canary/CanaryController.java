@@ -0,0 +1,220 @@
+package filter.gray.canary;
+
+import config.CanaryConfig;
+import context.GatewayContext;
+import io.netty.util.concurrent.DefaultThreadFactory;
+import loader.ConfigLoader;
+import lombok.extern.slf4j.Slf4j;
+import manager.DynamicConfigManager;
+import pojo.ServiceInstance;
+import response.GatewayResponse;
+
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 金丝雀控制器
+ * 1. 请求完成时按是否灰度把耗时和是否失败记录到服务的灰度或稳定窗口，只做原子加
+ * 2. 后台线程定时分析：灰度请求数足够时比较两组的错误率和延迟分位
+ *    - 灰度明显变差：流量比例立即降为0，直到灰度实例重新发布
+ *    - 分析通过且距离上次提升超过间隔：流量比例提升一步
+ * 3. 分析结果发布为每个服务一个volatile的流量比例，灰度过滤器每个请求只读取这一个值
+ * 灰度实例集合变化（重新发布）时从初始比例重新开始
+ */
+@Slf4j
+public class CanaryController {
+
+    /*********   单例   *********/
+    private static final CanaryController INSTANCE = new CanaryController(ConfigLoader.getConfig().getCanary());
+
+    public static CanaryController getInstance() {
+        return INSTANCE;
+    }
+
+    private final CanaryConfig config;
+
+    private final Map<String /* 服务名 */, CanaryState> stateMap = new ConcurrentHashMap<>();
+
+    private final ScheduledExecutorService scheduler;
+
+    private CanaryController(CanaryConfig config) {
+        this.config = config;
+        if (config.isEnabled()) {
+            scheduler = Executors.newSingleThreadScheduledExecutor(new DefaultThreadFactory("canary-controller", true));
+            scheduler.scheduleWithFixedDelay(this::evaluate,
+                    config.getEvaluateIntervalSeconds(), config.getEvaluateIntervalSeconds(), TimeUnit.SECONDS);
+        } else {
+            scheduler = null;
+        }
+    }
+
+    public boolean isEnabled() {
+        return config.isEnabled();
+    }
+
+    /**
+     * 获取服务当前的灰度流量比例，服务第一次出现灰度实例时从初始比例开始
+     */
+    public double getShare(String serviceName) {
+        return stateMap.computeIfAbsent(serviceName, k -> new CanaryState(config.getInitialShare())).share;
+    }
+
+    /**
+     * 记录请求结果，没有进行中的金丝雀分析的服务直接忽略
+     */
+    public void record(GatewayContext context) {
+        if (!config.isEnabled() || context.getRequest().getServiceDefinition() == null) {
+            return;
+        }
+        CanaryState state = stateMap.get(context.getRequest().getServiceDefinition().getServiceName());
+        if (state == null) {
+            return;
+        }
+        GatewayResponse response = context.getResponse();
+        boolean error = context.getThrowable() != null
+                || response == null
+                || response.getHttpResponseStatus() == null
+                || response.getHttpResponseStatus().code() >= 500;
+        long latency = System.currentTimeMillis() - context.getRequest().getBeginTime();
+        (context.getRequest().isGray() ? state.gray : state.stable).record(latency, error);
+    }
+
+    /**
+     * 分析所有服务，在后台线程执行
+     */
+    void evaluate() {
+        long now = System.currentTimeMillis();
+        for (Map.Entry<String, CanaryState> entry : stateMap.entrySet()) {
+            try {
+                evaluate(entry.getKey(), entry.getValue(), now);
+            } catch (Throwable t) {
+                log.error("canary evaluate failed, service: {}", entry.getKey(), t);
+            }
+        }
+    }
+
+    private void evaluate(String serviceName, CanaryState state, long now) {
+        Set<String> grayInstanceIds = grayInstanceIds(serviceName);
+        if (grayInstanceIds.isEmpty()) {
+            // 灰度实例已经全部下线或转正，结束分析
+            stateMap.remove(serviceName, state);
+            return;
+        }
+        if (!grayInstanceIds.equals(state.grayInstanceIds)) {
+            state.restart(grayInstanceIds, config.getInitialShare(), now + config.getStepIntervalSeconds() * 1000L);
+            log.info("canary start, service: {}, gray instances: {}, share: {}", serviceName, grayInstanceIds, state.share);
+            return;
+        }
+        if (state.rolledBack) {
+            return;
+        }
+
+        CanaryWindow gray = state.gray;
+        CanaryWindow stable = state.stable;
+        if (gray.getRequests() >= config.getMinRequests()) {
+            String reason = regression(gray, stable);
+            if (reason != null) {
+                state.share = 0;
+                state.rolledBack = true;
+                log.warn("canary rollback, service: {}, {}", serviceName, reason);
+                return;
+            }
+            state.verified = true;
+            state.gray = new CanaryWindow();
+            state.stable = new CanaryWindow();
+        }
+        if (state.verified && now >= state.nextStepTime && state.share < config.getMaxShare()) {
+            state.share = Math.min(config.getMaxShare(), state.share + config.getStepShare());
+            state.verified = false;
+            state.nextStepTime = now + config.getStepIntervalSeconds() * 1000L;
+            log.info("canary step up, service: {}, share: {}", serviceName, state.share);
+        }
+    }
+
+    /**
+     * 判断灰度实例是否比稳定实例明显变差
+     *
+     * @return 变差的原因，没有变差时返回null
+     */
+    private String regression(CanaryWindow gray, CanaryWindow stable) {
+        double grayErrorRate = gray.getErrorRate();
+        double stableErrorRate = stable.getErrorRate();
+        if (grayErrorRate - stableErrorRate > config.getMaxErrorRateIncrease()) {
+            return String.format("error rate %.4f vs %.4f", grayErrorRate, stableErrorRate);
+        }
+        if (stable.getRequests() < config.getMinRequests()) {
+            // 稳定实例的样本不足，延迟没有可比性
+            return null;
+        }
+        long grayLatency = gray.getLatency(config.getLatencyPercentile());
+        long stableLatency = stable.getLatency(config.getLatencyPercentile());
+        if (grayLatency > stableLatency * config.getMaxLatencyRatio()
+                && grayLatency - stableLatency >= config.getMinLatencyIncreaseMs()) {
+            return String.format("p%s latency %dms vs %dms", config.getLatencyPercentile() * 100, grayLatency, stableLatency);
+        }
+        return null;
+    }
+
+    private static Set<String> grayInstanceIds(String serviceName) {
+        Map<String, ServiceInstance> instanceMap = DynamicConfigManager.getInstance().getInstancesByServiceName(serviceName);
+        Set<String> ids = new HashSet<>();
+        if (instanceMap != null) {
+            for (ServiceInstance instance : instanceMap.values()) {
+                if (instance.isEnabled() && instance.isGray()) {
+                    ids.add(instance.getInstanceId());
+                }
+            }
+        }
+        return ids;
+    }
+
+    public void shutdown() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+    }
+
+    /**
+     * 一个服务的金丝雀分析状态
+     * share由后台线程写、请求线程读；窗口由后台线程替换，请求线程写入替换前的窗口只会丢失少量样本
+     */
+    private static class CanaryState {
+
+        private volatile double share;
+
+        private volatile CanaryWindow gray = new CanaryWindow();
+
+        private volatile CanaryWindow stable = new CanaryWindow();
+
+        private Set<String> grayInstanceIds;
+
+        private boolean rolledBack;
+
+        /**
+         * 上次提升之后是否有分析通过
+         */
+        private boolean verified;
+
+        private long nextStepTime;
+
+        CanaryState(double share) {
+            this.share = share;
+        }
+
+        void restart(Set<String> grayInstanceIds, double share, long nextStepTime) {
+            this.grayInstanceIds = grayInstanceIds;
+            this.share = share;
+            this.rolledBack = false;
+            this.verified = false;
+            this.nextStepTime = nextStepTime;
+            this.gray = new CanaryWindow();
+            this.stable = new CanaryWindow();
+        }
+    }
+
+}
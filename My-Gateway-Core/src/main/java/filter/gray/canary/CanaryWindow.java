@@ -0,0 +1,93 @@
+package filter.gray.canary;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 一个分析窗口内一组实例的请求指标
+ * 请求数和错误数使用LongAdder，延迟记录在对数分桶的直方图中，每个2的幂区间分为4个桶，误差不超过25%
+ * 记录时只做几次原子加，不加锁也不分配对象
+ */
+public class CanaryWindow {
+
+    private static final int SUB_BUCKETS = 4;
+
+    private static final int BUCKETS = 64 * SUB_BUCKETS;
+
+    private final LongAdder requests = new LongAdder();
+
+    private final LongAdder errors = new LongAdder();
+
+    private final AtomicLongArray latencies = new AtomicLongArray(BUCKETS);
+
+    /**
+     * 记录一次请求
+     *
+     * @param latencyMs 请求耗时，单位毫秒
+     * @param error 是否失败
+     */
+    public void record(long latencyMs, boolean error) {
+        requests.increment();
+        if (error) {
+            errors.increment();
+        }
+        latencies.incrementAndGet(bucket(Math.max(latencyMs, 0)));
+    }
+
+    public long getRequests() {
+        return requests.sum();
+    }
+
+    public double getErrorRate() {
+        long total = requests.sum();
+        return total == 0 ? 0 : (double) errors.sum() / total;
+    }
+
+    /**
+     * 计算延迟分位，返回所在桶的上界
+     *
+     * @param percentile 0到1之间的分位
+     */
+    public long getLatency(double percentile) {
+        long[] counts = new long[BUCKETS];
+        long total = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            counts[i] = latencies.get(i);
+            total += counts[i];
+        }
+        if (total == 0) {
+            return 0;
+        }
+        long rank = (long) Math.ceil(total * percentile);
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return upperBound(i);
+            }
+        }
+        return upperBound(BUCKETS - 1);
+    }
+
+    /**
+     * 0到3毫秒各占一个桶，之后每个2的幂区间按最高位之后的两位再分4个桶
+     */
+    static int bucket(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int sub = (int) (value >>> (exponent - 2)) & (SUB_BUCKETS - 1);
+        return (exponent - 1) * SUB_BUCKETS + sub;
+    }
+
+    static long upperBound(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        int exponent = bucket / SUB_BUCKETS + 1;
+        int sub = bucket % SUB_BUCKETS;
+        return ((long) (SUB_BUCKETS + sub + 1) << (exponent - 2)) - 1;
+    }
+
+}
@@ -1,6 +1,7 @@
 package filter.gray.strategy;
 
 import context.GatewayContext;
+import filter.affinity.AffinityKeyManager;
 import pojo.RouteDefinition;
 import pojo.ServiceInstance;
 import util.FilterUtil;
@@ -30,15 +31,17 @@ public class ClientIpGrayStrategy implements GrayStrategy {
         if (instances.stream().anyMatch(instance -> instance.isEnabled() && !instance.isGray())) {
             // 获取灰度过滤器配置
             RouteDefinition.GrayFilterConfig grayFilterConfig = FilterUtil.findFilterConfigByClass(context.getRoute().getFilterConfigs(), GRAY_FILTER_NAME, RouteDefinition.GrayFilterConfig.class);
+            if (grayFilterConfig == null) grayFilterConfig = new RouteDefinition.GrayFilterConfig();
             
-            // 计算灰度阈值，即所有灰度实例的阈值总和
-            double grayThreshold = instances.stream().mapToDouble(ServiceInstance::getThreshold).sum();
+            // 计算灰度阈值，金丝雀控制器接管时使用它发布的比例，否则为所有灰度实例的阈值总和
+            double grayThreshold = context.getGrayShare() >= 0 ? context.getGrayShare() : instances.stream().mapToDouble(ServiceInstance::getThreshold).sum();
             
             // 确保灰度阈值不超过配置的最大灰度阈值
             grayThreshold = Math.min(grayThreshold, grayFilterConfig.getMaxGrayThreshold());
             
-            // 将客户端主机的哈希值取模100得到0-99的值，如果该值小于等于阈值的百分比，则路由到灰度实例
-            return Math.abs(context.getRequest().getHost().hashCode()) % 100 <= grayThreshold * 100;
+            // 将亲和性key（默认客户端IP）的哈希值取模100得到0-99的值，如果该值小于阈值的百分比，则路由到灰度实例
+            long hash = AffinityKeyManager.hash(context, grayFilterConfig.getAffinityKey());
+            return AffinityKeyManager.bucket(hash, 100) < grayThreshold * 100;
         }
         // 如果没有非灰度实例，则所有请求都路由到灰度实例
         return true;
@@ -0,0 +1,76 @@
+package filter.gray.strategy;
+
+import cn.hutool.json.JSONUtil;
+import context.GatewayContext;
+import filter.affinity.AffinityKeyManager;
+import filter.gray.GrayRuleIndex;
+import pojo.RouteDefinition;
+import pojo.ServiceInstance;
+import util.FilterUtil;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static constant.FilterConstant.GRAY_FILTER_NAME;
+import static constant.GrayConstant.RULE_GRAY_STRATEGY;
+
+/**
+ * 基于规则的灰度策略实现
+ * 根据请求头、Cookie、查询参数的取值或数值区间（如用户id、租户id）决定请求是否路由到灰度实例，可以精确指定灰度用户
+ * 规则在第一次使用时编译，之后配置不变就不再解析
+ * 金丝雀控制器接管灰度比例时，命中规则的请求再按亲和性key分桶，只有落在灰度比例内的请求路由到灰度实例，
+ * 比例逐步提升时命中规则的用户逐步进入灰度，同一个key的结果不变
+ */
+public class RuleGrayStrategy implements GrayStrategy {
+
+    /**
+     * 编译后的灰度规则，按配置内容缓存，路由配置变更后使用新的规则
+     */
+    private final Map<String /* 配置json */, GrayRuleIndex> ruleIndexMap = new ConcurrentHashMap<>();
+
+    /**
+     * 判断请求是否应该路由到灰度实例
+     * 请求命中任意一条规则时路由到灰度实例，金丝雀控制器接管时还要落在灰度比例内
+     *
+     * @param context 网关上下文，包含请求的所有信息
+     * @param instances 可用的服务实例列表
+     * @return 如果应该路由到灰度实例则返回true，否则返回false
+     */
+    @Override
+    public boolean shouldRoute2Gray(GatewayContext context, List<ServiceInstance> instances) {
+        // 检查是否存在非灰度实例，如果没有，则所有请求都路由到灰度实例
+        if (instances.stream().anyMatch(instance -> instance.isEnabled() && !instance.isGray())) {
+            RouteDefinition.FilterConfig filterConfig = FilterUtil.findFilterConfigByName(context.getRoute().getFilterConfigs(), GRAY_FILTER_NAME);
+            if (filterConfig == null || filterConfig.getConfig() == null) {
+                return false;
+            }
+            GrayRuleIndex ruleIndex = ruleIndexMap.computeIfAbsent(filterConfig.getConfig(),
+                    k -> new GrayRuleIndex(JSONUtil.toBean(k, RouteDefinition.GrayFilterConfig.class).getRules()));
+            if (!ruleIndex.matches(context)) {
+                return false;
+            }
+            if (context.getGrayShare() < 0) {
+                return true;
+            }
+            // 金丝雀控制器发布的比例，不超过配置的最大灰度阈值
+            RouteDefinition.GrayFilterConfig grayFilterConfig = FilterUtil.parseFilterConfig(filterConfig, RouteDefinition.GrayFilterConfig.class);
+            double grayShare = Math.min(context.getGrayShare(), grayFilterConfig.getMaxGrayThreshold());
+            long hash = AffinityKeyManager.hash(context, grayFilterConfig.getAffinityKey());
+            return AffinityKeyManager.bucket(hash, 100) < grayShare * 100;
+        }
+        // 如果没有非灰度实例，则所有请求都路由到灰度实例
+        return true;
+    }
+
+    /**
+     * 获取策略的标识
+     *
+     * @return 规则灰度策略的唯一标识
+     */
+    @Override
+    public String mark() {
+        return RULE_GRAY_STRATEGY;
+    }
+
+}
@@ -35,8 +35,8 @@ public class ThresholdGrayStrategy implements GrayStrategy {
             // 获取最大灰度阈值，如果配置不存在，则使用默认值
             double maxGrayThreshold = grayFilterConfig == null ? MAX_GRAY_THRESHOLD : grayFilterConfig.getMaxGrayThreshold();
             
-            // 计算灰度阈值，即所有灰度实例的阈值总和
-            double grayThreshold = instances.stream().mapToDouble(ServiceInstance::getThreshold).sum();
+            // 计算灰度阈值，金丝雀控制器接管时使用它发布的比例，否则为所有灰度实例的阈值总和
+            double grayThreshold = context.getGrayShare() >= 0 ? context.getGrayShare() : instances.stream().mapToDouble(ServiceInstance::getThreshold).sum();
             
             // 确保灰度阈值不超过配置的最大灰度阈值
             grayThreshold = Math.min(grayThreshold, maxGrayThreshold);
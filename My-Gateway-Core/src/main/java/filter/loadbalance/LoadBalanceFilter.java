@@ -1,19 +1,24 @@
 package filter.loadbalance;
 
 
-import cn.hutool.json.JSONUtil;
+import config.ZoneAwareConfig;
 import context.GatewayContext;
 import enums.ResponseCode;
 import exception.NotFoundException;
 import filter.Filter;
 import filter.loadbalance.strategy.GrayLoadBalanceStrategy;
 import filter.loadbalance.strategy.LoadBalanceStrategy;
-import manager.DynamicConfigManager;
+import filter.loadbalance.strategy.ZoneAwareLoadBalanceStrategy;
+import filter.subset.InstanceSubset;
+import filter.subset.InstanceSubsetManager;
+import loader.ConfigLoader;
 import pojo.RouteDefinition;
 import pojo.ServiceInstance;
 import util.FilterUtil;
 
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import static constant.FilterConstant.LOAD_BALANCE_FILTER_NAME;
 import static constant.FilterConstant.LOAD_BALANCE_FILTER_ORDER;
@@ -25,32 +30,60 @@ import static constant.FilterConstant.LOAD_BALANCE_FILTER_ORDER;
  */
 public class LoadBalanceFilter implements Filter {
 
+    /**
+     * 路由没有配置负载均衡过滤器时使用的默认配置
+     */
+    private static final RouteDefinition.FilterConfig DEFAULT_FILTER_CONFIG = FilterUtil.buildDefaultLoadBalanceFilterConfig();
+
+    /**
+     * 同机房优先配置，未开启或没有配置网关所在机房时为空
+     */
+    private static final ZoneAwareConfig ZONE_AWARE_CONFIG = zoneAwareConfig();
+
+    /**
+     * 包装了同机房优先的负载均衡策略
+     */
+    private final Map<String /* 策略名 */, ZoneAwareLoadBalanceStrategy> zoneAwareStrategyMap = new ConcurrentHashMap<>();
+
     @Override
     public void doPreFilter(GatewayContext context) {
         // 获取负载均衡策略
         RouteDefinition.FilterConfig filterConfig = FilterUtil.findFilterConfigByName(context.getRoute().getFilterConfigs(), LOAD_BALANCE_FILTER_NAME);
         if (filterConfig == null) {
-            filterConfig = FilterUtil.buildDefaultLoadBalanceFilterConfig();
+            filterConfig = DEFAULT_FILTER_CONFIG;
         }
 
-        // 获取服务所有实例
-        List<ServiceInstance> instances = DynamicConfigManager.getInstance()
-                .getInstancesByServiceName(context.getRequest().getServiceDefinition().getServiceName())
-                .values().stream().toList();
+        // 获取候选实例，子集路由选出了子集时只在子集中选择，否则使用服务所有实例
+        InstanceSubset subset = context.getInstanceSubset();
+        if (subset == null) {
+            subset = InstanceSubsetManager.getInstance().getServiceSubset(context.getRequest().getServiceDefinition().getServiceName());
+        }
 
-        LoadBalanceStrategy strategy;
-        if (context.getRequest().isGray()) {
-            strategy = new GrayLoadBalanceStrategy(); // 灰度负载均衡策略
-            // 如果请求是灰度的，再进行一遍过滤
-            instances = instances.stream().filter(instance -> instance.isEnabled() && instance.isGray()).toList();
-        } else {
-            strategy = selectLoadBalanceStrategy(JSONUtil.toBean(filterConfig.getConfig(), RouteDefinition.LoadBalanceFilterConfig.class));
+        if (context.getRequest().isGray() && subset.getGrayInstances().isEmpty()) {
+            // 灰度判断基于服务的全部实例，子集路由选出的子集中可能没有灰度实例，此时按稳定请求处理
+            context.getRequest().setGray(false);
         }
 
+        boolean gray = context.getRequest().isGray();
+        // 如果请求是灰度的，只使用启用的灰度实例
+        List<ServiceInstance> instances = gray ? subset.getGrayInstances() : subset.getInstances();
         if (instances.isEmpty()) {
             throw new NotFoundException(ResponseCode.SERVICE_INSTANCE_NOT_FOUND);
         }
-        ServiceInstance serviceInstance = strategy.selectInstance(context, instances);
+
+        ServiceInstance serviceInstance;
+        if (gray) {
+            serviceInstance = new GrayLoadBalanceStrategy().selectInstance(context, instances); // 灰度负载均衡策略
+        } else {
+            LoadBalanceStrategy strategy = selectLoadBalanceStrategy(FilterUtil.parseFilterConfig(filterConfig, RouteDefinition.LoadBalanceFilterConfig.class));
+            if (ZONE_AWARE_CONFIG != null) {
+                // 同机房优先，使用子集预先划分好的机房实例；灰度流量只在少量灰度实例间分配，不按机房拆分
+                serviceInstance = zoneAwareStrategyMap.computeIfAbsent(strategy.mark(), k -> new ZoneAwareLoadBalanceStrategy(strategy, ZONE_AWARE_CONFIG))
+                        .selectInstance(context, subset);
+            } else {
+                serviceInstance = strategy.selectInstance(context, instances);
+            }
+        }
         if (null == serviceInstance) {
             throw new NotFoundException(ResponseCode.SERVICE_INSTANCE_NOT_FOUND);
         }
@@ -83,4 +116,12 @@ public class LoadBalanceFilter implements Filter {
         // 使用策略管理器获取指定名称的负载均衡策略
         return LoadBalanceStrategyManager.getStrategy(loadBalanceFilterConfig.getStrategyName());
     }
+
+    private static ZoneAwareConfig zoneAwareConfig() {
+        ZoneAwareConfig config = ConfigLoader.getConfig().getZoneAware();
+        if (config == null || !config.isEnabled() || config.getZone() == null || config.getZone().isBlank()) {
+            return null;
+        }
+        return config;
+    }
 }
@@ -4,11 +4,16 @@ package filter.loadbalance.strategy;
 
 import algorithm.ConsistentHashing;
 import context.GatewayContext;
+import filter.affinity.AffinityKeyManager;
 import pojo.RouteDefinition;
 import pojo.ServiceInstance;
 import util.FilterUtil;
 
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import static constant.FilterConstant.LOAD_BALANCE_FILTER_NAME;
 import static constant.LoadBalanceConstant.CLIENT_IP_CONSISTENT_HASH_LOAD_BALANCE_STRATEGY;
@@ -16,10 +21,22 @@ import static constant.LoadBalanceConstant.CLIENT_IP_CONSISTENT_HASH_LOAD_BALANC
 
 /**
  * 客户端IP一致性哈希负载均衡策略
- *
+ * 根据亲和性key（默认客户端IP）的哈希值在哈希环上选择实例，实例上下线时只有少量key会被重新分配
+ * 候选实例列表来自预先计算好的实例子集，实例版本不变时是同一个对象，哈希环按候选列表对象缓存，
+ * 请求时只比较引用，不再提取实例id；列表对象变化但实例id不变时沿用原来的哈希环
  */
 public class ClientIpConsistentHashLoadBalanceStrategy implements LoadBalanceStrategy {
 
+    /**
+     * 每个服务最多缓存的哈希环个数，同机房优先、子集路由会让同一个服务使用多组实例
+     */
+    private static final int MAX_RINGS_PER_SERVICE = 16;
+
+    /**
+     * 每个服务的哈希环，最近创建的在前，整体替换
+     */
+    private final Map<String /* 服务名 */, Ring[]> ringMap = new ConcurrentHashMap<>();
+
     @Override
     public ServiceInstance selectInstance(GatewayContext context, List<ServiceInstance> instances) {
         // 获取负载均衡配置，提取虚拟节点数量
@@ -29,22 +46,14 @@ public class ClientIpConsistentHashLoadBalanceStrategy implements LoadBalanceStr
             virtualNodeNum = loadBalanceFilterConfig.getVirtualNodeNum();
         }
 
-        // 提取所有实例ID作为哈希环上的节点
-        List<String> nodes = instances.stream().map(ServiceInstance::getInstanceId).toList();
-        // 创建一致性哈希环
-        ConsistentHashing consistentHashing = new ConsistentHashing(nodes, virtualNodeNum);
-        // 根据客户端IP哈希值选择节点
-        String selectedNode = consistentHashing.getNode(String.valueOf(context.getRequest().getHost().hashCode()));
-
-        // 查找选中节点对应的服务实例
-        for (ServiceInstance instance : instances) {
-            if (instance.getInstanceId().equals(selectedNode)) {
-                return instance;
-            }
-        }
+        // 获取或重建一致性哈希环
+        Ring ring = getRing(context.getRequest().getServiceDefinition().getServiceName(), instances, virtualNodeNum);
+        // 根据亲和性key的哈希值选择节点
+        long hash = AffinityKeyManager.hash(context, loadBalanceFilterConfig == null ? null : loadBalanceFilterConfig.getAffinityKey());
+        ServiceInstance instance = ring.instanceMap.get(ring.consistentHashing.getNode(hash));
 
         // 如果没有找到匹配的实例（理论上不应该发生），返回第一个实例
-        return instances.get(0);
+        return instance == null ? instances.get(0) : instance;
     }
 
     @Override
@@ -52,4 +61,79 @@ public class ClientIpConsistentHashLoadBalanceStrategy implements LoadBalanceStr
         return CLIENT_IP_CONSISTENT_HASH_LOAD_BALANCE_STRATEGY;
     }
 
+    private Ring getRing(String serviceName, List<ServiceInstance> instances, int virtualNodeNum) {
+        Ring[] rings = ringMap.get(serviceName);
+        if (rings != null) {
+            for (Ring ring : rings) {
+                if (ring.instances == instances && ring.virtualNodeNum == virtualNodeNum) {
+                    return ring;
+                }
+            }
+        }
+
+        // 候选列表对象第一次出现，实例id与已有的哈希环相同时只重建实例映射
+        Ring ring = null;
+        if (rings != null) {
+            for (Ring existing : rings) {
+                if (existing.virtualNodeNum == virtualNodeNum && existing.sameNodes(instances)) {
+                    ring = new Ring(instances, existing.consistentHashing, virtualNodeNum);
+                    break;
+                }
+            }
+        }
+        if (ring == null) {
+            List<String> nodes = new ArrayList<>(instances.size());
+            for (ServiceInstance instance : instances) {
+                nodes.add(instance.getInstanceId());
+            }
+            ring = new Ring(instances, new ConsistentHashing(nodes, virtualNodeNum), virtualNodeNum);
+        }
+
+        // 实例版本变化后旧的候选列表不会再用到，超过上限时丢弃最早的哈希环
+        int size = rings == null ? 0 : Math.min(rings.length, MAX_RINGS_PER_SERVICE - 1);
+        Ring[] updated = new Ring[size + 1];
+        updated[0] = ring;
+        if (size > 0) {
+            System.arraycopy(rings, 0, updated, 1, size);
+        }
+        ringMap.put(serviceName, updated);
+        return ring;
+    }
+
+    /**
+     * 缓存的哈希环和对应的候选实例
+     */
+    private static class Ring {
+
+        private final List<ServiceInstance> instances;
+
+        private final Map<String /* 实例id */, ServiceInstance> instanceMap;
+
+        private final ConsistentHashing consistentHashing;
+
+        private final int virtualNodeNum;
+
+        Ring(List<ServiceInstance> instances, ConsistentHashing consistentHashing, int virtualNodeNum) {
+            this.instances = instances;
+            this.instanceMap = new HashMap<>(instances.size() * 2);
+            for (ServiceInstance instance : instances) {
+                instanceMap.put(instance.getInstanceId(), instance);
+            }
+            this.consistentHashing = consistentHashing;
+            this.virtualNodeNum = virtualNodeNum;
+        }
+
+        boolean sameNodes(List<ServiceInstance> other) {
+            if (other.size() != instances.size()) {
+                return false;
+            }
+            for (int i = 0; i < other.size(); i++) {
+                if (!other.get(i).getInstanceId().equals(instances.get(i).getInstanceId())) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
 }
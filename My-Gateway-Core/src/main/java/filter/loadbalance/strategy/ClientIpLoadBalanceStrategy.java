@@ -1,23 +1,29 @@
 package filter.loadbalance.strategy;
 
 import context.GatewayContext;
+import filter.affinity.AffinityKeyManager;
+import pojo.RouteDefinition;
 import pojo.ServiceInstance;
+import util.FilterUtil;
 
 import java.util.List;
 
+import static constant.FilterConstant.LOAD_BALANCE_FILTER_NAME;
 import static constant.LoadBalanceConstant.CLIENT_IP_LOAD_BALANCE_STRATEGY;
 
 /**
  * 客户端IP负载均衡策略
- * 根据客户端IP的哈希值选择服务实例，确保来自同一IP的请求总是被路由到同一个服务实例。
+ * 根据亲和性key（默认客户端IP）的哈希值选择服务实例，确保同一个key的请求总是被路由到同一个服务实例。
  *
  */
 public class ClientIpLoadBalanceStrategy implements LoadBalanceStrategy{
 
     @Override
     public ServiceInstance selectInstance(GatewayContext context, List<ServiceInstance> instances) {
-        // 使用客户端IP的哈希值对实例列表大小取模，确定选择哪个实例
-        return instances.get(Math.abs(context.getRequest().getHost().hashCode()) % instances.size());
+        RouteDefinition.LoadBalanceFilterConfig loadBalanceFilterConfig = FilterUtil.findFilterConfigByClass(context.getRoute().getFilterConfigs(), LOAD_BALANCE_FILTER_NAME, RouteDefinition.LoadBalanceFilterConfig.class);
+        long hash = AffinityKeyManager.hash(context, loadBalanceFilterConfig == null ? null : loadBalanceFilterConfig.getAffinityKey());
+        // 使用亲和性key的哈希值对实例列表大小取模，确定选择哪个实例
+        return instances.get(AffinityKeyManager.bucket(hash, instances.size()));
     }
 
     @Override
@@ -25,4 +31,4 @@ public class ClientIpLoadBalanceStrategy implements LoadBalanceStrategy{
         return CLIENT_IP_LOAD_BALANCE_STRATEGY;
     }
 
-}
\ No newline at end of file
+}
@@ -1,16 +1,21 @@
 package filter.loadbalance.strategy;
 
 import context.GatewayContext;
+import filter.affinity.AffinityKeyManager;
+import pojo.RouteDefinition;
 import pojo.ServiceInstance;
+import util.FilterUtil;
 
 import java.util.List;
 
+import static constant.FilterConstant.GRAY_FILTER_NAME;
 import static constant.LoadBalanceConstant.GRAY_LOAD_BALANCE_STRATEGY;
 
 
 /**
  * 灰度发布负载均衡策略
  * 确保同一客户端的请求被路由到相同版本的服务实例
+ * 使用灰度过滤器配置的亲和性key（默认客户端IP），按灰度实例的流量比例选择实例
  */
 public class GrayLoadBalanceStrategy implements LoadBalanceStrategy {
 
@@ -19,9 +24,11 @@ public class GrayLoadBalanceStrategy implements LoadBalanceStrategy {
         int totalThreshold = (int) (instances.stream().mapToDouble(ServiceInstance::getThreshold).sum() * 100);
         if (totalThreshold <= 0) return null;
 
-        int randomThreshold = Math.abs(context.getRequest().getHost().hashCode()) % totalThreshold;
+        RouteDefinition.GrayFilterConfig grayFilterConfig = FilterUtil.findFilterConfigByClass(context.getRoute().getFilterConfigs(), GRAY_FILTER_NAME, RouteDefinition.GrayFilterConfig.class);
+        long hash = AffinityKeyManager.hash(context, grayFilterConfig == null ? null : grayFilterConfig.getAffinityKey());
+        int randomThreshold = AffinityKeyManager.bucket(hash, totalThreshold);
         for (ServiceInstance instance : instances) {
-            randomThreshold -= instance.getThreshold();
+            randomThreshold -= (int) (instance.getThreshold() * 100);
             if (randomThreshold < 0) return instance;
         }
         return null;
@@ -0,0 +1,70 @@
+package filter.loadbalance.strategy;
+
+import config.ZoneAwareConfig;
+import context.GatewayContext;
+import filter.subset.InstanceSubset;
+import pojo.ServiceInstance;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * 同机房优先负载均衡策略
+ * 包装任意负载均衡策略，按实例的机房标签把实例分成本机房和其他机房两组，再交给被包装的策略选择：
+ * 1. 本机房健康（启用）实例占本机房实例的比例不低于阈值时，只在本机房实例中选择
+ * 2. 低于阈值时，按 比例/阈值 的概率留在本机房，其余流量溢出到其他机房，本机房损失的容量越多溢出越多
+ * 3. 某一组没有健康实例时使用另一组，都没有时交给被包装的策略处理全部实例
+ * 实例子集的机房划分在第一次使用时计算并保存在子集中，每个请求只读取划分结果
+ */
+public class ZoneAwareLoadBalanceStrategy implements LoadBalanceStrategy {
+
+    private final LoadBalanceStrategy delegate;
+
+    private final String zone;
+
+    private final String zoneTag;
+
+    private final double localThreshold;
+
+    public ZoneAwareLoadBalanceStrategy(LoadBalanceStrategy delegate, ZoneAwareConfig config) {
+        this.delegate = delegate;
+        this.zone = config.getZone();
+        this.zoneTag = config.getZoneTag();
+        this.localThreshold = config.getLocalThreshold();
+    }
+
+    @Override
+    public ServiceInstance selectInstance(GatewayContext context, List<ServiceInstance> instances) {
+        return selectInstance(context, new InstanceSubset.ZoneSplit(instances, zoneTag, zone), instances);
+    }
+
+    /**
+     * 在实例子集中选择实例，使用子集预先划分好的本机房和其他机房实例，请求时不再遍历和分配列表
+     */
+    public ServiceInstance selectInstance(GatewayContext context, InstanceSubset subset) {
+        return selectInstance(context, subset.getZoneSplit(zoneTag, zone), subset.getInstances());
+    }
+
+    private ServiceInstance selectInstance(GatewayContext context, InstanceSubset.ZoneSplit split, List<ServiceInstance> instances) {
+        List<ServiceInstance> local = split.getLocalInstances();
+        List<ServiceInstance> remote = split.getRemoteInstances();
+        if (local.isEmpty()) {
+            return delegate.selectInstance(context, remote.isEmpty() ? instances : remote);
+        }
+        if (remote.isEmpty()) {
+            return delegate.selectInstance(context, local);
+        }
+
+        double healthyRatio = (double) local.size() / split.getLocalTotal();
+        if (healthyRatio >= localThreshold || ThreadLocalRandom.current().nextDouble() * localThreshold < healthyRatio) {
+            return delegate.selectInstance(context, local);
+        }
+        return delegate.selectInstance(context, remote);
+    }
+
+    @Override
+    public String mark() {
+        return delegate.mark();
+    }
+
+}
@@ -0,0 +1,85 @@
+package filter.mirror;
+
+import cn.hutool.json.JSONUtil;
+import com.alibaba.nacos.common.utils.StringUtils;
+import context.GatewayContext;
+import filter.Filter;
+import filter.subset.InstanceSubsetManager;
+import pojo.RouteDefinition;
+import pojo.ServiceInstance;
+import util.FilterUtil;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+
+import static constant.FilterConstant.MIRROR_FILTER_NAME;
+import static constant.FilterConstant.MIRROR_FILTER_ORDER;
+
+/**
+ * 流量镜像过滤器
+ * 按配置的比例将请求复制一份发往影子服务，用于用真实流量验证新版本服务
+ * 镜像请求发出即不再关心，影子服务的响应和异常都不会影响主请求
+ */
+public class MirrorFilter implements Filter {
+
+    /**
+     * 解析后的路由镜像配置，按配置内容缓存，避免每个请求都解析JSON
+     */
+    private final Map<String /* 配置json */, RouteDefinition.MirrorFilterConfig> configMap = new ConcurrentHashMap<>();
+
+    @Override
+    public void doPreFilter(GatewayContext context) {
+        RouteDefinition.FilterConfig filterConfig = FilterUtil.findFilterConfigByName(context.getRoute().getFilterConfigs(), MIRROR_FILTER_NAME);
+        if (filterConfig == null || !filterConfig.isEnable() || filterConfig.getConfig() == null) {
+            return;
+        }
+        RouteDefinition.MirrorFilterConfig config = configMap.computeIfAbsent(filterConfig.getConfig(),
+                k -> JSONUtil.toBean(k, RouteDefinition.MirrorFilterConfig.class));
+
+        if (config.getSampleRate() < 1 && ThreadLocalRandom.current().nextDouble() >= config.getSampleRate()) {
+            return;
+        }
+        String host = selectHost(config);
+        if (host == null) {
+            return;
+        }
+        TrafficMirror.getInstance().mirror(context.getRequest().getFullHttpRequest(), host);
+    }
+
+    @Override
+    public void doPostFilter(GatewayContext context) {
+
+    }
+
+    @Override
+    public String mark() {
+        return MIRROR_FILTER_NAME;
+    }
+
+    @Override
+    public int getOrder() {
+        return MIRROR_FILTER_ORDER;
+    }
+
+    /**
+     * 选择影子服务地址，优先使用配置的固定地址，否则从影子服务的可用实例中随机选择
+     */
+    private String selectHost(RouteDefinition.MirrorFilterConfig config) {
+        if (StringUtils.isNotBlank(config.getHost())) {
+            return config.getHost();
+        }
+        if (StringUtils.isBlank(config.getServiceName())) {
+            return null;
+        }
+        // 使用预先计算好的实例子集，服务实例版本不变时不需要再过滤
+        List<ServiceInstance> instances = InstanceSubsetManager.getInstance().getServiceSubset(config.getServiceName()).getEnabledInstances();
+        if (instances.isEmpty()) {
+            return null;
+        }
+        ServiceInstance instance = instances.get(ThreadLocalRandom.current().nextInt(instances.size()));
+        return instance.getIp() + ":" + instance.getPort();
+    }
+
+}
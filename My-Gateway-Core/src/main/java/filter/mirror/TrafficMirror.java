@@ -0,0 +1,148 @@
+package filter.mirror;
+
+import config.MirrorConfig;
+import http.HttpClient;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.handler.codec.http.FullHttpRequest;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpHeaders;
+import io.netty.util.ReferenceCountUtil;
+import loader.ConfigLoader;
+import lombok.extern.slf4j.Slf4j;
+import org.asynchttpclient.RequestBuilder;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import static constant.HttpConstant.HTTP_PREFIX_SEPARATOR;
+import static constant.MirrorConstant.MIRROR_HEADER;
+
+/**
+ * 流量镜像
+ * 镜像请求通过共享的HttpClient异步发送，响应直接丢弃，主请求不等待镜像结果
+ * 单块的请求体与主请求共享同一块内存，镜像请求持有一个引用计数，发送完成后释放
+ * 逐跳头和原始Host不转发给影子服务
+ * 同时在途的镜像请求数有上限，超过后直接丢弃，影子服务变慢不会拖累主链路
+ */
+@Slf4j
+public class TrafficMirror {
+
+    /*********   单例   *********/
+    private static final TrafficMirror INSTANCE = new TrafficMirror(ConfigLoader.getConfig().getMirror());
+
+    public static TrafficMirror getInstance() {
+        return INSTANCE;
+    }
+
+    private final int maxPending;
+
+    /**
+     * 在途的镜像请求数
+     */
+    private final AtomicInteger pending = new AtomicInteger();
+
+    /**
+     * 发出的镜像请求数
+     */
+    private final LongAdder mirrored = new LongAdder();
+
+    /**
+     * 因队列已满被丢弃的镜像请求数
+     */
+    private final LongAdder dropped = new LongAdder();
+
+    /**
+     * 网关使用{@link #getInstance()}获取单例，单独创建的实例有自己的在途计数，用于测试
+     */
+    public TrafficMirror(MirrorConfig config) {
+        this.maxPending = config.getMaxPending();
+    }
+
+    /**
+     * 将请求镜像到影子服务
+     *
+     * @param request 客户端的原始请求，不会被修改或释放
+     * @param host 影子服务地址 ip:port
+     * @return 是否发出了镜像请求，队列已满时返回false
+     */
+    public boolean mirror(FullHttpRequest request, String host) {
+        if (pending.incrementAndGet() > maxPending) {
+            pending.decrementAndGet();
+            dropped.increment();
+            return false;
+        }
+
+        ByteBuf body = null;
+        try {
+            RequestBuilder builder = new RequestBuilder(request.method().name(), true)
+                    .setUrl(HTTP_PREFIX_SEPARATOR + host + request.uri());
+            builder.setHeaders(endToEndHeaders(request.headers()));
+            if (request.content().isReadable()) {
+                // 单块请求体直接共享，不拷贝
+                // 聚合得到的CompositeByteBuf有多个分量，nioBuffer()会合并到新分配的堆内存，写socket时还要再拷贝一次
+                // 客户端的流式请求体与Netty 4.1不兼容，多分量时合并到池化的直接内存，发送完成后归还
+                if (request.content().nioBufferCount() == 1) {
+                    body = request.content().retainedDuplicate();
+                } else {
+                    body = PooledByteBufAllocator.DEFAULT.directBuffer(request.content().readableBytes());
+                    body.writeBytes(request.content(), request.content().readerIndex(), request.content().readableBytes());
+                }
+                builder.setBody(body.nioBuffer());
+            }
+
+            ByteBuf finalBody = body;
+            HttpClient.getInstance().executeRequest(builder.build()).whenComplete((response, throwable) -> {
+                ReferenceCountUtil.release(finalBody);
+                pending.decrementAndGet();
+                if (throwable != null && log.isDebugEnabled()) {
+                    log.debug("镜像请求失败 {}{}", host, request.uri(), throwable);
+                }
+            });
+            mirrored.increment();
+            return true;
+        } catch (Throwable t) {
+            ReferenceCountUtil.release(body);
+            pending.decrementAndGet();
+            log.warn("发送镜像请求失败 {}", host, t);
+            return false;
+        }
+    }
+
+    /**
+     * 去掉逐跳头和原始Host，Host由客户端按影子服务地址设置
+     */
+    private static HttpHeaders endToEndHeaders(HttpHeaders headers) {
+        HttpHeaders copy = headers.copy();
+        // Connection中列出的头同样是逐跳头
+        for (String value : copy.getAll(HttpHeaderNames.CONNECTION)) {
+            for (String name : value.split(",")) {
+                copy.remove(name.trim());
+            }
+        }
+        copy.remove(HttpHeaderNames.CONNECTION);
+        copy.remove(HttpHeaderNames.KEEP_ALIVE);
+        copy.remove(HttpHeaderNames.PROXY_CONNECTION);
+        copy.remove(HttpHeaderNames.TRANSFER_ENCODING);
+        copy.remove(HttpHeaderNames.TE);
+        copy.remove(HttpHeaderNames.TRAILER);
+        copy.remove(HttpHeaderNames.UPGRADE);
+        copy.remove(HttpHeaderNames.EXPECT);
+        copy.remove(HttpHeaderNames.HOST);
+        copy.set(MIRROR_HEADER, "true");
+        return copy;
+    }
+
+    public int getPending() {
+        return pending.get();
+    }
+
+    public long getMirrored() {
+        return mirrored.sum();
+    }
+
+    public long getDropped() {
+        return dropped.sum();
+    }
+
+}
@@ -0,0 +1,109 @@
+package filter.route;
+
+import context.GatewayContext;
+import enums.ResponseCode;
+import filter.Filter;
+import filter.coalesce.RequestCoalescer;
+import filter.gray.canary.CanaryController;
+import helper.ContextHelper;
+import helper.RequestHelper;
+import helper.ResponseHelper;
+import http.Http2Client;
+import http.HttpClient;
+import io.netty.util.ReferenceCountUtil;
+import lombok.extern.slf4j.Slf4j;
+import pojo.ServiceDefinition;
+import request.GatewayRequest;
+import response.GatewayResponse;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeoutException;
+
+import static constant.FilterConstant.ROUTE_FILTER_NAME;
+import static constant.FilterConstant.ROUTE_FILTER_ORDER;
+
+/**
+ * 路由过滤器
+ * 过滤器链的最后一环，负责将请求异步发送到下游服务
+ * 下游响应返回后执行后置过滤器，并将响应写回客户端
+ */
+@Slf4j
+public class RouteFilter implements Filter {
+
+    @Override
+    public void doPreFilter(GatewayContext context) {
+        CompletableFuture<GatewayResponse> future;
+        String coalesceKey = context.getCoalesceKey();
+        // 下游响应写回客户端前上下文不能被回收
+        context.retain();
+        try {
+            if (coalesceKey != null) {
+                // 相同的并发请求合并为一次下游调用
+                future = RequestCoalescer.getInstance().execute(coalesceKey, () -> sendRequest(context));
+            } else {
+                future = sendRequest(context);
+            }
+        } catch (Throwable t) {
+            context.release();
+            throw t;
+        }
+        future.whenComplete((response, throwable) -> complete(context, response, throwable));
+    }
+
+    @Override
+    public void doPostFilter(GatewayContext context) {
+
+    }
+
+    @Override
+    public String mark() {
+        return ROUTE_FILTER_NAME;
+    }
+
+    @Override
+    public int getOrder() {
+        return ROUTE_FILTER_ORDER;
+    }
+
+    /**
+     * 向下游服务发送请求，服务声明了HTTP/2时走多路复用的HTTP/2客户端
+     */
+    private CompletableFuture<GatewayResponse> sendRequest(GatewayContext context) {
+        GatewayRequest request = context.getRequest();
+        ServiceDefinition serviceDefinition = request.getServiceDefinition();
+        if (serviceDefinition != null && serviceDefinition.isHttp2()) {
+            return Http2Client.getInstance().executeRequest(request.getModifyHost(), RequestHelper.buildHttp2Request(request));
+        }
+        return HttpClient.getInstance().executeRequest(RequestHelper.buildHttpClientRequest(request))
+                .thenApply(ResponseHelper::buildGatewayResponse);
+    }
+
+    /**
+     * 下游请求完成，执行后置过滤器并写回响应
+     */
+    private void complete(GatewayContext context, GatewayResponse response, Throwable throwable) {
+        try {
+            if (throwable != null) {
+                Throwable cause = throwable instanceof CompletionException && throwable.getCause() != null
+                        ? throwable.getCause() : throwable;
+                log.error("请求下游服务失败 {}", context.getRequest().getFinalUrl(), cause);
+                context.setThrowable(cause);
+                response = ResponseHelper.buildGatewayResponse(cause instanceof TimeoutException
+                        ? ResponseCode.REQUEST_TIMEOUT : ResponseCode.HTTP_RESPONSE_ERROR);
+            }
+            context.setResponse(response);
+            CanaryController.getInstance().record(context);
+            try {
+                context.getFilterChain().doPostFilter(context);
+            } catch (Throwable t) {
+                log.error("执行后置过滤器发生异常", t);
+            }
+            ContextHelper.writeBackResponse(context);
+        } finally {
+            ReferenceCountUtil.release(context.getRequest().getFullHttpRequest());
+            context.release();
+        }
+    }
+
+}
@@ -0,0 +1,127 @@
+package filter.subset;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+import pojo.ServiceInstance;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 预先计算好的一组服务实例
+ * 同时保存全部实例、其中启用的实例和启用的灰度实例，负载均衡时按请求是否灰度直接取用，不需要再过滤
+ */
+@Getter
+public class InstanceSubset {
+
+    public static final InstanceSubset EMPTY = new InstanceSubset("", Collections.emptyList());
+
+    /**
+     * 子集标识，由标签名和标签取值组成，同一个服务中相同标识的子集包含相同条件的实例
+     */
+    private final String id;
+
+    /**
+     * 子集中的全部实例
+     */
+    private final List<ServiceInstance> instances;
+
+    /**
+     * 子集中启用的实例
+     */
+    private final List<ServiceInstance> enabledInstances;
+
+    /**
+     * 子集中启用的灰度实例
+     */
+    private final List<ServiceInstance> grayInstances;
+
+    /**
+     * 按机房划分的实例，第一次使用时计算，实例版本变化后子集整体重建
+     */
+    @Getter(AccessLevel.NONE)
+    private volatile ZoneSplit zoneSplit;
+
+    public InstanceSubset(String id, Collection<ServiceInstance> instances) {
+        this.id = id;
+        List<ServiceInstance> enabledInstances = new ArrayList<>();
+        List<ServiceInstance> grayInstances = new ArrayList<>();
+        for (ServiceInstance instance : instances) {
+            if (instance.isEnabled()) {
+                enabledInstances.add(instance);
+                if (instance.isGray()) {
+                    grayInstances.add(instance);
+                }
+            }
+        }
+        this.instances = List.copyOf(instances);
+        this.enabledInstances = List.copyOf(enabledInstances);
+        this.grayInstances = List.copyOf(grayInstances);
+    }
+
+    /**
+     * 获取子集按机房划分的实例
+     *
+     * @param zoneTag 机房标签名
+     * @param zone 网关所在机房
+     */
+    public ZoneSplit getZoneSplit(String zoneTag, String zone) {
+        ZoneSplit split = zoneSplit;
+        if (split == null || !split.zoneTag.equals(zoneTag) || !split.zone.equals(zone)) {
+            split = new ZoneSplit(instances, zoneTag, zone);
+            zoneSplit = split;
+        }
+        return split;
+    }
+
+    /**
+     * 一组实例按机房标签划分的结果
+     */
+    @Getter
+    public static class ZoneSplit {
+
+        @Getter(AccessLevel.NONE)
+        private final String zoneTag;
+
+        @Getter(AccessLevel.NONE)
+        private final String zone;
+
+        /**
+         * 本机房启用的实例
+         */
+        private final List<ServiceInstance> localInstances;
+
+        /**
+         * 其他机房启用的实例
+         */
+        private final List<ServiceInstance> remoteInstances;
+
+        /**
+         * 本机房的实例总数，包括未启用的实例
+         */
+        private final int localTotal;
+
+        public ZoneSplit(List<ServiceInstance> instances, String zoneTag, String zone) {
+            this.zoneTag = zoneTag;
+            this.zone = zone;
+            int localTotal = 0;
+            List<ServiceInstance> local = new ArrayList<>();
+            List<ServiceInstance> remote = new ArrayList<>();
+            for (ServiceInstance instance : instances) {
+                boolean isLocal = zone.equals(instance.getTags().get(zoneTag));
+                if (isLocal) {
+                    localTotal++;
+                }
+                if (instance.isEnabled()) {
+                    (isLocal ? local : remote).add(instance);
+                }
+            }
+            this.localInstances = List.copyOf(local);
+            this.remoteInstances = List.copyOf(remote);
+            this.localTotal = localTotal;
+        }
+    }
+
+}
@@ -0,0 +1,106 @@
+package filter.subset;
+
+import pojo.ServiceInstance;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 一个服务按一组标签预先划分好的实例子集
+ * 每个实例按标签取值的所有组合（每个标签取实例的值或通配）登记到对应的子集中，
+ * 请求只需要用自己的标签取值拼出key做一次查找，没有取值的标签使用通配
+ * 标签个数为k时每个实例登记2^k次，标签个数限制在MAX_TAGS以内
+ */
+public class InstanceSubsetIndex {
+
+    public static final int MAX_TAGS = 8;
+
+    /**
+     * 通配，匹配任意标签值（包括实例没有该标签）
+     */
+    private static final char WILDCARD = '\u0000';
+
+    private static final char SEPARATOR = '\u0001';
+
+    /**
+     * 构建时的服务实例版本
+     */
+    private final long version;
+
+    private final Map<String, InstanceSubset> subsetMap;
+
+    /**
+     * 服务的全部实例
+     */
+    private final InstanceSubset all;
+
+    public InstanceSubsetIndex(long version, String[] tags, Collection<ServiceInstance> instances) {
+        if (tags.length > MAX_TAGS) {
+            throw new IllegalArgumentException("too many subset tags: " + tags.length);
+        }
+        this.version = version;
+        this.all = instances.isEmpty() ? InstanceSubset.EMPTY : new InstanceSubset("", instances);
+        String tagsId = String.join(String.valueOf(SEPARATOR), tags) + SEPARATOR + SEPARATOR;
+
+        Map<String, List<ServiceInstance>> groups = new HashMap<>();
+        String[] values = new String[tags.length];
+        for (ServiceInstance instance : instances) {
+            for (int i = 0; i < tags.length; i++) {
+                values[i] = instance.getTags().get(tags[i]);
+            }
+            // 每一位表示对应的标签是否使用实例的取值，全为0的组合就是全部实例，不需要登记
+            for (int mask = 1; mask < 1 << tags.length; mask++) {
+                StringBuilder key = new StringBuilder();
+                boolean valid = true;
+                for (int i = 0; i < tags.length && valid; i++) {
+                    if ((mask & 1 << i) == 0) {
+                        key.append(WILDCARD);
+                    } else if (values[i] == null) {
+                        valid = false;
+                    } else {
+                        key.append(values[i]);
+                    }
+                    key.append(SEPARATOR);
+                }
+                if (valid) {
+                    groups.computeIfAbsent(key.toString(), k -> new ArrayList<>()).add(instance);
+                }
+            }
+        }
+        this.subsetMap = new HashMap<>(groups.size() * 2);
+        groups.forEach((key, group) -> subsetMap.put(key, new InstanceSubset(tagsId + key, group)));
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public InstanceSubset getAll() {
+        return all;
+    }
+
+    /**
+     * 查找请求标签取值对应的子集
+     *
+     * @param values 按标签顺序排列的请求取值，null表示不限
+     * @return 对应的实例子集，没有匹配的实例时返回null
+     */
+    public InstanceSubset find(String[] values) {
+        boolean any = false;
+        StringBuilder key = new StringBuilder();
+        for (String value : values) {
+            if (value == null) {
+                key.append(WILDCARD);
+            } else {
+                key.append(value);
+                any = true;
+            }
+            key.append(SEPARATOR);
+        }
+        return any ? subsetMap.get(key.toString()) : all;
+    }
+
+}
@@ -0,0 +1,62 @@
+package filter.subset;
+
+import manager.DynamicConfigManager;
+import pojo.ServiceInstance;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 实例子集管理
+ * 按（服务名, 标签组合）缓存实例子集索引，服务实例版本变化后的第一次访问时重建，其余请求只做map查找
+ */
+public class InstanceSubsetManager {
+
+    /*********   单例   *********/
+    private static final InstanceSubsetManager INSTANCE = new InstanceSubsetManager();
+
+    private InstanceSubsetManager() {}
+
+    public static InstanceSubsetManager getInstance() {
+        return INSTANCE;
+    }
+
+    private static final String[] NO_TAGS = new String[0];
+
+    private final Map<String /* 服务名 */, Map<String /* 标签组合 */, InstanceSubsetIndex>> indexMap = new ConcurrentHashMap<>();
+
+    /**
+     * 获取服务的全部实例
+     */
+    public InstanceSubset getServiceSubset(String serviceName) {
+        return getIndex(serviceName, NO_TAGS, "").getAll();
+    }
+
+    /**
+     * 获取服务按标签划分的实例子集索引
+     *
+     * @param serviceName 服务名
+     * @param tags 标签名
+     * @param tagsKey 标签组合的唯一标识，由调用方预先计算
+     */
+    public InstanceSubsetIndex getIndex(String serviceName, String[] tags, String tagsKey) {
+        DynamicConfigManager configManager = DynamicConfigManager.getInstance();
+        long version = configManager.getInstanceVersion(serviceName);
+        Map<String, InstanceSubsetIndex> serviceIndexMap = indexMap.computeIfAbsent(serviceName, k -> new ConcurrentHashMap<>());
+        InstanceSubsetIndex index = serviceIndexMap.get(tagsKey);
+        if (index != null && index.getVersion() == version) {
+            return index;
+        }
+        return serviceIndexMap.compute(tagsKey, (k, old) -> {
+            if (old != null && old.getVersion() == version) {
+                return old;
+            }
+            Map<String, ServiceInstance> instanceMap = configManager.getInstancesByServiceName(serviceName);
+            Collection<ServiceInstance> instances = instanceMap == null ? Collections.emptyList() : instanceMap.values();
+            return new InstanceSubsetIndex(version, tags, instances);
+        });
+    }
+
+}
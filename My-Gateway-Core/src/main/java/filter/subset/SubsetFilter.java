@@ -0,0 +1,117 @@
+package filter.subset;
+
+import cn.hutool.json.JSONUtil;
+import context.GatewayContext;
+import enums.ResponseCode;
+import exception.NotFoundException;
+import filter.Filter;
+import filter.affinity.AffinityKeyManager;
+import filter.affinity.extractor.AffinityKeyExtractor;
+import pojo.RouteDefinition;
+import util.FilterUtil;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static constant.FilterConstant.SUBSET_FILTER_NAME;
+import static constant.FilterConstant.SUBSET_FILTER_ORDER;
+
+/**
+ * 子集路由过滤器
+ * 按请求中的标签取值（如版本、机房、租户）选出标签相同的实例子集，负载均衡只在子集中选择实例
+ * 实例子集在服务实例变更后预先划分好，请求只做一次map查找
+ */
+public class SubsetFilter implements Filter {
+
+    /**
+     * 编译后的子集选择规则，按配置内容缓存，避免每个请求都解析JSON
+     */
+    private final Map<String /* 配置json */, Selector> selectorMap = new ConcurrentHashMap<>();
+
+    @Override
+    public void doPreFilter(GatewayContext context) {
+        RouteDefinition.FilterConfig filterConfig = FilterUtil.findFilterConfigByName(context.getRoute().getFilterConfigs(), SUBSET_FILTER_NAME);
+        if (filterConfig == null || !filterConfig.isEnable() || filterConfig.getConfig() == null) {
+            return;
+        }
+        Selector selector = selectorMap.computeIfAbsent(filterConfig.getConfig(),
+                k -> new Selector(JSONUtil.toBean(k, RouteDefinition.SubsetFilterConfig.class)));
+        if (selector.tags.length == 0) {
+            return;
+        }
+
+        String[] values = new String[selector.tags.length];
+        for (int i = 0; i < values.length; i++) {
+            String value = selector.extractors[i].extract(context, selector.names[i]);
+            values[i] = value == null || value.isEmpty() ? null : value;
+        }
+        String serviceName = context.getRequest().getServiceDefinition().getServiceName();
+        InstanceSubsetIndex index = InstanceSubsetManager.getInstance().getIndex(serviceName, selector.tags, selector.tagsKey);
+        InstanceSubset subset = index.find(values);
+        if (subset == null) {
+            if (!selector.fallback) {
+                throw new NotFoundException(ResponseCode.SERVICE_INSTANCE_NOT_FOUND);
+            }
+            subset = index.getAll();
+        }
+        context.setInstanceSubset(subset);
+    }
+
+    @Override
+    public void doPostFilter(GatewayContext context) {
+
+    }
+
+    @Override
+    public String mark() {
+        return SUBSET_FILTER_NAME;
+    }
+
+    @Override
+    public int getOrder() {
+        return SUBSET_FILTER_ORDER;
+    }
+
+    /**
+     * 子集选择规则
+     */
+    private static class Selector {
+
+        private final String[] tags;
+
+        /**
+         * 标签组合的唯一标识
+         */
+        private final String tagsKey;
+
+        private final AffinityKeyExtractor[] extractors;
+
+        private final String[] names;
+
+        private final boolean fallback;
+
+        Selector(RouteDefinition.SubsetFilterConfig config) {
+            List<RouteDefinition.SubsetTag> subsetTags = config.getTags() == null ? List.of() : config.getTags();
+            if (subsetTags.size() > InstanceSubsetIndex.MAX_TAGS) {
+                throw new IllegalArgumentException("too many subset tags: " + subsetTags.size());
+            }
+            this.tags = new String[subsetTags.size()];
+            this.extractors = new AffinityKeyExtractor[subsetTags.size()];
+            this.names = new String[subsetTags.size()];
+            for (int i = 0; i < subsetTags.size(); i++) {
+                RouteDefinition.SubsetTag subsetTag = subsetTags.get(i);
+                AffinityKeyExtractor extractor = AffinityKeyManager.getExtractor(subsetTag.getSource());
+                if (subsetTag.getTag() == null || extractor == null) {
+                    throw new IllegalArgumentException("invalid subset tag: " + subsetTag);
+                }
+                tags[i] = subsetTag.getTag();
+                extractors[i] = extractor;
+                names[i] = subsetTag.getName() == null ? subsetTag.getTag() : subsetTag.getName();
+            }
+            this.tagsKey = String.join("\u0001", tags);
+            this.fallback = config.isFallback();
+        }
+    }
+
+}
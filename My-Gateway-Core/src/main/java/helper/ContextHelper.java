@@ -7,6 +7,7 @@ import io.netty.channel.ChannelHandlerContext;
 import io.netty.handler.codec.http.*;
 import lombok.extern.slf4j.Slf4j;
 import manager.DynamicConfigManager;
+import netty.handler.HttpPipeliningHandler;
 import pojo.RouteDefinition;
 import request.GatewayRequest;
 
@@ -34,8 +35,11 @@ public class ContextHelper {
         GatewayRequest gatewayRequest = RequestHelper.buildGatewayRequest(
                 DynamicConfigManager.getInstance().getServiceByName(route.getServiceName()), request, ctx);
 
-        // 创建并返回网关上下文，包含通道上下文、网关请求、路由定义和是否保持连接的标志
-        return new GatewayContext(ctx, gatewayRequest, route, HttpUtil.isKeepAlive(request));
+        // 创建网关上下文，包含通道上下文、网关请求、路由定义和是否保持连接的标志
+        GatewayContext context = GatewayContext.newInstance(ctx, gatewayRequest, route, HttpUtil.isKeepAlive(request));
+        // 记录管道化请求的序号，响应按请求顺序写出
+        context.setSequence(HttpPipeliningHandler.sequence(ctx.channel()));
+        return context;
     }
 
     /**
@@ -50,12 +54,13 @@ public class ContextHelper {
 
         if (!context.isKeepAlive()) { // 短连接
             // 写回响应并关闭连接
-            context.getNettyCtx().writeAndFlush(httpResponse).addListener(ChannelFutureListener.CLOSE);
+            context.getNettyCtx().writeAndFlush(HttpPipeliningHandler.sequenced(httpResponse, context.getSequence()))
+                    .addListener(ChannelFutureListener.CLOSE);
         } else { // 长连接
             // 设置保持连接的头信息
             httpResponse.headers().set(HttpHeaderNames.CONNECTION, HttpHeaderValues.KEEP_ALIVE);
             // 写回响应但不关闭连接
-            context.getNettyCtx().writeAndFlush(httpResponse);
+            context.getNettyCtx().writeAndFlush(HttpPipeliningHandler.sequenced(httpResponse, context.getSequence()));
         }
     }
 }
@@ -1,20 +1,22 @@
 package helper;
 
-import com.alibaba.nacos.common.utils.StringUtils;
-
+import context.GatewayContext;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.handler.codec.http.*;
+import io.netty.handler.codec.http2.HttpConversionUtil;
 import org.asynchttpclient.Request;
 import pojo.ServiceDefinition;
 import request.GatewayRequest;
+import request.id.RequestIdManager;
+import request.ip.ClientIpResolver;
 
-import java.net.InetSocketAddress;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
 import java.util.Arrays;
-import java.util.List;
+import java.util.Collection;
+import java.util.TreeSet;
 
-import static constant.HttpConstant.HTTP_FORWARD_SEPARATOR;
+import static constant.RequestIdConstant.REQUEST_ID_HEADER;
 
 
 /**
@@ -35,16 +37,17 @@ public class RequestHelper {
      */
     public static GatewayRequest buildGatewayRequest(ServiceDefinition serviceDefinition, FullHttpRequest fullHttpRequest, ChannelHandlerContext ctx) {
         HttpHeaders headers = fullHttpRequest.headers(); // 服务端的http请求头
+        headers.remove(HttpConversionUtil.ExtensionHeaderNames.STREAM_ID.text()); // HTTP/2帧转换时加入的流id，不转发给下游
         String host = headers.get(HttpHeaderNames.HOST); // host
         HttpMethod method = fullHttpRequest.method(); // http请求类型
         String uri = fullHttpRequest.uri(); // uri
-        String clientIp = getClientIp(ctx, fullHttpRequest); // 客户端ip
-        String contentType = HttpUtil.getMimeType(fullHttpRequest) == null ? null :
-                HttpUtil.getMimeType(fullHttpRequest).toString(); // 请求的MIME类型
+        String clientIp = ClientIpResolver.getInstance().resolve(ctx.channel(), headers); // 客户端ip
+        CharSequence mimeType = HttpUtil.getMimeType(fullHttpRequest);
+        String contentType = mimeType == null ? null : mimeType.toString(); // 请求的MIME类型
         Charset charset = HttpUtil.getCharset(fullHttpRequest, StandardCharsets.UTF_8); // 字符集
 
-        // 创建并返回网关请求，包含服务定义、字符集、客户端IP、主机、URI、方法、内容类型、头信息和完整HTTP请求
-        return new GatewayRequest(serviceDefinition, charset, clientIp, host, uri, method,
+        // 创建并返回网关请求，包含请求ID、服务定义、字符集、客户端IP、主机、URI、方法、内容类型、头信息和完整HTTP请求
+        return GatewayRequest.newInstance(RequestIdManager.getInstance().generate(headers), serviceDefinition, charset, clientIp, host, uri, method,
                 contentType, headers, fullHttpRequest);
     }
 
@@ -61,32 +64,154 @@ public class RequestHelper {
     }
 
     /**
-     * 获取客户端IP
-     * 首先尝试从X-Forwarded-For头获取，如果没有则从通道远程地址获取
-     * 
-     * @param ctx Netty的通道处理上下文
-     * @param request Netty的完整HTTP请求
-     * @return 客户端IP地址
+     * 构建HTTP/2下游请求
+     * 请求体与客户端请求共享，请求头拷贝一份后改写Host并带上请求ID
+     *
+     * @param gatewayRequest 网关请求
+     * @return 发往下游的完整请求，由HTTP/2客户端负责释放
+     */
+    public static FullHttpRequest buildHttp2Request(GatewayRequest gatewayRequest) {
+        String rawQuery = gatewayRequest.getRawQuery();
+        String uri = rawQuery.isEmpty() ? gatewayRequest.getModifyPath() : gatewayRequest.getModifyPath() + "?" + rawQuery;
+        HttpHeaders headers = gatewayRequest.getHeaders().copy();
+        headers.set(HttpHeaderNames.HOST, gatewayRequest.getModifyHost());
+        headers.set(REQUEST_ID_HEADER, gatewayRequest.getId());
+        return new DefaultFullHttpRequest(HttpVersion.HTTP_1_1, gatewayRequest.getMethod(), uri,
+                gatewayRequest.getFullHttpRequest().content().retainedDuplicate(), headers, EmptyHttpHeaders.INSTANCE);
+    }
+
+    /**
+     * 构建请求key，用于请求合并和响应缓存
+     * 格式：方法 路由id 规范化的路径?排序后的未解码参数 #请求头=值 |灰度|实例子集
+     * 1. 路径合并重复的斜杠、解析.和..、去掉末尾的斜杠、解码非保留字符的转义，写法不同的相同路径得到相同的key；
+     *    保留字符的转义（如%2F）和参数保持原始形式，编码不同的请求（如 a=1%26b%3D2 和 a=1&b=2）不会得到相同的key
+     * 2. 每个组成部分中的分隔符都会被转义，组成部分的内容无法伪造出其他请求的key
+     * 3. 路由结果（是否灰度、子集路由选出的实例子集）不同的请求发往不同的实例，不能共享响应
+     *
+     * @param context 网关上下文，负载均衡之前的过滤器已经完成路由决策
+     * @param varyHeaders 参与key计算的请求头
+     * @return 请求key
+     */
+    public static String buildRequestKey(GatewayContext context, Collection<String> varyHeaders) {
+        GatewayRequest gatewayRequest = context.getRequest();
+        StringBuilder key = new StringBuilder(128)
+                .append(gatewayRequest.getMethod().name()).append(' ');
+        appendEscaped(key, context.getRoute().getId()).append(' ');
+        appendEscaped(key, normalizePath(gatewayRequest.getRawPath()));
+
+        // 参数排序，保证参数顺序不同的相同请求得到相同的key
+        String rawQuery = gatewayRequest.getRawQuery();
+        if (!rawQuery.isEmpty()) {
+            String[] parameters = rawQuery.split("&");
+            Arrays.sort(parameters);
+            char separator = '?';
+            for (String parameter : parameters) {
+                if (parameter.isEmpty()) continue;
+                key.append(separator);
+                appendEscaped(key, parameter);
+                separator = '&';
+            }
+        }
+
+        if (varyHeaders != null) {
+            for (String header : new TreeSet<>(varyHeaders)) {
+                String value = gatewayRequest.getHeaders().get(header);
+                if (value != null) {
+                    key.append('#');
+                    appendEscaped(key, header.toLowerCase()).append('=');
+                    appendEscaped(key, value);
+                }
+            }
+        }
+
+        key.append('|').append(gatewayRequest.isGray() ? "gray" : "stable").append('|');
+        if (context.getInstanceSubset() != null) {
+            appendEscaped(key, context.getInstanceSubset().getId());
+        }
+        return key.toString();
+    }
+
+    /**
+     * 规范化未解码的路径（RFC 3986 6.2.2）
+     * 1. 非保留字符（字母、数字、-._~）的转义解码为原字符，其他转义的十六进制统一为大写
+     * 2. 合并重复的斜杠，解析.和..，..不会越过根路径
+     * 3. 去掉末尾的斜杠，根路径保持为/
+     * 大多数路径不需要处理，直接返回原字符串
      */
-    private static String getClientIp(ChannelHandlerContext ctx, FullHttpRequest request) {
-        // 从X-Forwarded-For头获取客户端IP
-        String xForwardedValue = request.headers().get(HTTP_FORWARD_SEPARATOR);
-
-        String clientIp = null;
-        if (StringUtils.isNotEmpty(xForwardedValue)) {
-            // 解析X-Forwarded-For头，格式为：client, proxy1, proxy2, ...
-            List<String> values = Arrays.asList(xForwardedValue.split(", "));
-            if (values.size() >= 1 && StringUtils.isNotBlank(values.get(0))) {
-                // 取第一个值，即最原始的客户端IP
-                clientIp = values.get(0);
+    private static String normalizePath(String rawPath) {
+        if (rawPath.isEmpty()) {
+            return "/";
+        }
+        if (rawPath.indexOf('%') < 0 && !rawPath.contains("//") && !rawPath.contains("/.")
+                && (rawPath.length() == 1 || rawPath.charAt(rawPath.length() - 1) != '/')) {
+            return rawPath;
+        }
+
+        StringBuilder decoded = new StringBuilder(rawPath.length());
+        for (int i = 0; i < rawPath.length(); i++) {
+            char c = rawPath.charAt(i);
+            int high = c == '%' && i + 2 < rawPath.length() ? Character.digit(rawPath.charAt(i + 1), 16) : -1;
+            int low = high >= 0 ? Character.digit(rawPath.charAt(i + 2), 16) : -1;
+            if (low < 0) {
+                decoded.append(c);
+                continue;
+            }
+            char value = (char) (high << 4 | low);
+            if (isUnreserved(value)) {
+                decoded.append(value);
+            } else {
+                decoded.append('%')
+                        .append(Character.toUpperCase(Character.forDigit(high, 16)))
+                        .append(Character.toUpperCase(Character.forDigit(low, 16)));
+            }
+            i += 2;
+        }
+
+        // 按段解析，段的起止位置成对保存
+        int[] segments = new int[decoded.length() + 1];
+        int count = 0;
+        int start = 0;
+        while (start <= decoded.length()) {
+            int end = decoded.indexOf("/", start);
+            if (end < 0) end = decoded.length();
+            int length = end - start;
+            if (length == 2 && decoded.charAt(start) == '.' && decoded.charAt(start + 1) == '.') {
+                count = Math.max(0, count - 2);
+            } else if (length > 0 && !(length == 1 && decoded.charAt(start) == '.')) {
+                segments[count++] = start;
+                segments[count++] = end;
             }
+            start = end + 1;
         }
-        if (clientIp == null) {
-            // 如果X-Forwarded-For头不存在或解析失败，则从通道远程地址获取
-            InetSocketAddress inetSocketAddress = (InetSocketAddress) ctx.channel().remoteAddress();
-            clientIp = inetSocketAddress.getAddress().getHostAddress();
+        if (count == 0) {
+            return "/";
+        }
+        StringBuilder path = new StringBuilder(decoded.length());
+        for (int i = 0; i < count; i += 2) {
+            path.append('/').append(decoded, segments[i], segments[i + 1]);
+        }
+        return path.toString();
+    }
+
+    private static boolean isUnreserved(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9')
+                || c == '-' || c == '.' || c == '_' || c == '~';
+    }
+
+    /**
+     * 转义key的一个组成部分，%和key中使用的分隔符都编码为%XX，转义后的内容不会包含分隔符
+     */
+    private static StringBuilder appendEscaped(StringBuilder key, String value) {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '%', '&', '=', '#', '|', '?', ' ' -> key.append('%')
+                        .append(Character.toUpperCase(Character.forDigit(c >> 4, 16)))
+                        .append(Character.toUpperCase(Character.forDigit(c & 0xF, 16)));
+                default -> key.append(c);
+            }
         }
-        return clientIp;
+        return key;
     }
 
 }
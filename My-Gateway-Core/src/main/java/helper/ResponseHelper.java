@@ -6,10 +6,14 @@ import enums.ResponseCode;
 import io.netty.buffer.ByteBuf;
 import io.netty.buffer.Unpooled;
 import io.netty.handler.codec.http.*;
+import io.netty.util.AsciiString;
 import lombok.extern.slf4j.Slf4j;
 import org.asynchttpclient.Response;
 import response.GatewayResponse;
 
+import java.nio.charset.StandardCharsets;
+import java.util.EnumMap;
+import java.util.Map;
 import java.util.Objects;
 
 
@@ -21,6 +25,20 @@ import java.util.Objects;
 @Slf4j
 public class ResponseHelper {
 
+    private static final AsciiString APPLICATION_JSON_UTF8 = AsciiString.cached(HttpHeaderValues.APPLICATION_JSON + ";charset=utf-8");
+
+    /**
+     * 每个响应码预先编码好的响应体和响应头，类加载时构建
+     * 响应体是不可释放的直接内存，写出时Netty的release不会回收它，每次使用只需duplicate()一份独立的读写索引
+     */
+    private static final Map<ResponseCode, PrecomputedResponse> PRECOMPUTED_RESPONSES = new EnumMap<>(ResponseCode.class);
+
+    static {
+        for (ResponseCode code : ResponseCode.values()) {
+            PRECOMPUTED_RESPONSES.put(code, new PrecomputedResponse(code));
+        }
+    }
+
     /**
      * 构建HTTP响应
      * 将网关响应转换为Netty的HTTP响应
@@ -29,6 +47,17 @@ public class ResponseHelper {
      * @return Netty的完整HTTP响应
      */
     public static FullHttpResponse buildHttpResponse(GatewayResponse gatewayResponse) {
+        if (Objects.nonNull(gatewayResponse.getContentBuffer())) {
+            // 共享的响应缓冲区，直接作为响应体，避免再次拷贝
+            DefaultFullHttpResponse httpResponse = new DefaultFullHttpResponse(HttpVersion.HTTP_1_1,
+                    gatewayResponse.getHttpResponseStatus(), gatewayResponse.getContentBuffer());
+            httpResponse.headers().add(gatewayResponse.getResponseHeaders());
+            if (!HttpResponseStatus.NOT_MODIFIED.equals(httpResponse.status())) {
+                httpResponse.headers().set(HttpHeaderNames.CONTENT_LENGTH, httpResponse.content().readableBytes());
+            }
+            return httpResponse;
+        }
+
         // 创建响应内容
         ByteBuf content;
         if (Objects.nonNull(gatewayResponse.getResponse())) {
@@ -65,22 +94,16 @@ public class ResponseHelper {
 
     /**
      * 构建HTTP响应
-     * 根据响应码创建Netty的HTTP响应
-     * 
+     * 使用预先编码的响应体，响应头从预先构建的模板复制，不需要编码
+     *
      * @param responseCode 响应码枚举
-     * @return Netty的完整HTTP响应
+     * @param keepAlive 请求是否保持连接，决定Connection头
+     * @return Netty的完整HTTP响应，响应头属于这个响应，后续处理器可以修改
      */
-    public static FullHttpResponse buildHttpResponse(ResponseCode responseCode) {
-        // 使用响应码的状态和消息创建HTTP响应
-        DefaultFullHttpResponse httpResponse = new DefaultFullHttpResponse(HttpVersion.HTTP_1_1,
-                responseCode.getStatus(),
-                Unpooled.wrappedBuffer(responseCode.getMessage().getBytes()));
-        // 设置内容类型为JSON
-        httpResponse.headers().set(HttpHeaderNames.CONTENT_TYPE, HttpHeaderValues.APPLICATION_JSON + ";charset=utf-8");
-        // 设置内容长度
-        httpResponse.headers().set(HttpHeaderNames.CONTENT_LENGTH, httpResponse.content().readableBytes());
-
-        return httpResponse;
+    public static FullHttpResponse buildHttpResponse(ResponseCode responseCode, boolean keepAlive) {
+        PrecomputedResponse precomputed = PRECOMPUTED_RESPONSES.get(responseCode);
+        return new DefaultFullHttpResponse(HttpVersion.HTTP_1_1, responseCode.getStatus(), precomputed.body.duplicate(),
+                (keepAlive ? precomputed.keepAliveHeaders : precomputed.closeHeaders).copy(), EmptyHttpHeaders.INSTANCE);
     }
 
     /**
@@ -113,14 +136,16 @@ public class ResponseHelper {
      * @return 网关响应
      */
     public static GatewayResponse buildGatewayResponse(ResponseCode code) {
+        PrecomputedResponse precomputed = PRECOMPUTED_RESPONSES.get(code);
         // 创建网关响应
         GatewayResponse gatewayResponse = new GatewayResponse();
         // 添加内容类型头信息
-        gatewayResponse.addHeader(HttpHeaderNames.CONTENT_TYPE, HttpHeaderValues.APPLICATION_JSON + ";charset=utf-8");
+        gatewayResponse.addHeader(HttpHeaderNames.CONTENT_TYPE, APPLICATION_JSON_UTF8);
         // 设置HTTP状态码
         gatewayResponse.setHttpResponseStatus(code.getStatus());
-        // 设置响应内容为JSON格式的消息
-        gatewayResponse.setContent(JSONUtil.toJsonStr(code.getMessage()));
+        // 设置响应内容为JSON格式的消息，响应体使用预先编码的缓冲区
+        gatewayResponse.setContent(precomputed.json);
+        gatewayResponse.setContentBuffer(precomputed.jsonBody.duplicate());
 
         return gatewayResponse;
     }
@@ -144,4 +169,50 @@ public class ResponseHelper {
 
         return gatewayResponse;
     }
+
+    /**
+     * 响应码对应的预先编码的响应
+     */
+    private static class PrecomputedResponse {
+
+        /**
+         * 响应消息，UTF-8编码
+         */
+        private final ByteBuf body;
+
+        /**
+         * JSON格式的响应消息
+         */
+        private final String json;
+
+        /**
+         * JSON格式的响应消息，UTF-8编码
+         */
+        private final ByteBuf jsonBody;
+
+        /**
+         * 响应头模板，每个响应复制一份使用，模板本身不会被修改
+         * 这里不直接共享ReadOnlyHttpHeaders，当前netty版本的HTTP/2头转换遍历它时不会结束，且keep-alive等处理器会修改响应头
+         */
+        private final HttpHeaders keepAliveHeaders;
+
+        private final HttpHeaders closeHeaders;
+
+        PrecomputedResponse(ResponseCode code) {
+            this.body = directBuffer(code.getMessage().getBytes(StandardCharsets.UTF_8));
+            this.json = JSONUtil.toJsonStr(code.getMessage());
+            this.jsonBody = directBuffer(json.getBytes(StandardCharsets.UTF_8));
+            AsciiString contentLength = AsciiString.cached(String.valueOf(body.readableBytes()));
+            HttpHeaders headers = new DefaultHttpHeaders(false)
+                    .add(HttpHeaderNames.CONTENT_TYPE, APPLICATION_JSON_UTF8)
+                    .add(HttpHeaderNames.CONTENT_LENGTH, contentLength);
+            this.keepAliveHeaders = headers.copy().add(HttpHeaderNames.CONNECTION, HttpHeaderValues.KEEP_ALIVE);
+            this.closeHeaders = headers.copy().add(HttpHeaderNames.CONNECTION, HttpHeaderValues.CLOSE);
+        }
+
+        private static ByteBuf directBuffer(byte[] bytes) {
+            ByteBuf buffer = Unpooled.directBuffer(bytes.length).writeBytes(bytes);
+            return Unpooled.unreleasableBuffer(buffer.asReadOnly());
+        }
+    }
 }
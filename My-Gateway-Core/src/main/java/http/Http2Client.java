@@ -0,0 +1,461 @@
+package http;
+
+import config.HttpClientConfig;
+import io.netty.bootstrap.Bootstrap;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.ChannelOption;
+import io.netty.channel.EventLoop;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.SimpleChannelInboundHandler;
+import io.netty.handler.codec.http.FullHttpRequest;
+import io.netty.handler.codec.http.FullHttpResponse;
+import io.netty.handler.codec.http.HttpObjectAggregator;
+import io.netty.handler.codec.http2.Http2FrameCodec;
+import io.netty.handler.codec.http2.Http2FrameCodecBuilder;
+import io.netty.handler.codec.http2.Http2MultiplexHandler;
+import io.netty.handler.codec.http2.Http2Settings;
+import io.netty.handler.codec.http2.Http2SettingsFrame;
+import io.netty.handler.codec.http2.Http2StreamChannel;
+import io.netty.handler.codec.http2.Http2StreamChannelBootstrap;
+import io.netty.handler.codec.http2.Http2StreamFrameToHttpObjectCodec;
+import io.netty.handler.codec.http2.HttpConversionUtil;
+import io.netty.util.ReferenceCountUtil;
+import io.netty.util.concurrent.Promise;
+import io.netty.util.concurrent.ScheduledFuture;
+import lombok.extern.slf4j.Slf4j;
+import netty.Transport;
+import response.GatewayResponse;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static io.netty.handler.codec.http2.Http2CodecUtil.SMALLEST_MAX_CONCURRENT_STREAMS;
+
+/**
+ * HTTP/2下游客户端
+ * 每个服务实例只维护少量h2c连接，请求作为流在连接上多路复用，减少连接数和建连开销
+ * 分配请求时选择在途流最少且未达到对端SETTINGS_MAX_CONCURRENT_STREAMS的连接，
+ * 常驻连接都用满时才新建连接；连接收到GOAWAY、被关闭或到达最长使用时间后不再分配新请求，
+ * 之后的请求自然落到其他连接或新连接上，实现连接的再平衡
+ * 实例下线后不再有请求，连接池的连接全部关闭或空闲超过httpPooledConnectionIdleTimeout时整个连接池被移除
+ */
+@Slf4j
+public class Http2Client {
+
+    private Http2Client() {
+
+    }
+
+    private final static Http2Client INSTANCE = new Http2Client();
+
+    public static Http2Client getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * 每个实例地址对应的连接池
+     */
+    private final Map<String /* ip:port */, ConnectionPool> poolMap = new ConcurrentHashMap<>();
+
+    private EventLoopGroup eventLoopGroup;
+
+    private HttpClientConfig config;
+
+    private int maxContentLength;
+
+    /**
+     * 定时移除空闲连接池的任务
+     */
+    private ScheduledFuture<?> evictTask;
+
+    /**
+     * 初始化方法
+     * @param eventLoopGroup 与HTTP/1.1客户端共用的事件循环组
+     * @param config HTTP客户端配置
+     * @param maxContentLength 响应体最大长度
+     */
+    public synchronized void initialized(EventLoopGroup eventLoopGroup, HttpClientConfig config, int maxContentLength) {
+        this.eventLoopGroup = eventLoopGroup;
+        this.config = config;
+        this.maxContentLength = maxContentLength;
+        if (evictTask != null) {
+            evictTask.cancel(false);
+        }
+        long idleTimeout = Math.max(config.getHttpPooledConnectionIdleTimeout(), 1000);
+        evictTask = eventLoopGroup.next().scheduleWithFixedDelay(this::evictIdlePools, idleTimeout, idleTimeout, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 执行HTTP请求
+     * @param host 下游实例地址 ip:port
+     * @param request 发往下游的请求，无论成功与否都会被释放
+     * @return 下游响应的异步结果，响应体保存在contentBuffer中
+     */
+    public CompletableFuture<GatewayResponse> executeRequest(String host, FullHttpRequest request) {
+        CompletableFuture<GatewayResponse> future = new CompletableFuture<>();
+        Connection acquired;
+        try {
+            do {
+                // 连接池可能刚被移除，此时重新创建
+                acquired = poolMap.computeIfAbsent(host, ConnectionPool::new).acquire();
+            } while (acquired == null);
+        } catch (Throwable t) {
+            ReferenceCountUtil.release(request);
+            future.completeExceptionally(t);
+            return future;
+        }
+        Connection connection = acquired;
+        connection.readyFuture.addListener(f -> {
+            if (!f.isSuccess()) {
+                ReferenceCountUtil.release(request);
+                future.completeExceptionally(f.cause());
+                connection.releaseStream();
+                return;
+            }
+            openStream(connection, request, future);
+        });
+        return future;
+    }
+
+    /**
+     * 关闭所有连接
+     */
+    public synchronized void shutdown() {
+        if (evictTask != null) {
+            evictTask.cancel(false);
+            evictTask = null;
+        }
+        for (ConnectionPool pool : poolMap.values()) {
+            pool.close();
+        }
+        poolMap.clear();
+    }
+
+    /**
+     * 当前有连接池的实例数
+     */
+    public int getPoolCount() {
+        return poolMap.size();
+    }
+
+    /**
+     * 移除空闲超时的连接池，已经下线的实例不再有请求，它们的连接池在这里被关闭
+     */
+    private void evictIdlePools() {
+        long idleBefore = System.currentTimeMillis() - config.getHttpPooledConnectionIdleTimeout();
+        for (ConnectionPool pool : poolMap.values()) {
+            if (pool.closeIfIdle(idleBefore)) {
+                poolMap.remove(pool.host, pool);
+            }
+        }
+    }
+
+    private void openStream(Connection connection, FullHttpRequest request, CompletableFuture<GatewayResponse> future) {
+        Http2StreamChannelBootstrap bootstrap = new Http2StreamChannelBootstrap(connection.channel)
+                .handler(new ChannelInitializer<Http2StreamChannel>() {
+                    @Override
+                    protected void initChannel(Http2StreamChannel ch) {
+                        ch.pipeline().addLast(
+                                new Http2StreamFrameToHttpObjectCodec(false),
+                                new HttpObjectAggregator(maxContentLength),
+                                new ResponseHandler(future));
+                    }
+                });
+        bootstrap.open().addListener(f -> {
+            if (!f.isSuccess()) {
+                ReferenceCountUtil.release(request);
+                future.completeExceptionally(f.cause());
+                connection.releaseStream();
+                return;
+            }
+            Http2StreamChannel stream = (Http2StreamChannel) f.getNow();
+            ScheduledFuture<?> timeout = stream.eventLoop().schedule(() -> {
+                if (future.completeExceptionally(new TimeoutException("http2 request timeout " + config.getHttpRequestTimeout() + "ms"))) {
+                    stream.close();
+                }
+            }, config.getHttpRequestTimeout(), TimeUnit.MILLISECONDS);
+            stream.closeFuture().addListener(cf -> {
+                timeout.cancel(false);
+                connection.releaseStream();
+                future.completeExceptionally(new IOException("http2 stream closed before response"));
+            });
+            stream.writeAndFlush(request).addListener(wf -> {
+                if (!wf.isSuccess()) {
+                    future.completeExceptionally(wf.cause());
+                    stream.close();
+                }
+            });
+        });
+    }
+
+    /**
+     * 单个流的响应处理器
+     */
+    private static class ResponseHandler extends SimpleChannelInboundHandler<FullHttpResponse> {
+
+        private final CompletableFuture<GatewayResponse> future;
+
+        private ResponseHandler(CompletableFuture<GatewayResponse> future) {
+            super(false);
+            this.future = future;
+        }
+
+        @Override
+        protected void channelRead0(ChannelHandlerContext ctx, FullHttpResponse msg) {
+            // 帧转换时加入的流id只在这个连接上有意义，不能传给客户端
+            msg.headers().remove(HttpConversionUtil.ExtensionHeaderNames.STREAM_ID.text());
+            GatewayResponse response = new GatewayResponse();
+            response.setHttpResponseStatus(msg.status());
+            response.setResponseHeaders(msg.headers());
+            response.setContentBuffer(msg.content());
+            if (!future.complete(response)) {
+                msg.release(); // 已经超时
+            }
+            ctx.close();
+        }
+
+        @Override
+        public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) {
+            future.completeExceptionally(cause);
+            ctx.close();
+        }
+    }
+
+    /**
+     * 单个实例的连接池
+     */
+    private class ConnectionPool {
+
+        private final String host;
+
+        private final List<Connection> connections = new ArrayList<>();
+
+        /**
+         * 最近一次分配连接的时间
+         */
+        private long lastAcquireTime = System.currentTimeMillis();
+
+        /**
+         * 连接池已从poolMap中移除，不再分配连接
+         */
+        private boolean closed;
+
+        private ConnectionPool(String host) {
+            this.host = host;
+        }
+
+        /**
+         * 分配一个连接，返回前已占用一个流
+         *
+         * @return 分配的连接，连接池已关闭时返回null
+         */
+        private synchronized Connection acquire() {
+            if (closed) {
+                return null;
+            }
+            long now = System.currentTimeMillis();
+            lastAcquireTime = now;
+            Connection best = null;
+            int usable = 0;
+            for (int i = connections.size() - 1; i >= 0; i--) {
+                Connection connection = connections.get(i);
+                if (!connection.isUsable(now)) {
+                    connections.remove(i);
+                    connection.retire();
+                    continue;
+                }
+                usable++;
+                if (connection.hasCapacity() && (best == null || connection.streams.get() < best.streams.get())) {
+                    best = connection;
+                }
+            }
+            // 常驻连接未建满时，空闲连接优先，否则新建连接分担流量
+            if (best == null || (best.streams.get() > 0 && usable < config.getHttp2ConnectionsPerInstance())) {
+                if (usable < config.getHttp2MaxConnectionsPerInstance()) {
+                    best = connect(now);
+                    connections.add(best);
+                } else if (best == null) {
+                    throw new IllegalStateException("http2 connections to " + host + " are saturated");
+                }
+            }
+            best.streams.incrementAndGet();
+            return best;
+        }
+
+        private Connection connect(long now) {
+            String[] address = host.split(":");
+            EventLoop eventLoop = eventLoopGroup.next();
+            Promise<Void> readyFuture = eventLoop.newPromise();
+            Bootstrap bootstrap = new Bootstrap()
+                    .group(eventLoop)
+                    .channel(Transport.of(eventLoopGroup).socketChannelClass())
+                    .option(ChannelOption.TCP_NODELAY, true)
+                    .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, config.getHttpConnectTimeout());
+            Http2FrameCodec frameCodec = Http2FrameCodecBuilder.forClient()
+                    .initialSettings(Http2Settings.defaultSettings())
+                    .build();
+            SettingsHandler settingsHandler = new SettingsHandler(readyFuture);
+            bootstrap.handler(new ChannelInitializer<>() {
+                @Override
+                protected void initChannel(Channel ch) {
+                    ch.pipeline().addLast(frameCodec, new Http2MultiplexHandler(new SimpleChannelInboundHandler<>() {
+                        @Override
+                        protected void channelRead0(ChannelHandlerContext ctx, Object msg) {
+                            // 不接受服务端推送
+                        }
+                    }), settingsHandler);
+                }
+            });
+            ChannelFuture connectFuture = bootstrap.connect(address[0], Integer.parseInt(address[1]));
+            connectFuture.addListener(f -> {
+                if (!f.isSuccess()) readyFuture.tryFailure(f.cause());
+            });
+            Connection connection = new Connection(connectFuture.channel(), readyFuture, frameCodec, now + config.getHttp2ConnectionMaxAge());
+            connectFuture.channel().closeFuture().addListener(f -> {
+                readyFuture.tryFailure(new IOException("http2 connection to " + host + " closed"));
+                remove(connection);
+            });
+            return connection;
+        }
+
+        /**
+         * 连接关闭后移出连接池，最后一个连接关闭时移除整个连接池
+         */
+        private synchronized void remove(Connection connection) {
+            connections.remove(connection);
+            if (connections.isEmpty() && !closed) {
+                closed = true;
+                poolMap.remove(host, this);
+            }
+        }
+
+        /**
+         * 空闲超时且没有在途流时关闭连接池
+         *
+         * @return 是否已关闭
+         */
+        private synchronized boolean closeIfIdle(long idleBefore) {
+            if (closed) {
+                return true;
+            }
+            if (lastAcquireTime >= idleBefore) {
+                return false;
+            }
+            for (Connection connection : connections) {
+                if (connection.streams.get() > 0) {
+                    return false;
+                }
+            }
+            close();
+            return true;
+        }
+
+        private synchronized void close() {
+            closed = true;
+            // 在连接的EventLoop上关闭时会同步回调remove，先复制再关闭
+            List<Connection> closing = new ArrayList<>(connections);
+            connections.clear();
+            for (Connection connection : closing) {
+                connection.channel.close();
+            }
+        }
+    }
+
+    /**
+     * 收到对端的SETTINGS后连接才可用，此时连接前言已发送，并且知道了对端允许的最大并发流数
+     */
+    private static class SettingsHandler extends ChannelInboundHandlerAdapter {
+
+        private final Promise<Void> readyFuture;
+
+        private SettingsHandler(Promise<Void> readyFuture) {
+            this.readyFuture = readyFuture;
+        }
+
+        @Override
+        public void channelActive(ChannelHandlerContext ctx) {
+            ctx.fireChannelActive();
+            // Http2FrameCodec在连接建立时只写入连接前言和SETTINGS而不刷新，这里主动刷新，否则对端不会回复SETTINGS
+            ctx.flush();
+        }
+
+        @Override
+        public void channelRead(ChannelHandlerContext ctx, Object msg) {
+            if (msg instanceof Http2SettingsFrame) {
+                readyFuture.trySuccess(null);
+                return;
+            }
+            ReferenceCountUtil.release(msg);
+        }
+    }
+
+    /**
+     * 一个HTTP/2连接
+     */
+    private static class Connection {
+
+        private final Promise<Void> readyFuture;
+
+        private final Channel channel;
+
+        private final Http2FrameCodec frameCodec;
+
+        private final long expireAt;
+
+        /**
+         * 已分配在该连接上的流数，包括连接建立前就分配的请求
+         */
+        private final AtomicInteger streams = new AtomicInteger();
+
+        /**
+         * 是否已不再分配新请求，在途流结束后关闭连接
+         */
+        private volatile boolean retired;
+
+        private Connection(Channel channel, Promise<Void> readyFuture, Http2FrameCodec frameCodec, long expireAt) {
+            this.channel = channel;
+            this.readyFuture = readyFuture;
+            this.frameCodec = frameCodec;
+            this.expireAt = expireAt;
+        }
+
+        private boolean isUsable(long now) {
+            if (retired || now >= expireAt) return false;
+            if (readyFuture.isDone() && (!channel.isActive() || frameCodec.connection().goAwayReceived())) return false;
+            return true;
+        }
+
+        /**
+         * 是否还能在该连接上创建新的流，上限为对端SETTINGS_MAX_CONCURRENT_STREAMS
+         */
+        private boolean hasCapacity() {
+            if (!readyFuture.isDone()) return streams.get() < SMALLEST_MAX_CONCURRENT_STREAMS; // 收到对端设置前按协议建议的最小值
+            return streams.get() < frameCodec.connection().local().maxActiveStreams();
+        }
+
+        private void retire() {
+            retired = true;
+            if (streams.get() == 0) {
+                channel.close();
+            }
+        }
+
+        private void releaseStream() {
+            if (streams.decrementAndGet() == 0 && retired) {
+                channel.close();
+            }
+        }
+    }
+
+}
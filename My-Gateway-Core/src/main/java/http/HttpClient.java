@@ -1,6 +1,11 @@
 package http;
 
 import org.asynchttpclient.AsyncHttpClient;
+import org.asynchttpclient.Request;
+import org.asynchttpclient.Response;
+
+import java.util.concurrent.CompletableFuture;
+
 /**
  * HTTP客户端类
  * 封装了异步HTTP客户端的操作，提供HTTP请求的执行功能
@@ -35,5 +40,13 @@ public class HttpClient {
         this.asyncHttpClient = asyncHttpClient;
     }
 
+    /**
+     * 执行HTTP请求
+     * @param request 发往下游服务的请求
+     * @return 下游响应的异步结果
+     */
+    public CompletableFuture<Response> executeRequest(Request request) {
+        return asyncHttpClient.executeRequest(request).toCompletableFuture();
+    }
 
 }
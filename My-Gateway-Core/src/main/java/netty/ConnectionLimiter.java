@@ -0,0 +1,98 @@
+package netty;
+
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelOption;
+import lombok.extern.slf4j.Slf4j;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 连接数限制
+ * 在连接被accept后、pipeline初始化前检查全局连接数和单个IP的连接数，超过上限时直接复位连接，
+ * 不分配任何解码和聚合缓冲区
+ */
+@Slf4j
+public class ConnectionLimiter {
+
+    /**
+     * 全局最大连接数，0表示不限制
+     */
+    private final int maxConnections;
+
+    /**
+     * 单个IP最大连接数，0表示不限制
+     */
+    private final int maxConnectionsPerIp;
+
+    private final AtomicInteger connections = new AtomicInteger();
+
+    private final Map<InetAddress, Integer> connectionsPerIp = new ConcurrentHashMap<>();
+
+    /**
+     * 被拒绝的连接数
+     */
+    private final LongAdder rejected = new LongAdder();
+
+    public ConnectionLimiter(int maxConnections, int maxConnectionsPerIp) {
+        this.maxConnections = maxConnections;
+        this.maxConnectionsPerIp = maxConnectionsPerIp;
+    }
+
+    /**
+     * 新连接占用名额，连接关闭时自动归还
+     *
+     * @return 超过上限时返回false，连接已被关闭
+     */
+    public boolean tryAcquire(Channel channel) {
+        if (connections.incrementAndGet() > maxConnections && maxConnections > 0) {
+            connections.decrementAndGet();
+            reject(channel, "max connections");
+            return false;
+        }
+        InetAddress address = maxConnectionsPerIp > 0 ? addressOf(channel.remoteAddress()) : null;
+        if (address != null && connectionsPerIp.merge(address, 1, Integer::sum) > maxConnectionsPerIp) {
+            releaseAddress(address);
+            connections.decrementAndGet();
+            reject(channel, "max connections per ip");
+            return false;
+        }
+        channel.closeFuture().addListener(f -> {
+            connections.decrementAndGet();
+            if (address != null) {
+                releaseAddress(address);
+            }
+        });
+        return true;
+    }
+
+    public int getConnections() {
+        return connections.get();
+    }
+
+    public long getRejected() {
+        return rejected.sum();
+    }
+
+    private void releaseAddress(InetAddress address) {
+        connectionsPerIp.computeIfPresent(address, (k, v) -> v == 1 ? null : v - 1);
+    }
+
+    private void reject(Channel channel, String reason) {
+        rejected.increment();
+        log.debug("connection rejected by {}: {}", reason, channel.remoteAddress());
+        // SO_LINGER为0时关闭连接直接发送RST，不占用TIME_WAIT
+        channel.config().setOption(ChannelOption.SO_LINGER, 0);
+        channel.close();
+    }
+
+    private static InetAddress addressOf(SocketAddress socketAddress) {
+        return socketAddress instanceof InetSocketAddress ? ((InetSocketAddress) socketAddress).getAddress() : null;
+    }
+
+}
@@ -0,0 +1,106 @@
+package netty;
+
+import io.netty.channel.Channel;
+import io.netty.channel.group.ChannelGroup;
+import io.netty.channel.group.DefaultChannelGroup;
+import io.netty.util.concurrent.GlobalEventExecutor;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 服务端排空状态
+ * 记录所有客户端连接和处理中的请求数，优雅下线时根据它判断排空进度，
+ * 同时作为排空过程的指标通过JMX对外暴露
+ */
+public class DrainState implements DrainStateMBean {
+
+    /**
+     * 所有客户端连接，连接关闭后自动移除
+     */
+    private final ChannelGroup connections = new DefaultChannelGroup("gateway-connections", GlobalEventExecutor.INSTANCE);
+
+    /**
+     * 已收到请求但还没写出响应的请求数
+     */
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    /**
+     * 截止时间到达时被强制关闭的连接数
+     */
+    private final AtomicInteger forceClosed = new AtomicInteger();
+
+    private volatile boolean draining;
+
+    private volatile long drainStartTime;
+
+    public void addConnection(Channel channel) {
+        connections.add(channel);
+    }
+
+    public void requestStarted() {
+        inFlight.incrementAndGet();
+    }
+
+    public void requestCompleted(int count) {
+        inFlight.addAndGet(-count);
+    }
+
+    /**
+     * 进入排空状态，之后的HTTP/1.1响应都带Connection: close
+     */
+    void startDrain() {
+        drainStartTime = System.currentTimeMillis();
+        draining = true;
+    }
+
+    /**
+     * 关闭剩余连接
+     *
+     * @param timeout 是否因为超过截止时间而关闭，此时仍有请求在处理，计入强制关闭的连接数
+     */
+    void closeAll(boolean timeout) {
+        if (timeout) {
+            forceClosed.addAndGet(connections.size());
+        }
+        connections.close().awaitUninterruptibly();
+    }
+
+    ChannelGroup getConnections() {
+        return connections;
+    }
+
+    @Override
+    public boolean isDraining() {
+        return draining;
+    }
+
+    @Override
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    @Override
+    public int getOpenConnections() {
+        return connections.size();
+    }
+
+    @Override
+    public int getForceClosed() {
+        return forceClosed.get();
+    }
+
+    /**
+     * 已排空的时间，单位毫秒，未开始排空时为0
+     */
+    @Override
+    public long getDrainElapsed() {
+        return draining ? System.currentTimeMillis() - drainStartTime : 0;
+    }
+
+    @Override
+    public String toString() {
+        return "DrainState{draining=" + draining + ", inFlight=" + getInFlight() + ", openConnections=" + getOpenConnections()
+                + ", forceClosed=" + getForceClosed() + ", elapsed=" + getDrainElapsed() + "ms}";
+    }
+
+}
@@ -0,0 +1,18 @@
+package netty;
+
+/**
+ * 排空进度的JMX接口，注册为gateway:type=DrainState,port=端口，可由JMX采集器读取
+ */
+public interface DrainStateMBean {
+
+    boolean isDraining();
+
+    int getInFlight();
+
+    int getOpenConnections();
+
+    int getForceClosed();
+
+    long getDrainElapsed();
+
+}
@@ -4,17 +4,15 @@ package netty;
 import config.Config;
 import config.HttpClientConfig;
 import config.LifeCycle;
+import filter.mirror.TrafficMirror;
+import http.Http2Client;
 import http.HttpClient;
 import io.netty.buffer.PooledByteBufAllocator;
 import io.netty.channel.EventLoopGroup;
-import io.netty.channel.epoll.EpollEventLoopGroup;
-import io.netty.channel.nio.NioEventLoopGroup;
-import io.netty.util.concurrent.DefaultThreadFactory;
 import lombok.extern.slf4j.Slf4j;
 import org.asynchttpclient.AsyncHttpClient;
 import org.asynchttpclient.DefaultAsyncHttpClient;
 import org.asynchttpclient.DefaultAsyncHttpClientConfig;
-import utils.SystemUtil;
 
 import java.io.IOException;
 import java.util.concurrent.atomic.AtomicBoolean;
@@ -37,7 +35,7 @@ public class NettyHttpClient implements LifeCycle {
     /**
      * Netty工作线程组
      * 处理HTTP客户端的I/O操作
-     * 根据系统环境选择使用EpollEventLoopGroup或NioEventLoopGroup
+     * 根据配置的传输实现选择使用EpollEventLoopGroup或NioEventLoopGroup
      */
     private final EventLoopGroup eventLoopGroupWorker;
 
@@ -63,20 +61,12 @@ public class NettyHttpClient implements LifeCycle {
      */
     public NettyHttpClient(Config config) {
         this.config = config;
-        // 根据系统环境选择使用Epoll还是NIO
-        if (SystemUtil.useEpoll()) {
-            // Linux系统下使用Epoll事件循环组
-            this.eventLoopGroupWorker = new EpollEventLoopGroup(
-                    config.getNettyConfig().getEventLoopGroupWorkerNum(), // 工作线程数
-                    new DefaultThreadFactory("epoll-http-client-worker-nio") // 线程工厂，指定线程名前缀
-            );
-        } else {
-            // 其他系统使用NIO事件循环组
-            this.eventLoopGroupWorker = new NioEventLoopGroup(
-                    config.getNettyConfig().getEventLoopGroupWorkerNum(), // 工作线程数
-                    new DefaultThreadFactory("default-http-client-worker-nio") // 线程工厂，指定线程名前缀
-            );
-        }
+        // 根据配置选择传输实现，与服务端相同
+        Transport transport = Transport.resolve(config.getNettyConfig().getTransport());
+        this.eventLoopGroupWorker = transport.newEventLoopGroup(
+                config.getNettyConfig().getEventLoopGroupWorkerNum(), // 工作线程数
+                "http-client-worker" // 线程名前缀
+        );
     }
 
     /**
@@ -109,6 +99,27 @@ public class NettyHttpClient implements LifeCycle {
         
         // 初始化全局HTTP客户端实例，使其他组件可以通过单例访问HTTP客户端
         HttpClient.getInstance().initialized(asyncHttpClient);
+
+        // 初始化HTTP/2客户端，与HTTP/1.1客户端共用事件循环组
+        Http2Client.getInstance().initialized(eventLoopGroupWorker, httpClientConfig, config.getNettyConfig().getMaxContentLength());
+    }
+
+    /**
+     * 优雅关闭HTTP客户端
+     * 服务端排空后转发请求都已完成，这里再等待发往影子服务的镜像请求完成，然后关闭连接池
+     */
+    @Override
+    public boolean drain(long deadline) {
+        try {
+            while (TrafficMirror.getInstance().getPending() > 0 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(50);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        boolean drained = TrafficMirror.getInstance().getPending() == 0;
+        shutdown();
+        return drained;
     }
 
     /**
@@ -130,6 +141,7 @@ public class NettyHttpClient implements LifeCycle {
                 log.error("NettyHttpClient shutdown error", e);
             }
         }
+        Http2Client.getInstance().shutdown();
     }
 
     /**
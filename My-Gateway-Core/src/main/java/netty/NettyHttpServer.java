@@ -3,27 +3,33 @@ package netty;
 
 import config.Config;
 import config.LifeCycle;
+import config.NettyConfig;
+import filter.cache.DiskResponseCache;
+import filter.gray.canary.CanaryController;
 import io.netty.bootstrap.ServerBootstrap;
 import io.netty.channel.Channel;
-import io.netty.channel.ChannelInitializer;
 import io.netty.channel.ChannelOption;
 import io.netty.channel.EventLoopGroup;
-import io.netty.channel.epoll.EpollEventLoopGroup;
-import io.netty.channel.epoll.EpollServerSocketChannel;
-import io.netty.channel.nio.NioEventLoopGroup;
-import io.netty.channel.socket.nio.NioServerSocketChannel;
-import io.netty.handler.codec.http.HttpObjectAggregator;
-import io.netty.handler.codec.http.HttpServerCodec;
-import io.netty.handler.codec.http.HttpServerExpectContinueHandler;
-import io.netty.util.concurrent.DefaultThreadFactory;
+import io.netty.channel.epoll.EpollChannelOption;
+import io.netty.handler.codec.http2.DefaultHttp2GoAwayFrame;
+import io.netty.handler.codec.http2.Http2Error;
+import io.netty.handler.codec.http2.Http2FrameCodec;
 import lombok.Data;
 import lombok.SneakyThrows;
 import lombok.extern.slf4j.Slf4j;
-import netty.handler.NettyHttpServerHandler;
+import netty.handler.DrainHandler;
 import netty.processor.NettyProcessor;
-import utils.SystemUtil;
+import netty.ssl.SslContextManager;
 
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.MalformedObjectNameException;
+import javax.management.ObjectName;
+import javax.net.ssl.SSLException;
+import java.lang.management.ManagementFactory;
 import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 
@@ -53,6 +59,21 @@ public class NettyHttpServer implements LifeCycle {
     // Worker事件循环组，负责处理I/O操作
     private EventLoopGroup eventLoopGroupWorker;
 
+    // 传输实现：epoll或NIO
+    private Transport transport;
+
+    // TLS上下文管理，未开启TLS时为空
+    private SslContextManager sslContextManager;
+
+    // 监听的Channel，SO_REUSEPORT模式下有多个
+    private final List<Channel> serverChannels = new ArrayList<>();
+
+    // 连接和处理中请求的统计，优雅下线时作为排空进度的指标
+    private final DrainState drainState = new DrainState();
+
+    // 全局和单个IP的连接数限制
+    private ConnectionLimiter connectionLimiter;
+
     public NettyHttpServer(Config config, NettyProcessor nettyProcessor) {
         this.config = config;
         this.nettyProcessor = nettyProcessor;
@@ -66,45 +87,61 @@ public class NettyHttpServer implements LifeCycle {
         // 创建服务器引导类
         this.serverBootstrap = new ServerBootstrap();
 
-        if (SystemUtil.useEpoll()) {
-            // 创建Epoll Boss事件循环组，负责接收连接
-            this.eventLoopGroupBoss = new EpollEventLoopGroup(
-                    config.getNettyConfig().getEventLoopGroupBossNum(), // 线程数
-                    new DefaultThreadFactory("epoll-netty-boss-nio") // 线程工厂，指定线程名前缀
-            );
-            // 创建Epoll Worker事件循环组，负责处理I/O操作
-            this.eventLoopGroupWorker = new EpollEventLoopGroup(
-                    config.getNettyConfig().getEventLoopGroupWorkerNum(), // 线程数
-                    new DefaultThreadFactory("epoll-netty-worker-nio") // 线程工厂，指定线程名前缀
-            );
-        } else {
-            // 创建NIO Boss事件循环组，负责接收连接
-            this.eventLoopGroupBoss = new NioEventLoopGroup(
+        // 选择传输实现，epoll不可用时回退到NIO
+        this.transport = Transport.resolve(config.getNettyConfig().getTransport());
+
+        // 创建Boss事件循环组，负责接收连接；epoll的SO_REUSEPORT模式下由worker线程各自accept，不需要boss线程
+        if (!isReusePort()) {
+            this.eventLoopGroupBoss = transport.newEventLoopGroup(
                     config.getNettyConfig().getEventLoopGroupBossNum(), // 线程数
-                    new DefaultThreadFactory("default-netty-boss-nio") // 线程工厂，指定线程名前缀
-            );
-            // 创建NIO Worker事件循环组，负责处理I/O操作
-            this.eventLoopGroupWorker = new NioEventLoopGroup(
-                    config.getNettyConfig().getEventLoopGroupWorkerNum(), // 线程数
-                    new DefaultThreadFactory("default-netty-worker-nio") // 线程工厂，指定线程名前缀
+                    "netty-boss" // 线程名前缀
             );
         }
+        // 创建Worker事件循环组，负责处理I/O操作
+        this.eventLoopGroupWorker = transport.newEventLoopGroup(
+                config.getNettyConfig().getEventLoopGroupWorkerNum(), // 线程数
+                "netty-worker" // 线程名前缀
+        );
+        log.info("gateway server transport: {}", transport.getName());
+    }
+
+    private boolean isReusePort() {
+        return transport == Transport.EPOLL && config.getNettyConfig().isReusePort();
     }
 
     /**
      * 启动Netty服务器
      * @SneakyThrows 自动处理InterruptedException异常
      */
-    @SneakyThrows(InterruptedException.class)
+    @SneakyThrows({InterruptedException.class, SSLException.class})
     @Override
     public void start() {
         // 如果服务器已经启动，则直接返回
         if (!start.compareAndSet(false, true)) return;
 
+        // 开启TLS时加载证书
+        if (config.getTls().isEnabled()) {
+            sslContextManager = new SslContextManager(config.getTls(), config.getNettyConfig().isHttp2Enabled());
+            sslContextManager.start();
+        }
+
+        // 开启磁盘缓存时后台加载索引
+        if (config.getResponseCache().isDiskEnabled()) {
+            DiskResponseCache.getInstance().start();
+        }
+
+        // 排空进度通过JMX暴露
+        registerDrainStateMBean();
+
+        connectionLimiter = new ConnectionLimiter(config.getNettyConfig().getMaxConnections(),
+                config.getNettyConfig().getMaxConnectionsPerIp());
+
+        boolean reusePort = isReusePort();
+
         // 配置服务器参数
         serverBootstrap
-                .group(eventLoopGroupBoss, eventLoopGroupWorker)
-                .channel(SystemUtil.useEpoll() ? EpollServerSocketChannel.class : NioServerSocketChannel.class)
+                .group(reusePort ? eventLoopGroupWorker : eventLoopGroupBoss, eventLoopGroupWorker)
+                .channel(transport.serverChannelClass())
                 .option(ChannelOption.SO_BACKLOG, 1024)            // TCP连接的最大队列长度
                 .option(ChannelOption.SO_REUSEADDR, true)          // 允许端口重用
                 .option(ChannelOption.SO_KEEPALIVE, true)          // 保持连接检测
@@ -112,23 +149,107 @@ public class NettyHttpServer implements LifeCycle {
                 .childOption(ChannelOption.SO_SNDBUF, 65535)       // 设置发送缓冲区大小
                 .childOption(ChannelOption.SO_RCVBUF, 65535)       // 设置接收缓冲区大小
                 .localAddress(new InetSocketAddress(config.getPort())) // 绑定监听端口
-                .childHandler(new ChannelInitializer<>() {
-                    @Override
-                    protected void initChannel(Channel ch) throws Exception {
-                        ch.pipeline().addLast(
-                                new HttpServerCodec(), // 处理HTTP请求的编解码器
-                                new HttpObjectAggregator(config.getNettyConfig().getMaxContentLength()), // 聚合HTTP请求
-                                new HttpServerExpectContinueHandler(), // 处理HTTP 100 Continue请求
-                                new NettyHttpServerHandler(nettyProcessor) // 自定义的处理器
-                        );
-                    }
-                });
+                .childHandler(new NettyHttpServerInitializer(config.getNettyConfig(), nettyProcessor, sslContextManager, drainState,
+                        connectionLimiter)); // HTTP/1.1与HTTP/2
+
+        if (transport == Transport.EPOLL) {
+            configureEpollOptions();
+        }
+
+        if (reusePort) {
+            // 每个worker线程绑定一个监听socket，内核按四元组哈希把新连接分给不同的accept队列
+            int acceptors = config.getNettyConfig().getEventLoopGroupWorkerNum();
+            for (int i = 0; i < acceptors; i++) {
+                serverChannels.add(serverBootstrap.bind().sync().channel());
+            }
+            log.info("gateway startup on port {} with {} SO_REUSEPORT acceptors", this.config.getPort(), acceptors);
+            return;
+        }
 
         // 绑定端口并同步等待绑定完成
-        serverBootstrap.bind().sync();
+        serverChannels.add(serverBootstrap.bind().sync().channel());
         log.info("gateway startup on port {}", this.config.getPort());
     }
 
+    /**
+     * 配置epoll特有的TCP参数
+     */
+    private void configureEpollOptions() {
+        NettyConfig nettyConfig = config.getNettyConfig();
+        if (nettyConfig.isReusePort()) {
+            serverBootstrap.option(EpollChannelOption.SO_REUSEPORT, true);
+        }
+        if (nettyConfig.getTcpFastOpen() > 0) {
+            serverBootstrap.option(EpollChannelOption.TCP_FASTOPEN, nettyConfig.getTcpFastOpen()); // 首次握手即可携带数据
+        }
+        if (nettyConfig.getTcpDeferAccept() > 0) {
+            serverBootstrap.option(EpollChannelOption.TCP_DEFER_ACCEPT, nettyConfig.getTcpDeferAccept()); // 只建连不发数据的连接不会唤醒accept
+        }
+        if (nettyConfig.isTcpQuickAck()) {
+            serverBootstrap.childOption(EpollChannelOption.TCP_QUICKACK, true); // 立即确认，减少小请求的延迟
+        }
+    }
+
+    /**
+     * 优雅关闭Netty服务器
+     * 1. 进入排空状态并关闭监听Channel，不再接收新连接
+     * 2. 空闲的HTTP/1.1连接直接关闭，有请求在处理的连接在最后一个响应带上Connection: close后关闭；HTTP/2连接发送GOAWAY
+     * 3. 等待处理中的请求完成，期间按间隔输出排空进度
+     * 4. 关闭剩余连接和事件循环组
+     */
+    @Override
+    public boolean drain(long deadline) {
+        if (!start.get()) return true;
+
+        drainState.startDrain();
+        for (Channel serverChannel : serverChannels) {
+            serverChannel.close().awaitUninterruptibly();
+        }
+        log.info("gateway stop accepting connections, {}", drainState);
+
+        for (Channel channel : drainState.getConnections()) {
+            channel.eventLoop().execute(() -> closeIfIdle(channel));
+        }
+
+        long progressInterval = config.getShutdown().getProgressInterval();
+        long nextProgress = System.currentTimeMillis() + progressInterval;
+        try {
+            while (drainState.getInFlight() > 0 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(Math.max(1, Math.min(50, deadline - System.currentTimeMillis())));
+                if (System.currentTimeMillis() >= nextProgress) {
+                    log.info("gateway draining, {}", drainState);
+                    nextProgress += progressInterval;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        boolean drained = drainState.getInFlight() == 0;
+        drainState.closeAll(!drained);
+        if (drained) {
+            log.info("gateway drained, {}", drainState);
+        } else {
+            log.warn("gateway drain timeout, remaining connections closed, {}", drainState);
+        }
+        shutdown();
+        return drained;
+    }
+
+    /**
+     * 在连接的事件循环中执行，HTTP/2连接发送GOAWAY，没有请求在处理的HTTP/1.1连接直接关闭
+     */
+    private static void closeIfIdle(Channel channel) {
+        if (channel.pipeline().get(Http2FrameCodec.class) != null) {
+            channel.writeAndFlush(new DefaultHttp2GoAwayFrame(Http2Error.NO_ERROR));
+            return;
+        }
+        DrainHandler drainHandler = channel.pipeline().get(DrainHandler.class);
+        if (drainHandler == null || drainHandler.isIdle()) {
+            channel.close();
+        }
+    }
+
     /**
      * 关闭Netty服务器
      */
@@ -146,6 +267,47 @@ public class NettyHttpServer implements LifeCycle {
         if (eventLoopGroupWorker != null) {
             eventLoopGroupWorker.shutdownGracefully(); // 优雅关闭，等待任务完成
         }
+
+        unregisterDrainStateMBean();
+
+        // 停止证书重新加载
+        if (sslContextManager != null) {
+            sslContextManager.shutdown();
+        }
+
+        // 刷新磁盘缓存，没有开启时不加载磁盘缓存
+        if (config.getResponseCache().isDiskEnabled()) {
+            DiskResponseCache.getInstance().shutdown();
+        }
+
+        // 停止金丝雀分析
+        if (CanaryController.getInstance().isEnabled()) {
+            CanaryController.getInstance().shutdown();
+        }
+    }
+
+    private ObjectName drainStateName() throws MalformedObjectNameException {
+        return new ObjectName("gateway:type=DrainState,port=" + config.getPort());
+    }
+
+    private void registerDrainStateMBean() {
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(drainState, drainStateName());
+        } catch (JMException e) {
+            log.warn("register drain state mbean failed", e);
+        }
+    }
+
+    private void unregisterDrainStateMBean() {
+        try {
+            MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = drainStateName();
+            if (mBeanServer.isRegistered(name)) {
+                mBeanServer.unregisterMBean(name);
+            }
+        } catch (JMException e) {
+            log.warn("unregister drain state mbean failed", e);
+        }
     }
 
     /**
@@ -0,0 +1,205 @@
+package netty;
+
+import config.NettyConfig;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.ChannelPipeline;
+import io.netty.handler.codec.haproxy.HAProxyMessageDecoder;
+import io.netty.handler.codec.http.HttpObjectAggregator;
+import io.netty.handler.codec.http.HttpServerCodec;
+import io.netty.handler.codec.http.HttpServerExpectContinueHandler;
+import io.netty.handler.codec.http.HttpServerUpgradeHandler;
+import io.netty.handler.codec.http2.CleartextHttp2ServerUpgradeHandler;
+import io.netty.handler.codec.http2.Http2CodecUtil;
+import io.netty.handler.codec.http2.Http2FrameCodec;
+import io.netty.handler.codec.http2.Http2FrameCodecBuilder;
+import io.netty.handler.codec.http2.Http2MultiplexHandler;
+import io.netty.handler.codec.http2.Http2ServerUpgradeCodec;
+import io.netty.handler.codec.http2.Http2Settings;
+import io.netty.handler.codec.http2.Http2StreamChannel;
+import io.netty.handler.codec.http2.Http2StreamFrameToHttpObjectCodec;
+import io.netty.util.AsciiString;
+import netty.handler.ConnectionIdleHandler;
+import netty.handler.DrainHandler;
+import netty.handler.Http2OrHttpHandler;
+import netty.handler.HttpPipeliningHandler;
+import netty.handler.NettyHttpServerHandler;
+import netty.handler.ProxyProtocolHandler;
+import netty.handler.SlowRequestHandler;
+import netty.processor.NettyProcessor;
+import netty.ssl.SslContextManager;
+
+/**
+ * 网关服务端连接的pipeline初始化
+ * 明文连接：
+ * 1. HTTP/1.1请求直接走HttpServerCodec
+ * 2. 带Upgrade: h2c的请求升级为HTTP/2
+ * 3. 直接发送HTTP/2连接前言的请求（prior knowledge）直接使用HTTP/2
+ * TLS连接：通过ALPN协商h2或http/1.1
+ * 开启PROXY协议时，连接开头的协议头在TLS和HTTP之前解析，解析完后相关处理器从pipeline中移除
+ *
+ * HTTP/2的每个流是一个子Channel，子Channel把帧转换为FullHttpRequest后交给NettyHttpServerHandler，
+ * 与HTTP/1.1共用同一套NettyProcessor、GatewayContext处理流程，响应写回子Channel即写回对应的流
+ * 流控窗口在子Channel读取数据后才归还，单个慢流不会占满整个连接的窗口
+ */
+public class NettyHttpServerInitializer extends ChannelInitializer<Channel> {
+
+    private final NettyConfig config;
+
+    private final NettyProcessor nettyProcessor;
+
+    /**
+     * TLS上下文管理，为空时只接受明文连接
+     */
+    private final SslContextManager sslContextManager;
+
+    /**
+     * 连接和处理中请求的统计，优雅下线时使用
+     */
+    private final DrainState drainState;
+
+    /**
+     * 全局和单个IP的连接数限制
+     */
+    private final ConnectionLimiter connectionLimiter;
+
+    public NettyHttpServerInitializer(NettyConfig config, NettyProcessor nettyProcessor, SslContextManager sslContextManager,
+                                      DrainState drainState, ConnectionLimiter connectionLimiter) {
+        this.config = config;
+        this.nettyProcessor = nettyProcessor;
+        this.sslContextManager = sslContextManager;
+        this.drainState = drainState;
+        this.connectionLimiter = connectionLimiter;
+    }
+
+    @Override
+    protected void initChannel(Channel ch) {
+        if (!connectionLimiter.tryAcquire(ch)) {
+            return;
+        }
+        drainState.addConnection(ch);
+        ChannelPipeline pipeline = ch.pipeline();
+        if (config.getReadIdleTimeout() > 0 || config.getWriteIdleTimeout() > 0) {
+            pipeline.addLast(new ConnectionIdleHandler(config.getReadIdleTimeout(), config.getWriteIdleTimeout()));
+        }
+        if (config.isProxyProtocol()) {
+            pipeline.addLast(new HAProxyMessageDecoder(), new ProxyProtocolHandler()); // 记录负载均衡器传来的真实源地址
+        }
+        if (sslContextManager != null) {
+            pipeline.addLast(sslContextManager.newHandler(ch.alloc()));
+            pipeline.addLast(new Http2OrHttpHandler(this));
+            return;
+        }
+        if (!config.isHttp2Enabled()) {
+            configureHttp1(pipeline);
+            return;
+        }
+
+        pipeline.addLast(newSlowRequestHandler());
+        HttpServerCodec sourceCodec = new HttpServerCodec();
+        HttpServerUpgradeHandler.UpgradeCodecFactory upgradeCodecFactory = protocol -> {
+            if (AsciiString.contentEquals(Http2CodecUtil.HTTP_UPGRADE_PROTOCOL_NAME, protocol)) {
+                return new Http2ServerUpgradeCodec(newHttp2FrameCodec(), newHttp2MultiplexHandler());
+            }
+            return null;
+        };
+        HttpServerUpgradeHandler upgradeHandler = new HttpServerUpgradeHandler(sourceCodec, upgradeCodecFactory,
+                config.getMaxContentLength());
+        pipeline.addLast(new CleartextHttp2ServerUpgradeHandler(sourceCodec, upgradeHandler, new ChannelInitializer<>() {
+            @Override
+            protected void initChannel(Channel ch) {
+                // 直接发送连接前言的HTTP/2连接
+                ch.pipeline().addLast(newHttp2FrameCodec(), newHttp2MultiplexHandler());
+            }
+        }));
+        addHttp1Handlers(pipeline);
+        pipeline.addLast(new Http1HandlerRemover());
+    }
+
+    /**
+     * 配置HTTP/1.1的pipeline
+     */
+    public void configureHttp1(ChannelPipeline pipeline) {
+        pipeline.addLast(newSlowRequestHandler()); // 请求头读取期限和请求体速率下限
+        pipeline.addLast(new HttpServerCodec()); // 处理HTTP请求的编解码器
+        addHttp1Handlers(pipeline);
+    }
+
+    /**
+     * 配置HTTP/2的pipeline
+     */
+    public void configureHttp2(ChannelPipeline pipeline) {
+        pipeline.addLast(newHttp2FrameCodec(), newHttp2MultiplexHandler());
+    }
+
+    private void addHttp1Handlers(ChannelPipeline pipeline) {
+        SlowRequestHandler slowRequestHandler = pipeline.get(SlowRequestHandler.class);
+        if (slowRequestHandler != null) {
+            pipeline.addLast(slowRequestHandler.observer()); // 观察解析出的请求头和请求体
+        }
+        pipeline.addLast(
+                new HttpObjectAggregator(config.getMaxContentLength()), // 聚合HTTP请求
+                new HttpServerExpectContinueHandler(), // 处理HTTP 100 Continue请求
+                new DrainHandler(drainState), // 统计处理中的请求，优雅下线时关闭连接
+                new HttpPipeliningHandler(config.getMaxPipelinedRequests()), // 管道化请求的响应按请求顺序写出
+                new NettyHttpServerHandler(nettyProcessor) // 自定义的处理器
+        );
+    }
+
+    private SlowRequestHandler newSlowRequestHandler() {
+        return new SlowRequestHandler(config.getHeaderReadTimeout(), config.getMinBodyRate(), config.getBodyRateWindow());
+    }
+
+    private Http2FrameCodec newHttp2FrameCodec() {
+        return Http2FrameCodecBuilder.forServer()
+                .initialSettings(Http2Settings.defaultSettings()
+                        .maxConcurrentStreams(config.getHttp2MaxConcurrentStreams())
+                        .initialWindowSize(config.getHttp2InitialWindowSize()))
+                .build();
+    }
+
+    private Http2MultiplexHandler newHttp2MultiplexHandler() {
+        ChannelHandler streamInitializer = new ChannelInitializer<Http2StreamChannel>() {
+            @Override
+            protected void initChannel(Http2StreamChannel ch) {
+                ch.pipeline().addLast(
+                        new Http2StreamFrameToHttpObjectCodec(true), // HTTP/2帧与HTTP/1.1对象互转
+                        new HttpObjectAggregator(config.getMaxContentLength()),
+                        new HttpServerExpectContinueHandler(),
+                        new DrainHandler(drainState),
+                        new NettyHttpServerHandler(nettyProcessor)
+                );
+            }
+        };
+        // 第二个参数处理h2c升级请求本身，升级请求作为流1交给同样的处理流程
+        return new Http2MultiplexHandler(streamInitializer, streamInitializer);
+    }
+
+    /**
+     * 明文连接升级为HTTP/2后，移除父Channel上不再使用的HTTP/1.1处理器
+     */
+    private static class Http1HandlerRemover extends ChannelInboundHandlerAdapter {
+
+        @Override
+        public void userEventTriggered(ChannelHandlerContext ctx, Object evt) throws Exception {
+            if (evt instanceof HttpServerUpgradeHandler.UpgradeEvent
+                    || evt instanceof CleartextHttp2ServerUpgradeHandler.PriorKnowledgeUpgradeEvent) {
+                ChannelPipeline pipeline = ctx.pipeline();
+                SlowRequestHandler slowRequestHandler = pipeline.get(SlowRequestHandler.class);
+                pipeline.remove(slowRequestHandler.observer());
+                pipeline.remove(slowRequestHandler);
+                pipeline.remove(HttpObjectAggregator.class);
+                pipeline.remove(HttpServerExpectContinueHandler.class);
+                pipeline.remove(DrainHandler.class);
+                pipeline.remove(HttpPipeliningHandler.class);
+                pipeline.remove(NettyHttpServerHandler.class);
+                pipeline.remove(this);
+            }
+            super.userEventTriggered(ctx, evt);
+        }
+    }
+
+}
@@ -0,0 +1,115 @@
+package netty;
+
+import io.netty.channel.Channel;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.ServerChannel;
+import io.netty.channel.epoll.EpollEventLoopGroup;
+import io.netty.channel.epoll.EpollServerSocketChannel;
+import io.netty.channel.epoll.EpollSocketChannel;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.nio.NioServerSocketChannel;
+import io.netty.channel.socket.nio.NioSocketChannel;
+import io.netty.util.concurrent.DefaultThreadFactory;
+import lombok.extern.slf4j.Slf4j;
+import utils.SystemUtil;
+
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * 网络传输实现
+ * 服务端和客户端通过该枚举创建事件循环组和Channel，epoll不可用时回退到NIO
+ * 不支持io_uring：netty的io_uring模块需要比当前4.1.51更新的netty版本，AsyncHttpClient 2.0也只能使用epoll和NIO的事件循环组
+ */
+@Slf4j
+public enum Transport {
+
+    EPOLL("epoll"),
+
+    NIO("nio");
+
+    /**
+     * 配置中使用的名称，也是线程名前缀
+     */
+    private final String name;
+
+    Transport(String name) {
+        this.name = name;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * 根据配置选择传输实现，不可用时回退
+     *
+     * @param name 配置的传输名称：epoll、nio
+     */
+    public static Transport resolve(String name) {
+        Transport transport = null;
+        for (Transport t : values()) {
+            if (t.name.equalsIgnoreCase(name)) {
+                transport = t;
+            }
+        }
+        if (transport == null) {
+            log.warn("unknown transport {}, use epoll", name);
+            transport = EPOLL;
+        }
+        if (transport == EPOLL && !SystemUtil.useEpoll()) {
+            transport = NIO;
+        }
+        return transport;
+    }
+
+    /**
+     * 根据事件循环组判断其所属的传输实现，用于给复用该事件循环组的客户端选择Channel类型
+     */
+    public static Transport of(EventLoopGroup eventLoopGroup) {
+        if (eventLoopGroup instanceof EpollEventLoopGroup) {
+            return EPOLL;
+        }
+        return NIO;
+    }
+
+    /**
+     * 创建事件循环组
+     *
+     * @param nThreads 线程数
+     * @param role     线程用途，和传输名称拼成线程名前缀，如epoll-netty-worker、nio-netty-worker
+     */
+    public EventLoopGroup newEventLoopGroup(int nThreads, String role) {
+        ThreadFactory threadFactory = new DefaultThreadFactory(name + "-" + role);
+        switch (this) {
+            case EPOLL:
+                return new EpollEventLoopGroup(nThreads, threadFactory);
+            default:
+                return new NioEventLoopGroup(nThreads, threadFactory);
+        }
+    }
+
+    /**
+     * 服务端监听Channel类型
+     */
+    public Class<? extends ServerChannel> serverChannelClass() {
+        switch (this) {
+            case EPOLL:
+                return EpollServerSocketChannel.class;
+            default:
+                return NioServerSocketChannel.class;
+        }
+    }
+
+    /**
+     * 客户端连接Channel类型
+     */
+    public Class<? extends Channel> socketChannelClass() {
+        switch (this) {
+            case EPOLL:
+                return EpollSocketChannel.class;
+            default:
+                return NioSocketChannel.class;
+        }
+    }
+
+}
@@ -0,0 +1,52 @@
+package netty.handler;
+
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelOutboundBuffer;
+import io.netty.handler.codec.http2.Http2FrameCodec;
+import io.netty.handler.timeout.IdleState;
+import io.netty.handler.timeout.IdleStateEvent;
+import io.netty.handler.timeout.IdleStateHandler;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 连接空闲超时
+ * 1. 读空闲：客户端长时间没有发送数据，且连接上没有等待下游响应的请求时关闭连接
+ * 2. 写空闲：响应长时间写不出去（客户端不读取数据），发送缓冲区中还有数据时关闭连接
+ * 响应正在写出时写空闲计时会被重置，慢但持续读取的客户端不受影响
+ */
+public class ConnectionIdleHandler extends IdleStateHandler {
+
+    public ConnectionIdleHandler(int readIdleSeconds, int writeIdleSeconds) {
+        super(true, readIdleSeconds, writeIdleSeconds, 0, TimeUnit.SECONDS);
+    }
+
+    @Override
+    protected void channelIdle(ChannelHandlerContext ctx, IdleStateEvent evt) {
+        Channel channel = ctx.channel();
+        if (evt.state() == IdleState.READER_IDLE && hasActiveRequests(channel)) {
+            // 请求还在等待下游响应，不是空闲连接
+            return;
+        }
+        if (evt.state() == IdleState.WRITER_IDLE && !hasPendingWrites(channel)) {
+            return;
+        }
+        ctx.close();
+    }
+
+    private static boolean hasActiveRequests(Channel channel) {
+        Http2FrameCodec frameCodec = channel.pipeline().get(Http2FrameCodec.class);
+        if (frameCodec != null) {
+            return frameCodec.connection().numActiveStreams() > 0;
+        }
+        DrainHandler drainHandler = channel.pipeline().get(DrainHandler.class);
+        return drainHandler != null && !drainHandler.isIdle();
+    }
+
+    private static boolean hasPendingWrites(Channel channel) {
+        ChannelOutboundBuffer outboundBuffer = channel.unsafe().outboundBuffer();
+        return outboundBuffer != null && outboundBuffer.totalPendingWriteBytes() > 0;
+    }
+
+}
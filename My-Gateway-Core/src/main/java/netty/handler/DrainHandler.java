@@ -0,0 +1,83 @@
+package netty.handler;
+
+import io.netty.channel.ChannelDuplexHandler;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelPromise;
+import io.netty.handler.codec.http.FullHttpRequest;
+import io.netty.handler.codec.http.FullHttpResponse;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpHeaderValues;
+import io.netty.handler.codec.http.HttpUtil;
+import io.netty.handler.codec.http2.Http2StreamChannel;
+import netty.DrainState;
+
+/**
+ * 统计处理中的请求，优雅下线时关闭HTTP/1.1连接
+ * 每个HTTP/1.1连接和每个HTTP/2流各有一个实例
+ * 1. 收到请求时处理中的请求数加一，响应写出后减一，连接关闭时未写出的请求一并减掉
+ * 2. 排空状态下HTTP/1.1连接上最后一个响应改为Connection: close，写出后关闭连接，客户端的下一个请求会发到其他实例
+ * 3. HTTP/2连接由服务端发送GOAWAY，这里不处理
+ */
+public class DrainHandler extends ChannelDuplexHandler {
+
+    private final DrainState drainState;
+
+    /**
+     * 当前连接上处理中的请求数
+     */
+    private int inFlight;
+
+    public DrainHandler(DrainState drainState) {
+        this.drainState = drainState;
+    }
+
+    /**
+     * 当前连接上是否没有处理中的请求，只能在连接的事件循环中调用
+     */
+    public boolean isIdle() {
+        return inFlight == 0;
+    }
+
+    @Override
+    public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
+        if (msg instanceof FullHttpRequest) {
+            inFlight++;
+            drainState.requestStarted();
+        }
+        super.channelRead(ctx, msg);
+    }
+
+    @Override
+    public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise) throws Exception {
+        if (!(msg instanceof FullHttpResponse)) {
+            super.write(ctx, msg, promise);
+            return;
+        }
+        FullHttpResponse response = (FullHttpResponse) msg;
+        inFlight--;
+        drainState.requestCompleted(1);
+        if (drainState.isDraining() && inFlight == 0 && !(ctx.channel() instanceof Http2StreamChannel)) {
+            // 管道化的请求都写出响应后再关闭
+            if (HttpUtil.isKeepAlive(response)) {
+                // 响应头可能是多个响应共享的，复制一份再修改
+                FullHttpResponse closeResponse = response.replace(response.content());
+                closeResponse.headers().set(HttpHeaderNames.CONNECTION, HttpHeaderValues.CLOSE);
+                response = closeResponse;
+            }
+            promise.addListener(ChannelFutureListener.CLOSE);
+        }
+        super.write(ctx, response, promise);
+    }
+
+    @Override
+    public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+        if (inFlight > 0) {
+            // 连接断开，剩余请求的响应不会再写出
+            drainState.requestCompleted(inFlight);
+            inFlight = 0;
+        }
+        super.channelInactive(ctx);
+    }
+
+}
@@ -0,0 +1,34 @@
+package netty.handler;
+
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.ssl.ApplicationProtocolNames;
+import io.netty.handler.ssl.ApplicationProtocolNegotiationHandler;
+import netty.NettyHttpServerInitializer;
+
+/**
+ * TLS握手完成后根据ALPN协商结果配置pipeline
+ * 协商出h2时使用HTTP/2，否则回退到HTTP/1.1
+ */
+public class Http2OrHttpHandler extends ApplicationProtocolNegotiationHandler {
+
+    private final NettyHttpServerInitializer initializer;
+
+    public Http2OrHttpHandler(NettyHttpServerInitializer initializer) {
+        super(ApplicationProtocolNames.HTTP_1_1); // 客户端不支持ALPN时使用HTTP/1.1
+        this.initializer = initializer;
+    }
+
+    @Override
+    protected void configurePipeline(ChannelHandlerContext ctx, String protocol) {
+        if (ApplicationProtocolNames.HTTP_2.equals(protocol)) {
+            initializer.configureHttp2(ctx.pipeline());
+            return;
+        }
+        if (ApplicationProtocolNames.HTTP_1_1.equals(protocol)) {
+            initializer.configureHttp1(ctx.pipeline());
+            return;
+        }
+        throw new IllegalStateException("unknown protocol: " + protocol);
+    }
+
+}
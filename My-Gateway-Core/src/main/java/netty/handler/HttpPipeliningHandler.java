@@ -0,0 +1,208 @@
+package netty.handler;
+
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelDuplexHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelPromise;
+import io.netty.handler.codec.http.FullHttpRequest;
+import io.netty.handler.codec.http.FullHttpResponse;
+import io.netty.util.AttributeKey;
+import io.netty.util.ReferenceCountUtil;
+
+import java.nio.channels.ClosedChannelException;
+import java.util.ArrayDeque;
+import java.util.PriorityQueue;
+import java.util.Queue;
+
+/**
+ * HTTP/1.1管道化请求的响应排序
+ * 同一连接上客户端可以不等响应连续发送多个请求，而下游调用是异步的，后发的请求可能先完成
+ * 1. 每个请求按到达顺序分配序号，序号在处理请求时通过Channel属性取得，写响应时随响应一起传回
+ * 2. 轮到的响应直接写出，提前完成的响应暂存，等前面的响应写出后再按序号依次写出
+ * 3. 未写出响应的请求数达到上限时暂停读取，写出响应后恢复，避免单个连接堆积过多请求
+ *    暂停前已经读入缓冲区的数据仍会被解码，超出上限的请求暂存在处理器中，有空位时再按顺序交给后续处理器
+ *    暂停和恢复读取时从pipeline头部发出{@link ReadSuspendEvent}，{@link SlowRequestHandler}据此暂停计时
+ *
+ * HTTP/2的流各自独立，不需要排序，流的Channel上没有该处理器，序号为-1
+ */
+public class HttpPipeliningHandler extends ChannelDuplexHandler {
+
+    /**
+     * 暂停和恢复读取的事件
+     */
+    public enum ReadSuspendEvent {
+        SUSPENDED,
+        RESUMED
+    }
+
+    /**
+     * 当前正在处理的请求的序号
+     */
+    private static final AttributeKey<Integer> SEQUENCE = AttributeKey.valueOf("httpPipeliningSequence");
+
+    /**
+     * 单个连接最多未写出响应的请求数
+     */
+    private final int maxPipelinedRequests;
+
+    /**
+     * 暂存的提前完成的响应，按序号排序
+     */
+    private final PriorityQueue<PipelinedResponse> pending = new PriorityQueue<>();
+
+    /**
+     * 暂停读取后仍从缓冲区解码出来的、超出上限的请求
+     */
+    private final Queue<FullHttpRequest> deferred = new ArrayDeque<>();
+
+    /**
+     * 是否由本处理器暂停了读取
+     */
+    private boolean suspended;
+
+    /**
+     * 是否已经安排了暂存请求的处理
+     */
+    private boolean dispatchScheduled;
+
+    /**
+     * 下一个请求的序号
+     */
+    private int readSequence;
+
+    /**
+     * 下一个要写出的响应的序号
+     */
+    private int writeSequence;
+
+    public HttpPipeliningHandler(int maxPipelinedRequests) {
+        this.maxPipelinedRequests = maxPipelinedRequests;
+    }
+
+    /**
+     * 获取当前正在处理的请求的序号，需要在channelRead的调用栈内取得
+     *
+     * @return 请求序号，连接上没有该处理器时返回-1
+     */
+    public static int sequence(Channel channel) {
+        Integer sequence = channel.attr(SEQUENCE).get();
+        return sequence == null ? -1 : sequence;
+    }
+
+    /**
+     * 给响应带上请求序号
+     *
+     * @return 序号为-1时直接返回响应本身
+     */
+    public static Object sequenced(FullHttpResponse response, int sequence) {
+        return sequence < 0 ? response : new PipelinedResponse(response, sequence);
+    }
+
+    @Override
+    public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
+        if (!(msg instanceof FullHttpRequest)) {
+            super.channelRead(ctx, msg);
+            return;
+        }
+        if (!deferred.isEmpty() || readSequence - writeSequence >= maxPipelinedRequests) {
+            // 暂停读取前已经在缓冲区中的请求，等前面的响应写出后再处理
+            deferred.add((FullHttpRequest) msg);
+            return;
+        }
+        dispatch(ctx, (FullHttpRequest) msg);
+    }
+
+    private void dispatch(ChannelHandlerContext ctx, FullHttpRequest request) {
+        ctx.channel().attr(SEQUENCE).set(readSequence++);
+        if (readSequence - writeSequence >= maxPipelinedRequests && !suspended) {
+            // 积压的请求过多，暂停读取
+            suspended = true;
+            ctx.channel().config().setAutoRead(false);
+            ctx.pipeline().fireUserEventTriggered(ReadSuspendEvent.SUSPENDED);
+        }
+        ctx.fireChannelRead(request);
+    }
+
+    /**
+     * 有空位时处理暂存的请求，都处理完且积压低于上限时恢复读取
+     */
+    private void dispatchDeferred(ChannelHandlerContext ctx) {
+        dispatchScheduled = false;
+        FullHttpRequest request;
+        while (readSequence - writeSequence < maxPipelinedRequests && (request = deferred.poll()) != null) {
+            dispatch(ctx, request);
+        }
+        if (suspended && deferred.isEmpty() && readSequence - writeSequence < maxPipelinedRequests) {
+            suspended = false;
+            ctx.channel().config().setAutoRead(true);
+            ctx.pipeline().fireUserEventTriggered(ReadSuspendEvent.RESUMED);
+        }
+    }
+
+    @Override
+    public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise) throws Exception {
+        if (!(msg instanceof PipelinedResponse)) {
+            super.write(ctx, msg, promise);
+            return;
+        }
+        PipelinedResponse response = (PipelinedResponse) msg;
+        response.promise = promise;
+        pending.add(response);
+        while (!pending.isEmpty() && pending.peek().sequence == writeSequence) {
+            PipelinedResponse next = pending.poll();
+            writeSequence++;
+            ctx.write(next.response, next.promise);
+        }
+        if (suspended && !dispatchScheduled && readSequence - writeSequence < maxPipelinedRequests && ctx.channel().isActive()) {
+            // 不在写出调用栈内处理新请求，避免请求同步写出响应时重入
+            dispatchScheduled = true;
+            ctx.executor().execute(() -> dispatchDeferred(ctx));
+        }
+    }
+
+    @Override
+    public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+        releasePending();
+        super.channelInactive(ctx);
+    }
+
+    @Override
+    public void handlerRemoved(ChannelHandlerContext ctx) {
+        releasePending();
+    }
+
+    private void releasePending() {
+        FullHttpRequest request;
+        while ((request = deferred.poll()) != null) {
+            ReferenceCountUtil.release(request);
+        }
+        PipelinedResponse response;
+        while ((response = pending.poll()) != null) {
+            ReferenceCountUtil.release(response.response);
+            response.promise.tryFailure(new ClosedChannelException());
+        }
+    }
+
+    /**
+     * 带序号的响应
+     */
+    private static class PipelinedResponse implements Comparable<PipelinedResponse> {
+
+        private final FullHttpResponse response;
+
+        private final int sequence;
+
+        private ChannelPromise promise;
+
+        PipelinedResponse(FullHttpResponse response, int sequence) {
+            this.response = response;
+            this.sequence = sequence;
+        }
+
+        @Override
+        public int compareTo(PipelinedResponse o) {
+            return Integer.compare(sequence, o.sequence);
+        }
+    }
+
+}
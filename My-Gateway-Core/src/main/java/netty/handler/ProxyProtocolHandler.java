@@ -0,0 +1,50 @@
+package netty.handler;
+
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.handler.codec.haproxy.HAProxyCommand;
+import io.netty.handler.codec.haproxy.HAProxyMessage;
+import io.netty.handler.codec.haproxy.HAProxyProtocolException;
+import io.netty.util.ReferenceCountUtil;
+import lombok.extern.slf4j.Slf4j;
+import request.ip.ClientIpResolver;
+
+/**
+ * PROXY协议处理
+ * 放在HAProxyMessageDecoder之后，解码器解析出连接开头的PROXY协议头（v1文本或v2二进制）后：
+ * 1. PROXY命令：把真实的源地址记录到连接上，之后的请求直接读取，不需要再解析
+ * 2. LOCAL命令（负载均衡器自己的健康检查）：保留对端地址
+ * 处理完第一个消息后解码器和该处理器都会从pipeline中移除，之后的数据原样传给TLS或HTTP处理器
+ * 没有PROXY协议头或协议头不合法的连接直接关闭
+ */
+@Slf4j
+public class ProxyProtocolHandler extends ChannelInboundHandlerAdapter {
+
+    @Override
+    public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
+        if (!(msg instanceof HAProxyMessage)) {
+            super.channelRead(ctx, msg);
+            return;
+        }
+        HAProxyMessage message = (HAProxyMessage) msg;
+        try {
+            if (message.command() == HAProxyCommand.PROXY && message.sourceAddress() != null) {
+                ClientIpResolver.getInstance().setRemoteAddress(ctx.channel(), message.sourceAddress());
+            }
+        } finally {
+            ReferenceCountUtil.release(message);
+        }
+        ctx.pipeline().remove(this);
+    }
+
+    @Override
+    public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) throws Exception {
+        if (cause instanceof HAProxyProtocolException) {
+            log.debug("invalid proxy protocol header from {}, close connection", ctx.channel().remoteAddress(), cause);
+            ctx.close();
+            return;
+        }
+        super.exceptionCaught(ctx, cause);
+    }
+
+}
@@ -0,0 +1,211 @@
+package netty.handler;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.handler.codec.http.HttpContent;
+import io.netty.handler.codec.http.HttpRequest;
+import io.netty.handler.codec.http.HttpUtil;
+import io.netty.handler.codec.http.LastHttpContent;
+import io.netty.util.concurrent.ScheduledFuture;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 慢速请求防护（slowloris）
+ * 放在HTTP解码器之前观察原始字节，配合放在解码器之后的{@link #observer()}观察解析出的请求
+ * 1. 请求头读取期限：收到请求的第一个字节后，必须在期限内读完请求头
+ * 2. 请求体速率下限：读取请求体时，每个检查窗口内收到的字节数不能低于下限
+ * 不满足时直接关闭连接，释放聚合缓冲区，空闲的长连接由{@link ConnectionIdleHandler}处理
+ * 管道化请求积压而暂停读取期间客户端的数据无法读入，此时暂停计时，恢复读取后重新开始计算
+ */
+@Slf4j
+public class SlowRequestHandler extends ChannelInboundHandlerAdapter {
+
+    private enum State {
+        /**
+         * 等待下一个请求
+         */
+        WAITING,
+        /**
+         * 正在读取请求头
+         */
+        HEADERS,
+        /**
+         * 正在读取请求体
+         */
+        BODY
+    }
+
+    /**
+     * 请求头读取期限，单位秒，0表示不限制
+     */
+    private final int headerReadTimeout;
+
+    /**
+     * 请求体最低速率，单位字节每秒，0表示不限制
+     */
+    private final int minBodyRate;
+
+    /**
+     * 请求体速率检查窗口，单位秒
+     */
+    private final int bodyRateWindow;
+
+    private final Observer observer = new Observer();
+
+    private ChannelHandlerContext ctx;
+
+    private State state = State.WAITING;
+
+    private ScheduledFuture<?> timeout;
+
+    /**
+     * 当前检查窗口内收到的请求体字节数
+     */
+    private long bodyBytes;
+
+    /**
+     * 当前请求体是否需要检查速率
+     */
+    private boolean bodyRateChecked;
+
+    /**
+     * 读取是否被暂停
+     */
+    private boolean suspended;
+
+    public SlowRequestHandler(int headerReadTimeout, int minBodyRate, int bodyRateWindow) {
+        this.headerReadTimeout = headerReadTimeout;
+        this.minBodyRate = minBodyRate;
+        this.bodyRateWindow = bodyRateWindow;
+    }
+
+    /**
+     * 放在HTTP解码器之后，观察解析出的请求头和请求体
+     */
+    public ChannelHandler observer() {
+        return observer;
+    }
+
+    @Override
+    public void handlerAdded(ChannelHandlerContext ctx) {
+        this.ctx = ctx;
+    }
+
+    @Override
+    public void handlerRemoved(ChannelHandlerContext ctx) {
+        cancelTimeout();
+    }
+
+    @Override
+    public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+        cancelTimeout();
+        super.channelInactive(ctx);
+    }
+
+    @Override
+    public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
+        if (state == State.WAITING && headerReadTimeout > 0 && msg instanceof ByteBuf && ((ByteBuf) msg).isReadable()) {
+            // 新请求的第一个字节，开始计算请求头读取期限
+            state = State.HEADERS;
+            scheduleTimeout();
+        }
+        super.channelRead(ctx, msg);
+    }
+
+    @Override
+    public void userEventTriggered(ChannelHandlerContext ctx, Object evt) throws Exception {
+        if (evt == HttpPipeliningHandler.ReadSuspendEvent.SUSPENDED) {
+            suspended = true;
+            cancelTimeout();
+        } else if (evt == HttpPipeliningHandler.ReadSuspendEvent.RESUMED) {
+            suspended = false;
+            bodyBytes = 0;
+            scheduleTimeout();
+        }
+        super.userEventTriggered(ctx, evt);
+    }
+
+    private void onRequest(HttpRequest request) {
+        cancelTimeout();
+        if (request instanceof LastHttpContent) {
+            state = State.WAITING;
+            return;
+        }
+        state = State.BODY;
+        bodyBytes = 0;
+        bodyRateChecked = minBodyRate > 0 && (HttpUtil.isTransferEncodingChunked(request) || HttpUtil.getContentLength(request, 0L) > 0);
+        scheduleTimeout();
+    }
+
+    private void onContent(HttpContent content) {
+        bodyBytes += content.content().readableBytes();
+        if (content instanceof LastHttpContent) {
+            cancelTimeout();
+            state = State.WAITING;
+        }
+    }
+
+    private void headerTimeout() {
+        timeout = null;
+        if (state == State.HEADERS) {
+            log.debug("request header read timeout, close connection {}", ctx.channel().remoteAddress());
+            ctx.close();
+        }
+    }
+
+    private void checkBodyRate() {
+        if (state != State.BODY) {
+            return;
+        }
+        if (bodyBytes < (long) minBodyRate * bodyRateWindow) {
+            log.debug("request body rate {}B/{}s below limit, close connection {}", bodyBytes, bodyRateWindow, ctx.channel().remoteAddress());
+            cancelTimeout();
+            ctx.close();
+            return;
+        }
+        bodyBytes = 0;
+    }
+
+    /**
+     * 按当前状态开始计时，读取暂停期间不计时
+     */
+    private void scheduleTimeout() {
+        if (suspended || timeout != null) {
+            return;
+        }
+        if (state == State.HEADERS && headerReadTimeout > 0) {
+            timeout = ctx.executor().schedule(this::headerTimeout, headerReadTimeout, TimeUnit.SECONDS);
+        } else if (state == State.BODY && bodyRateChecked) {
+            timeout = ctx.executor().scheduleAtFixedRate(this::checkBodyRate, bodyRateWindow, bodyRateWindow, TimeUnit.SECONDS);
+        }
+    }
+
+    private void cancelTimeout() {
+        if (timeout != null) {
+            timeout.cancel(false);
+            timeout = null;
+        }
+    }
+
+    /**
+     * 解码器之后的观察者
+     */
+    private class Observer extends ChannelInboundHandlerAdapter {
+
+        @Override
+        public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
+            if (msg instanceof HttpRequest) {
+                onRequest((HttpRequest) msg);
+            }
+            if (msg instanceof HttpContent && !(msg instanceof HttpRequest)) {
+                onContent((HttpContent) msg);
+            }
+            super.channelRead(ctx, msg);
+        }
+    }
+
+}
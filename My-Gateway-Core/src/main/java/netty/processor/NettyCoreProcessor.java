@@ -5,12 +5,15 @@ import enums.ResponseCode;
 import exception.GatewayException;
 import filter.FilterChainFactory;
 import helper.ContextHelper;
+import io.netty.channel.ChannelFuture;
 import io.netty.channel.ChannelFutureListener;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.handler.codec.http.FullHttpRequest;
 import io.netty.handler.codec.http.FullHttpResponse;
+import io.netty.handler.codec.http.HttpUtil;
 import io.netty.util.ReferenceCountUtil;
 import lombok.extern.slf4j.Slf4j;
+import netty.handler.HttpPipeliningHandler;
 import helper.ResponseHelper;
 /**
  * Netty核心处理器
@@ -21,31 +24,41 @@ public class NettyCoreProcessor implements NettyProcessor {
 
     @Override
     public void process(ChannelHandlerContext ctx, FullHttpRequest request) {
+        int sequence = HttpPipeliningHandler.sequence(ctx.channel());
+        GatewayContext gatewayContext = null;
         try {
-            GatewayContext gatewayContext = ContextHelper.buildGatewayContext(request, ctx);
+            gatewayContext = ContextHelper.buildGatewayContext(request, ctx);
             FilterChainFactory.buildFilterChain(gatewayContext);
-            gatewayContext.getFilterChain().doPostFilter(gatewayContext);
+            gatewayContext.getFilterChain().doPreFilter(gatewayContext);
         } catch (GatewayException e) {
             log.error("处理错误 {} {}", e.getCode(), e.getCode().getMessage());
-            FullHttpResponse httpResponse = ResponseHelper.buildHttpResponse(e.getCode());
-            doWriteAndRelease(ctx, request, httpResponse);
+            doWriteAndRelease(ctx, request, sequence, e.getCode());
         } catch (Throwable t) {
             log.error("处理未知错误", t);
-            FullHttpResponse httpResponse = ResponseHelper.buildHttpResponse(ResponseCode.INTERNAL_ERROR);
-            doWriteAndRelease(ctx, request, httpResponse);
+            doWriteAndRelease(ctx, request, sequence, ResponseCode.INTERNAL_ERROR);
+        } finally {
+            // 释放处理线程持有的引用，异步调用下游的请求在写回响应后回收
+            if (gatewayContext != null) {
+                gatewayContext.release();
+            }
         }
     }
     /**
-     * 写回响应并释放资源
+     * 写回错误响应并释放资源
+     * 请求保持连接时写完不关闭通道，客户端的下一个请求可以复用连接，不需要重新握手
      * @param ctx Netty的通道处理上下文
      * @param request HTTP请求
-     * @param httpResponse HTTP响应
+     * @param sequence 管道化请求的序号
+     * @param responseCode 响应码
      */
-    private void doWriteAndRelease(ChannelHandlerContext ctx, FullHttpRequest request, FullHttpResponse httpResponse) {
-        // 写回响应并添加监听器，在写完后关闭通道
-        ctx.writeAndFlush(httpResponse)
-                .addListener(ChannelFutureListener.CLOSE); // 发送响应后关闭通道
+    private void doWriteAndRelease(ChannelHandlerContext ctx, FullHttpRequest request, int sequence, ResponseCode responseCode) {
+        boolean keepAlive = HttpUtil.isKeepAlive(request);
+        FullHttpResponse httpResponse = ResponseHelper.buildHttpResponse(responseCode, keepAlive);
+        ChannelFuture future = ctx.writeAndFlush(HttpPipeliningHandler.sequenced(httpResponse, sequence));
+        if (!keepAlive) {
+            future.addListener(ChannelFutureListener.CLOSE); // 短连接，发送响应后关闭通道
+        }
         // 释放与请求相关联的资源，防止内存泄漏
         ReferenceCountUtil.release(request); // 释放与请求相关联的资源
     }
-}
\ No newline at end of file
+}
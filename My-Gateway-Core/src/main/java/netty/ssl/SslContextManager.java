@@ -0,0 +1,210 @@
+package netty.ssl;
+
+import config.TlsConfig;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.handler.codec.http2.Http2SecurityUtil;
+import io.netty.handler.ssl.ApplicationProtocolConfig;
+import io.netty.handler.ssl.ApplicationProtocolNames;
+import io.netty.handler.ssl.OpenSsl;
+import io.netty.handler.ssl.OpenSslSessionContext;
+import io.netty.handler.ssl.OpenSslSessionTicketKey;
+import io.netty.handler.ssl.ReferenceCountedOpenSslEngine;
+import io.netty.handler.ssl.SslContext;
+import io.netty.handler.ssl.SslContextBuilder;
+import io.netty.handler.ssl.SslHandler;
+import io.netty.handler.ssl.SslProvider;
+import io.netty.handler.ssl.SupportedCipherSuiteFilter;
+import io.netty.util.concurrent.DefaultThreadFactory;
+import lombok.extern.slf4j.Slf4j;
+
+import javax.net.ssl.SSLException;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.security.SecureRandom;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * TLS上下文管理
+ * OpenSSL（netty-tcnative）可用时使用OpenSSL，否则回退到JDK实现
+ * 1. 会话缓存和会话票据都开启，OpenSSL下票据密钥定期轮换，上一把密钥保留用于解密轮换前签发的票据
+ * 2. 配置了OCSP响应文件时在握手中装订，客户端无需再访问CA的OCSP服务
+ * 3. 定期检查证书、私钥和OCSP文件，更新后重新加载，新连接使用新证书，已有连接不受影响
+ */
+@Slf4j
+public class SslContextManager {
+
+    private final TlsConfig config;
+
+    private final boolean http2Enabled;
+
+    private final SslProvider provider;
+
+    private final SecureRandom random = new SecureRandom();
+
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(new DefaultThreadFactory("ssl-context-manager", true));
+
+    private volatile SslContext sslContext;
+
+    private volatile byte[] ocspResponse;
+
+    /**
+     * 会话票据密钥，第一个用于加密新票据，其余只用于解密
+     */
+    private volatile OpenSslSessionTicketKey[] ticketKeys;
+
+    private long certModified;
+
+    private long keyModified;
+
+    private long ocspModified;
+
+    public SslContextManager(TlsConfig config, boolean http2Enabled) throws SSLException {
+        this.config = config;
+        this.http2Enabled = http2Enabled;
+        this.provider = OpenSsl.isAvailable() ? SslProvider.OPENSSL : SslProvider.JDK;
+        if (provider == SslProvider.OPENSSL) {
+            this.ticketKeys = new OpenSslSessionTicketKey[]{newTicketKey()};
+        } else {
+            log.warn("OpenSSL is not available, fall back to JDK TLS", OpenSsl.unavailabilityCause());
+        }
+        this.sslContext = buildSslContext();
+        this.ocspResponse = loadOcspResponse();
+        log.info("tls enabled, provider: {} ocsp stapling: {}", provider, ocspResponse != null);
+    }
+
+    /**
+     * 启动票据密钥轮换和文件更新检查
+     */
+    public void start() {
+        if (provider == SslProvider.OPENSSL && config.getTicketKeyRotationInterval() > 0) {
+            scheduler.scheduleWithFixedDelay(this::rotateTicketKeys,
+                    config.getTicketKeyRotationInterval(), config.getTicketKeyRotationInterval(), TimeUnit.SECONDS);
+        }
+        if (config.getReloadCheckInterval() > 0) {
+            scheduler.scheduleWithFixedDelay(this::reloadIfModified,
+                    config.getReloadCheckInterval(), config.getReloadCheckInterval(), TimeUnit.SECONDS);
+        }
+    }
+
+    public void shutdown() {
+        scheduler.shutdownNow();
+    }
+
+    /**
+     * 为新连接创建SslHandler
+     */
+    public SslHandler newHandler(ByteBufAllocator alloc) {
+        SslHandler sslHandler = sslContext.newHandler(alloc);
+        byte[] ocsp = ocspResponse;
+        if (ocsp != null && sslHandler.engine() instanceof ReferenceCountedOpenSslEngine engine) {
+            engine.setOcspResponse(ocsp);
+        }
+        return sslHandler;
+    }
+
+    public SslProvider getProvider() {
+        return provider;
+    }
+
+    private SslContext buildSslContext() throws SSLException {
+        File certFile = new File(config.getCertPath());
+        File keyFile = new File(config.getKeyPath());
+        certModified = certFile.lastModified();
+        keyModified = keyFile.lastModified();
+
+        SslContextBuilder builder = SslContextBuilder.forServer(certFile, keyFile, config.getKeyPassword())
+                .sslProvider(provider)
+                .sessionCacheSize(config.getSessionCacheSize())
+                .sessionTimeout(config.getSessionTimeout())
+                .enableOcsp(provider == SslProvider.OPENSSL && config.getOcspPath() != null && OpenSsl.isOcspSupported());
+        if (http2Enabled) {
+            // HTTP/2要求的密码套件，通过ALPN协商h2或http/1.1
+            builder.ciphers(Http2SecurityUtil.CIPHERS, SupportedCipherSuiteFilter.INSTANCE)
+                    .applicationProtocolConfig(new ApplicationProtocolConfig(
+                            ApplicationProtocolConfig.Protocol.ALPN,
+                            ApplicationProtocolConfig.SelectorFailureBehavior.NO_ADVERTISE,
+                            ApplicationProtocolConfig.SelectedListenerFailureBehavior.ACCEPT,
+                            ApplicationProtocolNames.HTTP_2,
+                            ApplicationProtocolNames.HTTP_1_1));
+        } else {
+            builder.applicationProtocolConfig(new ApplicationProtocolConfig(
+                    ApplicationProtocolConfig.Protocol.ALPN,
+                    ApplicationProtocolConfig.SelectorFailureBehavior.NO_ADVERTISE,
+                    ApplicationProtocolConfig.SelectedListenerFailureBehavior.ACCEPT,
+                    ApplicationProtocolNames.HTTP_1_1));
+        }
+        SslContext context = builder.build();
+        applyTicketKeys(context);
+        return context;
+    }
+
+    private byte[] loadOcspResponse() {
+        if (config.getOcspPath() == null || provider != SslProvider.OPENSSL || !OpenSsl.isOcspSupported()) {
+            return null;
+        }
+        File ocspFile = new File(config.getOcspPath());
+        ocspModified = ocspFile.lastModified();
+        try {
+            return Files.readAllBytes(ocspFile.toPath());
+        } catch (IOException e) {
+            log.error("读取OCSP响应文件失败 {}", ocspFile.getAbsolutePath(), e);
+            return null;
+        }
+    }
+
+    /**
+     * 证书、私钥或OCSP文件更新后重新加载，加载失败时继续使用旧的配置
+     */
+    private void reloadIfModified() {
+        try {
+            if (new File(config.getCertPath()).lastModified() != certModified
+                    || new File(config.getKeyPath()).lastModified() != keyModified) {
+                sslContext = buildSslContext();
+                log.info("tls certificate reloaded: {}", config.getCertPath());
+            }
+            if (config.getOcspPath() != null && new File(config.getOcspPath()).lastModified() != ocspModified) {
+                byte[] ocsp = loadOcspResponse();
+                if (ocsp != null) {
+                    ocspResponse = ocsp;
+                    log.info("ocsp response reloaded: {}", config.getOcspPath());
+                }
+            }
+        } catch (Throwable t) {
+            log.error("重新加载TLS证书失败，继续使用旧证书", t);
+        }
+    }
+
+    /**
+     * 生成新的票据密钥用于加密，保留上一把密钥用于解密
+     */
+    private void rotateTicketKeys() {
+        try {
+            OpenSslSessionTicketKey[] current = ticketKeys;
+            ticketKeys = new OpenSslSessionTicketKey[]{newTicketKey(), current[0]};
+            applyTicketKeys(sslContext);
+            log.debug("tls session ticket keys rotated");
+        } catch (Throwable t) {
+            log.error("轮换会话票据密钥失败", t);
+        }
+    }
+
+    private void applyTicketKeys(SslContext context) {
+        if (ticketKeys != null && context.sessionContext() instanceof OpenSslSessionContext sessionContext) {
+            sessionContext.setTicketKeys(ticketKeys);
+        }
+    }
+
+    private OpenSslSessionTicketKey newTicketKey() {
+        byte[] name = new byte[OpenSslSessionTicketKey.NAME_SIZE];
+        byte[] hmacKey = new byte[OpenSslSessionTicketKey.HMAC_KEY_SIZE];
+        byte[] aesKey = new byte[OpenSslSessionTicketKey.AES_KEY_SIZE];
+        random.nextBytes(name);
+        random.nextBytes(hmacKey);
+        random.nextBytes(aesKey);
+        return new OpenSslSessionTicketKey(name, hmacKey, aesKey);
+    }
+
+}
@@ -3,102 +3,136 @@ package request;
 
 
 import com.alibaba.nacos.common.utils.StringUtils;
+import config.ObjectPoolConfig;
 import constant.HttpConstant;
 import io.netty.buffer.ByteBuf;
 import io.netty.handler.codec.http.cookie.ServerCookieDecoder;
+import io.netty.util.Recycler;
+import loader.ConfigLoader;
+import lombok.AccessLevel;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.Setter;
+import lombok.ToString;
 import io.netty.handler.codec.http.*;
 import java.nio.charset.Charset;
-import java.time.LocalDateTime;
-import java.time.format.DateTimeFormatter;
 import java.util.*;
 
 import org.asynchttpclient.Request;
 import org.asynchttpclient.RequestBuilder;
 import pojo.ServiceDefinition;
+import request.id.RequestId;
 
-import static constant.BasicConstant.DATE_DEFAULT_FORMATTER;
+import static constant.RequestIdConstant.REQUEST_ID_HEADER;
 
 /**
  * 网关请求
- *
+ * 构造时只保存客户端请求中已有的信息，查询参数、Cookie在首次访问时解析，下游请求在转发时才组装
+ * 被路由、灰度、限流拒绝或命中缓存的请求不需要付出这些开销
+ * 开启对象池时通过{@link #newInstance}获取，随网关上下文一起回收
  */
 @Data
 public class GatewayRequest {
 
+    private static final ObjectPoolConfig POOL_CONFIG = ConfigLoader.getConfig().getObjectPool();
+
+    private static final Recycler<GatewayRequest> RECYCLER = new Recycler<GatewayRequest>(POOL_CONFIG.getMaxCapacityPerThread()) {
+        @Override
+        protected GatewayRequest newObject(Handle<GatewayRequest> handle) {
+            return new GatewayRequest(handle);
+        }
+    };
+
+    /**
+     * 对象池句柄，未开启对象池时为空
+     */
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    @EqualsAndHashCode.Exclude
+    @ToString.Exclude
+    private final Recycler.Handle<GatewayRequest> handle;
+
     /**
      * 请求流水号
      * 唯一标识一个请求，用于请求追踪和日志记录
-     * 由时间戳和UUID组成，确保全局唯一
+     * 复用客户端传入的X-Request-Id或由生成器生成，并通过X-Request-Id传给下游
      */
-    private final String id;
+    @Setter(AccessLevel.NONE)
+    private RequestId requestId;
 
     /**
      * 服务定义
      * 包含服务的元数据信息，如服务名、状态等
      * 用于服务发现和路由匹配
      */
-    private final ServiceDefinition serviceDefinition;
+    @Setter(AccessLevel.NONE)
+    private ServiceDefinition serviceDefinition;
 
     /**
      * 请求进入网关时间
      */
-    private final long beginTime;
+    @Setter(AccessLevel.NONE)
+    private long beginTime;
 
     /**
      * 字符集
      */
-    private final Charset charset;
+    @Setter(AccessLevel.NONE)
+    private Charset charset;
 
     /**
      * 客户端的IP，主要用于做流控、黑白名单
      */
-    private final String clientIp;
+    @Setter(AccessLevel.NONE)
+    private String clientIp;
 
     /**
      * 请求的地址：IP：port
      */
-    private final String host;
+    @Setter(AccessLevel.NONE)
+    private String host;
 
     /**
      * 请求的路径   /XXX/XXX/XX
      */
-    private final String path;
+    @Setter(AccessLevel.NONE)
+    private String path;
 
     /**
      * URI：统一资源标识符，/XXX/XXX/XXX?attr1=value&attr2=value2
      */
-    private final String uri;
+    @Setter(AccessLevel.NONE)
+    private String uri;
 
     /**
      * 请求方法 POST/PUT/GET
      */
-    private final HttpMethod method;
+    @Setter(AccessLevel.NONE)
+    private HttpMethod method;
 
     /**
      * 请求的格式
      */
-    private final String contentType;
+    @Setter(AccessLevel.NONE)
+    private String contentType;
 
     /**
      * 请求头信息
      */
-    private final HttpHeaders headers;
+    @Setter(AccessLevel.NONE)
+    private HttpHeaders headers;
 
     /**
-     * 参数解析器
+     * 参数解析器，首次访问时创建
      */
-    private final QueryStringDecoder queryStringDecoder;
+    private QueryStringDecoder queryStringDecoder;
 
     /**
      * FullHttpRequest: 一个 完整的 HTTP 请求, 包含请求头、请求行、请求体
      */
-    private final FullHttpRequest fullHttpRequest;
-
-    /**
-     * 构建下游请求
-     */
-    private final RequestBuilder requestBuilder;
+    @Setter(AccessLevel.NONE)
+    private FullHttpRequest fullHttpRequest;
 
     /**
      * 请求体
@@ -135,8 +169,29 @@ public class GatewayRequest {
      */
     private boolean isGray;
 
-    public GatewayRequest(ServiceDefinition serviceDefinition, Charset charset, String clientIp, String host, String uri, HttpMethod method, String contentType, HttpHeaders headers, FullHttpRequest fullHttpRequest) {
-        this.id = LocalDateTime.now().format(DateTimeFormatter.ofPattern(DATE_DEFAULT_FORMATTER)) + "---" + UUID.randomUUID();
+    public GatewayRequest(RequestId requestId, ServiceDefinition serviceDefinition, Charset charset, String clientIp, String host, String uri, HttpMethod method, String contentType, HttpHeaders headers, FullHttpRequest fullHttpRequest) {
+        this.handle = null;
+        init(requestId, serviceDefinition, charset, clientIp, host, uri, method, contentType, headers, fullHttpRequest);
+    }
+
+    private GatewayRequest(Recycler.Handle<GatewayRequest> handle) {
+        this.handle = handle;
+    }
+
+    /**
+     * 创建网关请求，开启对象池时从对象池获取
+     */
+    public static GatewayRequest newInstance(RequestId requestId, ServiceDefinition serviceDefinition, Charset charset, String clientIp, String host, String uri, HttpMethod method, String contentType, HttpHeaders headers, FullHttpRequest fullHttpRequest) {
+        if (!POOL_CONFIG.isEnabled()) {
+            return new GatewayRequest(requestId, serviceDefinition, charset, clientIp, host, uri, method, contentType, headers, fullHttpRequest);
+        }
+        GatewayRequest request = RECYCLER.get();
+        request.init(requestId, serviceDefinition, charset, clientIp, host, uri, method, contentType, headers, fullHttpRequest);
+        return request;
+    }
+
+    private void init(RequestId requestId, ServiceDefinition serviceDefinition, Charset charset, String clientIp, String host, String uri, HttpMethod method, String contentType, HttpHeaders headers, FullHttpRequest fullHttpRequest) {
+        this.requestId = requestId;
         this.serviceDefinition = serviceDefinition;
         this.beginTime = System.currentTimeMillis();
         this.charset = charset;
@@ -147,22 +202,103 @@ public class GatewayRequest {
         this.contentType = contentType;
         this.headers = headers;
         this.fullHttpRequest = fullHttpRequest;
-        this.queryStringDecoder = new QueryStringDecoder(uri, charset);
-        this.path = queryStringDecoder.path();
+        this.path = parsePath();
         this.modifyHost = host;
         this.modifyPath = path;
         this.modifyScheme = HttpConstant.HTTP_PREFIX_SEPARATOR;
+    }
 
-        this.requestBuilder = new RequestBuilder();
-        this.requestBuilder.setMethod(method.name());
-        this.requestBuilder.setHeaders(headers);
-        this.requestBuilder.setQueryParams(queryStringDecoder.parameters());
-        ByteBuf contentBuffer = fullHttpRequest.content();
-        if (Objects.nonNull(contentBuffer)) {
-            this.requestBuilder.setBody(contentBuffer.nioBuffer());
+    /**
+     * 清空所有字段并回收，由网关上下文回收时调用，客户端请求由调用方释放
+     */
+    public void recycle() {
+        if (handle == null) {
+            return;
         }
+        requestId = null;
+        serviceDefinition = null;
+        beginTime = 0;
+        charset = null;
+        clientIp = null;
+        host = null;
+        path = null;
+        uri = null;
+        method = null;
+        contentType = null;
+        headers = null;
+        queryStringDecoder = null;
+        fullHttpRequest = null;
+        body = null;
+        cookieMap = null;
+        postParameters = null;
+        modifyScheme = null;
+        modifyHost = null;
+        modifyPath = null;
+        isGray = false;
+        handle.recycle(this);
     }
 
+    /**
+     * 获取参数解析器，首次访问时创建
+     */
+    public QueryStringDecoder getQueryStringDecoder() {
+        if (queryStringDecoder == null) {
+            queryStringDecoder = new QueryStringDecoder(uri, charset);
+        }
+        return queryStringDecoder;
+    }
+
+    /**
+     * 未解码的请求路径，不含查询字符串
+     */
+    public String getRawPath() {
+        for (int i = 0; i < uri.length(); i++) {
+            char c = uri.charAt(i);
+            if (c == '?' || c == '#') {
+                return uri.substring(0, i);
+            }
+        }
+        return uri;
+    }
+
+    /**
+     * 未解码的查询字符串，不含?，没有时返回空字符串
+     */
+    public String getRawQuery() {
+        int start = uri.indexOf('?');
+        if (start < 0) {
+            return "";
+        }
+        int end = uri.indexOf('#', start);
+        return end < 0 ? uri.substring(start + 1) : uri.substring(start + 1, end);
+    }
+
+    /**
+     * 解析请求路径
+     * 路径中没有需要解码的字符时直接截取，避免创建参数解析器
+     */
+    private String parsePath() {
+        int end = uri.length();
+        for (int i = 0; i < uri.length(); i++) {
+            char c = uri.charAt(i);
+            if (c == '?' || c == '#') {
+                end = i;
+                break;
+            }
+            if (c == '%') {
+                return getQueryStringDecoder().path();
+            }
+        }
+        return end == uri.length() ? uri : uri.substring(0, end);
+    }
+
+
+    /**
+     * 请求流水号的字符串形式
+     */
+    public String getId() {
+        return requestId.toString();
+    }
 
     /**
      * 获取Cookie
@@ -176,7 +312,7 @@ public class GatewayRequest {
             }
             Set<io.netty.handler.codec.http.cookie.Cookie> cookies = ServerCookieDecoder.STRICT.decode(cookieStr);
             for (io.netty.handler.codec.http.cookie.Cookie cookie : cookies) {
-                cookieMap.put(name, cookie);
+                cookieMap.put(cookie.name(), cookie);
             }
         }
         return cookieMap.get(name);
@@ -186,8 +322,20 @@ public class GatewayRequest {
         return modifyScheme + modifyHost + modifyPath;
     }
 
+    /**
+     * 组装下游请求，只在转发时调用
+     * 查询字符串原样拼接到URL上，不需要解码后再编码，请求头和请求体直接复用客户端请求的
+     */
     public Request build() {
-        requestBuilder.setUrl(getFinalUrl());
+        String rawQuery = getRawQuery();
+        RequestBuilder requestBuilder = new RequestBuilder(method.name())
+                .setUrl(rawQuery.isEmpty() ? getFinalUrl() : getFinalUrl() + "?" + rawQuery)
+                .setHeaders(headers)
+                .setHeader(REQUEST_ID_HEADER, getId());
+        ByteBuf contentBuffer = fullHttpRequest.content();
+        if (Objects.nonNull(contentBuffer)) {
+            requestBuilder.setBody(contentBuffer.nioBuffer());
+        }
         return requestBuilder.build();
     }
 
@@ -0,0 +1,56 @@
+package request.id;
+
+/**
+ * 请求ID
+ * 生成器生成的是64位整数，只有在记录日志或传给下游时才转成字符串，转换结果会被缓存
+ */
+public final class RequestId {
+
+    private final long value;
+
+    private String text;
+
+    private RequestId(long value, String text) {
+        this.value = value;
+        this.text = text;
+    }
+
+    public static RequestId of(long value) {
+        return new RequestId(value, null);
+    }
+
+    /**
+     * 使用已有的字符串作为请求ID，如客户端传入的X-Request-Id
+     */
+    public static RequestId of(String text) {
+        return new RequestId(0, text);
+    }
+
+    /**
+     * 64位整数形式的ID，使用字符串创建时为0
+     */
+    public long getValue() {
+        return value;
+    }
+
+    @Override
+    public String toString() {
+        String s = text;
+        if (s == null) {
+            // 固定16位十六进制，保证按字符串排序时与生成顺序一致
+            s = toHex(value);
+            text = s;
+        }
+        return s;
+    }
+
+    private static String toHex(long value) {
+        char[] chars = new char[16];
+        for (int i = 15; i >= 0; i--) {
+            chars[i] = Character.forDigit((int) (value & 0xF), 16);
+            value >>>= 4;
+        }
+        return new String(chars);
+    }
+
+}
@@ -0,0 +1,27 @@
+package request.id;
+
+import config.RequestIdConfig;
+
+/**
+ * 请求ID生成器
+ * 通过SPI加载，由配置的requestId.generator选择
+ */
+public interface RequestIdGenerator {
+
+    /**
+     * 初始化生成器
+     */
+    default void init(RequestIdConfig config) {
+    }
+
+    /**
+     * 生成请求ID，会被多个事件循环线程同时调用
+     */
+    RequestId next();
+
+    /**
+     * 生成器标识
+     */
+    String mark();
+
+}
@@ -0,0 +1,85 @@
+package request.id;
+
+import config.RequestIdConfig;
+import io.netty.handler.codec.http.HttpHeaders;
+import loader.ConfigLoader;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.ServiceLoader;
+
+import static constant.RequestIdConstant.MAX_INCOMING_REQUEST_ID_LENGTH;
+import static constant.RequestIdConstant.REQUEST_ID_HEADER;
+
+/**
+ * 请求ID管理器
+ * 通过SPI加载所有请求ID生成器，按配置选择一个使用，未找到时使用snowflake
+ * 请求带有合法的X-Request-Id时直接复用，保证调用链上的ID一致
+ */
+@Slf4j
+public class RequestIdManager {
+
+    /*********   单例   *********/
+    private static final RequestIdManager INSTANCE = new RequestIdManager(ConfigLoader.getConfig().getRequestId());
+
+    public static RequestIdManager getInstance() {
+        return INSTANCE;
+    }
+
+    private final RequestIdGenerator generator;
+
+    private final boolean reuseIncoming;
+
+    private RequestIdManager(RequestIdConfig config) {
+        Map<String, RequestIdGenerator> generatorMap = new HashMap<>();
+        for (RequestIdGenerator generator : ServiceLoader.load(RequestIdGenerator.class)) {
+            generatorMap.put(generator.mark(), generator);
+            log.info("load request id generator success: {}", generator);
+        }
+        RequestIdGenerator generator = generatorMap.get(config.getGenerator());
+        if (generator == null) {
+            log.warn("request id generator {} not found, use snowflake", config.getGenerator());
+            generator = new SnowflakeRequestIdGenerator();
+        }
+        generator.init(config);
+        this.generator = generator;
+        this.reuseIncoming = config.isReuseIncoming();
+    }
+
+    /**
+     * 生成请求ID
+     *
+     * @param headers 客户端请求头，带有合法的X-Request-Id且允许复用时直接使用
+     */
+    public RequestId generate(HttpHeaders headers) {
+        if (reuseIncoming) {
+            String incoming = headers.get(REQUEST_ID_HEADER);
+            if (isValid(incoming)) {
+                return RequestId.of(incoming);
+            }
+        }
+        return generator.next();
+    }
+
+    public RequestId next() {
+        return generator.next();
+    }
+
+    /**
+     * 只接受长度有限的可打印ASCII字符，避免日志注入和超长请求头被透传到下游
+     */
+    private static boolean isValid(String id) {
+        if (id == null || id.isEmpty() || id.length() > MAX_INCOMING_REQUEST_ID_LENGTH) {
+            return false;
+        }
+        for (int i = 0; i < id.length(); i++) {
+            char c = id.charAt(i);
+            if (c <= ' ' || c >= 0x7F) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+}
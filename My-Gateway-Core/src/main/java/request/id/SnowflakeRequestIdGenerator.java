@@ -0,0 +1,140 @@
+package request.id;
+
+import loader.ConfigLoader;
+import config.RequestIdConfig;
+import io.netty.util.concurrent.FastThreadLocal;
+import lombok.extern.slf4j.Slf4j;
+import utils.NetUtil;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static constant.RequestIdConstant.SNOWFLAKE_REQUEST_ID_GENERATOR;
+
+/**
+ * Snowflake风格的64位请求ID
+ * 位分布：1位符号 | 41位毫秒时间戳 | 10位节点 | 7位线程槽位 | 5位序号
+ * 1. 每个线程占用一个槽位，在自己的槽位里递增序号，不需要加锁也没有CAS竞争
+ * 2. 同一毫秒内序号用完时借用下一毫秒，时钟回拨时继续使用上次的时间，单个槽位内ID始终递增
+ * 3. Netty线程退出时归还槽位，新线程从槽位最近一次的状态继续递增，重建的事件循环线程不会耗尽槽位
+ * 4. 槽位用完后（同时超过127个线程生成ID），其余线程共用最后一个槽位，通过CAS递增
+ */
+@Slf4j
+public class SnowflakeRequestIdGenerator implements RequestIdGenerator {
+
+    /**
+     * 起始时间 2024-01-01T00:00:00Z
+     */
+    private static final long EPOCH = 1704067200000L;
+
+    private static final int NODE_BITS = 10;
+
+    private static final int SLOT_BITS = 7;
+
+    private static final int SEQUENCE_BITS = 5;
+
+    private static final int SHARED_SLOT = (1 << SLOT_BITS) - 1;
+
+    private static final AtomicInteger NEXT_SLOT = new AtomicInteger();
+
+    /**
+     * 退出的线程归还的槽位，连同槽位最近一次的状态
+     */
+    private static final Queue<ThreadState> FREE_SLOTS = new ConcurrentLinkedQueue<>();
+
+    private static final AtomicBoolean SHARED_SLOT_USED = new AtomicBoolean(false);
+
+    /**
+     * 当前线程的槽位和最近一次的时间戳与序号
+     * 使用FastThreadLocal，Netty线程退出时会回调onRemoval归还槽位
+     */
+    private static final FastThreadLocal<ThreadState> THREAD_STATE = new FastThreadLocal<>() {
+        @Override
+        protected ThreadState initialValue() {
+            ThreadState threadState = FREE_SLOTS.poll();
+            if (threadState != null) {
+                return threadState;
+            }
+            int slot = NEXT_SLOT.getAndUpdate(next -> Math.min(next + 1, SHARED_SLOT));
+            if (slot < SHARED_SLOT) {
+                return new ThreadState(slot);
+            }
+            if (SHARED_SLOT_USED.compareAndSet(false, true)) {
+                log.warn("snowflake request id slots are used up, thread {} and later threads share one slot",
+                        Thread.currentThread().getName());
+            }
+            return null;
+        }
+
+        @Override
+        protected void onRemoval(ThreadState threadState) {
+            if (threadState != null) {
+                FREE_SLOTS.offer(threadState);
+            }
+        }
+    };
+
+    /**
+     * 共享槽位的时间戳与序号，高位是时间戳，低位是序号
+     */
+    private final AtomicLong sharedState = new AtomicLong();
+
+    private long nodeBits;
+
+    @Override
+    public void init(RequestIdConfig config) {
+        int nodeId = config.getNodeId();
+        if (nodeId < 0) {
+            // 未配置时根据本机IP和端口计算，可能冲突，多实例部署时应显式配置
+            nodeId = (NetUtil.getLocalIp() + ":" + ConfigLoader.getConfig().getPort()).hashCode() & ((1 << NODE_BITS) - 1);
+            log.info("snowflake request id node id: {}", nodeId);
+        }
+        this.nodeBits = (long) (nodeId & ((1 << NODE_BITS) - 1)) << (SLOT_BITS + SEQUENCE_BITS);
+    }
+
+    @Override
+    public RequestId next() {
+        long now = System.currentTimeMillis() - EPOCH;
+        ThreadState threadState = THREAD_STATE.get();
+        long state;
+        int slot;
+        if (threadState != null) {
+            state = threadState.state = Math.max(now << SEQUENCE_BITS, threadState.state + 1);
+            slot = threadState.slot;
+        } else {
+            long prev;
+            do {
+                prev = sharedState.get();
+                state = Math.max(now << SEQUENCE_BITS, prev + 1);
+            } while (!sharedState.compareAndSet(prev, state));
+            slot = SHARED_SLOT;
+        }
+        // 序号溢出时进位到时间戳，相当于借用下一毫秒
+        long timestamp = state >>> SEQUENCE_BITS;
+        long sequence = state & ((1 << SEQUENCE_BITS) - 1);
+        return RequestId.of(timestamp << (NODE_BITS + SLOT_BITS + SEQUENCE_BITS)
+                | nodeBits
+                | (long) slot << SEQUENCE_BITS
+                | sequence);
+    }
+
+    @Override
+    public String mark() {
+        return SNOWFLAKE_REQUEST_ID_GENERATOR;
+    }
+
+    private static class ThreadState {
+
+        private final int slot;
+
+        private long state;
+
+        ThreadState(int slot) {
+            this.slot = slot;
+        }
+    }
+
+}
@@ -0,0 +1,23 @@
+package request.id;
+
+import java.util.UUID;
+
+import static constant.RequestIdConstant.UUID_REQUEST_ID_GENERATOR;
+
+/**
+ * UUID请求ID
+ * 每次生成都要从SecureRandom取随机数，只在需要与外部系统的UUID格式兼容时使用
+ */
+public class UuidRequestIdGenerator implements RequestIdGenerator {
+
+    @Override
+    public RequestId next() {
+        return RequestId.of(UUID.randomUUID().toString());
+    }
+
+    @Override
+    public String mark() {
+        return UUID_REQUEST_ID_GENERATOR;
+    }
+
+}
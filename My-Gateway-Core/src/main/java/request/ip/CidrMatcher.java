@@ -0,0 +1,112 @@
+package request.ip;
+
+import io.netty.util.NetUtil;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * CIDR网段匹配
+ * IPv4网段保存为网络地址和掩码两个int，匹配时只做一次与运算；IPv6网段按字节比较
+ */
+public class CidrMatcher {
+
+    /**
+     * IPv4网段，每两个元素为一组：网络地址、掩码
+     */
+    private final int[] ipv4;
+
+    /**
+     * IPv6网段的网络地址和前缀长度
+     */
+    private final byte[][] ipv6Networks;
+
+    private final int[] ipv6Prefixes;
+
+    public CidrMatcher(Collection<String> cidrs) {
+        List<int[]> v4 = new ArrayList<>();
+        List<byte[]> v6 = new ArrayList<>();
+        List<Integer> v6Prefixes = new ArrayList<>();
+        if (cidrs != null) {
+            for (String cidr : cidrs) {
+                String value = cidr.trim();
+                int slash = value.indexOf('/');
+                String address = slash < 0 ? value : value.substring(0, slash);
+                byte[] bytes = NetUtil.createByteArrayFromIpAddressString(address);
+                if (bytes == null) {
+                    throw new IllegalArgumentException("invalid cidr: " + cidr);
+                }
+                int prefix = slash < 0 ? bytes.length * 8 : Integer.parseInt(value.substring(slash + 1));
+                if (prefix < 0 || prefix > bytes.length * 8) {
+                    throw new IllegalArgumentException("invalid cidr prefix: " + cidr);
+                }
+                if (bytes.length == 4) {
+                    int mask = prefix == 0 ? 0 : -1 << (32 - prefix);
+                    v4.add(new int[]{toInt(bytes) & mask, mask});
+                } else {
+                    v6.add(bytes);
+                    v6Prefixes.add(prefix);
+                }
+            }
+        }
+        this.ipv4 = new int[v4.size() * 2];
+        for (int i = 0; i < v4.size(); i++) {
+            ipv4[i * 2] = v4.get(i)[0];
+            ipv4[i * 2 + 1] = v4.get(i)[1];
+        }
+        this.ipv6Networks = v6.toArray(new byte[0][]);
+        this.ipv6Prefixes = v6Prefixes.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    public boolean isEmpty() {
+        return ipv4.length == 0 && ipv6Networks.length == 0;
+    }
+
+    /**
+     * 匹配IPv4地址
+     */
+    public boolean matches(int address) {
+        for (int i = 0; i < ipv4.length; i += 2) {
+            if ((address & ipv4[i + 1]) == ipv4[i]) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 匹配4字节或16字节的地址
+     */
+    public boolean matches(byte[] address) {
+        if (address.length == 4) {
+            return matches(toInt(address));
+        }
+        for (int i = 0; i < ipv6Networks.length; i++) {
+            if (matches(ipv6Networks[i], ipv6Prefixes[i], address)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean matches(byte[] network, int prefix, byte[] address) {
+        int bytes = prefix >>> 3;
+        for (int i = 0; i < bytes; i++) {
+            if (network[i] != address[i]) {
+                return false;
+            }
+        }
+        int bits = prefix & 7;
+        if (bits == 0) {
+            return true;
+        }
+        int mask = 0xFF << (8 - bits);
+        return (network[bytes] & mask) == (address[bytes] & mask);
+    }
+
+    private static int toInt(byte[] bytes) {
+        return (bytes[0] & 0xFF) << 24 | (bytes[1] & 0xFF) << 16 | (bytes[2] & 0xFF) << 8 | (bytes[3] & 0xFF);
+    }
+
+}
@@ -0,0 +1,216 @@
+package request.ip;
+
+import config.ClientIpConfig;
+import io.netty.channel.Channel;
+import io.netty.handler.codec.http.HttpHeaders;
+import io.netty.handler.codec.http2.Http2StreamChannel;
+import io.netty.util.AttributeKey;
+import io.netty.util.NetUtil;
+import loader.ConfigLoader;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.util.List;
+
+import static constant.HttpConstant.HTTP_FORWARD_SEPARATOR;
+
+/**
+ * 客户端IP解析
+ * 1. 连接的对端地址在连接上只解析一次，连同是否为可信代理一起缓存在Channel属性上
+ * 2. 对端是可信代理时，从最后一行开始从右向左扫描X-Forwarded-For，跳过可信代理，第一个不可信的地址就是客户端IP
+ *    最左边的地址可以被客户端伪造，只有经过可信代理追加的地址才可信
+ * 3. 对端不是可信代理时忽略X-Forwarded-For，直接使用对端地址
+ * 扫描时直接在请求头字符串上按下标解析，不拆分字符串，只有返回的客户端IP需要截取
+ */
+public class ClientIpResolver {
+
+    /*********   单例   *********/
+    private static final ClientIpResolver INSTANCE = new ClientIpResolver(ConfigLoader.getConfig().getClientIp());
+
+    public static ClientIpResolver getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * 连接的对端地址
+     */
+    private static final AttributeKey<ClientAddress> CLIENT_ADDRESS = AttributeKey.valueOf("clientAddress");
+
+    private final boolean forwardedEnabled;
+
+    private final CidrMatcher trustedProxies;
+
+    private ClientIpResolver(ClientIpConfig config) {
+        this.trustedProxies = new CidrMatcher(config.getTrustedProxies());
+        this.forwardedEnabled = config.isForwardedEnabled() && !trustedProxies.isEmpty();
+    }
+
+    /**
+     * 解析客户端IP
+     *
+     * @param channel 请求所在的Channel，HTTP/2的流使用所属连接的地址
+     * @param headers 请求头
+     */
+    public String resolve(Channel channel, HttpHeaders headers) {
+        ClientAddress remote = remoteAddress(channel);
+        if (!forwardedEnabled || !remote.trusted) {
+            return remote.ip;
+        }
+        // 客户端可以自己带一行X-Forwarded-For，可信代理也可能另起一行追加，各行按顺序连起来才是完整的转发链
+        List<String> lines = headers.getAll(HTTP_FORWARD_SEPARATOR);
+        if (lines.isEmpty()) {
+            return remote.ip;
+        }
+
+        // 当前已知的最后一个可信地址，初始为对端地址
+        String trustedLine = null;
+        int trustedStart = -1;
+        int trustedEnd = -1;
+        scan:
+        for (int line = lines.size() - 1; line >= 0; line--) {
+            String forwarded = lines.get(line);
+            int end = forwarded.length();
+            while (end > 0) {
+                int comma = forwarded.lastIndexOf(',', end - 1);
+                int start = trim(forwarded, comma + 1, end, true);
+                int stop = trim(forwarded, start, end, false);
+                end = comma < 0 ? 0 : comma;
+                if (stop - start > 2 && forwarded.charAt(start) == '[' && forwarded.charAt(stop - 1) == ']') {
+                    // 带方括号的IPv6地址
+                    start++;
+                    stop--;
+                }
+                if (start >= stop) {
+                    continue;
+                }
+                int trusted = isTrusted(forwarded, start, stop);
+                if (trusted < 0) {
+                    // 无法解析的地址，之后的地址都不可信，使用最后一个可信的地址
+                    break scan;
+                }
+                if (trusted == 0) {
+                    return forwarded.substring(start, stop);
+                }
+                trustedLine = forwarded;
+                trustedStart = start;
+                trustedEnd = stop;
+            }
+        }
+        return trustedLine == null ? remote.ip : trustedLine.substring(trustedStart, trustedEnd);
+    }
+
+    /**
+     * 使用PROXY协议等方式拿到的真实源地址替换连接的对端地址
+     */
+    public void setRemoteAddress(Channel channel, String ip) {
+        connection(channel).attr(CLIENT_ADDRESS).set(new ClientAddress(ip, isTrusted(ip, 0, ip.length()) > 0));
+    }
+
+    private ClientAddress remoteAddress(Channel channel) {
+        Channel connection = connection(channel);
+        ClientAddress address = connection.attr(CLIENT_ADDRESS).get();
+        if (address == null) {
+            address = newClientAddress(connection.remoteAddress());
+            connection.attr(CLIENT_ADDRESS).set(address);
+        }
+        return address;
+    }
+
+    private ClientAddress newClientAddress(SocketAddress socketAddress) {
+        if (!(socketAddress instanceof InetSocketAddress)) {
+            return new ClientAddress(String.valueOf(socketAddress), false);
+        }
+        InetAddress address = ((InetSocketAddress) socketAddress).getAddress();
+        return new ClientAddress(address.getHostAddress(), trustedProxies.matches(address.getAddress()));
+    }
+
+    private static Channel connection(Channel channel) {
+        return channel instanceof Http2StreamChannel ? channel.parent() : channel;
+    }
+
+    /**
+     * 判断地址是否为可信代理
+     *
+     * @return 1可信，0不可信，-1不是合法的IP地址
+     */
+    private int isTrusted(String value, int start, int end) {
+        int ipv4 = parseIpv4(value, start, end);
+        if (ipv4 != -1 || isIpv4Broadcast(value, start, end)) {
+            return trustedProxies.matches(ipv4) ? 1 : 0;
+        }
+        // 少见的IPv6地址交给Netty解析
+        byte[] bytes = NetUtil.createByteArrayFromIpAddressString(value.substring(start, end));
+        if (bytes == null) {
+            return -1;
+        }
+        return trustedProxies.matches(bytes) ? 1 : 0;
+    }
+
+    /**
+     * 不创建对象解析IPv4地址
+     *
+     * @return IPv4地址，不合法时返回-1（255.255.255.255也会返回-1，由调用方区分）
+     */
+    private static int parseIpv4(String value, int start, int end) {
+        int result = 0;
+        int octet = -1;
+        int dots = 0;
+        for (int i = start; i < end; i++) {
+            char c = value.charAt(i);
+            if (c >= '0' && c <= '9') {
+                octet = octet < 0 ? c - '0' : octet * 10 + (c - '0');
+                if (octet > 255) {
+                    return -1;
+                }
+            } else if (c == '.' && octet >= 0 && dots < 3) {
+                result = result << 8 | octet;
+                octet = -1;
+                dots++;
+            } else {
+                return -1;
+            }
+        }
+        if (dots != 3 || octet < 0) {
+            return -1;
+        }
+        return result << 8 | octet;
+    }
+
+    private static boolean isIpv4Broadcast(String value, int start, int end) {
+        return value.startsWith("255.255.255.255", start) && end - start == 15;
+    }
+
+    /**
+     * 跳过两端的空白
+     *
+     * @param forward true从start向后找第一个非空白字符，false从end向前找最后一个非空白字符
+     */
+    private static int trim(String value, int start, int end, boolean forward) {
+        if (forward) {
+            while (start < end && value.charAt(start) == ' ') start++;
+            return start;
+        }
+        while (end > start && value.charAt(end - 1) == ' ') end--;
+        return end;
+    }
+
+    /**
+     * 连接的对端地址
+     */
+    private static class ClientAddress {
+
+        private final String ip;
+
+        /**
+         * 对端是否为可信代理
+         */
+        private final boolean trusted;
+
+        ClientAddress(String ip, boolean trusted) {
+            this.ip = ip;
+            this.trusted = trusted;
+        }
+    }
+
+}
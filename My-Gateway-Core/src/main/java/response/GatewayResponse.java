@@ -2,6 +2,7 @@ package response;
 
 
 
+import io.netty.buffer.ByteBuf;
 import io.netty.handler.codec.http.*;
 import lombok.Data;
 import lombok.NoArgsConstructor;
@@ -15,14 +16,21 @@ public class GatewayResponse {
 
     /**
      * 响应头
+     * 大多数响应直接使用下游或缓存的响应头，首次访问时才创建
      */
-    private HttpHeaders responseHeaders = new DefaultHttpHeaders();
+    private HttpHeaders responseHeaders;
 
     /**
      * 响应内容
      */
     private String content;
 
+    /**
+     * 响应内容缓冲区
+     * 多个请求共享同一份下游响应时使用，写回客户端后由Netty释放
+     */
+    private ByteBuf contentBuffer;
+
     /**
      * 原始响应
      * 从后端服务获取的原始HTTP响应
@@ -38,11 +46,18 @@ public class GatewayResponse {
      */
     private HttpResponseStatus httpResponseStatus;
 
+    public HttpHeaders getResponseHeaders() {
+        if (responseHeaders == null) {
+            responseHeaders = new DefaultHttpHeaders();
+        }
+        return responseHeaders;
+    }
+
     /**
      * 添加响应头
      */
     public void addHeader(CharSequence key, CharSequence val) {
-        responseHeaders.add(key, val);
+        getResponseHeaders().add(key, val);
     }
 
 }
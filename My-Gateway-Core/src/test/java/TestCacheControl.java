@@ -0,0 +1,40 @@
+
+import filter.cache.CacheControl;
+import io.netty.handler.codec.DateFormatter;
+import io.netty.handler.codec.http.DefaultHttpHeaders;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpHeaders;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Date;
+
+public class TestCacheControl {
+
+    @Test
+    public void testParse() {
+        HttpHeaders headers = new DefaultHttpHeaders()
+                .add(HttpHeaderNames.CACHE_CONTROL, "public, max-age=60, s-maxage=\"120\"")
+                .add(HttpHeaderNames.CACHE_CONTROL, "stale-while-revalidate=30");
+        CacheControl cacheControl = CacheControl.parse(headers);
+        Assert.assertFalse(cacheControl.isNoStore());
+        Assert.assertEquals(60, cacheControl.getMaxAge());
+        Assert.assertEquals(120, cacheControl.getSMaxAge());
+        Assert.assertEquals(30, cacheControl.getStaleWhileRevalidate());
+        Assert.assertEquals(120_000, CacheControl.freshnessLifetime(cacheControl, headers));
+    }
+
+    @Test
+    public void testExpires() {
+        long now = System.currentTimeMillis() / 1000 * 1000;
+        HttpHeaders headers = new DefaultHttpHeaders()
+                .add(HttpHeaderNames.DATE, DateFormatter.format(new Date(now)))
+                .add(HttpHeaderNames.EXPIRES, DateFormatter.format(new Date(now + 10_000)));
+        Assert.assertEquals(10_000, CacheControl.freshnessLifetime(CacheControl.parse(headers), headers));
+
+        HttpHeaders noStore = new DefaultHttpHeaders().add(HttpHeaderNames.CACHE_CONTROL, "no-store");
+        Assert.assertTrue(CacheControl.parse(noStore).isNoStore());
+        Assert.assertEquals(-1, CacheControl.freshnessLifetime(CacheControl.parse(noStore), noStore));
+    }
+
+}
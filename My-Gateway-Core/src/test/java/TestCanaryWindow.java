@@ -0,0 +1,22 @@
+import filter.gray.canary.CanaryWindow;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TestCanaryWindow {
+
+    @Test
+    public void testLatency() {
+        CanaryWindow window = new CanaryWindow();
+        for (int i = 1; i <= 1000; i++) {
+            window.record(i, i % 100 == 0);
+        }
+        Assert.assertEquals(1000, window.getRequests());
+        Assert.assertEquals(0.01, window.getErrorRate(), 1e-9);
+        // 分桶误差不超过25%
+        Assert.assertEquals(500, window.getLatency(0.5), 125);
+        Assert.assertEquals(990, window.getLatency(0.99), 248);
+        Assert.assertTrue(window.getLatency(0.99) >= 990);
+        Assert.assertEquals(0, new CanaryWindow().getLatency(0.99));
+    }
+
+}
@@ -0,0 +1,77 @@
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.http.DefaultHttpHeaders;
+import io.netty.handler.codec.http.HttpHeaders;
+import org.junit.Assert;
+import org.junit.Test;
+import request.ip.CidrMatcher;
+import request.ip.ClientIpResolver;
+
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.util.List;
+
+/**
+ * 使用默认的可信代理网段（回环和私有网段）
+ */
+public class TestClientIpResolver {
+
+    @Test
+    public void testUntrustedPeer() {
+        // 对端不是可信代理，X-Forwarded-For可以被伪造，直接使用对端地址
+        Assert.assertEquals("8.8.8.8", resolve("8.8.8.8", "1.2.3.4"));
+        Assert.assertEquals("8.8.8.8", resolve("8.8.8.8", null));
+    }
+
+    @Test
+    public void testTrustedPeer() {
+        Assert.assertEquals("10.0.0.1", resolve("10.0.0.1", null));
+        Assert.assertEquals("1.2.3.4", resolve("10.0.0.1", "1.2.3.4"));
+        // 从右向左跳过可信代理，最左边伪造的地址不会被使用
+        Assert.assertEquals("5.6.7.8", resolve("10.0.0.1", "1.2.3.4, 5.6.7.8,192.168.1.1 , 10.1.1.1"));
+        Assert.assertEquals("2001:db8::1", resolve("10.0.0.1", "[2001:db8::1], ::1"));
+        // 所有地址都是可信代理时使用最左边的地址
+        Assert.assertEquals("192.168.1.1", resolve("10.0.0.1", "192.168.1.1, 10.1.1.1"));
+        // 无法解析的地址之后都不可信，使用最后一个可信的地址
+        Assert.assertEquals("10.1.1.1", resolve("10.0.0.1", "1.2.3.4, unknown, 10.1.1.1"));
+        Assert.assertEquals("10.0.0.1", resolve("10.0.0.1", "1.2.3.4:80"));
+    }
+
+    @Test
+    public void testMultipleLines() {
+        // 可信代理另起一行追加时，客户端伪造的第一行不会被使用
+        Assert.assertEquals("5.6.7.8", resolve("10.0.0.1", "1.2.3.4", "5.6.7.8"));
+        Assert.assertEquals("5.6.7.8", resolve("10.0.0.1", "1.2.3.4", "5.6.7.8, 10.1.1.1"));
+        // 最后一行全是可信代理时继续扫描前面的行
+        Assert.assertEquals("1.2.3.4", resolve("10.0.0.1", "9.9.9.9, 1.2.3.4", "192.168.1.1, 10.1.1.1"));
+        Assert.assertEquals("192.168.1.1", resolve("10.0.0.1", "unknown", "192.168.1.1"));
+    }
+
+    @Test
+    public void testCidr() {
+        CidrMatcher matcher = new CidrMatcher(List.of("172.16.0.0/12", "0.0.0.0/32", "2001:db8::/33"));
+        Assert.assertTrue(matcher.matches(new byte[]{(byte) 172, 31, (byte) 255, 1}));
+        Assert.assertFalse(matcher.matches(new byte[]{(byte) 172, 32, 0, 1}));
+        Assert.assertTrue(matcher.matches(new byte[]{0, 0, 0, 0}));
+        Assert.assertTrue(matcher.matches(io.netty.util.NetUtil.createByteArrayFromIpAddressString("2001:db8:7fff::1")));
+        Assert.assertFalse(matcher.matches(io.netty.util.NetUtil.createByteArrayFromIpAddressString("2001:db8:8000::1")));
+    }
+
+    private static String resolve(String remote, String... forwarded) {
+        EmbeddedChannel channel = new EmbeddedChannel() {
+            @Override
+            protected SocketAddress remoteAddress0() {
+                return new InetSocketAddress(remote, 40000);
+            }
+        };
+        HttpHeaders headers = new DefaultHttpHeaders();
+        if (forwarded != null) {
+            for (String line : forwarded) {
+                if (line != null) {
+                    headers.add("X-Forwarded-For", line);
+                }
+            }
+        }
+        return ClientIpResolver.getInstance().resolve(channel, headers);
+    }
+
+}
@@ -0,0 +1,87 @@
+import context.GatewayContext;
+import filter.loadbalance.strategy.ClientIpConsistentHashLoadBalanceStrategy;
+import io.netty.handler.codec.http.DefaultHttpHeaders;
+import io.netty.handler.codec.http.HttpMethod;
+import org.junit.Assert;
+import org.junit.Test;
+import pojo.RouteDefinition;
+import pojo.ServiceDefinition;
+import pojo.ServiceInstance;
+import request.GatewayRequest;
+import request.id.RequestId;
+import util.FilterUtil;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import static constant.FilterConstant.LOAD_BALANCE_FILTER_NAME;
+
+public class TestConsistentHashLoadBalanceStrategy {
+
+    @Test
+    public void testStableSelection() {
+        ClientIpConsistentHashLoadBalanceStrategy strategy = new ClientIpConsistentHashLoadBalanceStrategy();
+        List<ServiceInstance> instances = instances(5);
+        for (int i = 0; i < 50; i++) {
+            String clientIp = "10.1.0." + i;
+            ServiceInstance selected = strategy.selectInstance(context(clientIp), instances);
+            Assert.assertSame(selected, strategy.selectInstance(context(clientIp), instances));
+            // 实例id相同的新列表选中同一个实例id，返回新列表中的实例对象
+            List<ServiceInstance> copy = instances(5);
+            ServiceInstance fromCopy = strategy.selectInstance(context(clientIp), copy);
+            Assert.assertEquals(selected.getInstanceId(), fromCopy.getInstanceId());
+            Assert.assertTrue(copy.contains(fromCopy));
+        }
+    }
+
+    @Test
+    public void testInstanceRemoved() {
+        ClientIpConsistentHashLoadBalanceStrategy strategy = new ClientIpConsistentHashLoadBalanceStrategy();
+        List<ServiceInstance> instances = instances(5);
+        List<ServiceInstance> remaining = new ArrayList<>(instances.subList(0, 4));
+        int moved = 0;
+        for (int i = 0; i < 200; i++) {
+            String clientIp = "10.2.0." + i;
+            ServiceInstance before = strategy.selectInstance(context(clientIp), instances);
+            ServiceInstance after = strategy.selectInstance(context(clientIp), remaining);
+            Assert.assertTrue(remaining.contains(after));
+            if (remaining.contains(before) && before != after) moved++;
+        }
+        // 只有原来落在被删除实例上的key会重新分配
+        Assert.assertEquals(0, moved);
+    }
+
+    @Test
+    public void testFilterConfigCached() {
+        RouteDefinition.FilterConfig filterConfig = new RouteDefinition.FilterConfig();
+        filterConfig.setName(LOAD_BALANCE_FILTER_NAME);
+        filterConfig.setConfig("{\"virtualNodeNum\": 7}");
+        RouteDefinition.LoadBalanceFilterConfig first = FilterUtil.findFilterConfigByClass(Set.of(filterConfig), LOAD_BALANCE_FILTER_NAME, RouteDefinition.LoadBalanceFilterConfig.class);
+        Assert.assertEquals(7, first.getVirtualNodeNum());
+        Assert.assertSame(first, FilterUtil.findFilterConfigByClass(Set.of(filterConfig), LOAD_BALANCE_FILTER_NAME, RouteDefinition.LoadBalanceFilterConfig.class));
+    }
+
+    private static List<ServiceInstance> instances(int count) {
+        List<ServiceInstance> instances = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            ServiceInstance instance = new ServiceInstance();
+            instance.setInstanceId("10.0.0." + i + ":8080");
+            instance.setEnabled(true);
+            instances.add(instance);
+        }
+        return List.copyOf(instances);
+    }
+
+    private static GatewayContext context(String clientIp) {
+        ServiceDefinition serviceDefinition = new ServiceDefinition();
+        serviceDefinition.setServiceName("svc");
+        GatewayRequest request = new GatewayRequest(RequestId.of(1), serviceDefinition, StandardCharsets.UTF_8, clientIp,
+                "localhost", "/", HttpMethod.GET, null, new DefaultHttpHeaders(), null);
+        RouteDefinition route = new RouteDefinition();
+        route.setId("route");
+        return new GatewayContext(null, request, route, true);
+    }
+
+}
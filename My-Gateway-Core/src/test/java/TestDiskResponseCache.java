@@ -0,0 +1,245 @@
+import config.ResponseCacheConfig;
+import filter.cache.CachedResponse;
+import filter.cache.DiskResponseCache;
+import io.netty.buffer.Unpooled;
+import io.netty.handler.codec.http.DefaultHttpHeaders;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpHeaders;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+public class TestDiskResponseCache {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * 重启后从段文件恢复索引
+     */
+    @Test
+    public void testRecoverAfterRestart() throws Exception {
+        ResponseCacheConfig config = config(64 * 1024, 1024 * 1024);
+        DiskResponseCache cache = start(config);
+        put(cache, "k1", "body-k1");
+        put(cache, "k2", "body-k2");
+        cache.shutdown();
+
+        DiskResponseCache restarted = start(config);
+        assertBody(restarted, "k1", "body-k1");
+        assertBody(restarted, "k2", "body-k2");
+        Assert.assertNull(restarted.get("k3"));
+
+        // 恢复后继续追加
+        put(restarted, "k3", "body-k3");
+        restarted.shutdown();
+        assertBody(start(config), "k3", "body-k3");
+    }
+
+    /**
+     * crc校验失败的记录及之后的记录不会被加载
+     */
+    @Test
+    public void testCorruptedRecordIgnored() throws Exception {
+        ResponseCacheConfig config = config(64 * 1024, 1024 * 1024);
+        DiskResponseCache cache = start(config);
+        put(cache, "k1", "body-k1");
+        put(cache, "k2", "body-k2");
+        put(cache, "k3", "body-k3");
+        cache.shutdown();
+
+        corrupt(segments(config)[0], "body-k2");
+
+        DiskResponseCache restarted = start(config);
+        assertBody(restarted, "k1", "body-k1");
+        Assert.assertNull(restarted.get("k2"));
+        Assert.assertNull(restarted.get("k3"));
+    }
+
+    /**
+     * 总大小超过上限时删除最旧的段，其中的缓存项不再命中
+     */
+    @Test
+    public void testOldestSegmentEvicted() throws Exception {
+        ResponseCacheConfig config = config(1024, 2048);
+        DiskResponseCache cache = start(config);
+        String body = new String(new char[300]).replace('\0', 'x');
+        for (int i = 0; i < 10; i++) {
+            put(cache, "k" + i, body + i);
+        }
+        cache.shutdown();
+
+        Assert.assertEquals(2, segments(config).length);
+        Assert.assertNull(cache.get("k0"));
+        assertBody(cache, "k9", body + 9);
+
+        DiskResponseCache restarted = start(config);
+        Assert.assertNull(restarted.get("k0"));
+        assertBody(restarted, "k9", body + 9);
+    }
+
+    /**
+     * 淘汰的段解除映射，删除的段文件不再占用磁盘空间
+     */
+    @Test
+    public void testEvictedSegmentUnmapped() throws Exception {
+        File maps = new File("/proc/self/maps");
+        Assume.assumeTrue(maps.canRead());
+        ResponseCacheConfig config = config(1024, 2048);
+        DiskResponseCache cache = start(config);
+        String body = new String(new char[300]).replace('\0', 'x');
+        for (int i = 0; i < 20; i++) {
+            put(cache, "k" + i, body + i);
+        }
+        cache.shutdown();
+
+        Assert.assertEquals(2, segments(config).length);
+        String root = folder.getRoot().getAbsolutePath();
+        long mapped = Files.readAllLines(maps.toPath()).stream().filter(line -> line.contains(root)).count();
+        Assert.assertEquals(2, mapped);
+        long deleted = Files.readAllLines(maps.toPath()).stream().filter(line -> line.contains(root) && line.endsWith("(deleted)")).count();
+        Assert.assertEquals(0, deleted);
+    }
+
+    /**
+     * 读取与淘汰并发进行，读到的要么是完整的响应体，要么未命中
+     */
+    @Test
+    public void testReadWhileEvicting() throws Exception {
+        ResponseCacheConfig config = config(1024, 2048);
+        DiskResponseCache cache = start(config);
+        String body = new String(new char[300]).replace('\0', 'x');
+        int keys = 200;
+        AtomicBoolean done = new AtomicBoolean();
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        List<Thread> readers = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            Thread reader = new Thread(() -> {
+                try {
+                    while (!done.get()) {
+                        for (int i = 0; i < keys; i++) {
+                            CachedResponse cached = cache.get("k" + i);
+                            if (cached == null) continue;
+                            try {
+                                Assert.assertEquals(body + i, cached.getContent().toString(StandardCharsets.UTF_8));
+                            } finally {
+                                cached.release();
+                            }
+                        }
+                    }
+                } catch (Throwable e) {
+                    failure.compareAndSet(null, e);
+                }
+            });
+            reader.start();
+            readers.add(reader);
+        }
+        for (int i = 0; i < keys; i++) {
+            put(cache, "k" + i, body + i);
+            Thread.sleep(1);
+        }
+        cache.shutdown();
+        done.set(true);
+        for (Thread reader : readers) reader.join();
+        Assert.assertNull(failure.get());
+        assertBody(cache, "k" + (keys - 1), body + (keys - 1));
+    }
+
+    /**
+     * 没有开启时start不加载，也不写入
+     */
+    @Test
+    public void testDisabled() throws Exception {
+        ResponseCacheConfig config = config(64 * 1024, 1024 * 1024);
+        config.setDiskEnabled(false);
+        DiskResponseCache cache = new DiskResponseCache(config);
+        cache.start();
+        put(cache, "k1", "body-k1");
+        cache.shutdown();
+
+        Assert.assertFalse(cache.isEnabled());
+        Assert.assertNull(cache.get("k1"));
+        Assert.assertEquals(0, segments(config).length);
+    }
+
+    private ResponseCacheConfig config(int segmentSize, long maxSize) {
+        ResponseCacheConfig config = new ResponseCacheConfig();
+        config.setDiskEnabled(true);
+        config.setDiskPath(folder.getRoot().getAbsolutePath());
+        config.setDiskSegmentSize(segmentSize);
+        config.setDiskMaxSize(maxSize);
+        return config;
+    }
+
+    private static DiskResponseCache start(ResponseCacheConfig config) throws InterruptedException {
+        DiskResponseCache cache = new DiskResponseCache(config);
+        cache.start();
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!cache.isLoaded() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        Assert.assertTrue(cache.isLoaded());
+        return cache;
+    }
+
+    private static void put(DiskResponseCache cache, String key, String body) {
+        HttpHeaders headers = new DefaultHttpHeaders();
+        headers.set(HttpHeaderNames.CONTENT_TYPE, "text/plain");
+        long now = System.currentTimeMillis();
+        CachedResponse response = new CachedResponse(HttpResponseStatus.OK, headers,
+                Unpooled.copiedBuffer(body, StandardCharsets.UTF_8), now, now + 60_000, now + 120_000);
+        cache.put(key, response);
+        response.release();
+    }
+
+    private static void assertBody(DiskResponseCache cache, String key, String body) {
+        CachedResponse cached = cache.get(key);
+        Assert.assertNotNull(key, cached);
+        try {
+            Assert.assertEquals(HttpResponseStatus.OK, cached.getStatus());
+            Assert.assertEquals("text/plain", cached.getHeaders().get(HttpHeaderNames.CONTENT_TYPE));
+            Assert.assertEquals(body, cached.getContent().toString(StandardCharsets.UTF_8));
+        } finally {
+            cached.release();
+        }
+    }
+
+    private static File[] segments(ResponseCacheConfig config) {
+        File[] files = new File(config.getDiskPath()).listFiles((dir, name) -> name.startsWith("segment-"));
+        return files == null ? new File[0] : files;
+    }
+
+    /**
+     * 修改段文件中响应体的一个字节
+     */
+    private static void corrupt(File file, String body) throws IOException {
+        byte[] bytes = Files.readAllBytes(file.toPath());
+        byte[] target = body.getBytes(StandardCharsets.UTF_8);
+        for (int i = 0; i + target.length <= bytes.length; i++) {
+            int j = 0;
+            while (j < target.length && bytes[i + j] == target[j]) j++;
+            if (j == target.length) {
+                try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+                    raf.seek(i);
+                    raf.write('X');
+                }
+                return;
+            }
+        }
+        Assert.fail("body not found: " + body);
+    }
+
+}
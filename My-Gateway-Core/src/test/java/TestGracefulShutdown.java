@@ -0,0 +1,53 @@
+import config.Config;
+import config.GracefulShutdown;
+import config.ShutdownConfig;
+import io.netty.buffer.Unpooled;
+import io.netty.handler.codec.http.DefaultFullHttpResponse;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.handler.codec.http.HttpVersion;
+import netty.NettyHttpServer;
+import org.junit.Assert;
+import org.junit.Test;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.net.ConnectException;
+import java.net.Socket;
+
+public class TestGracefulShutdown {
+
+    private static final int PORT = 18095;
+
+    /**
+     * 排空进度通过JMX读取，优雅下线后服务端不再接收连接
+     */
+    @Test
+    public void testDrainStateExposedAndShutdown() throws Exception {
+        Config config = new Config();
+        config.setPort(PORT);
+        NettyHttpServer server = new NettyHttpServer(config, (ctx, request) -> {
+            request.release();
+            ctx.writeAndFlush(new DefaultFullHttpResponse(HttpVersion.HTTP_1_1, HttpResponseStatus.OK, Unpooled.EMPTY_BUFFER));
+        });
+        server.start();
+
+        MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+        ObjectName name = new ObjectName("gateway:type=DrainState,port=" + PORT);
+        try (Socket ignored = new Socket("127.0.0.1", PORT)) {
+            Assert.assertEquals(Boolean.FALSE, mBeanServer.getAttribute(name, "Draining"));
+            Assert.assertEquals(0, mBeanServer.getAttribute(name, "InFlight"));
+        }
+
+        ShutdownConfig shutdownConfig = new ShutdownConfig();
+        shutdownConfig.setDrainTimeout(5000);
+        Assert.assertTrue(new GracefulShutdown(shutdownConfig, null, server).shutdown());
+        Assert.assertFalse(mBeanServer.isRegistered(name));
+        try (Socket ignored = new Socket("127.0.0.1", PORT)) {
+            Assert.fail("server still accepting connections");
+        } catch (ConnectException expected) {
+            // 已停止监听
+        }
+    }
+
+}
@@ -0,0 +1,64 @@
+import context.GatewayContext;
+import filter.gray.GrayRuleIndex;
+import io.netty.handler.codec.http.DefaultHttpHeaders;
+import io.netty.handler.codec.http.HttpHeaders;
+import io.netty.handler.codec.http.HttpMethod;
+import org.junit.Assert;
+import org.junit.Test;
+import pojo.RouteDefinition;
+import request.GatewayRequest;
+import request.id.RequestId;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Set;
+
+public class TestGrayRuleIndex {
+
+    @Test
+    public void testMatches() {
+        GrayRuleIndex index = new GrayRuleIndex(List.of(
+                rule("header", "X-Tenant", Set.of("tenant-a", "tenant-b"), null),
+                rule("header", "X-User-Id", null, List.of("1000-1999", "1500-2500", "9000")),
+                rule("cookie", "gray", Set.of("1"), null),
+                rule("query", "channel", Set.of("beta"), null)));
+
+        Assert.assertTrue(index.matches(context("/a", "X-Tenant", "tenant-a")));
+        Assert.assertFalse(index.matches(context("/a", "X-Tenant", "tenant-c")));
+        Assert.assertTrue(index.matches(context("/a", "X-User-Id", "1000")));
+        Assert.assertTrue(index.matches(context("/a", "X-User-Id", "2500")));
+        Assert.assertTrue(index.matches(context("/a", "X-User-Id", "9000")));
+        Assert.assertFalse(index.matches(context("/a", "X-User-Id", "2501")));
+        Assert.assertFalse(index.matches(context("/a", "X-User-Id", "999")));
+        Assert.assertFalse(index.matches(context("/a", "X-User-Id", "abc")));
+        Assert.assertTrue(index.matches(context("/a", "Cookie", "session=x; gray=1")));
+        Assert.assertFalse(index.matches(context("/a", "Cookie", "session=x; gray=0")));
+        Assert.assertTrue(index.matches(context("/a?x=1&channel=beta", null, null)));
+        Assert.assertFalse(index.matches(context("/a?channel=stable", null, null)));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidRange() {
+        new GrayRuleIndex(List.of(rule("header", "X-User-Id", null, List.of("20-10"))));
+    }
+
+    private static RouteDefinition.GrayRule rule(String source, String name, Set<String> values, List<String> ranges) {
+        RouteDefinition.GrayRule rule = new RouteDefinition.GrayRule();
+        rule.setSource(source);
+        rule.setName(name);
+        rule.setValues(values);
+        rule.setRanges(ranges);
+        return rule;
+    }
+
+    private static GatewayContext context(String uri, String header, String value) {
+        HttpHeaders headers = new DefaultHttpHeaders();
+        if (header != null) {
+            headers.set(header, value);
+        }
+        GatewayRequest request = new GatewayRequest(RequestId.of(1), null, StandardCharsets.UTF_8, "127.0.0.1",
+                "localhost", uri, HttpMethod.GET, null, headers, null);
+        return new GatewayContext(null, request, null, true);
+    }
+
+}
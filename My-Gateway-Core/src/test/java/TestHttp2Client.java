@@ -0,0 +1,153 @@
+import config.Config;
+import config.HttpClientConfig;
+import http.Http2Client;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.handler.codec.http.DefaultFullHttpRequest;
+import io.netty.handler.codec.http.DefaultFullHttpResponse;
+import io.netty.handler.codec.http.FullHttpRequest;
+import io.netty.handler.codec.http.FullHttpResponse;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpMethod;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.handler.codec.http.HttpVersion;
+import io.netty.handler.codec.http2.HttpConversionUtil;
+import netty.NettyHttpServer;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import response.GatewayResponse;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+public class TestHttp2Client {
+
+    private static final int PORT = 18094;
+
+    private static final String HOST = "127.0.0.1:" + PORT;
+
+    private EventLoopGroup group;
+
+    private NettyHttpServer server;
+
+    @Before
+    public void before() {
+        group = new NioEventLoopGroup(2);
+        server = startServer();
+    }
+
+    @After
+    public void after() {
+        Http2Client.getInstance().shutdown();
+        server.shutdown();
+        group.shutdownGracefully(0, 0, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 并发请求复用常驻连接，响应中没有帧转换加入的流id
+     */
+    @Test
+    public void testMultiplexed() throws Exception {
+        HttpClientConfig config = new HttpClientConfig();
+        Http2Client.getInstance().initialized(group, config, 1 << 20);
+        List<CompletableFuture<GatewayResponse>> futures = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            futures.add(Http2Client.getInstance().executeRequest(HOST, request("/p" + i, "b" + i)));
+        }
+        Set<String> connections = new HashSet<>();
+        for (int i = 0; i < futures.size(); i++) {
+            GatewayResponse response = futures.get(i).get(5, TimeUnit.SECONDS);
+            String[] parts = response.getContentBuffer().toString(StandardCharsets.UTF_8).split("\\|");
+            response.getContentBuffer().release();
+            Assert.assertEquals(200, response.getHttpResponseStatus().code());
+            Assert.assertEquals("/p" + i, parts[0]);
+            Assert.assertEquals("b" + i, parts[2]);
+            Assert.assertFalse(response.getResponseHeaders().contains(HttpConversionUtil.ExtensionHeaderNames.STREAM_ID.text()));
+            connections.add(parts[1]);
+        }
+        Assert.assertTrue(connections.size() <= config.getHttp2ConnectionsPerInstance());
+        Assert.assertEquals(1, Http2Client.getInstance().getPoolCount());
+    }
+
+    /**
+     * 实例下线，连接全部关闭后连接池被移除
+     */
+    @Test
+    public void testPoolRemovedWhenConnectionsClosed() throws Exception {
+        Http2Client.getInstance().initialized(group, new HttpClientConfig(), 1 << 20);
+        send();
+        Assert.assertEquals(1, Http2Client.getInstance().getPoolCount());
+
+        server.shutdown();
+        Assert.assertTrue(waitFor(() -> Http2Client.getInstance().getPoolCount() == 0, 10_000));
+    }
+
+    /**
+     * 空闲超时的连接池被移除，之后的请求重新建立连接池
+     */
+    @Test
+    public void testIdlePoolEvicted() throws Exception {
+        HttpClientConfig config = new HttpClientConfig();
+        config.setHttpPooledConnectionIdleTimeout(1000);
+        Http2Client.getInstance().initialized(group, config, 1 << 20);
+        send();
+        Assert.assertEquals(1, Http2Client.getInstance().getPoolCount());
+
+        Assert.assertTrue(waitFor(() -> Http2Client.getInstance().getPoolCount() == 0, 5_000));
+        send();
+        Assert.assertEquals(1, Http2Client.getInstance().getPoolCount());
+    }
+
+    private static NettyHttpServer startServer() {
+        Config config = new Config();
+        config.setPort(PORT);
+        NettyHttpServer server = new NettyHttpServer(config, (ctx, request) -> {
+            // 响应内容：路径|连接id|请求体，延迟响应使请求同时在途
+            String body = request.uri() + "|" + ctx.channel().parent().id().asShortText() + "|"
+                    + request.content().toString(StandardCharsets.UTF_8);
+            request.release();
+            ctx.executor().schedule(() -> {
+                FullHttpResponse response = new DefaultFullHttpResponse(HttpVersion.HTTP_1_1, HttpResponseStatus.OK,
+                        Unpooled.copiedBuffer(body, StandardCharsets.UTF_8));
+                response.headers().setInt(HttpHeaderNames.CONTENT_LENGTH, response.content().readableBytes());
+                ctx.writeAndFlush(response);
+            }, 50, TimeUnit.MILLISECONDS);
+        });
+        server.start();
+        return server;
+    }
+
+    private static FullHttpRequest request(String uri, String body) {
+        FullHttpRequest request = new DefaultFullHttpRequest(HttpVersion.HTTP_1_1, HttpMethod.POST, uri,
+                Unpooled.copiedBuffer(body, StandardCharsets.UTF_8));
+        request.headers().set(HttpHeaderNames.HOST, HOST);
+        return request;
+    }
+
+    private static void send() throws Exception {
+        GatewayResponse response = Http2Client.getInstance().executeRequest(HOST, request("/", "")).get(5, TimeUnit.SECONDS);
+        response.getContentBuffer().release();
+        Assert.assertEquals(200, response.getHttpResponseStatus().code());
+    }
+
+    private static boolean waitFor(BooleanSupplier condition, long timeoutMs) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeoutMs;
+        while (!condition.getAsBoolean()) {
+            if (System.currentTimeMillis() > deadline) {
+                return false;
+            }
+            Thread.sleep(20);
+        }
+        return true;
+    }
+
+}
@@ -0,0 +1,83 @@
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.http.DefaultFullHttpRequest;
+import io.netty.handler.codec.http.DefaultFullHttpResponse;
+import io.netty.handler.codec.http.FullHttpRequest;
+import io.netty.handler.codec.http.FullHttpResponse;
+import io.netty.handler.codec.http.HttpMethod;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.handler.codec.http.HttpVersion;
+import netty.handler.HttpPipeliningHandler;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class TestHttpPipeliningHandler {
+
+    @Test
+    public void testDeferOverLimit() {
+        List<Object> events = new ArrayList<>();
+        List<String> uris = new ArrayList<>();
+        List<Integer> sequences = new ArrayList<>();
+        EmbeddedChannel channel = new EmbeddedChannel(
+                new ChannelInboundHandlerAdapter() {
+                    @Override
+                    public void userEventTriggered(ChannelHandlerContext ctx, Object evt) throws Exception {
+                        events.add(evt);
+                        super.userEventTriggered(ctx, evt);
+                    }
+                },
+                new HttpPipeliningHandler(2),
+                new ChannelInboundHandlerAdapter() {
+                    @Override
+                    public void channelRead(ChannelHandlerContext ctx, Object msg) {
+                        FullHttpRequest request = (FullHttpRequest) msg;
+                        uris.add(request.uri());
+                        sequences.add(HttpPipeliningHandler.sequence(ctx.channel()));
+                        request.release();
+                    }
+                });
+
+        // 暂停读取之前已经解码出的请求都到达处理器
+        for (int i = 0; i < 5; i++) {
+            channel.writeInbound(new DefaultFullHttpRequest(HttpVersion.HTTP_1_1, HttpMethod.GET, "/" + i));
+        }
+        Assert.assertEquals(List.of("/0", "/1"), uris);
+        Assert.assertFalse(channel.config().isAutoRead());
+        Assert.assertEquals(List.of(HttpPipeliningHandler.ReadSuspendEvent.SUSPENDED), events);
+
+        // 响应按序号写出，有空位后处理暂存的请求
+        respond(channel, 1);
+        channel.runPendingTasks();
+        Assert.assertEquals(2, uris.size());
+        respond(channel, 0);
+        channel.runPendingTasks();
+        Assert.assertEquals(List.of("/0", "/1", "/2", "/3"), uris);
+        Assert.assertEquals(List.of(0, 1, 2, 3), sequences);
+        Assert.assertFalse(channel.config().isAutoRead());
+        for (int i = 0; i < 2; i++) {
+            FullHttpResponse response = channel.readOutbound();
+            Assert.assertEquals(String.valueOf(i), response.headers().get("x-sequence"));
+            response.release();
+        }
+
+        // 暂存的请求都处理完并且积压低于上限后恢复读取
+        respond(channel, 2);
+        respond(channel, 3);
+        channel.runPendingTasks();
+        Assert.assertEquals(List.of("/0", "/1", "/2", "/3", "/4"), uris);
+        Assert.assertTrue(channel.config().isAutoRead());
+        Assert.assertEquals(List.of(HttpPipeliningHandler.ReadSuspendEvent.SUSPENDED, HttpPipeliningHandler.ReadSuspendEvent.RESUMED), events);
+        channel.finishAndReleaseAll();
+    }
+
+    private static void respond(EmbeddedChannel channel, int sequence) {
+        FullHttpResponse response = new DefaultFullHttpResponse(HttpVersion.HTTP_1_1, HttpResponseStatus.OK);
+        response.headers().set("x-sequence", sequence);
+        channel.writeAndFlush(HttpPipeliningHandler.sequenced(response, sequence));
+    }
+
+}
@@ -0,0 +1,48 @@
+import filter.subset.InstanceSubset;
+import filter.subset.InstanceSubsetIndex;
+import org.junit.Assert;
+import org.junit.Test;
+import pojo.ServiceInstance;
+
+import java.util.List;
+import java.util.Map;
+
+public class TestInstanceSubsetIndex {
+
+    @Test
+    public void testFind() {
+        ServiceInstance a = instance("a", Map.of("version", "v1", "zone", "z1"), false);
+        ServiceInstance b = instance("b", Map.of("version", "v1", "zone", "z2"), true);
+        ServiceInstance c = instance("c", Map.of("version", "v2", "zone", "z1"), false);
+        ServiceInstance d = instance("d", Map.of(), false);
+        InstanceSubsetIndex index = new InstanceSubsetIndex(1, new String[]{"version", "zone"}, List.of(a, b, c, d));
+
+        Assert.assertEquals(List.of(a, b), ids(index.find(new String[]{"v1", null})));
+        Assert.assertEquals(List.of(a), ids(index.find(new String[]{"v1", "z1"})));
+        Assert.assertEquals(List.of(a, c), ids(index.find(new String[]{null, "z1"})));
+        Assert.assertEquals(4, index.find(new String[]{null, null}).getInstances().size());
+        Assert.assertEquals(List.of(b), index.find(new String[]{"v1", null}).getGrayInstances());
+        Assert.assertNull(index.find(new String[]{"v3", null}));
+        Assert.assertNull(index.find(new String[]{"v2", "z2"}));
+    }
+
+    @Test
+    public void testInternedTags() {
+        ServiceInstance a = instance("a", Map.of("version", new String("v1")), false);
+        ServiceInstance b = instance("b", Map.of("version", new String("v1")), false);
+        Assert.assertSame(a.getTags().get("version"), b.getTags().get("version"));
+    }
+
+    private static List<ServiceInstance> ids(InstanceSubset subset) {
+        return subset.getInstances().stream().sorted((x, y) -> x.getInstanceId().compareTo(y.getInstanceId())).toList();
+    }
+
+    private static ServiceInstance instance(String id, Map<String, String> tags, boolean gray) {
+        ServiceInstance instance = new ServiceInstance();
+        instance.setInstanceId(id);
+        instance.setTags(tags);
+        instance.setGray(gray);
+        return instance;
+    }
+
+}
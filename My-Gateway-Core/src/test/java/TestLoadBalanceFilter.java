@@ -0,0 +1,65 @@
+import context.GatewayContext;
+import filter.loadbalance.LoadBalanceFilter;
+import filter.subset.InstanceSubset;
+import io.netty.handler.codec.http.DefaultHttpHeaders;
+import io.netty.handler.codec.http.HttpMethod;
+import org.junit.Assert;
+import org.junit.Test;
+import pojo.RouteDefinition;
+import pojo.ServiceDefinition;
+import pojo.ServiceInstance;
+import request.GatewayRequest;
+import request.id.RequestId;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+public class TestLoadBalanceFilter {
+
+    @Test
+    public void testGrayFallbackInSubset() {
+        LoadBalanceFilter filter = new LoadBalanceFilter();
+        InstanceSubset stableOnly = new InstanceSubset("subset", List.of(instance("10.0.0.1", false)));
+        GatewayContext context = context(true, stableOnly);
+        filter.doPreFilter(context);
+        Assert.assertEquals("10.0.0.1:8080", context.getRequest().getModifyHost());
+        Assert.assertFalse(context.getRequest().isGray());
+    }
+
+    @Test
+    public void testGrayInSubset() {
+        LoadBalanceFilter filter = new LoadBalanceFilter();
+        InstanceSubset mixed = new InstanceSubset("subset", List.of(instance("10.0.0.1", false), instance("10.0.0.2", true)));
+        for (int i = 0; i < 100; i++) {
+            GatewayContext context = context(true, mixed);
+            filter.doPreFilter(context);
+            Assert.assertEquals("10.0.0.2:8080", context.getRequest().getModifyHost());
+            Assert.assertTrue(context.getRequest().isGray());
+        }
+    }
+
+    private static GatewayContext context(boolean gray, InstanceSubset subset) {
+        ServiceDefinition serviceDefinition = new ServiceDefinition();
+        serviceDefinition.setServiceName("svc");
+        GatewayRequest request = new GatewayRequest(RequestId.of(1), serviceDefinition, StandardCharsets.UTF_8, "127.0.0.1",
+                "localhost", "/", HttpMethod.GET, null, new DefaultHttpHeaders(), null);
+        request.setGray(gray);
+        RouteDefinition route = new RouteDefinition();
+        route.setId("route");
+        GatewayContext context = new GatewayContext(null, request, route, true);
+        context.setInstanceSubset(subset);
+        return context;
+    }
+
+    private static ServiceInstance instance(String ip, boolean gray) {
+        ServiceInstance instance = new ServiceInstance();
+        instance.setInstanceId(ip + ":8080");
+        instance.setIp(ip);
+        instance.setPort(8080);
+        instance.setEnabled(true);
+        instance.setGray(gray);
+        instance.setThreshold(0.1);
+        return instance;
+    }
+
+}
@@ -0,0 +1,124 @@
+import context.GatewayContext;
+import filter.FilterChain;
+import io.netty.buffer.Unpooled;
+import io.netty.handler.codec.http.DefaultFullHttpRequest;
+import io.netty.handler.codec.http.FullHttpRequest;
+import io.netty.handler.codec.http.HttpMethod;
+import io.netty.handler.codec.http.HttpVersion;
+import loader.ConfigLoader;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Ignore;
+import org.junit.Test;
+import request.GatewayRequest;
+import request.id.RequestId;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * 比较开启和关闭对象池时每个请求的内存分配和GC次数
+ * 模拟一个请求的生命周期：创建网关请求、上下文和过滤器链，访问查询参数，响应完成后释放上下文
+ * 对象池在类加载时读取配置，这里先开启对象池，关闭对象池的情况直接使用构造方法，与关闭对象池时的newInstance等价
+ * 运行时间较长，不在默认构建中运行，需要时去掉@Ignore手动运行
+ */
+@Ignore("基准测试，手动运行")
+public class TestObjectPoolBenchmark {
+
+    private static final int WARMUP = 200_000;
+
+    private static final int ITERATIONS = 2_000_000;
+
+    private static final String URI = "/http-server/ping?name=gateway&id=1";
+
+    private boolean objectPoolEnabled;
+
+    @Before
+    public void enableObjectPool() {
+        objectPoolEnabled = ConfigLoader.getConfig().getObjectPool().isEnabled();
+        ConfigLoader.getConfig().getObjectPool().setEnabled(true);
+    }
+
+    @After
+    public void restoreObjectPool() {
+        ConfigLoader.getConfig().getObjectPool().setEnabled(objectPoolEnabled);
+    }
+
+    @Test
+    public void testGcPressure() {
+        FullHttpRequest request = new DefaultFullHttpRequest(HttpVersion.HTTP_1_1, HttpMethod.GET, URI, Unpooled.EMPTY_BUFFER);
+
+        run(request, false, WARMUP);
+        run(request, true, WARMUP);
+        Result unpooled = run(request, false, ITERATIONS);
+        Result pooled = run(request, true, ITERATIONS);
+        System.out.printf("unpooled: %s%npooled:   %s%n", unpooled, pooled);
+
+        Assert.assertTrue(pooled.bytesPerOp < unpooled.bytesPerOp);
+    }
+
+    private Result run(FullHttpRequest request, boolean pooled, int iterations) {
+        com.sun.management.ThreadMXBean threadBean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+        long gcCount = gcCount();
+        long bytes = threadBean.getThreadAllocatedBytes(threadId);
+        long start = System.nanoTime();
+        long sink = 0;
+        for (int i = 0; i < iterations; i++) {
+            GatewayRequest gatewayRequest;
+            GatewayContext context;
+            FilterChain chain;
+            if (pooled) {
+                gatewayRequest = GatewayRequest.newInstance(RequestId.of(i), null, StandardCharsets.UTF_8, "127.0.0.1",
+                        "localhost", URI, HttpMethod.GET, null, request.headers(), request);
+                context = GatewayContext.newInstance(null, gatewayRequest, null, true);
+                chain = FilterChain.newInstance();
+            } else {
+                gatewayRequest = new GatewayRequest(RequestId.of(i), null, StandardCharsets.UTF_8, "127.0.0.1",
+                        "localhost", URI, HttpMethod.GET, null, request.headers(), request);
+                context = new GatewayContext(null, gatewayRequest, null, true);
+                chain = new FilterChain();
+            }
+            context.setFilterChain(chain);
+            sink += gatewayRequest.getPath().length();
+            context.release();
+        }
+        long elapsed = System.nanoTime() - start;
+        return new Result((threadBean.getThreadAllocatedBytes(threadId) - bytes) / iterations,
+                gcCount() - gcCount, (double) elapsed / iterations, sink);
+    }
+
+    private static long gcCount() {
+        long count = 0;
+        for (GarbageCollectorMXBean bean : ManagementFactory.getGarbageCollectorMXBeans()) {
+            count += Math.max(0, bean.getCollectionCount());
+        }
+        return count;
+    }
+
+    private static class Result {
+
+        private final long bytesPerOp;
+
+        private final long gcCount;
+
+        private final double nanosPerOp;
+
+        private final long sink;
+
+        Result(long bytesPerOp, long gcCount, double nanosPerOp, long sink) {
+            this.bytesPerOp = bytesPerOp;
+            this.gcCount = gcCount;
+            this.nanosPerOp = nanosPerOp;
+            this.sink = sink;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%4d B/op, %3d gc, %6.1f ns/op", bytesPerOp, gcCount, nanosPerOp);
+        }
+    }
+
+}
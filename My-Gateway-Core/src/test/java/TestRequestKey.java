@@ -0,0 +1,83 @@
+import context.GatewayContext;
+import filter.cache.ResponseCache;
+import filter.subset.InstanceSubset;
+import helper.RequestHelper;
+import io.netty.buffer.Unpooled;
+import io.netty.handler.codec.http.DefaultHttpHeaders;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpHeaders;
+import io.netty.handler.codec.http.HttpMethod;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import org.junit.Assert;
+import org.junit.Test;
+import pojo.RouteDefinition;
+import request.GatewayRequest;
+import request.id.RequestId;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Set;
+
+public class TestRequestKey {
+
+    @Test
+    public void testEscapedQuery() {
+        // 编码后的分隔符和真正的分隔符不能得到相同的key
+        Assert.assertNotEquals(key("/a?a=1%26b%3D2", false, null), key("/a?a=1&b=2", false, null));
+        // 参数顺序不影响key
+        Assert.assertEquals(key("/a?b=2&a=1", false, null), key("/a?a=1&b=2", false, null));
+        // 使用未解码的路径
+        Assert.assertNotEquals(key("/a%2Fb", false, null), key("/a/b", false, null));
+    }
+
+    @Test
+    public void testNormalizedPath() {
+        String key = key("/a/b?x=1", false, null);
+        Assert.assertEquals(key, key("/a//b?x=1", false, null));
+        Assert.assertEquals(key, key("/a/./b?x=1", false, null));
+        Assert.assertEquals(key, key("/a/b/?x=1", false, null));
+        Assert.assertEquals(key, key("/a/c/../b?x=1", false, null));
+        Assert.assertEquals(key, key("/%61/%62?x=1", false, null));
+        Assert.assertEquals(key, key("/a/%2E/b?x=1", false, null));
+        // ..不越过根路径
+        Assert.assertEquals(key, key("/../a/b?x=1", false, null));
+        Assert.assertEquals(key("/", false, null), key("/a/..", false, null));
+        // 保留字符的转义不解码，十六进制大小写不影响key
+        Assert.assertEquals(key("/a%2Fb", false, null), key("/a%2fb", false, null));
+        Assert.assertNotEquals(key("/a%2Fb", false, null), key("/a/b", false, null));
+        Assert.assertNotEquals(key, key("/a/bb?x=1", false, null));
+    }
+
+    @Test
+    public void testRouting() {
+        Assert.assertNotEquals(key("/a", true, null), key("/a", false, null));
+        InstanceSubset v1 = new InstanceSubset("version=v1", List.of());
+        InstanceSubset v2 = new InstanceSubset("version=v2", List.of());
+        Assert.assertNotEquals(key("/a", false, v1), key("/a", false, v2));
+        Assert.assertNotEquals(key("/a", false, v1), key("/a", false, null));
+    }
+
+    @Test
+    public void testNoImplicitStale() {
+        RouteDefinition.CacheFilterConfig config = new RouteDefinition.CacheFilterConfig();
+        // 只有校验器没有有效期的响应不缓存
+        HttpHeaders etagOnly = new DefaultHttpHeaders().add(HttpHeaderNames.ETAG, "\"v1\"");
+        Assert.assertNull(ResponseCache.getInstance().store("k1", HttpResponseStatus.OK, etagOnly, Unpooled.EMPTY_BUFFER, config));
+        HttpHeaders swr = new DefaultHttpHeaders().add(HttpHeaderNames.ETAG, "\"v1\"")
+                .add(HttpHeaderNames.CACHE_CONTROL, "max-age=0, stale-while-revalidate=30");
+        Assert.assertNotNull(ResponseCache.getInstance().store("k2", HttpResponseStatus.OK, swr, Unpooled.EMPTY_BUFFER, config));
+        ResponseCache.getInstance().invalidate("k2");
+    }
+
+    private static String key(String uri, boolean gray, InstanceSubset subset) {
+        GatewayRequest request = new GatewayRequest(RequestId.of(1), null, StandardCharsets.UTF_8, "127.0.0.1",
+                "localhost", uri, HttpMethod.GET, null, new DefaultHttpHeaders(), null);
+        request.setGray(gray);
+        RouteDefinition route = new RouteDefinition();
+        route.setId("route");
+        GatewayContext context = new GatewayContext(null, request, route, true);
+        context.setInstanceSubset(subset);
+        return RequestHelper.buildRequestKey(context, Set.of("Accept"));
+    }
+
+}
@@ -0,0 +1,30 @@
+import enums.ResponseCode;
+import helper.ResponseHelper;
+import io.netty.handler.codec.http.FullHttpResponse;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpHeaderValues;
+import io.netty.handler.codec.http.HttpUtil;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TestResponseHelper {
+
+    /**
+     * 同一响应码的响应头互不影响，修改一个响应不会改变之后的响应
+     */
+    @Test
+    public void testHeadersNotShared() {
+        FullHttpResponse first = ResponseHelper.buildHttpResponse(ResponseCode.SUCCESS, true);
+        HttpUtil.setKeepAlive(first, false);
+        first.headers().set("x-test", "1");
+
+        FullHttpResponse second = ResponseHelper.buildHttpResponse(ResponseCode.SUCCESS, true);
+        Assert.assertEquals(HttpHeaderValues.KEEP_ALIVE.toString(), second.headers().get(HttpHeaderNames.CONNECTION));
+        Assert.assertFalse(second.headers().contains("x-test"));
+        Assert.assertEquals(second.content().readableBytes(), second.headers().getInt(HttpHeaderNames.CONTENT_LENGTH).intValue());
+
+        FullHttpResponse close = ResponseHelper.buildHttpResponse(ResponseCode.SUCCESS, false);
+        Assert.assertEquals(HttpHeaderValues.CLOSE.toString(), close.headers().get(HttpHeaderNames.CONNECTION));
+    }
+
+}
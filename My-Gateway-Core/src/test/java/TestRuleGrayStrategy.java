@@ -0,0 +1,90 @@
+import context.GatewayContext;
+import filter.gray.strategy.RuleGrayStrategy;
+import io.netty.handler.codec.http.DefaultHttpHeaders;
+import io.netty.handler.codec.http.HttpHeaders;
+import io.netty.handler.codec.http.HttpMethod;
+import org.junit.Assert;
+import org.junit.Test;
+import pojo.RouteDefinition;
+import pojo.ServiceInstance;
+import request.GatewayRequest;
+import request.id.RequestId;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Set;
+
+import static constant.FilterConstant.GRAY_FILTER_NAME;
+
+public class TestRuleGrayStrategy {
+
+    private static final String CONFIG = "{\"strategyName\": \"rule_gray_strategy\", "
+            + "\"affinityKey\": {\"source\": \"header\", \"name\": \"X-User-Id\"}, "
+            + "\"rules\": [{\"source\": \"header\", \"name\": \"X-Tenant\", \"values\": [\"tenant-a\"]}]}";
+
+    private final RuleGrayStrategy strategy = new RuleGrayStrategy();
+
+    private final List<ServiceInstance> instances = List.of(instance(false), instance(true));
+
+    /**
+     * 金丝雀控制器没有接管时，命中规则的请求全部路由到灰度实例
+     */
+    @Test
+    public void testWithoutShare() {
+        Assert.assertEquals(1000, grayCount("tenant-a", -1));
+        Assert.assertEquals(0, grayCount("tenant-b", -1));
+    }
+
+    /**
+     * 金丝雀控制器接管时，只有比例内的命中规则的请求路由到灰度实例，比例提升时原来的灰度用户仍在灰度中
+     */
+    @Test
+    public void testShareApplied() {
+        Assert.assertEquals(200, grayCount("tenant-a", 0.2), 50);
+        Assert.assertEquals(500, grayCount("tenant-a", 0.5), 50);
+        Assert.assertEquals(0, grayCount("tenant-b", 0.5));
+        for (int user = 0; user < 1000; user++) {
+            if (route2Gray("tenant-a", user, 0.2)) {
+                Assert.assertTrue(route2Gray("tenant-a", user, 0.5));
+            }
+        }
+    }
+
+    private int grayCount(String tenant, double share) {
+        int gray = 0;
+        for (int user = 0; user < 1000; user++) {
+            if (route2Gray(tenant, user, share)) gray++;
+        }
+        return gray;
+    }
+
+    private boolean route2Gray(String tenant, int user, double share) {
+        HttpHeaders headers = new DefaultHttpHeaders();
+        headers.set("X-Tenant", tenant);
+        headers.set("X-User-Id", String.valueOf(user));
+        GatewayRequest request = new GatewayRequest(RequestId.of(user), null, StandardCharsets.UTF_8, "127.0.0.1",
+                "localhost", "/gray", HttpMethod.GET, null, headers, null);
+
+        RouteDefinition.FilterConfig filterConfig = new RouteDefinition.FilterConfig();
+        filterConfig.setName(GRAY_FILTER_NAME);
+        filterConfig.setEnable(true);
+        filterConfig.setConfig(CONFIG);
+        RouteDefinition route = new RouteDefinition();
+        route.setId("gray");
+        route.setFilterConfigs(Set.of(filterConfig));
+
+        GatewayContext context = new GatewayContext(null, request, route, true);
+        context.setGrayShare(share);
+        return strategy.shouldRoute2Gray(context, instances);
+    }
+
+    private static ServiceInstance instance(boolean gray) {
+        ServiceInstance instance = new ServiceInstance();
+        instance.setServiceName("gray");
+        instance.setInstanceId(gray ? "gray" : "stable");
+        instance.setEnabled(true);
+        instance.setGray(gray);
+        return instance;
+    }
+
+}
@@ -0,0 +1,57 @@
+import config.RequestIdConfig;
+import io.netty.util.concurrent.DefaultThreadFactory;
+import org.junit.Assert;
+import org.junit.Test;
+import request.id.SnowflakeRequestIdGenerator;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadFactory;
+
+public class TestSnowflakeRequestId {
+
+    private static final int IDS_PER_THREAD = 2000;
+
+    /**
+     * 多轮线程并发生成ID，线程数超过槽位数，后几轮复用退出线程归还的槽位，所有ID都不重复
+     */
+    @Test
+    public void testUniqueAcrossThreads() throws InterruptedException {
+        RequestIdConfig config = new RequestIdConfig();
+        config.setNodeId(1);
+        SnowflakeRequestIdGenerator generator = new SnowflakeRequestIdGenerator();
+        generator.init(config);
+
+        Set<Long> ids = ConcurrentHashMap.newKeySet();
+        // Netty线程退出时归还槽位，普通线程不归还
+        ThreadFactory nettyThreads = new DefaultThreadFactory("snowflake-test");
+        int total = 0;
+        for (int round = 0; round < 3; round++) {
+            total += run(nettyThreads, 100, generator, ids);
+        }
+        // 槽位用完后共用最后一个槽位
+        total += run(Thread::new, 200, generator, ids);
+        Assert.assertEquals(total, ids.size());
+    }
+
+    private static int run(ThreadFactory threadFactory, int threads, SnowflakeRequestIdGenerator generator, Set<Long> ids)
+            throws InterruptedException {
+        List<Thread> started = new ArrayList<>();
+        for (int i = 0; i < threads; i++) {
+            Thread thread = threadFactory.newThread(() -> {
+                for (int j = 0; j < IDS_PER_THREAD; j++) {
+                    ids.add(generator.next().getValue());
+                }
+            });
+            thread.start();
+            started.add(thread);
+        }
+        for (Thread thread : started) {
+            thread.join();
+        }
+        return threads * IDS_PER_THREAD;
+    }
+
+}
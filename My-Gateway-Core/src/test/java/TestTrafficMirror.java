@@ -0,0 +1,263 @@
+import config.MirrorConfig;
+import context.GatewayContext;
+import filter.mirror.MirrorFilter;
+import filter.mirror.TrafficMirror;
+import http.HttpClient;
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.buffer.CompositeByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.SimpleChannelInboundHandler;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.nio.NioServerSocketChannel;
+import io.netty.handler.codec.http.DefaultFullHttpRequest;
+import io.netty.handler.codec.http.DefaultFullHttpResponse;
+import io.netty.handler.codec.http.FullHttpRequest;
+import io.netty.handler.codec.http.FullHttpResponse;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpMethod;
+import io.netty.handler.codec.http.HttpObjectAggregator;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.handler.codec.http.HttpServerCodec;
+import io.netty.handler.codec.http.HttpVersion;
+import manager.DynamicConfigManager;
+import org.asynchttpclient.AsyncHttpClient;
+import org.asynchttpclient.DefaultAsyncHttpClient;
+import org.asynchttpclient.DefaultAsyncHttpClientConfig;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import pojo.RouteDefinition;
+import pojo.ServiceDefinition;
+import pojo.ServiceInstance;
+import request.GatewayRequest;
+import request.id.RequestId;
+
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import static constant.FilterConstant.MIRROR_FILTER_NAME;
+import static constant.MirrorConstant.MIRROR_HEADER;
+
+public class TestTrafficMirror {
+
+    private static EventLoopGroup group;
+
+    private static AsyncHttpClient asyncHttpClient;
+
+    @BeforeClass
+    public static void before() {
+        group = new NioEventLoopGroup(1);
+        asyncHttpClient = new DefaultAsyncHttpClient(new DefaultAsyncHttpClientConfig.Builder()
+                .setEventLoopGroup(group)
+                .setRequestTimeout(30000)
+                .build());
+        HttpClient.getInstance().initialized(asyncHttpClient);
+    }
+
+    @AfterClass
+    public static void after() throws Exception {
+        asyncHttpClient.close();
+        group.shutdownGracefully().sync();
+    }
+
+    @Test
+    public void testPendingCap() throws Exception {
+        // 接受连接但从不响应的影子服务
+        List<Socket> accepted = new CopyOnWriteArrayList<>();
+        ServerSocket server = new ServerSocket(0);
+        Thread acceptor = new Thread(() -> {
+            try {
+                while (true) accepted.add(server.accept());
+            } catch (Exception ignored) {
+            }
+        });
+        acceptor.setDaemon(true);
+        acceptor.start();
+
+        MirrorConfig config = new MirrorConfig();
+        config.setMaxPending(2);
+        TrafficMirror mirror = new TrafficMirror(config);
+        String host = "127.0.0.1:" + server.getLocalPort();
+        FullHttpRequest request = new DefaultFullHttpRequest(HttpVersion.HTTP_1_1, HttpMethod.POST, "/mirror",
+                Unpooled.copiedBuffer("body", StandardCharsets.UTF_8));
+        for (int i = 0; i < 5; i++) {
+            Assert.assertEquals(i < 2, mirror.mirror(request, host));
+        }
+        Assert.assertEquals(2, mirror.getPending());
+        Assert.assertEquals(2, mirror.getMirrored());
+        Assert.assertEquals(3, mirror.getDropped());
+        // 镜像请求持有请求体的引用，不影响主请求
+        Assert.assertTrue(request.refCnt() > 1);
+
+        // 影子服务下线后镜像请求失败，在途数归零，释放请求体的引用
+        waitUntil(() -> accepted.size() == 2);
+        server.close();
+        for (Socket socket : accepted) socket.close();
+        waitUntil(() -> mirror.getPending() == 0);
+        waitUntil(() -> request.refCnt() == 1);
+        Assert.assertTrue(mirror.mirror(request, host));
+        waitUntil(() -> mirror.getPending() == 0);
+        Assert.assertEquals(3, mirror.getDropped());
+        request.release();
+    }
+
+    @Test
+    public void testSampling() throws Exception {
+        AtomicInteger received = new AtomicInteger();
+        Channel shadow = new ServerBootstrap()
+                .group(group)
+                .channel(NioServerSocketChannel.class)
+                .childHandler(new ChannelInitializer<>() {
+                    @Override
+                    protected void initChannel(Channel ch) {
+                        ch.pipeline().addLast(new HttpServerCodec(), new HttpObjectAggregator(65536), new SimpleChannelInboundHandler<FullHttpRequest>() {
+                            @Override
+                            protected void channelRead0(ChannelHandlerContext ctx, FullHttpRequest msg) {
+                                received.incrementAndGet();
+                                FullHttpResponse response = new DefaultFullHttpResponse(HttpVersion.HTTP_1_1, HttpResponseStatus.OK);
+                                response.headers().set(HttpHeaderNames.CONTENT_LENGTH, 0);
+                                ctx.writeAndFlush(response);
+                            }
+                        });
+                    }
+                })
+                .bind(0).sync().channel();
+        try {
+            // 影子服务的两个实例，未启用的实例指向没有监听的端口，不应被选中
+            int closedPort;
+            try (ServerSocket socket = new ServerSocket(0)) {
+                closedPort = socket.getLocalPort();
+            }
+            DynamicConfigManager.getInstance().updateServices(List.of(new ServiceDefinition("mirror-shadow")), true);
+            DynamicConfigManager.getInstance().updateServiceInstances("mirror-shadow", Map.of(
+                    "enabled", instance("enabled", ((InetSocketAddress) shadow.localAddress()).getPort(), true),
+                    "disabled", instance("disabled", closedPort, false)));
+
+            RouteDefinition.FilterConfig filterConfig = new RouteDefinition.FilterConfig();
+            filterConfig.setName(MIRROR_FILTER_NAME);
+            filterConfig.setEnable(true);
+            filterConfig.setConfig("{\"serviceName\": \"mirror-shadow\", \"sampleRate\": 0.25}");
+            RouteDefinition route = new RouteDefinition();
+            route.setId("mirror");
+            route.setFilterConfigs(Set.of(filterConfig));
+
+            MirrorFilter filter = new MirrorFilter();
+            TrafficMirror mirror = TrafficMirror.getInstance();
+            long mirrored = mirror.getMirrored();
+            long dropped = mirror.getDropped();
+            int requests = 2000;
+            FullHttpRequest request = new DefaultFullHttpRequest(HttpVersion.HTTP_1_1, HttpMethod.GET, "/mirror");
+            for (int i = 0; i < requests; i++) {
+                GatewayRequest gatewayRequest = new GatewayRequest(RequestId.of(i), null, StandardCharsets.UTF_8, "127.0.0.1",
+                        "localhost", "/mirror", HttpMethod.GET, null, request.headers(), request);
+                filter.doPreFilter(new GatewayContext(null, gatewayRequest, route, true));
+            }
+            long sampled = mirror.getMirrored() - mirrored + mirror.getDropped() - dropped;
+            Assert.assertEquals(requests * 0.25, sampled, requests * 0.05);
+
+            waitUntil(() -> mirror.getPending() == 0);
+            Assert.assertEquals(mirror.getMirrored() - mirrored, received.get());
+        } finally {
+            shadow.close().sync();
+        }
+    }
+
+    /**
+     * 多分量的请求体完整到达影子服务，逐跳头和原始Host不转发
+     */
+    @Test
+    public void testCompositeBodyAndHopByHopHeaders() throws Exception {
+        List<FullHttpRequest> received = new CopyOnWriteArrayList<>();
+        Channel shadow = new ServerBootstrap()
+                .group(group)
+                .channel(NioServerSocketChannel.class)
+                .childHandler(new ChannelInitializer<>() {
+                    @Override
+                    protected void initChannel(Channel ch) {
+                        ch.pipeline().addLast(new HttpServerCodec(), new HttpObjectAggregator(65536), new SimpleChannelInboundHandler<FullHttpRequest>() {
+                            @Override
+                            protected void channelRead0(ChannelHandlerContext ctx, FullHttpRequest msg) {
+                                received.add(msg.retainedDuplicate());
+                                FullHttpResponse response = new DefaultFullHttpResponse(HttpVersion.HTTP_1_1, HttpResponseStatus.OK);
+                                response.headers().set(HttpHeaderNames.CONTENT_LENGTH, 0);
+                                ctx.writeAndFlush(response);
+                            }
+                        });
+                    }
+                })
+                .bind(0).sync().channel();
+        try {
+            CompositeByteBuf content = Unpooled.compositeBuffer();
+            content.addComponent(true, Unpooled.copiedBuffer("first-", StandardCharsets.UTF_8));
+            content.addComponent(true, Unpooled.copiedBuffer("second-", StandardCharsets.UTF_8));
+            content.addComponent(true, Unpooled.copiedBuffer("third", StandardCharsets.UTF_8));
+            FullHttpRequest request = new DefaultFullHttpRequest(HttpVersion.HTTP_1_1, HttpMethod.POST, "/mirror", content);
+            request.headers()
+                    .set(HttpHeaderNames.HOST, "gateway.example.com")
+                    .set(HttpHeaderNames.CONNECTION, "keep-alive, x-hop")
+                    .set(HttpHeaderNames.KEEP_ALIVE, "timeout=5")
+                    .set(HttpHeaderNames.EXPECT, "100-continue")
+                    .set("x-hop", "1")
+                    .set("x-end", "2")
+                    .setInt(HttpHeaderNames.CONTENT_LENGTH, content.readableBytes());
+
+            TrafficMirror mirror = new TrafficMirror(new MirrorConfig());
+            String host = "127.0.0.1:" + ((InetSocketAddress) shadow.localAddress()).getPort();
+            Assert.assertTrue(mirror.mirror(request, host));
+            waitUntil(() -> mirror.getPending() == 0);
+            waitUntil(() -> request.refCnt() == 1);
+
+            Assert.assertEquals(1, received.size());
+            FullHttpRequest shadowRequest = received.get(0);
+            try {
+                Assert.assertEquals("first-second-third", shadowRequest.content().toString(StandardCharsets.UTF_8));
+                Assert.assertEquals(host, shadowRequest.headers().get(HttpHeaderNames.HOST));
+                Assert.assertEquals("true", shadowRequest.headers().get(MIRROR_HEADER));
+                Assert.assertEquals("2", shadowRequest.headers().get("x-end"));
+                Assert.assertFalse(shadowRequest.headers().contains("x-hop"));
+                Assert.assertFalse(shadowRequest.headers().contains(HttpHeaderNames.KEEP_ALIVE));
+                Assert.assertFalse(shadowRequest.headers().contains(HttpHeaderNames.EXPECT));
+                Assert.assertFalse(shadowRequest.headers().contains(HttpHeaderNames.TRANSFER_ENCODING));
+            } finally {
+                shadowRequest.release();
+            }
+            // 主请求不受影响
+            Assert.assertEquals("gateway.example.com", request.headers().get(HttpHeaderNames.HOST));
+            request.release();
+        } finally {
+            shadow.close().sync();
+        }
+    }
+
+    private static ServiceInstance instance(String id, int port, boolean enabled) {
+        ServiceInstance instance = new ServiceInstance();
+        instance.setServiceName("mirror-shadow");
+        instance.setInstanceId(id);
+        instance.setIp("127.0.0.1");
+        instance.setPort(port);
+        instance.setEnabled(enabled);
+        return instance;
+    }
+
+    private static void waitUntil(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10000;
+        while (!condition.getAsBoolean()) {
+            Assert.assertTrue("condition not met in time", System.currentTimeMillis() < deadline);
+            Thread.sleep(20);
+        }
+    }
+
+}
@@ -0,0 +1,230 @@
+import config.Config;
+import io.netty.bootstrap.Bootstrap;
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.ChannelOption;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.SimpleChannelInboundHandler;
+import io.netty.handler.codec.http.DefaultFullHttpRequest;
+import io.netty.handler.codec.http.DefaultFullHttpResponse;
+import io.netty.handler.codec.http.FullHttpRequest;
+import io.netty.handler.codec.http.FullHttpResponse;
+import io.netty.handler.codec.http.HttpClientCodec;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpMethod;
+import io.netty.handler.codec.http.HttpObjectAggregator;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.handler.codec.http.HttpServerCodec;
+import io.netty.handler.codec.http.HttpVersion;
+import loader.ConfigLoader;
+import manager.DynamicConfigManager;
+import netty.NettyHttpClient;
+import netty.NettyHttpServer;
+import netty.Transport;
+import netty.processor.NettyCoreProcessor;
+import org.junit.Assert;
+import org.junit.Ignore;
+import org.junit.Test;
+import pojo.RouteDefinition;
+import pojo.ServiceDefinition;
+import pojo.ServiceInstance;
+
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.nio.charset.StandardCharsets;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 比较epoll、NIO两种传输下网关的吞吐
+ * 负载：压测客户端 -> 网关（NettyHttpServer + NettyHttpClient，完整的过滤器链） -> 后端，每个客户端连接串行发送请求
+ * 当前环境不支持的传输会被跳过
+ * 运行时间较长，不在默认构建中运行，需要时去掉@Ignore手动运行
+ */
+@Ignore("基准测试，手动运行")
+public class TestTransportBenchmark {
+
+    private static final String SERVICE_NAME = "transport-benchmark";
+
+    private static final int CONNECTIONS = 32;
+
+    private static final int REQUESTS_PER_CONNECTION = 2000;
+
+    private static final int WARMUP_REQUESTS_PER_CONNECTION = 500;
+
+    private static final byte[] BODY = "pong".getBytes(StandardCharsets.UTF_8);
+
+    @Test
+    public void testTransports() throws Exception {
+        EventLoopGroup backendGroup = Transport.NIO.newEventLoopGroup(2, "benchmark-backend");
+        EventLoopGroup loadGroup = Transport.NIO.newEventLoopGroup(4, "benchmark-load");
+        Channel backend = new ServerBootstrap()
+                .group(backendGroup)
+                .channel(Transport.NIO.serverChannelClass())
+                .childOption(ChannelOption.TCP_NODELAY, true)
+                .childHandler(new ChannelInitializer<>() {
+                    @Override
+                    protected void initChannel(Channel ch) {
+                        ch.pipeline().addLast(new HttpServerCodec(), new HttpObjectAggregator(65536), new BackendHandler());
+                    }
+                })
+                .bind(0).sync().channel();
+        register(((InetSocketAddress) backend.localAddress()).getPort());
+
+        Config config = ConfigLoader.getConfig();
+        String transportName = config.getNettyConfig().getTransport();
+        int port = config.getPort();
+        try {
+            for (Transport transport : Transport.values()) {
+                if (Transport.resolve(transport.getName()) != transport) {
+                    System.out.printf("%-8s not available, skipped%n", transport.getName());
+                    continue;
+                }
+                config.getNettyConfig().setTransport(transport.getName());
+                config.setPort(freePort());
+                run(transport, config, loadGroup);
+            }
+        } finally {
+            config.getNettyConfig().setTransport(transportName);
+            config.setPort(port);
+            backend.close().sync();
+            loadGroup.shutdownGracefully(0, 1, TimeUnit.SECONDS).sync();
+            backendGroup.shutdownGracefully(0, 1, TimeUnit.SECONDS).sync();
+        }
+    }
+
+    private void run(Transport transport, Config config, EventLoopGroup loadGroup) throws Exception {
+        NettyHttpClient client = new NettyHttpClient(config);
+        NettyHttpServer server = new NettyHttpServer(config, new NettyCoreProcessor());
+        client.start();
+        server.start();
+        try {
+            load(transport, loadGroup, config.getPort(), WARMUP_REQUESTS_PER_CONNECTION);
+            long start = System.nanoTime();
+            long completed = load(transport, loadGroup, config.getPort(), REQUESTS_PER_CONNECTION);
+            double seconds = (System.nanoTime() - start) / 1e9;
+            System.out.printf("%-8s %d requests in %.2fs, %.0f req/s, avg %.1f us%n", transport.getName(), completed,
+                    seconds, completed / seconds, seconds * 1e6 * CONNECTIONS / completed);
+            Assert.assertEquals((long) CONNECTIONS * REQUESTS_PER_CONNECTION, completed);
+        } finally {
+            server.shutdown();
+            client.shutdown();
+        }
+    }
+
+    /**
+     * 注册转发到后端的路由、服务和实例
+     */
+    private static void register(int backendPort) {
+        RouteDefinition route = new RouteDefinition();
+        route.setId(SERVICE_NAME);
+        route.setServiceName(SERVICE_NAME);
+        route.setUri("/" + SERVICE_NAME + "/**");
+        route.setFilterConfigs(new HashSet<>());
+        DynamicConfigManager.getInstance().updateRoutes(List.of(route), true);
+        DynamicConfigManager.getInstance().updateServices(List.of(new ServiceDefinition(SERVICE_NAME)), true);
+        ServiceInstance instance = new ServiceInstance();
+        instance.setServiceName(SERVICE_NAME);
+        instance.setInstanceId("127.0.0.1:" + backendPort);
+        instance.setIp("127.0.0.1");
+        instance.setPort(backendPort);
+        DynamicConfigManager.getInstance().addServiceInstance(SERVICE_NAME, instance);
+    }
+
+    private static int freePort() throws Exception {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+
+    private long load(Transport transport, EventLoopGroup group, int port, int requests) throws Exception {
+        CountDownLatch latch = new CountDownLatch(CONNECTIONS);
+        AtomicLong completed = new AtomicLong();
+        for (int i = 0; i < CONNECTIONS; i++) {
+            new Bootstrap()
+                    .group(group)
+                    .channel(Transport.NIO.socketChannelClass())
+                    .option(ChannelOption.TCP_NODELAY, true)
+                    .handler(new ChannelInitializer<>() {
+                        @Override
+                        protected void initChannel(Channel ch) {
+                            ch.pipeline().addLast(new HttpClientCodec(), new HttpObjectAggregator(65536),
+                                    new LoadHandler(requests, completed, latch));
+                        }
+                    })
+                    .connect("127.0.0.1", port).sync();
+        }
+        if (!latch.await(2, TimeUnit.MINUTES)) {
+            throw new IllegalStateException(transport.getName() + " benchmark timed out");
+        }
+        return completed.get();
+    }
+
+    private static FullHttpRequest newRequest() {
+        FullHttpRequest request = new DefaultFullHttpRequest(HttpVersion.HTTP_1_1, HttpMethod.GET, "/" + SERVICE_NAME + "/ping");
+        request.headers().set(HttpHeaderNames.HOST, "127.0.0.1");
+        request.headers().set(HttpHeaderNames.CONTENT_LENGTH, 0);
+        return request;
+    }
+
+    /**
+     * 后端服务，固定返回pong
+     */
+    private static class BackendHandler extends SimpleChannelInboundHandler<FullHttpRequest> {
+
+        @Override
+        protected void channelRead0(ChannelHandlerContext ctx, FullHttpRequest msg) {
+            FullHttpResponse response = new DefaultFullHttpResponse(HttpVersion.HTTP_1_1, HttpResponseStatus.OK,
+                    Unpooled.wrappedBuffer(BODY));
+            response.headers().set(HttpHeaderNames.CONTENT_LENGTH, BODY.length);
+            ctx.writeAndFlush(response);
+        }
+    }
+
+    /**
+     * 压测客户端，收到成功响应后发送下一个请求
+     */
+    private static class LoadHandler extends SimpleChannelInboundHandler<FullHttpResponse> {
+
+        private final int requests;
+
+        private final AtomicLong completed;
+
+        private final CountDownLatch latch;
+
+        private int sent;
+
+        LoadHandler(int requests, AtomicLong completed, CountDownLatch latch) {
+            this.requests = requests;
+            this.completed = completed;
+            this.latch = latch;
+        }
+
+        @Override
+        public void channelActive(ChannelHandlerContext ctx) {
+            sent++;
+            ctx.writeAndFlush(newRequest());
+        }
+
+        @Override
+        protected void channelRead0(ChannelHandlerContext ctx, FullHttpResponse msg) {
+            if (msg.status().code() == HttpResponseStatus.OK.code()) {
+                completed.incrementAndGet();
+            }
+            if (sent == requests) {
+                ctx.close();
+                latch.countDown();
+                return;
+            }
+            sent++;
+            ctx.writeAndFlush(newRequest());
+        }
+    }
+
+}
@@ -0,0 +1,23 @@
+import algorithm.XxHash64;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+
+public class TestXxHash64 {
+
+    @Test
+    public void testVectors() {
+        Assert.assertEquals(0xEF46DB3751D8E999L, XxHash64.hash(""));
+        Assert.assertEquals(0xD24EC4F1A98C6E5BL, XxHash64.hash("a"));
+        Assert.assertEquals(0x44BC2CF5AD770999L, XxHash64.hash("abc"));
+    }
+
+    @Test
+    public void testUtf8() {
+        // 字符串按UTF-8编码计算，和直接计算字节数组的结果一致
+        String value = "192.168.1.1-灰度-😀-" + "x".repeat(100);
+        Assert.assertEquals(XxHash64.hash(value.getBytes(StandardCharsets.UTF_8)), XxHash64.hash(value));
+    }
+
+}
@@ -0,0 +1,97 @@
+import config.ZoneAwareConfig;
+import context.GatewayContext;
+import filter.loadbalance.strategy.LoadBalanceStrategy;
+import filter.loadbalance.strategy.ZoneAwareLoadBalanceStrategy;
+import filter.subset.InstanceSubset;
+import org.junit.Assert;
+import org.junit.Test;
+import pojo.ServiceInstance;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+public class TestZoneAwareLoadBalanceStrategy {
+
+    /**
+     * 直接返回第一个候选实例
+     */
+    private static final LoadBalanceStrategy FIRST = new LoadBalanceStrategy() {
+        @Override
+        public ServiceInstance selectInstance(GatewayContext context, List<ServiceInstance> instances) {
+            return instances.get(0);
+        }
+
+        @Override
+        public String mark() {
+            return "first";
+        }
+    };
+
+    @Test
+    public void testLocalHealthy() {
+        LoadBalanceStrategy strategy = strategy();
+        List<ServiceInstance> instances = List.of(instance("r1", "z2", true), instance("l1", "z1", true), instance("l2", "z1", true));
+        for (int i = 0; i < 1000; i++) {
+            Assert.assertEquals("l1", strategy.selectInstance(null, instances).getInstanceId());
+        }
+    }
+
+    @Test
+    public void testSpillover() {
+        LoadBalanceStrategy strategy = strategy();
+        // 本机房健康比例0.35，阈值0.7，约一半流量溢出到其他机房
+        List<ServiceInstance> instances = new ArrayList<>();
+        instances.add(instance("r1", "z2", true));
+        for (int i = 0; i < 20; i++) {
+            instances.add(instance("l" + i, "z1", i < 7));
+        }
+        int local = 0;
+        int total = 20000;
+        for (int i = 0; i < total; i++) {
+            if (strategy.selectInstance(null, instances).getInstanceId().startsWith("l")) local++;
+        }
+        Assert.assertEquals(0.5, (double) local / total, 0.03);
+    }
+
+    @Test
+    public void testNoLocal() {
+        LoadBalanceStrategy strategy = strategy();
+        List<ServiceInstance> instances = List.of(instance("l1", "z1", false), instance("r1", "z2", true));
+        Assert.assertEquals("r1", strategy.selectInstance(null, instances).getInstanceId());
+    }
+
+    @Test
+    public void testSubsetSplitPrecomputed() {
+        InstanceSubset subset = new InstanceSubset("", List.of(instance("r1", "z2", true), instance("l1", "z1", true), instance("l2", "z1", false)));
+        InstanceSubset.ZoneSplit split = subset.getZoneSplit("zone", "z1");
+        Assert.assertSame(split, subset.getZoneSplit("zone", "z1"));
+        Assert.assertEquals(1, split.getLocalInstances().size());
+        Assert.assertEquals(1, split.getRemoteInstances().size());
+        Assert.assertEquals(2, split.getLocalTotal());
+
+        ZoneAwareLoadBalanceStrategy strategy = (ZoneAwareLoadBalanceStrategy) strategy();
+        int local = 0;
+        for (int i = 0; i < 10000; i++) {
+            if (strategy.selectInstance(null, subset).getInstanceId().startsWith("l")) local++;
+        }
+        // 本机房健康比例0.5，阈值0.7，约5/7的流量留在本机房
+        Assert.assertEquals(0.5 / 0.7, local / 10000.0, 0.03);
+    }
+
+    private static LoadBalanceStrategy strategy() {
+        ZoneAwareConfig config = new ZoneAwareConfig();
+        config.setEnabled(true);
+        config.setZone("z1");
+        return new ZoneAwareLoadBalanceStrategy(FIRST, config);
+    }
+
+    private static ServiceInstance instance(String id, String zone, boolean enabled) {
+        ServiceInstance instance = new ServiceInstance();
+        instance.setInstanceId(id);
+        instance.setEnabled(enabled);
+        instance.setTags(Map.of("zone", zone));
+        return instance;
+    }
+
+}
@@ -0,0 +1,36 @@
+package service;
+
+import lombok.extern.slf4j.Slf4j;
+import manager.DynamicConfigManager;
+import pojo.ServiceDefinition;
+import pojo.ServiceInstance;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 把注册中心的服务和实例变化同步到DynamicConfigManager
+ * 每次变化发布一个新的实例快照，已经下线的实例随快照一起移除
+ */
+@Slf4j
+public class DefaultRegisterCenterListener implements RegisterCenterListener {
+
+    @Override
+    public void onInstancesChange(ServiceDefinition serviceDefinition, Set<ServiceInstance> newInstances) {
+        Map<String, ServiceInstance> instances = new HashMap<>();
+        for (ServiceInstance instance : newInstances) {
+            instances.put(instance.getInstanceId(), instance);
+        }
+        DynamicConfigManager.getInstance().updateServiceByName(serviceDefinition.getServiceName(), serviceDefinition);
+        DynamicConfigManager.getInstance().updateServiceInstances(serviceDefinition.getServiceName(), instances);
+    }
+
+    @Override
+    public void onInstancesDelta(ServiceDefinition serviceDefinition, ServiceInstanceDelta delta) {
+        DynamicConfigManager.getInstance().updateServiceByName(serviceDefinition.getServiceName(), serviceDefinition);
+        DynamicConfigManager.getInstance().updateServiceInstances(serviceDefinition.getServiceName(), delta.getInstances());
+        log.info("service instances changed, service: {}, {}", serviceDefinition.getServiceName(), delta);
+    }
+
+}
@@ -5,6 +5,7 @@ package service;
 import pojo.ServiceDefinition;
 import pojo.ServiceInstance;
 
+import java.util.HashSet;
 import java.util.Set;
 
 /**
@@ -17,4 +18,15 @@ public interface RegisterCenterListener {
      */
     void onInstancesChange(ServiceDefinition serviceDefinition, Set<ServiceInstance> newInstances);
 
+    /**
+     * 某服务有实例变化时调用此方法，只在实例确实有新增、删除或内容变化时调用
+     * 默认把变化后的完整快照交给onInstancesChange
+     *
+     * @param serviceDefinition 服务定义
+     * @param delta 实例变化
+     */
+    default void onInstancesDelta(ServiceDefinition serviceDefinition, ServiceInstanceDelta delta) {
+        onInstancesChange(serviceDefinition, new HashSet<>(delta.getInstances().values()));
+    }
+
 }
\ No newline at end of file
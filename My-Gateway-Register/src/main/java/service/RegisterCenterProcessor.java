@@ -16,4 +16,10 @@ public interface RegisterCenterProcessor {
      */
     void subscribeServiceChange(RegisterCenterListener listener);
 
+    /**
+     * 将网关实例从注册中心注销
+     * 优雅下线时调用，调用方不再把新请求发到该实例
+     */
+    void deregister();
+
 }
@@ -0,0 +1,53 @@
+package service;
+
+import lombok.Getter;
+import pojo.ServiceInstance;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 一个服务的实例变化
+ * 只包含新增、删除和内容变化的实例，同时给出变化后的完整快照，快照中没有变化的实例沿用原来的对象
+ */
+@Getter
+public class ServiceInstanceDelta {
+
+    /**
+     * 新增的实例
+     */
+    private final List<ServiceInstance> added;
+
+    /**
+     * 内容变化的实例，为新创建的对象
+     */
+    private final List<ServiceInstance> updated;
+
+    /**
+     * 删除的实例
+     */
+    private final List<ServiceInstance> removed;
+
+    /**
+     * 变化后服务的全部实例，不可修改
+     */
+    private final Map<String /* 实例id */, ServiceInstance> instances;
+
+    public ServiceInstanceDelta(List<ServiceInstance> added, List<ServiceInstance> updated, List<ServiceInstance> removed,
+                                Map<String, ServiceInstance> instances) {
+        this.added = added;
+        this.updated = updated;
+        this.removed = removed;
+        this.instances = instances;
+    }
+
+    public boolean isEmpty() {
+        return added.isEmpty() && updated.isEmpty() && removed.isEmpty();
+    }
+
+    @Override
+    public String toString() {
+        return "added: " + added.size() + ", updated: " + updated.size() + ", removed: " + removed.size() + ", total: " + instances.size();
+    }
+
+}
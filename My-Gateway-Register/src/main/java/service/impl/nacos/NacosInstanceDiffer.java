@@ -0,0 +1,205 @@
+package service.impl.nacos;
+
+import com.alibaba.nacos.api.naming.pojo.Instance;
+import pojo.ServiceInstance;
+import service.ServiceInstanceDelta;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Nacos实例变化计算
+ * 按服务保存上一次的实例快照，每个实例记录由Nacos实例内容计算的哈希
+ * 新的实例列表按实例id和内容哈希与快照比较，哈希相同时再比较实际内容，只为新增和内容变化的实例创建网关实例对象，
+ * 没有变化的实例沿用快照中的对象，依赖实例对象的负载均衡状态不会因此失效
+ * 计算结果要在成功发布之后调用commit才会成为新的快照，发布失败时下一次事件会重新得到同样的变化
+ * 实例id使用ip:port，不使用Nacos的instanceId，同一地址重新注册时仍是同一个实例
+ * Nacos判定不健康的实例转换为未启用的网关实例，不再分配流量
+ */
+public class NacosInstanceDiffer {
+
+    private static final String GRAY_METADATA = "gray";
+
+    private static final String THRESHOLD_METADATA = "threshold";
+
+    private static final String WEIGHT_METADATA = "weight";
+
+    private static final String ENABLED_METADATA = "enabled";
+
+    private final Map<String /* 服务名 */, Map<String /* 实例id */, Tracked>> snapshotMap = new ConcurrentHashMap<>();
+
+    /**
+     * 计算服务实例的变化，不修改快照
+     * 同一个服务的调用需要串行，Nacos对同一个服务的事件是顺序通知的
+     *
+     * @param serviceName 服务名
+     * @param instances Nacos中服务的全部实例
+     */
+    public Result diff(String serviceName, Collection<Instance> instances) {
+        Map<String, Tracked> previous = snapshotMap.getOrDefault(serviceName, Collections.emptyMap());
+        Map<String, Tracked> current = new HashMap<>(instances.size() * 2);
+        List<ServiceInstance> added = new ArrayList<>();
+        List<ServiceInstance> updated = new ArrayList<>();
+
+        for (Instance instance : instances) {
+            if (instance == null) continue;
+            String instanceId = instance.getIp() + ":" + instance.getPort();
+            long hash = contentHash(instance);
+            Tracked tracked = previous.get(instanceId);
+            if (tracked == null || tracked.hash != hash || !tracked.sameContent(instance)) {
+                tracked = new Tracked(hash, instance, toServiceInstance(serviceName, instanceId, instance));
+                (previous.containsKey(instanceId) ? updated : added).add(tracked.instance);
+            }
+            current.put(instanceId, tracked);
+        }
+
+        List<ServiceInstance> removed = new ArrayList<>();
+        for (Map.Entry<String, Tracked> entry : previous.entrySet()) {
+            if (!current.containsKey(entry.getKey())) {
+                removed.add(entry.getValue().instance);
+            }
+        }
+
+        Map<String, ServiceInstance> snapshot = new HashMap<>(current.size() * 2);
+        current.forEach((id, tracked) -> snapshot.put(id, tracked.instance));
+        return new Result(serviceName, new ServiceInstanceDelta(added, updated, removed, Collections.unmodifiableMap(snapshot)), current);
+    }
+
+    /**
+     * 变化成功发布后，把计算结果记为服务的新快照
+     */
+    public void commit(Result result) {
+        snapshotMap.put(result.serviceName, result.tracked);
+    }
+
+    /**
+     * 服务取消订阅或下线后清除快照
+     */
+    public void remove(String serviceName) {
+        snapshotMap.remove(serviceName);
+    }
+
+    /**
+     * 实例内容的哈希，覆盖网关实例会用到的所有字段
+     */
+    private static long contentHash(Instance instance) {
+        long hash = 17;
+        hash = hash * 31 + instance.getIp().hashCode();
+        hash = hash * 31 + instance.getPort();
+        hash = hash * 31 + Double.hashCode(instance.getWeight());
+        hash = hash * 31 + (instance.isEnabled() ? 1 : 0);
+        hash = hash * 31 + (instance.isHealthy() ? 1 : 0);
+        // Map的hashCode与遍历顺序无关
+        hash = hash * 1_000_003 + (instance.getMetadata() == null ? 0 : instance.getMetadata().hashCode());
+        return hash;
+    }
+
+    /**
+     * 把Nacos实例转换为网关实例，元数据中的灰度、权重等字段覆盖实例本身的值，全部元数据作为实例标签
+     * 实例不健康时网关实例为未启用
+     */
+    private static ServiceInstance toServiceInstance(String serviceName, String instanceId, Instance instance) {
+        ServiceInstance serviceInstance = new ServiceInstance();
+        serviceInstance.setServiceName(serviceName);
+        serviceInstance.setInstanceId(instanceId);
+        serviceInstance.setIp(instance.getIp());
+        serviceInstance.setPort(instance.getPort());
+        serviceInstance.setWeight((int) instance.getWeight());
+        serviceInstance.setEnabled(instance.isEnabled());
+
+        Map<String, String> metadata = instance.getMetadata();
+        if (metadata != null && !metadata.isEmpty()) {
+            String value;
+            if ((value = metadata.get(GRAY_METADATA)) != null) {
+                serviceInstance.setGray(Boolean.parseBoolean(value));
+            }
+            if ((value = metadata.get(THRESHOLD_METADATA)) != null) {
+                serviceInstance.setThreshold(parseDouble(value, serviceInstance.getThreshold()));
+            }
+            if ((value = metadata.get(WEIGHT_METADATA)) != null) {
+                serviceInstance.setWeight((int) parseDouble(value, serviceInstance.getWeight()));
+            }
+            if ((value = metadata.get(ENABLED_METADATA)) != null) {
+                serviceInstance.setEnabled(Boolean.parseBoolean(value));
+            }
+            serviceInstance.setTags(metadata);
+        }
+        // 不健康的实例即使元数据中启用也不参与负载均衡
+        serviceInstance.setEnabled(serviceInstance.isEnabled() && instance.isHealthy());
+        return serviceInstance;
+    }
+
+    private static double parseDouble(String value, double defaultValue) {
+        try {
+            return Double.parseDouble(value.trim());
+        } catch (NumberFormatException e) {
+            return defaultValue;
+        }
+    }
+
+    /**
+     * 一次变化计算的结果
+     */
+    public static class Result {
+
+        private final String serviceName;
+
+        private final ServiceInstanceDelta delta;
+
+        private final Map<String, Tracked> tracked;
+
+        private Result(String serviceName, ServiceInstanceDelta delta, Map<String, Tracked> tracked) {
+            this.serviceName = serviceName;
+            this.delta = delta;
+            this.tracked = tracked;
+        }
+
+        public ServiceInstanceDelta getDelta() {
+            return delta;
+        }
+    }
+
+    /**
+     * 快照中的实例、它的内容哈希以及计算哈希的原始内容
+     */
+    private static class Tracked {
+
+        private final long hash;
+
+        private final double weight;
+
+        private final boolean enabled;
+
+        private final boolean healthy;
+
+        private final Map<String, String> metadata;
+
+        private final ServiceInstance instance;
+
+        Tracked(long hash, Instance source, ServiceInstance instance) {
+            this.hash = hash;
+            this.weight = source.getWeight();
+            this.enabled = source.isEnabled();
+            this.healthy = source.isHealthy();
+            this.metadata = source.getMetadata() == null ? Map.of() : new HashMap<>(source.getMetadata());
+            this.instance = instance;
+        }
+
+        /**
+         * 哈希相同时比较实际内容，避免哈希冲突时漏掉变化，ip和端口组成实例id，已经相同
+         */
+        boolean sameContent(Instance source) {
+            Map<String, String> sourceMetadata = source.getMetadata() == null ? Map.of() : source.getMetadata();
+            return Double.compare(weight, source.getWeight()) == 0
+                    && enabled == source.isEnabled()
+                    && healthy == source.isHealthy()
+                    && metadata.equals(sourceMetadata);
+        }
+    }
+
+}
@@ -26,9 +26,11 @@ import pojo.ServiceDefinition;
 import pojo.ServiceInstance;
 import service.RegisterCenterListener;
 import service.RegisterCenterProcessor;
+import service.ServiceInstanceDelta;
 import utils.NetUtil;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
@@ -62,6 +64,21 @@ public class NacosRegisterCenter implements RegisterCenterProcessor {
      */
     private RegisterCenterListener listener;
 
+    /**
+     * 计算服务实例的变化
+     */
+    private final NacosInstanceDiffer instanceDiffer = new NacosInstanceDiffer();
+
+    /**
+     * 已订阅服务的监听器，服务下线后取消订阅时使用
+     */
+    private final Map<String /* 服务名 */, EventListener> listenerMap = new ConcurrentHashMap<>();
+
+    /**
+     * 网关自身注册的实例，注销时使用
+     */
+    private Instance selfInstance;
+
     private final AtomicBoolean init = new AtomicBoolean(false);
 
     public NacosRegisterCenter(Config config) {
@@ -85,6 +102,7 @@ public class NacosRegisterCenter implements RegisterCenterProcessor {
         instance.setIp(NetUtil.getLocalIp());
         instance.setPort(config.getPort());
         namingService.registerInstance(config.getName(), group, instance);
+        selfInstance = instance;
         log.info("gateway instance register: {}", instance);
 
         // 设置网关服务元数据信息
@@ -102,6 +120,17 @@ public class NacosRegisterCenter implements RegisterCenterProcessor {
                 scheduleWithFixedDelay(this::doSubscribeAllServices, 0, 10, TimeUnit.SECONDS);
     }
 
+    @Override
+    public void deregister() {
+        if (selfInstance == null) return;
+        try {
+            namingService.deregisterInstance(config.getName(), config.getRegisterCenter().getNacos().getGroup(), selfInstance);
+            log.info("gateway instance deregister: {}", selfInstance);
+        } catch (NacosException e) {
+            log.error("gateway instance deregister failed: {}", selfInstance, e);
+        }
+    }
+
     private Properties buildProperties(RegisterCenter registerCenter) {
         ObjectMapper mapper = new ObjectMapper();
         Properties properties = new Properties();
@@ -132,10 +161,12 @@ public class NacosRegisterCenter implements RegisterCenterProcessor {
 
             // 获取第一页服务列表
             List<String> serviceList = namingService.getServicesOfServer(pageNo, pageSize, group).getData();
+            Set<String> serverServiceSet = new HashSet<>();
 
             // 循环处理所有页的服务
             while (CollectionUtils.isNotEmpty(serviceList)) {
                 for (String serviceName : serviceList) {
+                    serverServiceSet.add(serviceName);
                     // 如果服务已订阅，跳过
                     if (subscribeServiceSet.contains(serviceName)) {
                         continue;
@@ -147,11 +178,20 @@ public class NacosRegisterCenter implements RegisterCenterProcessor {
                     eventListener.onEvent(new NamingEvent(serviceName, null));
                     // 订阅服务变化
                     namingService.subscribe(serviceName, group, eventListener);
+                    listenerMap.put(serviceName, eventListener);
                     log.info("subscribe a service, ServiceName: {} Group: {}", serviceName, group);
                 }
                 // 遍历下一页的服务列表
                 serviceList = namingService.getServicesOfServer(++pageNo, pageSize, group).getData();
             }
+
+            // 服务已从Nacos中删除，取消订阅并清除实例快照
+            for (String serviceName : listenerMap.keySet()) {
+                if (serverServiceSet.contains(serviceName)) continue;
+                namingService.unsubscribe(serviceName, group, listenerMap.remove(serviceName));
+                instanceDiffer.remove(serviceName);
+                log.info("unsubscribe a service, ServiceName: {} Group: {}", serviceName, group);
+            }
         } catch (Exception e) { // 任务中捕捉Exception，防止线程池停止
             log.error("subscribe services from nacos occur exception: {}", e.getMessage(), e);
         }
@@ -178,31 +218,35 @@ public class NacosRegisterCenter implements RegisterCenterProcessor {
                 String serviceName = namingEvent.getServiceName();
                 String group = config.getRegisterCenter().getNacos().getGroup();
 
+                // 事件中带有服务的全部实例，首次订阅时主动发起的事件没有实例，需要查询
+                List<Instance> allInstances = namingEvent.getInstances();
+                boolean initial = allInstances == null;
+                if (initial) {
+                    allInstances = namingService.getAllInstances(serviceName, group);
+                }
+
+                // 和上一次的实例比较，没有变化时不通知
+                NacosInstanceDiffer.Result result = instanceDiffer.diff(serviceName, allInstances == null ? List.of() : allInstances);
+                ServiceInstanceDelta delta = result.getDelta();
+                if (delta.isEmpty() && !initial) {
+                    return;
+                }
+
                 // 查询nacos服务定义创建
                 Service service = namingMaintainService.queryService(serviceName, group);
                 ServiceDefinition serviceDefinition = new ServiceDefinition(service.getName());
                 BeanUtil.fillBeanWithMap(service.getMetadata(), serviceDefinition, true);
 
-                // 获取所有服务实例信息
-                List<Instance> allInstances = namingService.getAllInstances(serviceName, group);
-                Set<ServiceInstance> newInstances = new HashSet<>();
-
-                // 转换nacos实例为网关服务实例
-                if (CollectionUtils.isNotEmpty(allInstances)) {
-                    for (Instance instance : allInstances) {
-                        if (instance == null) continue;
-
-                        // 创建新的服务实例, 添加到实例集合
-                        ServiceInstance newInstance = new ServiceInstance();
-                        BeanUtil.copyProperties(instance, newInstance);
-                        BeanUtil.fillBeanWithMap(instance.getMetadata(), newInstance, true);
-
-                        newInstances.add(newInstance);
-                    }
-                }
-
                 // 调用我们自己的订阅监听器
-                listener.onInstancesChange(serviceDefinition, newInstances);
+                listener.onInstancesDelta(serviceDefinition, delta);
+
+                // 发布成功后才记为新的快照，查询服务或通知监听器失败时，下一次事件会重新发布这些变化
+                // 服务已没有实例时不保留快照，之后的实例都按新增处理
+                if (delta.getInstances().isEmpty()) {
+                    instanceDiffer.remove(serviceName);
+                } else {
+                    instanceDiffer.commit(result);
+                }
             }
         }
     }
@@ -0,0 +1,107 @@
+import com.alibaba.nacos.api.naming.pojo.Instance;
+import org.junit.Assert;
+import org.junit.Test;
+import pojo.ServiceInstance;
+import service.ServiceInstanceDelta;
+import service.impl.nacos.NacosInstanceDiffer;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class TestNacosInstanceDiffer {
+
+    @Test
+    public void testDiff() {
+        NacosInstanceDiffer differ = new NacosInstanceDiffer();
+        ServiceInstanceDelta first = diffAndCommit(differ, "svc", List.of(instance("10.0.0.1", Map.of()), instance("10.0.0.2", Map.of("gray", "true", "threshold", "0.2"))));
+        Assert.assertEquals(2, first.getAdded().size());
+        ServiceInstance gray = first.getInstances().get("10.0.0.2:8080");
+        Assert.assertTrue(gray.isGray());
+        Assert.assertEquals(0.2, gray.getThreshold(), 1e-9);
+        Assert.assertEquals("true", gray.getTags().get("gray"));
+
+        // 内容没有变化时没有增量，沿用原来的实例对象
+        ServiceInstanceDelta same = diffAndCommit(differ, "svc", List.of(instance("10.0.0.2", Map.of("threshold", "0.2", "gray", "true")), instance("10.0.0.1", Map.of())));
+        Assert.assertTrue(same.isEmpty());
+        Assert.assertSame(gray, same.getInstances().get("10.0.0.2:8080"));
+
+        Instance disabled = instance("10.0.0.1", Map.of());
+        disabled.setEnabled(false);
+        ServiceInstanceDelta delta = diffAndCommit(differ, "svc", List.of(disabled, instance("10.0.0.3", Map.of())));
+        Assert.assertEquals(1, delta.getAdded().size());
+        Assert.assertEquals(1, delta.getUpdated().size());
+        Assert.assertFalse(delta.getUpdated().get(0).isEnabled());
+        Assert.assertEquals("10.0.0.2:8080", delta.getRemoved().get(0).getInstanceId());
+        Assert.assertEquals(2, delta.getInstances().size());
+    }
+
+    @Test
+    public void testUncommittedDiffIsRepeated() {
+        NacosInstanceDiffer differ = new NacosInstanceDiffer();
+        diffAndCommit(differ, "svc", List.of(instance("10.0.0.1", Map.of())));
+
+        // 发布失败时不提交，下一次同样的事件仍然得到同样的增量
+        List<Instance> instances = List.of(instance("10.0.0.1", Map.of("gray", "true")));
+        Assert.assertEquals(1, differ.diff("svc", instances).getDelta().getUpdated().size());
+        Assert.assertEquals(1, differ.diff("svc", instances).getDelta().getUpdated().size());
+        Assert.assertTrue(diffAndCommit(differ, "svc", instances).getInstances().get("10.0.0.1:8080").isGray());
+        Assert.assertTrue(differ.diff("svc", instances).getDelta().isEmpty());
+    }
+
+    @Test
+    public void testHashCollisionIsNotIgnored() {
+        NacosInstanceDiffer differ = new NacosInstanceDiffer();
+        // "Aa"和"BB"的hashCode相同，两个元数据Map的哈希也相同
+        Assert.assertEquals(Map.of("version", "Aa").hashCode(), Map.of("version", "BB").hashCode());
+        diffAndCommit(differ, "svc", List.of(instance("10.0.0.1", Map.of("version", "Aa"))));
+        ServiceInstanceDelta delta = diffAndCommit(differ, "svc", List.of(instance("10.0.0.1", Map.of("version", "BB"))));
+        Assert.assertEquals(1, delta.getUpdated().size());
+        Assert.assertEquals("BB", delta.getUpdated().get(0).getTags().get("version"));
+    }
+
+    @Test
+    public void testUnhealthyInstanceDisabled() {
+        NacosInstanceDiffer differ = new NacosInstanceDiffer();
+        diffAndCommit(differ, "svc", List.of(instance("10.0.0.1", Map.of())));
+
+        // 不健康的实例即使元数据中启用也不参与负载均衡
+        Instance unhealthy = instance("10.0.0.1", Map.of("enabled", "true"));
+        unhealthy.setHealthy(false);
+        ServiceInstanceDelta delta = diffAndCommit(differ, "svc", List.of(unhealthy));
+        Assert.assertEquals(1, delta.getUpdated().size());
+        Assert.assertFalse(delta.getUpdated().get(0).isEnabled());
+
+        ServiceInstanceDelta recovered = diffAndCommit(differ, "svc", List.of(instance("10.0.0.1", Map.of("enabled", "true"))));
+        Assert.assertEquals(1, recovered.getUpdated().size());
+        Assert.assertTrue(recovered.getUpdated().get(0).isEnabled());
+    }
+
+    @Test
+    public void testRemove() {
+        NacosInstanceDiffer differ = new NacosInstanceDiffer();
+        diffAndCommit(differ, "svc", List.of(instance("10.0.0.1", Map.of())));
+        Assert.assertTrue(differ.diff("svc", List.of(instance("10.0.0.1", Map.of()))).getDelta().isEmpty());
+
+        // 清除快照后，实例重新按新增处理
+        differ.remove("svc");
+        ServiceInstanceDelta delta = differ.diff("svc", List.of(instance("10.0.0.1", Map.of()))).getDelta();
+        Assert.assertEquals(1, delta.getAdded().size());
+        Assert.assertTrue(delta.getRemoved().isEmpty());
+    }
+
+    private static ServiceInstanceDelta diffAndCommit(NacosInstanceDiffer differ, String serviceName, List<Instance> instances) {
+        NacosInstanceDiffer.Result result = differ.diff(serviceName, instances);
+        differ.commit(result);
+        return result.getDelta();
+    }
+
+    private static Instance instance(String ip, Map<String, String> metadata) {
+        Instance instance = new Instance();
+        instance.setIp(ip);
+        instance.setPort(8080);
+        instance.setMetadata(new HashMap<>(metadata));
+        return instance;
+    }
+
+}